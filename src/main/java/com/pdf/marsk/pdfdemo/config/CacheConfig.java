@@ -37,7 +37,7 @@ public class CacheConfig {
                 .recordStats()
                 .build());
         
-        // Configure cache for OCR results
+        // Configure cache for OCR results (in-memory tier of OcrResultCache, keyed by content hash)
         cacheManager.registerCustomCache("ocrResults",
             Caffeine.newBuilder()
                 .maximumSize(100)
@@ -45,6 +45,14 @@ public class CacheConfig {
                 .recordStats()
                 .build());
         
+        // Configure cache for recognized page texts (in-memory tier of PageTextCache, keyed by page fingerprint)
+        cacheManager.registerCustomCache("pageTexts",
+            Caffeine.newBuilder()
+                .maximumSize(2000)
+                .expireAfterWrite(24, TimeUnit.HOURS)
+                .recordStats()
+                .build());
+        
         // Configure cache for LLM responses
         cacheManager.registerCustomCache("llmResponses",
             Caffeine.newBuilder()
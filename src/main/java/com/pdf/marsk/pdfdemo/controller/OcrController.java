@@ -1,22 +1,26 @@
 package com.pdf.marsk.pdfdemo.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationListener;
-import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,39 +32,69 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.pdf.marsk.pdfdemo.model.OcrBatch;
+import com.pdf.marsk.pdfdemo.model.OcrBatchFile;
 import com.pdf.marsk.pdfdemo.model.OcrTextDocument;
 import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository;
+import com.pdf.marsk.pdfdemo.service.LineConfidences;
+import com.pdf.marsk.pdfdemo.service.OcrBatchService;
+import com.pdf.marsk.pdfdemo.service.OcrEventStreamService;
+import com.pdf.marsk.pdfdemo.service.OcrJobService;
+import com.pdf.marsk.pdfdemo.service.OcrLanguageDetector;
+import com.pdf.marsk.pdfdemo.service.OcrOptions;
+import com.pdf.marsk.pdfdemo.service.OcrProfiles;
+import com.pdf.marsk.pdfdemo.service.OcrSchedulerFullException;
 import com.pdf.marsk.pdfdemo.service.OcrService;
 import com.pdf.marsk.pdfdemo.service.OllamaService;
 import com.pdf.marsk.pdfdemo.service.ProgressTrackingService;
+import com.pdf.marsk.pdfdemo.service.SpooledUpload;
 import com.pdf.marsk.pdfdemo.service.TaskProgressInfo;
+import com.pdf.marsk.pdfdemo.service.TiffFrameReader;
+import com.pdf.marsk.pdfdemo.service.UploadSpoolService;
 import com.pdf.marsk.pdfdemo.service.ProgressTrackingService.OcrProgressInfo;
 
 import net.sourceforge.tess4j.TesseractException;
 
 @Controller
 @RequestMapping("/ocr")
-public class OcrController implements DisposableBean, ApplicationListener<ContextClosedEvent> {
+public class OcrController {
 
     private static final Logger logger = LoggerFactory.getLogger(OcrController.class);
-    private final ExecutorService taskExecutor = Executors.newFixedThreadPool(2);
+    private static final MediaType TSV_MEDIA_TYPE = MediaType.parseMediaType("text/tab-separated-values;charset=UTF-8");
 
     private final OcrService ocrService;
     private final ProgressTrackingService progressTrackingService;
     private final OcrTextDocumentRepository ocrTextDocumentRepository;
     private final OllamaService ollamaService;
+    private final UploadSpoolService uploadSpoolService;
+    private final OcrEventStreamService ocrEventStreamService;
+    private final OcrJobService ocrJobService;
+    private final OcrBatchService ocrBatchService;
+    private final OcrProfiles ocrProfiles;
 
     @Autowired
     public OcrController(OcrService ocrService,
                          ProgressTrackingService progressTrackingService,
                          OcrTextDocumentRepository ocrTextDocumentRepository,
-                         OllamaService ollamaService) {
+                         OllamaService ollamaService,
+                         UploadSpoolService uploadSpoolService,
+                         OcrEventStreamService ocrEventStreamService,
+                         OcrJobService ocrJobService,
+                         OcrBatchService ocrBatchService,
+                         OcrProfiles ocrProfiles) {
         this.ocrService = ocrService;
         this.progressTrackingService = progressTrackingService;
         this.ocrTextDocumentRepository = ocrTextDocumentRepository;
         this.ollamaService = ollamaService;
+        this.uploadSpoolService = uploadSpoolService;
+        this.ocrEventStreamService = ocrEventStreamService;
+        this.ocrJobService = ocrJobService;
+        this.ocrBatchService = ocrBatchService;
+        this.ocrProfiles = ocrProfiles;
     }
 
     @GetMapping
@@ -92,7 +126,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
            TaskProgressInfo generalProgressInfo = progressTrackingService.getProgress(completedTaskId);
            if (generalProgressInfo instanceof OcrProgressInfo progressInfo) { // Check and cast
                if (progressInfo.isCompleted() && progressInfo.isSuccess()) {
-                   String ocrText = progressInfo.getMessage();
+                   String ocrText = progressInfo.getResult();
                    
                    if (Boolean.FALSE.equals(pollDone)) {
                         model.addAttribute("ocrTaskId", completedTaskId);
@@ -100,11 +134,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
                    
                    if (!model.containsAttribute("originalFilename")) model.addAttribute("originalFilename", progressInfo.getFilename());
                    if (!model.containsAttribute("language")) {
-                       String langCode = progressInfo.getLanguage();
-                       String languageDisplay = "Unknown";
-                       if ("eng".equalsIgnoreCase(langCode)) languageDisplay = "English";
-                       else if ("ita".equalsIgnoreCase(langCode)) languageDisplay = "Italian";
-                       model.addAttribute("language", languageDisplay);
+                       model.addAttribute("language", languageDisplayName(progressInfo.getLanguage()));
                    }
 
                    if (Boolean.TRUE.equals(enhance) && modelName != null && !modelName.isEmpty()) {
@@ -169,6 +199,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
         List<OcrTextDocument> savedOcrDocuments = ocrTextDocumentRepository.findAllByOrderByCreatedAtDesc();
         model.addAttribute("savedOcrDocuments", savedOcrDocuments);
         model.addAttribute("availableModels", ollamaService.getAvailableModels());
+        model.addAttribute("ocrProfiles", ocrProfiles.getNames());
 
         model.addAttribute("hasOcrResult", model.containsAttribute("ocrResult"));
         model.addAttribute("hasOcrError", model.containsAttribute("ocrError"));
@@ -182,6 +213,8 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
     public String handleOcrUpload(@RequestParam("imageFile") MultipartFile imageFile,
                                  @RequestParam(value = "language", defaultValue = "eng") String language,
                                  @RequestParam(value = "enableChunking", required = false) Boolean enableChunking,
+                                 @RequestParam(value = "hybridExtraction", required = false) Boolean hybridExtraction,
+                                 @RequestParam(value = "profile", required = false) String profile,
                                  RedirectAttributes redirectAttributes,
                                  Model model) {
         if (imageFile.isEmpty()) {
@@ -198,32 +231,41 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
         }
         
         try {
-            logger.info("Received file for OCR: {} with language: {}, chunking: {}", 
-                       imageFile.getOriginalFilename(), language, enableChunking);
+            logger.info("Received file for OCR: {} with language: {}, profile: {}, chunking: {}", 
+                       imageFile.getOriginalFilename(), language, profile, enableChunking);
+            ocrProfiles.get(profile);
             
             if (enableChunking != null) {
                 redirectAttributes.addFlashAttribute("chunkingEnabled", enableChunking);
             }
 
             String taskId;
-            boolean isPdf = originalFilename.toLowerCase().endsWith(".pdf");
+            // PDFs and (multi-page) TIFFs are recognized page by page in a background job with progress
+            boolean isPaged = originalFilename.toLowerCase().endsWith(".pdf") || TiffFrameReader.isTiff(originalFilename);
             
-            if (isPdf) {
-                taskId = startAsyncOcrProcess(imageFile, language);
+            if (isPaged) {
+                taskId = startAsyncOcrProcess(imageFile, language, profile, Boolean.TRUE.equals(hybridExtraction));
                 redirectAttributes.addFlashAttribute("ocrTaskId", taskId); // This is for JS to pick up for polling
                 redirectAttributes.addFlashAttribute("originalFilename", imageFile.getOriginalFilename());
-                redirectAttributes.addFlashAttribute("language", language.equals("eng") ? "English" : "Italian");
+                redirectAttributes.addFlashAttribute("language", languageDisplayName(language));
                 return "redirect:/ocr";
             } else {
-                String extractedText = ocrService.performOcr(imageFile, language);
+                String extractedText = ocrService.performOcr(imageFile, OcrOptions.of(language).withProfile(profile));
                 redirectAttributes.addFlashAttribute("ocrResult", extractedText);
                 redirectAttributes.addFlashAttribute("originalFilename", imageFile.getOriginalFilename());
-                redirectAttributes.addFlashAttribute("language", language.equals("eng") ? "English" : "Italian");
+                redirectAttributes.addFlashAttribute("language", languageDisplayName(language));
                 redirectAttributes.addFlashAttribute("isEnhanced", false);
                 logger.info("OCR processed successfully for {} using language {}", imageFile.getOriginalFilename(), language);
                 return "redirect:/ocr";
             }
 
+        } catch (OcrSchedulerFullException e) {
+            logger.warn("OCR request for {} refused: {}", imageFile.getOriginalFilename(), e.getMessage());
+            redirectAttributes.addFlashAttribute("ocrError", "The OCR service is busy. Please try again in "
+                    + e.getRetryAfterSeconds() + " seconds.");
+        } catch (IllegalArgumentException e) {
+            logger.warn("OCR request for {} rejected: {}", imageFile.getOriginalFilename(), e.getMessage());
+            redirectAttributes.addFlashAttribute("ocrError", e.getMessage());
         } catch (IOException e) {
             logger.error("File I/O error during OCR for {}: {}", imageFile.getOriginalFilename(), e.getMessage());
             redirectAttributes.addFlashAttribute("ocrError", "File processing error: " + e.getMessage());
@@ -275,59 +317,236 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
         Map<String, Object> response = new HashMap<>();
         response.put("completed", true);
         response.put("success", generalProgress.isSuccess());
-        response.put("result", generalProgress.getMessage());
+        response.put("result", generalProgress instanceof OcrProgressInfo ocrProgress && ocrProgress.isSuccess()
+                ? ocrProgress.getResult() : generalProgress.getMessage());
         return ResponseEntity.ok(response);
     }
     
-    private String startAsyncOcrProcess(MultipartFile file, String language) throws IOException {
-        String originalFilename = file.getOriginalFilename();
-        byte[] fileBytes = file.getBytes();
-        String taskId = progressTrackingService.createOcrTask(originalFilename, 0, language); 
-        progressTrackingService.updateOcrTaskProgress(taskId, 0, "Preparing OCR processing...");
-        CompletableFuture.runAsync(() -> {
-            try {
-                MultipartFile tempFile = new ByteArrayMultipartFile(fileBytes, originalFilename);
-                String result = ocrService.performOcr(tempFile, language, taskId);
-                progressTrackingService.completeTask(taskId, true, result);
-            } catch (Exception e) {
-                logger.error("Error in async OCR processing: {}", e.getMessage(), e);
-                try {
-                    progressTrackingService.completeTask(taskId, false, "Error: " + e.getMessage());
-                } catch (Exception ex) {
-                    logger.warn("Could not update task status due to application context being closed", ex);
-                }
+    /**
+     * Streams the progress, the text of each finished page and the completion of an OCR task
+     * as Server-Sent Events ({@code progress}, {@code page} and {@code complete}).
+     */
+    @GetMapping(value = "/events/{taskId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> streamEvents(@PathVariable String taskId) {
+        if (!(progressTrackingService.getProgress(taskId) instanceof OcrProgressInfo)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ocrEventStreamService.subscribe(taskId));
+    }
+    
+    /**
+     * Recognizes a PDF or image and returns it as a searchable PDF: the original pages with an invisible text layer.
+     */
+    @PostMapping("/searchable-pdf")
+    @ResponseBody
+    public ResponseEntity<?> downloadSearchablePdf(@RequestParam("imageFile") MultipartFile imageFile,
+                                                   @RequestParam(value = "language", defaultValue = "eng") String language) {
+        return ocrOutputDownload(imageFile, language, "searchable_", ".pdf", MediaType.APPLICATION_PDF,
+                ocrService::writeSearchablePdf);
+    }
+
+    /**
+     * Recognizes a PDF or image and returns its words with boxes and confidences as TSV.
+     */
+    @PostMapping("/words")
+    @ResponseBody
+    public ResponseEntity<?> downloadWordTsv(@RequestParam("imageFile") MultipartFile imageFile,
+                                             @RequestParam(value = "language", defaultValue = "eng") String language) {
+        return ocrOutputDownload(imageFile, language, "", ".tsv", TSV_MEDIA_TYPE, ocrService::writeWordTsv);
+    }
+
+    /**
+     * Writes an OCR output to a temporary file and streams it back as a download; the file is deleted
+     * once the response has been sent.
+     */
+    private ResponseEntity<?> ocrOutputDownload(MultipartFile imageFile, String language, String filenamePrefix,
+                                                String extension, MediaType mediaType, OcrOutputWriter outputWriter) {
+        String originalFilename = imageFile.getOriginalFilename();
+        if (imageFile.isEmpty() || originalFilename == null || !isSupportedImageType(originalFilename.toLowerCase())) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Please upload a PNG, JPG, JPEG, TIFF, or PDF file.");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        String baseName = originalFilename.replaceFirst("\\.[^.]*$", "").replaceAll("[^a-zA-Z0-9.\\-_]", "_");
+        Path output = null;
+        try {
+            output = Files.createTempFile("ocr-output-", extension);
+            try (OutputStream out = Files.newOutputStream(output)) {
+                outputWriter.write(imageFile, language, out);
             }
-        }, taskExecutor);
-        return taskId;
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(mediaType);
+            headers.setContentDisposition(ContentDisposition.attachment().filename(filenamePrefix + baseName + extension).build());
+            headers.setContentLength(Files.size(output));
+            InputStream body = Files.newInputStream(output, StandardOpenOption.DELETE_ON_CLOSE);
+            logger.info("Returning {} OCR output for {} ({} bytes)", extension, originalFilename, headers.getContentLength());
+            return new ResponseEntity<>(new InputStreamResource(body), headers, HttpStatus.OK);
+        } catch (OcrSchedulerFullException e) {
+            deleteQuietly(output);
+            return tooManyRequests(e);
+        } catch (IOException | TesseractException e) {
+            logger.error("Error creating {} OCR output for {}: {}", extension, originalFilename, e.getMessage());
+            deleteQuietly(output);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "OCR processing failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
     }
 
-    @Override
-    public void destroy() throws Exception {
-        logger.info("Shutting down OCR task executor");
-        shutdownTaskExecutor();
+    /**
+     * Answers a request the OCR scheduler refused with 429 and the estimated wait in a Retry-After header.
+     */
+    private static ResponseEntity<?> tooManyRequests(OcrSchedulerFullException e) {
+        logger.warn("OCR request refused: {}", e.getMessage());
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "The OCR service is busy, please retry later.");
+        errorResponse.put("retryAfterSeconds", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
     }
-    
-    @Override
-    public void onApplicationEvent(ContextClosedEvent event) {
-        logger.info("Application context is closing, shutting down OCR task executor");
-        shutdownTaskExecutor();
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary OCR output {}: {}", path, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface OcrOutputWriter {
+        void write(MultipartFile file, String language, OutputStream out) throws IOException, TesseractException;
     }
     
-    private void shutdownTaskExecutor() {
-        taskExecutor.shutdown();
+    /**
+     * Starts a batch of files: several PDFs and images, ZIP archives of them, or both.
+     * The pages of the batch share the OCR workers fairly with other batches and interactive requests.
+     */
+    @PostMapping("/batch")
+    @ResponseBody
+    public ResponseEntity<?> submitBatch(@RequestParam("files") MultipartFile[] files,
+                                         @RequestParam(value = "language", defaultValue = "eng") String language,
+                                         @RequestParam(value = "hybridExtraction", required = false) Boolean hybridExtraction,
+                                         @RequestParam(value = "profile", required = false) String profile) {
+        List<SpooledUpload> uploads = new ArrayList<>();
         try {
-            if (!taskExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
-                taskExecutor.shutdownNow();
-                if (!taskExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
-                    logger.error("Task executor did not terminate");
+            // Spool in the request thread; the batch takes over the spooled files
+            for (MultipartFile file : files) {
+                if (!file.isEmpty()) {
+                    uploads.add(uploadSpoolService.spool(file));
                 }
             }
-        } catch (InterruptedException e) {
-            taskExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
+            String batchId = ocrBatchService.submit(uploads, language, profile, Boolean.TRUE.equals(hybridExtraction));
+            Map<String, Object> response = new HashMap<>();
+            response.put("batchId", batchId);
+            response.put("statusUrl", "/ocr/batch/" + batchId);
+            response.put("resultsUrl", "/ocr/batch/" + batchId + "/results");
+            return ResponseEntity.accepted().body(response);
+        } catch (OcrSchedulerFullException e) {
+            return tooManyRequests(e);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (IOException e) {
+            logger.error("Error starting OCR batch of {} files: {}", files.length, e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Could not start the OCR batch: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        } finally {
+            uploads.forEach(SpooledUpload::close);
+        }
+    }
+
+    @GetMapping("/batch/{batchId}")
+    @ResponseBody
+    public ResponseEntity<?> getBatchStatus(@PathVariable String batchId) {
+        Optional<OcrBatch> batch = ocrBatchService.getBatch(batchId);
+        if (batch.isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Batch not found");
+            return ResponseEntity.status(404).body(errorResponse);
+        }
+        List<Map<String, Object>> files = new ArrayList<>();
+        int completedFiles = 0;
+        int failedFiles = 0;
+        for (OcrBatchFile file : ocrBatchService.getFiles(batchId)) {
+            Map<String, Object> fileStatus = new HashMap<>();
+            fileStatus.put("name", file.getOriginalFilename());
+            fileStatus.put("status", file.getStatus());
+            fileStatus.put("pageCount", file.getPageCount());
+            fileStatus.put("pagesDone", ocrBatchService.getPagesDone(file));
+            if (file.getErrorMessage() != null) {
+                fileStatus.put("error", file.getErrorMessage());
+            }
+            files.add(fileStatus);
+            completedFiles += file.getStatus() == OcrBatchFile.Status.COMPLETED ? 1 : 0;
+            failedFiles += file.getStatus() == OcrBatchFile.Status.FAILED ? 1 : 0;
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("batchId", batchId);
+        response.put("status", batch.get().getStatus());
+        response.put("completed", batch.get().getStatus() == OcrBatch.Status.COMPLETED);
+        response.put("fileCount", batch.get().getFileCount());
+        response.put("completedFiles", completedFiles);
+        response.put("failedFiles", failedFiles);
+        response.put("files", files);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Streams the results of a batch as a ZIP archive with one text file per finished file.
+     * Files that are still running are left out, so the download can be repeated once the batch has completed.
+     */
+    @GetMapping("/batch/{batchId}/results")
+    @ResponseBody
+    public ResponseEntity<?> downloadBatchResults(@PathVariable String batchId) {
+        if (ocrBatchService.getBatch(batchId).isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Batch not found");
+            return ResponseEntity.status(404).body(errorResponse);
         }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename("ocr_" + batchId + ".zip").build());
+        StreamingResponseBody body = out -> ocrBatchService.writeResults(batchId, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
     
+    private String startAsyncOcrProcess(MultipartFile file, String language, String profile, boolean hybridExtraction) throws IOException {
+        // Spool in the request thread: the multipart is only valid until the request completes.
+        // The job takes over the spooled file, closing the upload only cleans up if submitting failed.
+        try (SpooledUpload upload = uploadSpoolService.spool(file)) {
+            return ocrJobService.submit(upload, language, profile, hybridExtraction);
+        }
+    }
+    
+    /**
+     * The line confidences of the OCR text being enhanced: those of the saved document, or of the document a finished
+     * OCR task saved its result as. Empty once the text was edited, since confidences are matched to lines by position.
+     */
+    private List<Float> findLineConfidences(String ocrText, Long documentId, String ocrTaskId) {
+        Long sourceDocumentId = documentId;
+        if (sourceDocumentId == null && ocrTaskId != null
+                && progressTrackingService.getProgress(ocrTaskId) instanceof OcrProgressInfo info) {
+            sourceDocumentId = info.getResultDocumentId();
+        }
+        if (sourceDocumentId == null) {
+            return List.of();
+        }
+        // Browsers submit line breaks as CRLF
+        String text = ocrText.replace("\r\n", "\n");
+        return ocrTextDocumentRepository.findById(sourceDocumentId)
+                .filter(document -> text.equals(document.getExtractedText()))
+                .map(document -> LineConfidences.decode(document.getLineConfidences()))
+                .orElse(List.of());
+    }
+
     @PostMapping("/enhance")
     public String enhanceOcrText(@RequestParam("ocrText") String ocrText,
                                 @RequestParam("originalFilename") String originalFilename,
@@ -337,6 +556,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
                                 @RequestParam(value = "enableChunking", required = false) Boolean enableChunking,
                                 @RequestParam(value = "documentId", required = false) Long documentId, 
                                 @RequestParam(value = "ocrTaskId", required = false) String ocrTaskId,
+                                @RequestParam(value = "enhancementMode", required = false) String enhancementMode,
                                 RedirectAttributes redirectAttributes) {
         
         if (ocrText == null || ocrText.trim().isEmpty()) {
@@ -354,7 +574,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
                         modelName, documentType, enableChunking);
             
             String langCodeForPrompt = "eng"; 
-            if ("Italian".equalsIgnoreCase(language)) langCodeForPrompt = "ita";
+            if (language != null && languageCode(language).startsWith("ita")) langCodeForPrompt = "ita";
 
             String effectiveDocType = documentType;
             if ("ita".equalsIgnoreCase(langCodeForPrompt) && "literary".equals(documentType)) {
@@ -363,8 +583,17 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
             String customPrompt = "generic".equals(effectiveDocType) ? null : 
                 ollamaService.getSpecializedPrompt(effectiveDocType, ocrText);
             
-            OllamaService.EnhancementResult result = ollamaService.enhanceText(
-                ocrText, modelName, customPrompt, enableChunking);
+            boolean selective = enhancementMode != null ? "selective".equals(enhancementMode) : ollamaService.isSelectiveEnabled();
+            List<Float> lineConfidences = selective ? findLineConfidences(ocrText, documentId, ocrTaskId) : List.of();
+            OllamaService.EnhancementResult result;
+            if (!lineConfidences.isEmpty()) {
+                result = ollamaService.enhanceLowConfidenceLines(ocrText.replace("\r\n", "\n"), lineConfidences, modelName);
+            } else {
+                if (selective) {
+                    logger.info("No line confidences for this text, enhancing the whole text");
+                }
+                result = ollamaService.enhanceText(ocrText, modelName, customPrompt, enableChunking);
+            }
             
             redirectAttributes.addFlashAttribute("originalOcrText", ocrText); 
             redirectAttributes.addFlashAttribute("ocrResult", result.getEnhancedText()); 
@@ -374,6 +603,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
             redirectAttributes.addFlashAttribute("enhancementModel", modelName);
             redirectAttributes.addFlashAttribute("documentType", effectiveDocType);
             redirectAttributes.addFlashAttribute("showComparison", true);
+            redirectAttributes.addFlashAttribute("enhancementMode", selective ? "selective" : "full");
 
             if (ocrTaskId != null && documentId == null) { 
                 redirectAttributes.addFlashAttribute("ocrTaskId", ocrTaskId);
@@ -443,40 +673,45 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
         return "redirect:/ocr";
     }
     
+    /**
+     * @param language An OCR language code, a {@code +}-joined set of them, or {@code auto}
+     * @return The name to show for it
+     */
+    private static String languageDisplayName(String language) {
+        if (language == null) {
+            return "Unknown";
+        }
+        if (OcrLanguageDetector.isAuto(language)) {
+            return "Auto-detect";
+        }
+        List<String> names = new ArrayList<>();
+        for (String code : language.split("\\+")) {
+            if ("eng".equalsIgnoreCase(code)) names.add("English");
+            else if ("ita".equalsIgnoreCase(code)) names.add("Italian");
+            else names.add(code);
+        }
+        return String.join(" + ", names);
+    }
+
+    /**
+     * @param languageDisplay A name made by {@link #languageDisplayName(String)}
+     * @return The OCR language code it stands for
+     */
+    private static String languageCode(String languageDisplay) {
+        List<String> codes = new ArrayList<>();
+        for (String name : languageDisplay.split(" \\+ ")) {
+            if ("English".equalsIgnoreCase(name)) codes.add("eng");
+            else if ("Italian".equalsIgnoreCase(name)) codes.add("ita");
+            else codes.add(name);
+        }
+        return String.join("+", codes);
+    }
+
     private boolean isSupportedImageType(String filename) {
         return filename.endsWith(".png") || filename.endsWith(".jpg") || filename.endsWith(".jpeg") || 
                filename.endsWith(".tif") || filename.endsWith(".tiff") || filename.endsWith(".pdf");
     }
     
-    private static class ByteArrayMultipartFile implements MultipartFile {
-        private final byte[] content;
-        private final String name;
-        
-        public ByteArrayMultipartFile(byte[] content, String name) {
-            this.content = content;
-            this.name = name;
-        }
-        
-        @Override public String getName() { return name; }
-        @Override public String getOriginalFilename() { return name; }
-        @Override public String getContentType() {
-            if (name.toLowerCase().endsWith(".pdf")) return "application/pdf";
-            else if (name.toLowerCase().endsWith(".png")) return "image/png";
-            else if (name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".jpeg")) return "image/jpeg";
-            else if (name.toLowerCase().endsWith(".tif") || name.toLowerCase().endsWith(".tiff")) return "image/tiff";
-            return "application/octet-stream";
-        }
-        @Override public boolean isEmpty() { return content == null || content.length == 0; }
-        @Override public long getSize() { return content != null ? content.length : 0; }
-        @Override public byte[] getBytes() throws IOException { return content; }
-        @Override public java.io.InputStream getInputStream() throws IOException { return new java.io.ByteArrayInputStream(content); }
-        @Override public void transferTo(java.io.File dest) throws IOException, IllegalStateException {
-            try (java.io.FileOutputStream fos = new java.io.FileOutputStream(dest)) {
-                fos.write(content);
-            }
-        }
-    }
-
     // Test endpoints
     @GetMapping("/test-literary")
     @ResponseBody
@@ -551,12 +786,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
             logger.info("Saving OCR document: {}, language: {}, model: {}, type: {}", 
                     originalFilename, language, enhancementModel, documentType);
             
-            String languageCode = language;
-            if ("English".equalsIgnoreCase(language)) {
-                languageCode = "eng";
-            } else if ("Italian".equalsIgnoreCase(language)) {
-                languageCode = "ita";
-            }
+            String languageCode = languageCode(language);
             
             OcrTextDocument document = new OcrTextDocument(
                     originalFilename, 
@@ -594,12 +824,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
         try {
             logger.info("Saving original OCR document: {}, language: {}", originalFilename, language);
             
-            String languageCode = language;
-            if ("English".equalsIgnoreCase(language)) {
-                languageCode = "eng";
-            } else if ("Italian".equalsIgnoreCase(language)) {
-                languageCode = "ita";
-            }
+            String languageCode = languageCode(language);
             
             OcrTextDocument document = new OcrTextDocument(originalFilename, extractedText, languageCode);
             OcrTextDocument savedDoc = ocrTextDocumentRepository.save(document);
@@ -632,12 +857,7 @@ public class OcrController implements DisposableBean, ApplicationListener<Contex
             
             boolean displayEnhanced = document.getIsEnhanced() && (showOriginal == null || !showOriginal);
 
-            String languageDisplay = document.getLanguageUsed();
-            if ("eng".equalsIgnoreCase(document.getLanguageUsed())) {
-                languageDisplay = "English";
-            } else if ("ita".equalsIgnoreCase(document.getLanguageUsed())) {
-                languageDisplay = "Italian";
-            }
+            String languageDisplay = languageDisplayName(document.getLanguageUsed());
             
             model.addAttribute("ocrResult", displayEnhanced ?
                     document.getEnhancedText() : document.getExtractedText());
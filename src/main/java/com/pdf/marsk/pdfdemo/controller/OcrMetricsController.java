@@ -0,0 +1,45 @@
+package com.pdf.marsk.pdfdemo.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.pdf.marsk.pdfdemo.service.OcrMetrics;
+import com.pdf.marsk.pdfdemo.service.OcrPageScheduler;
+import com.pdf.marsk.pdfdemo.service.RenderMemoryGovernor;
+
+/**
+ * REST controller exposing OCR metrics such as cache and page deduplication hit rates,
+ * the queue depth and wait times of the OCR scheduler, and the reserved render memory.
+ */
+@RestController
+@RequestMapping("/api/ocr/metrics")
+public class OcrMetricsController {
+
+    @Autowired
+    private OcrMetrics ocrMetrics;
+
+    @Autowired
+    private OcrPageScheduler pageScheduler;
+
+    @Autowired
+    private RenderMemoryGovernor renderMemoryGovernor;
+
+    /**
+     * Gets the cumulative OCR metrics since startup and the current state of the scheduler and render memory.
+     *
+     * @return The metrics, grouped by area
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(ocrMetrics.snapshot());
+        metrics.put("scheduler", pageScheduler.snapshot());
+        metrics.put("renderMemory", renderMemoryGovernor.snapshot());
+        return ResponseEntity.ok(metrics);
+    }
+}
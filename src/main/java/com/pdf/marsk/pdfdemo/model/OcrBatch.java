@@ -0,0 +1,133 @@
+package com.pdf.marsk.pdfdemo.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * A batch of files submitted for OCR in one request, e.g. the contents of a ZIP archive.
+ * Its files ({@link OcrBatchFile}) are recognized page by page on the shared OCR scheduler, taking turns
+ * with other batches and interactive requests. A batch is completed once none of its files is running,
+ * whether they succeeded or failed.
+ */
+@Entity
+@Table(name = "ocr_batches")
+public class OcrBatch {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+
+    @Id
+    @Column(length = 80)
+    private String id;
+
+    @Column(nullable = false)
+    private String language;
+
+    // The engine profile; null for the default profile
+    @Column(length = 40)
+    private String profile;
+
+    private boolean hybridExtraction;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    private int fileCount;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public OcrBatch() {
+    }
+
+    public OcrBatch(String id, String language, boolean hybridExtraction, int fileCount) {
+        this.id = id;
+        this.language = language;
+        this.hybridExtraction = hybridExtraction;
+        this.fileCount = fileCount;
+        this.status = Status.RUNNING;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public boolean isHybridExtraction() {
+        return hybridExtraction;
+    }
+
+    public void setHybridExtraction(boolean hybridExtraction) {
+        this.hybridExtraction = hybridExtraction;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,171 @@
+package com.pdf.marsk.pdfdemo.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * A file of an {@link OcrBatch}. Its finished pages are checkpointed like those of an {@link OcrJob},
+ * so a batch interrupted by a restart resumes where it stopped; the assembled text is kept as an OCR document.
+ */
+@Entity
+@Table(name = "ocr_batch_files", indexes = @Index(columnList = "batchId"))
+public class OcrBatchFile {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 80)
+    private String batchId;
+
+    // Position of the file in the batch, in upload and archive order
+    private int fileIndex;
+
+    // The uploaded file name, or the path of the entry within an uploaded ZIP archive
+    @Column(nullable = false, length = 1024)
+    private String originalFilename;
+
+    // The file in the batch directory; removed once the file has finished
+    @Column(nullable = false, length = 1024)
+    private String sourcePath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    // Number of pages, set when a PDF is planned
+    private int pageCount;
+
+    // The OcrTextDocument holding the text of a completed file
+    private Long resultDocumentId;
+
+    @Column(length = 2000)
+    private String errorMessage;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public OcrBatchFile() {
+    }
+
+    public OcrBatchFile(String batchId, int fileIndex, String originalFilename, String sourcePath) {
+        this.batchId = batchId;
+        this.fileIndex = fileIndex;
+        this.originalFilename = originalFilename;
+        this.sourcePath = sourcePath;
+        this.status = Status.RUNNING;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    public int getFileIndex() {
+        return fileIndex;
+    }
+
+    public void setFileIndex(int fileIndex) {
+        this.fileIndex = fileIndex;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public void setOriginalFilename(String originalFilename) {
+        this.originalFilename = originalFilename;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    public Long getResultDocumentId() {
+        return resultDocumentId;
+    }
+
+    public void setResultDocumentId(Long resultDocumentId) {
+        this.resultDocumentId = resultDocumentId;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
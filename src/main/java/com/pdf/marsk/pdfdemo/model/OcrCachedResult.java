@@ -0,0 +1,127 @@
+package com.pdf.marsk.pdfdemo.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * Persistent tier of the OCR result cache.
+ * Keyed by the SHA-256 of the uploaded file together with the language and the engine settings used.
+ */
+@Entity
+@Table(name = "ocr_result_cache")
+public class OcrCachedResult {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 160)
+    private String cacheKey;
+
+    @Column(nullable = false, length = 64)
+    private String contentSha256;
+
+    @Column(nullable = false)
+    private String languageUsed;
+
+    @Column(nullable = false, length = 1024)
+    private String engineSettings;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String extractedText;
+
+    @Lob // Confidence of each line of the extracted text, see OcrTextDocument
+    @Column(columnDefinition = "TEXT")
+    private String lineConfidences;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public OcrCachedResult() {
+    }
+
+    public OcrCachedResult(String cacheKey, String contentSha256, String languageUsed, String engineSettings, String extractedText) {
+        this.cacheKey = cacheKey;
+        this.contentSha256 = contentSha256;
+        this.languageUsed = languageUsed;
+        this.engineSettings = engineSettings;
+        this.extractedText = extractedText;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(String contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
+    public String getLanguageUsed() {
+        return languageUsed;
+    }
+
+    public void setLanguageUsed(String languageUsed) {
+        this.languageUsed = languageUsed;
+    }
+
+    public String getEngineSettings() {
+        return engineSettings;
+    }
+
+    public void setEngineSettings(String engineSettings) {
+        this.engineSettings = engineSettings;
+    }
+
+    public String getExtractedText() {
+        return extractedText;
+    }
+
+    public void setExtractedText(String extractedText) {
+        this.extractedText = extractedText;
+    }
+
+    public String getLineConfidences() {
+        return lineConfidences;
+    }
+
+    public void setLineConfidences(String lineConfidences) {
+        this.lineConfidences = lineConfidences;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
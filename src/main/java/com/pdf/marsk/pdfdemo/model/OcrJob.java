@@ -0,0 +1,241 @@
+package com.pdf.marsk.pdfdemo.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * A background OCR job. Jobs are persisted together with their per-page checkpoints
+ * ({@link OcrPageCheckpoint}), so a job interrupted by a restart resumes where it stopped.
+ * The ID is the progress tracking task ID. With the distributed page queue enabled, the pages of
+ * a PDF job are recognized by the queue workers of any node ({@link OcrPageTask}).
+ * A running job is owned by one node, which renews its lease while it runs the job; other nodes
+ * take the job over only once the lease has expired.
+ */
+@Entity
+@Table(name = "ocr_jobs")
+public class OcrJob {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    @Column(length = 80)
+    private String id;
+
+    @Column(nullable = false)
+    private String originalFilename;
+
+    // The durable copy of the upload; removed once the job has finished
+    @Column(nullable = false, length = 1024)
+    private String sourcePath;
+
+    private String contentType;
+
+    @Column(nullable = false)
+    private String language;
+
+    // The language set detected for an automatic-language job, which replaces the requested 'auto'
+    @Column(length = 40)
+    private String detectedLanguage;
+
+    // The engine profile; null for the default profile
+    @Column(length = 40)
+    private String profile;
+
+    private boolean hybridExtraction;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(length = 2000)
+    private String errorMessage;
+
+    private int resumeCount;
+
+    // Number of pages, set when a PDF job is split into page tasks
+    private int pageCount;
+
+    // The OcrTextDocument holding the assembled text of a completed queued job
+    private Long resultDocumentId;
+
+    // The node running the job and when it last renewed its lease. Both are only changed by the lease
+    // queries of OcrJobRepository, so saving a stale copy of the job cannot move the lease back
+    @Column(length = 120, updatable = false)
+    private String ownerNode;
+
+    @Column(name = "lease_renewed_at", updatable = false)
+    private LocalDateTime leaseRenewedAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public OcrJob() {
+    }
+
+    public OcrJob(String id, String originalFilename, String sourcePath, String contentType,
+                  String language, boolean hybridExtraction) {
+        this.id = id;
+        this.originalFilename = originalFilename;
+        this.sourcePath = sourcePath;
+        this.contentType = contentType;
+        this.language = language;
+        this.hybridExtraction = hybridExtraction;
+        this.status = Status.RUNNING;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public void setOriginalFilename(String originalFilename) {
+        this.originalFilename = originalFilename;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getDetectedLanguage() {
+        return detectedLanguage;
+    }
+
+    public void setDetectedLanguage(String detectedLanguage) {
+        this.detectedLanguage = detectedLanguage;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public boolean isHybridExtraction() {
+        return hybridExtraction;
+    }
+
+    public void setHybridExtraction(boolean hybridExtraction) {
+        this.hybridExtraction = hybridExtraction;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public int getResumeCount() {
+        return resumeCount;
+    }
+
+    public void setResumeCount(int resumeCount) {
+        this.resumeCount = resumeCount;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    public Long getResultDocumentId() {
+        return resultDocumentId;
+    }
+
+    public void setResultDocumentId(Long resultDocumentId) {
+        this.resultDocumentId = resultDocumentId;
+    }
+
+    public String getOwnerNode() {
+        return ownerNode;
+    }
+
+    public void setOwnerNode(String ownerNode) {
+        this.ownerNode = ownerNode;
+    }
+
+    public LocalDateTime getLeaseRenewedAt() {
+        return leaseRenewedAt;
+    }
+
+    public void setLeaseRenewedAt(LocalDateTime leaseRenewedAt) {
+        this.leaseRenewedAt = leaseRenewedAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,131 @@
+package com.pdf.marsk.pdfdemo.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * A finished page of an {@link OcrJob}: its text, the recognition confidence and how long it took.
+ * A resumed job skips every page that already has a checkpoint.
+ */
+@Entity
+@Table(name = "ocr_page_checkpoints",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"jobId", "pageIndex"}),
+       indexes = @Index(columnList = "jobId"))
+public class OcrPageCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 80)
+    private String jobId;
+
+    @Column(nullable = false)
+    private int pageIndex;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String pageText;
+
+    // Mean word confidence (0-100) reported by Tesseract; null for text-layer pages
+    private Float confidence;
+
+    // Confidence of each line of the page text, see LineConfidences; null for text-layer pages
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String lineConfidences;
+
+    private long processingMillis;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public OcrPageCheckpoint() {
+    }
+
+    public OcrPageCheckpoint(String jobId, int pageIndex, String pageText, Float confidence, long processingMillis) {
+        this.jobId = jobId;
+        this.pageIndex = pageIndex;
+        this.pageText = pageText;
+        this.confidence = confidence;
+        this.processingMillis = processingMillis;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public void setPageIndex(int pageIndex) {
+        this.pageIndex = pageIndex;
+    }
+
+    public String getPageText() {
+        return pageText;
+    }
+
+    public void setPageText(String pageText) {
+        this.pageText = pageText;
+    }
+
+    public Float getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(Float confidence) {
+        this.confidence = confidence;
+    }
+
+    public String getLineConfidences() {
+        return lineConfidences;
+    }
+
+    public void setLineConfidences(String lineConfidences) {
+        this.lineConfidences = lineConfidences;
+    }
+
+    public long getProcessingMillis() {
+        return processingMillis;
+    }
+
+    public void setProcessingMillis(long processingMillis) {
+        this.processingMillis = processingMillis;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
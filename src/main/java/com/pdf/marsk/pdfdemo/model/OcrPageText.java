@@ -0,0 +1,103 @@
+package com.pdf.marsk.pdfdemo.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * Recognized text of a single page, keyed by the fingerprint of the rendered page.
+ * Lets identical pages (cover sheets, terms and conditions, ...) be recognized once across all documents.
+ */
+@Entity
+@Table(name = "ocr_page_texts")
+public class OcrPageText {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 160)
+    private String fingerprintKey;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String recognizedText;
+
+    // Mean word confidence (0-100) reported by Tesseract; null if none was reported
+    private Float confidence;
+
+    // Confidence of each line of the recognized text, see LineConfidences; null if none were reported
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String lineConfidences;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public OcrPageText() {
+    }
+
+    public OcrPageText(String fingerprintKey, String recognizedText) {
+        this.fingerprintKey = fingerprintKey;
+        this.recognizedText = recognizedText;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFingerprintKey() {
+        return fingerprintKey;
+    }
+
+    public void setFingerprintKey(String fingerprintKey) {
+        this.fingerprintKey = fingerprintKey;
+    }
+
+    public String getRecognizedText() {
+        return recognizedText;
+    }
+
+    public void setRecognizedText(String recognizedText) {
+        this.recognizedText = recognizedText;
+    }
+
+    public Float getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(Float confidence) {
+        this.confidence = confidence;
+    }
+
+    public String getLineConfidences() {
+        return lineConfidences;
+    }
+
+    public void setLineConfidences(String lineConfidences) {
+        this.lineConfidences = lineConfidences;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
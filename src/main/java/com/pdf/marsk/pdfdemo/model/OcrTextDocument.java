@@ -45,6 +45,13 @@ public class OcrTextDocument {
     @Column(nullable = false)
     private String languageUsed; // e.g., "eng", "ita"
 
+    @Column
+    private String detectedLanguage; // Set when languageUsed was detected automatically, e.g. "ita" or "eng+ita"
+
+    @Lob // Confidence of each line of the extracted text, null unless it was recognized by OCR
+    @Column(columnDefinition = "TEXT")
+    private String lineConfidences;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -139,6 +146,22 @@ public class OcrTextDocument {
         this.languageUsed = languageUsed;
     }
 
+    public String getDetectedLanguage() {
+        return detectedLanguage;
+    }
+
+    public void setDetectedLanguage(String detectedLanguage) {
+        this.detectedLanguage = detectedLanguage;
+    }
+
+    public String getLineConfidences() {
+        return lineConfidences;
+    }
+
+    public void setLineConfidences(String lineConfidences) {
+        this.lineConfidences = lineConfidences;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,15 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pdf.marsk.pdfdemo.model.OcrBatchFile;
+
+@Repository
+public interface OcrBatchFileRepository extends JpaRepository<OcrBatchFile, Long> {
+    List<OcrBatchFile> findByBatchIdOrderByFileIndexAsc(String batchId);
+
+    long countByBatchIdAndStatus(String batchId, OcrBatchFile.Status status);
+}
@@ -0,0 +1,13 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pdf.marsk.pdfdemo.model.OcrBatch;
+
+@Repository
+public interface OcrBatchRepository extends JpaRepository<OcrBatch, String> {
+    List<OcrBatch> findByStatusOrderByCreatedAtAsc(OcrBatch.Status status);
+}
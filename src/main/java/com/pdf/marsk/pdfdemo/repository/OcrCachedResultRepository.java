@@ -0,0 +1,13 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pdf.marsk.pdfdemo.model.OcrCachedResult;
+
+@Repository
+public interface OcrCachedResultRepository extends JpaRepository<OcrCachedResult, Long> {
+    Optional<OcrCachedResult> findByCacheKey(String cacheKey);
+}
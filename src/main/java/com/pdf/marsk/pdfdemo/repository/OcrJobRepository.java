@@ -0,0 +1,62 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pdf.marsk.pdfdemo.model.OcrJob;
+
+@Repository
+public interface OcrJobRepository extends JpaRepository<OcrJob, String> {
+    List<OcrJob> findByStatusOrderByCreatedAtAsc(OcrJob.Status status);
+
+    /**
+     * Moves a job to a new status only if it still has the expected one, so exactly one node
+     * finishes a job whose pages were recognized across several nodes.
+     *
+     * @return 1 if the status was changed, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE OcrJob j SET j.status = :status WHERE j.id = :id AND j.status = :expected")
+    int updateStatusIf(@Param("id") String id,
+                       @Param("expected") OcrJob.Status expected,
+                       @Param("status") OcrJob.Status status);
+
+    /**
+     * Makes a node the owner of a running job if the job has no owner, its lease was last renewed before
+     * {@code expiredBefore}, or it is already owned by the node and its lease was last renewed before
+     * {@code ownBefore} (i.e. by an earlier run of the same node). The check and the change are one statement,
+     * so two nodes cannot both take over a job.
+     *
+     * @return 1 if the node now owns the job, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OcrJob j SET j.ownerNode = :nodeId, j.leaseRenewedAt = :now " +
+           "WHERE j.id = :id AND j.status = :running AND (j.ownerNode IS NULL OR j.leaseRenewedAt IS NULL " +
+           "OR j.leaseRenewedAt < :expiredBefore OR (j.ownerNode = :nodeId AND j.leaseRenewedAt < :ownBefore))")
+    int takeOver(@Param("id") String id,
+                 @Param("nodeId") String nodeId,
+                 @Param("now") LocalDateTime now,
+                 @Param("expiredBefore") LocalDateTime expiredBefore,
+                 @Param("ownBefore") LocalDateTime ownBefore,
+                 @Param("running") OcrJob.Status running);
+
+    /**
+     * Renews the lease of every running job owned by a node.
+     *
+     * @return The number of renewed jobs
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OcrJob j SET j.leaseRenewedAt = :now WHERE j.ownerNode = :nodeId AND j.status = :running")
+    int renewLeases(@Param("nodeId") String nodeId,
+                    @Param("now") LocalDateTime now,
+                    @Param("running") OcrJob.Status running);
+}
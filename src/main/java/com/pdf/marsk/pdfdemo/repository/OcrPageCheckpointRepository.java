@@ -0,0 +1,19 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageCheckpoint;
+
+@Repository
+public interface OcrPageCheckpointRepository extends JpaRepository<OcrPageCheckpoint, Long> {
+    List<OcrPageCheckpoint> findByJobIdOrderByPageIndexAsc(String jobId);
+
+    List<OcrPageCheckpoint> findByJobIdAndIdGreaterThanOrderByIdAsc(String jobId, Long id);
+
+    @Transactional
+    long deleteByJobId(String jobId);
+}
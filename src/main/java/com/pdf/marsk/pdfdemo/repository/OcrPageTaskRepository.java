@@ -0,0 +1,76 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageTask;
+
+@Repository
+public interface OcrPageTaskRepository extends JpaRepository<OcrPageTask, Long> {
+
+    /**
+     * Locks the oldest pending pages, skipping rows other transactions have locked (PostgreSQL).
+     * Must run inside a transaction; the locks are held until it ends.
+     */
+    @Query(value = "SELECT * FROM ocr_page_tasks WHERE status = 'PENDING' ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OcrPageTask> lockPendingSkipLocked(@Param("limit") int limit);
+
+    @Query("SELECT t.id FROM OcrPageTask t WHERE t.status = :status ORDER BY t.id")
+    List<Long> findIdsByStatus(@Param("status") OcrPageTask.Status status, Pageable pageable);
+
+    /**
+     * Claims a page only if it is still pending, so concurrent claimers cannot both get it.
+     *
+     * @return 1 if the page was claimed, 0 if another node got it first
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OcrPageTask t SET t.status = :claimed, t.claimedBy = :nodeId, t.claimedAt = :now, t.attempts = t.attempts + 1 " +
+           "WHERE t.id = :id AND t.status = :pending")
+    int claimIfPending(@Param("id") Long id,
+                       @Param("nodeId") String nodeId,
+                       @Param("now") LocalDateTime now,
+                       @Param("pending") OcrPageTask.Status pending,
+                       @Param("claimed") OcrPageTask.Status claimed);
+
+    /**
+     * Moves a page claimed by a node to a new status. Does nothing if the claim has expired
+     * and the page was handed to another node in the meantime.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OcrPageTask t SET t.status = :status, t.claimedBy = NULL, t.claimedAt = NULL, t.errorMessage = :errorMessage " +
+           "WHERE t.id = :id AND t.claimedBy = :nodeId AND t.status = :claimed")
+    int releaseClaim(@Param("id") Long id,
+                     @Param("nodeId") String nodeId,
+                     @Param("claimed") OcrPageTask.Status claimed,
+                     @Param("status") OcrPageTask.Status status,
+                     @Param("errorMessage") String errorMessage);
+
+    /**
+     * Returns pages whose claim is older than the cutoff to the queue, e.g. after their node died.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OcrPageTask t SET t.status = :pending, t.claimedBy = NULL, t.claimedAt = NULL " +
+           "WHERE t.status = :claimed AND t.claimedAt < :cutoff")
+    int releaseClaimsOlderThan(@Param("cutoff") LocalDateTime cutoff,
+                               @Param("pending") OcrPageTask.Status pending,
+                               @Param("claimed") OcrPageTask.Status claimed);
+
+    boolean existsByJobId(String jobId);
+
+    long countByJobIdAndStatusNot(String jobId, OcrPageTask.Status status);
+
+    @Transactional
+    long deleteByJobId(String jobId);
+}
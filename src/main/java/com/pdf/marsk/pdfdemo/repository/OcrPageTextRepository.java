@@ -0,0 +1,13 @@
+package com.pdf.marsk.pdfdemo.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageText;
+
+@Repository
+public interface OcrPageTextRepository extends JpaRepository<OcrPageText, Long> {
+    Optional<OcrPageText> findByFingerprintKey(String fingerprintKey);
+}
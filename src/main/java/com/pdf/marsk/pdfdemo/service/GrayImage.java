@@ -0,0 +1,105 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 8-bit grayscale image on a reusable {@code byte[]} buffer, used by the preprocessing operators.
+ * The buffer only grows, so a pooled instance stops allocating once it has held the largest page.
+ * Operators keep the 256-bin histogram up to date while writing pixels, so histogram-based
+ * steps such as Otsu thresholding do not need an extra pass over the image.
+ */
+public class GrayImage {
+
+    private static final ColorModel GRAY_COLOR_MODEL = new ComponentColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[] {8}, false, true,
+            Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+    private int width;
+    private int height;
+    private byte[] pixels = new byte[0];
+    private final int[] histogram = new int[256];
+
+    /**
+     * Resizes the image, reallocating the pixel buffer only if it is too small.
+     * Pixel contents and histogram are undefined afterwards.
+     */
+    public void reset(int width, int height) {
+        int size = Math.multiplyExact(width, height);
+        if (pixels.length < size) {
+            pixels = new byte[size];
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The pixel buffer in row-major order; only the first {@code width * height} bytes are in use
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return The number of pixels per gray level
+     */
+    public int[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return The allocated buffer size in bytes
+     */
+    public int getCapacity() {
+        return pixels.length;
+    }
+
+    /**
+     * Computes a fingerprint of the page: the SHA-256 of the image size and the exact pixels.
+     * <p>
+     * Rendering and preprocessing are deterministic, so identical pages rendered at the same DPI produce the
+     * same fingerprint, while any differing pixel (a decimal point, a thin stroke) changes it.
+     *
+     * @return The hex fingerprint
+     */
+    public String fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(new byte[] {(byte) (width >>> 24), (byte) (width >>> 16), (byte) (width >>> 8), (byte) width,
+                (byte) (height >>> 24), (byte) (height >>> 16), (byte) (height >>> 8), (byte) height});
+        digest.update(pixels, 0, width * height);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Wraps the pixel buffer in a {@link BufferedImage#TYPE_BYTE_GRAY} compatible image without copying it.
+     * The image is only valid until this buffer is reset or reused.
+     */
+    public BufferedImage toBufferedImage() {
+        DataBufferByte dataBuffer = new DataBufferByte(pixels, width * height);
+        WritableRaster raster = Raster.createInterleavedRaster(dataBuffer, width, height, width, 1, new int[] {0}, null);
+        return new BufferedImage(GRAY_COLOR_MODEL, raster, false, null);
+    }
+}
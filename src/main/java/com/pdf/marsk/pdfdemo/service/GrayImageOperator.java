@@ -0,0 +1,19 @@
+package com.pdf.marsk.pdfdemo.service;
+
+/**
+ * A single preprocessing step on an 8-bit grayscale image.
+ * Built-in operators are provided by {@link GrayImageOperators}.
+ */
+@FunctionalInterface
+public interface GrayImageOperator {
+
+    /**
+     * Applies the step.
+     *
+     * @param source The image to read; its histogram is up to date
+     * @param target A scratch image of the same size the operator may write into
+     * @return The image holding the result with an up to date histogram:
+     *         {@code source} if the step was applied in place, otherwise {@code target}
+     */
+    GrayImage apply(GrayImage source, GrayImage target);
+}
@@ -0,0 +1,356 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * Built-in preprocessing operators working directly on {@link GrayImage} buffers.
+ * All operators use integer arithmetic and update the histogram in the same pass that writes the pixels.
+ */
+public final class GrayImageOperators {
+
+    private GrayImageOperators() {
+    }
+
+    /**
+     * Converts an image to 8-bit luma, building the histogram in the same pass.
+     * Gray and packed RGB rasters, which is what the PDF renderer produces, are read without intermediate copies.
+     *
+     * @param image The source image
+     * @param target The grayscale image to write into; it is resized to the source dimensions
+     */
+    public static void grayscale(BufferedImage image, GrayImage target) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        target.reset(width, height);
+        byte[] out = target.getPixels();
+        int[] histogram = target.getHistogram();
+        Arrays.fill(histogram, 0);
+
+        Raster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && raster.getParent() == null
+                && raster.getSampleModel() instanceof ComponentSampleModel sampleModel) {
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int stride = sampleModel.getScanlineStride();
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(data, y * stride, out, y * width, width);
+            }
+            for (int i = 0, size = width * height; i < size; i++) {
+                histogram[out[i] & 0xFF]++;
+            }
+            return;
+        }
+
+        boolean packedRgb = (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                && raster.getParent() == null && raster.getDataBuffer() instanceof DataBufferInt;
+        int[] packed = packedRgb ? ((DataBufferInt) raster.getDataBuffer()).getData() : null;
+        int[] row = packedRgb ? null : new int[width];
+        for (int y = 0; y < height; y++) {
+            int rowOffset = y * width;
+            if (!packedRgb) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+            }
+            for (int x = 0; x < width; x++) {
+                int rgb = packedRgb ? packed[rowOffset + x] : row[x];
+                // Rec. 601 luma in 8.8 fixed point
+                int luma = (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+                out[rowOffset + x] = (byte) luma;
+                histogram[luma]++;
+            }
+        }
+    }
+
+    /**
+     * Light sharpen that enhances text edges: {@code 1.8 * center - 0.2 * (up + down + left + right)}.
+     * Border pixels are copied unchanged.
+     */
+    public static GrayImageOperator sharpen() {
+        return (source, target) -> {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            byte[] in = source.getPixels();
+            byte[] out = target.getPixels();
+            int[] histogram = target.getHistogram();
+            Arrays.fill(histogram, 0);
+            for (int y = 0; y < height; y++) {
+                int rowOffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int i = rowOffset + x;
+                    int value = in[i] & 0xFF;
+                    if (x > 0 && y > 0 && x < width - 1 && y < height - 1) {
+                        int neighbours = (in[i - 1] & 0xFF) + (in[i + 1] & 0xFF) + (in[i - width] & 0xFF) + (in[i + width] & 0xFF);
+                        value = clamp((9 * value - neighbours) / 5);
+                    }
+                    out[i] = (byte) value;
+                    histogram[value]++;
+                }
+            }
+            return target;
+        };
+    }
+
+    /**
+     * Removes isolated specks with a median over the pixel and its four direct neighbours.
+     * Unlike a 3x3 median it keeps thin strokes and corners intact.
+     */
+    public static GrayImageOperator despeckle() {
+        return (source, target) -> {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            byte[] in = source.getPixels();
+            byte[] out = target.getPixels();
+            int[] histogram = target.getHistogram();
+            Arrays.fill(histogram, 0);
+            for (int y = 0; y < height; y++) {
+                int rowOffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int i = rowOffset + x;
+                    int value = in[i] & 0xFF;
+                    if (x > 0 && y > 0 && x < width - 1 && y < height - 1) {
+                        value = median5(value, in[i - 1] & 0xFF, in[i + 1] & 0xFF, in[i - width] & 0xFF, in[i + width] & 0xFF);
+                    }
+                    out[i] = (byte) value;
+                    histogram[value]++;
+                }
+            }
+            return target;
+        };
+    }
+
+    /**
+     * Global binarization with the threshold chosen by Otsu's method from the histogram.
+     * Runs in place, so it costs a single pass over the image.
+     */
+    public static GrayImageOperator otsu() {
+        return (source, target) -> {
+            int[] histogram = source.getHistogram();
+            int threshold = otsuThreshold(histogram, source.getWidth() * source.getHeight());
+            byte[] pixels = source.getPixels();
+            int dark = 0;
+            for (int i = 0, size = source.getWidth() * source.getHeight(); i < size; i++) {
+                if ((pixels[i] & 0xFF) <= threshold) {
+                    pixels[i] = 0;
+                    dark++;
+                } else {
+                    pixels[i] = (byte) 0xFF;
+                }
+            }
+            setBinaryHistogram(histogram, dark, source.getWidth() * source.getHeight());
+            return source;
+        };
+    }
+
+    /**
+     * Local binarization with Sauvola's threshold {@code mean * (1 + k * (stddev / 128 - 1))} over a square window.
+     * Handles uneven illumination and shadows better than a global threshold.
+     * Window sums are maintained incrementally per column, so the cost does not depend on the window size
+     * and the only extra memory is two arrays of the image width.
+     *
+     * @param windowSize The window edge length in pixels
+     * @param k The sensitivity to local contrast, typically between 0.2 and 0.5
+     */
+    public static GrayImageOperator sauvola(int windowSize, double k) {
+        int radius = Math.max(1, windowSize / 2);
+        return (source, target) -> {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            byte[] in = source.getPixels();
+            byte[] out = target.getPixels();
+            long[] columnSums = new long[width];
+            long[] columnSquareSums = new long[width];
+
+            for (int y = 0; y <= Math.min(radius, height - 1); y++) {
+                addRow(in, y, width, columnSums, columnSquareSums, 1);
+            }
+            int dark = 0;
+            for (int y = 0; y < height; y++) {
+                if (y > 0) {
+                    if (y + radius < height) {
+                        addRow(in, y + radius, width, columnSums, columnSquareSums, 1);
+                    }
+                    if (y - radius - 1 >= 0) {
+                        addRow(in, y - radius - 1, width, columnSums, columnSquareSums, -1);
+                    }
+                }
+                int rows = Math.min(height - 1, y + radius) - Math.max(0, y - radius) + 1;
+
+                long sum = 0;
+                long squareSum = 0;
+                for (int x = 0; x <= Math.min(radius, width - 1); x++) {
+                    sum += columnSums[x];
+                    squareSum += columnSquareSums[x];
+                }
+                int rowOffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    if (x > 0) {
+                        if (x + radius < width) {
+                            sum += columnSums[x + radius];
+                            squareSum += columnSquareSums[x + radius];
+                        }
+                        if (x - radius - 1 >= 0) {
+                            sum -= columnSums[x - radius - 1];
+                            squareSum -= columnSquareSums[x - radius - 1];
+                        }
+                    }
+                    int count = rows * (Math.min(width - 1, x + radius) - Math.max(0, x - radius) + 1);
+                    double mean = (double) sum / count;
+                    double deviation = Math.sqrt(Math.max(0, (double) squareSum / count - mean * mean));
+                    double threshold = mean * (1 + k * (deviation / 128 - 1));
+                    if ((in[rowOffset + x] & 0xFF) <= threshold) {
+                        out[rowOffset + x] = 0;
+                        dark++;
+                    } else {
+                        out[rowOffset + x] = (byte) 0xFF;
+                    }
+                }
+            }
+            setBinaryHistogram(target.getHistogram(), dark, width * height);
+            return target;
+        };
+    }
+
+    /**
+     * Rotates an image clockwise about its center into a target sized to hold the whole rotated image.
+     * Quarter turns move pixels exactly; other angles interpolate bilinearly and fill the uncovered
+     * corners with white.
+     *
+     * @param source The image to rotate
+     * @param target The image to write into; it is resized to the rotated dimensions
+     * @param degrees The clockwise rotation in degrees
+     */
+    public static void rotate(GrayImage source, GrayImage target, double degrees) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        byte[] in = source.getPixels();
+        int[] histogram = target.getHistogram();
+        Arrays.fill(histogram, 0);
+
+        if (degrees % 90 == 0) {
+            int quarterTurns = Math.floorMod((int) (degrees / 90), 4);
+            boolean swapped = quarterTurns % 2 == 1;
+            int outWidth = swapped ? height : width;
+            int outHeight = swapped ? width : height;
+            target.reset(outWidth, outHeight);
+            byte[] out = target.getPixels();
+            for (int y = 0; y < outHeight; y++) {
+                for (int x = 0; x < outWidth; x++) {
+                    int sourceIndex = switch (quarterTurns) {
+                        case 1 -> (height - 1 - x) * width + y;
+                        case 2 -> (height - 1 - y) * width + (width - 1 - x);
+                        case 3 -> x * width + (width - 1 - y);
+                        default -> y * width + x;
+                    };
+                    byte value = in[sourceIndex];
+                    out[y * outWidth + x] = value;
+                    histogram[value & 0xFF]++;
+                }
+            }
+            return;
+        }
+
+        double radians = Math.toRadians(degrees);
+        double sin = Math.sin(radians);
+        double cos = Math.cos(radians);
+        int outWidth = (int) Math.ceil(width * Math.abs(cos) + height * Math.abs(sin));
+        int outHeight = (int) Math.ceil(width * Math.abs(sin) + height * Math.abs(cos));
+        target.reset(outWidth, outHeight);
+        byte[] out = target.getPixels();
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+        for (int y = 0; y < outHeight; y++) {
+            double dy = y + 0.5 - outHeight / 2.0;
+            for (int x = 0; x < outWidth; x++) {
+                double dx = x + 0.5 - outWidth / 2.0;
+                // Inverse rotation of the target pixel center into the source
+                double sourceX = dx * cos + dy * sin + centerX - 0.5;
+                double sourceY = -dx * sin + dy * cos + centerY - 0.5;
+                int x0 = (int) Math.floor(sourceX);
+                int y0 = (int) Math.floor(sourceY);
+                double fx = sourceX - x0;
+                double fy = sourceY - y0;
+                double top = (1 - fx) * sample(in, width, height, x0, y0) + fx * sample(in, width, height, x0 + 1, y0);
+                double bottom = (1 - fx) * sample(in, width, height, x0, y0 + 1) + fx * sample(in, width, height, x0 + 1, y0 + 1);
+                int value = clamp((int) Math.round((1 - fy) * top + fy * bottom));
+                out[y * outWidth + x] = (byte) value;
+                histogram[value]++;
+            }
+        }
+    }
+
+    /**
+     * @return The highest gray level that belongs to the dark class
+     */
+    static int otsuThreshold(int[] histogram, int total) {
+        long weightedTotal = 0;
+        for (int level = 0; level < 256; level++) {
+            weightedTotal += (long) level * histogram[level];
+        }
+        long backgroundWeight = 0;
+        long backgroundSum = 0;
+        double bestVariance = -1;
+        int threshold = 127;
+        for (int level = 0; level < 256; level++) {
+            backgroundWeight += histogram[level];
+            if (backgroundWeight == 0) {
+                continue;
+            }
+            long foregroundWeight = total - backgroundWeight;
+            if (foregroundWeight == 0) {
+                break;
+            }
+            backgroundSum += (long) level * histogram[level];
+            double backgroundMean = (double) backgroundSum / backgroundWeight;
+            double foregroundMean = (double) (weightedTotal - backgroundSum) / foregroundWeight;
+            double difference = backgroundMean - foregroundMean;
+            double betweenClassVariance = (double) backgroundWeight * foregroundWeight * difference * difference;
+            if (betweenClassVariance > bestVariance) {
+                bestVariance = betweenClassVariance;
+                threshold = level;
+            }
+        }
+        return threshold;
+    }
+
+    private static void addRow(byte[] pixels, int y, int width, long[] columnSums, long[] columnSquareSums, int sign) {
+        int rowOffset = y * width;
+        for (int x = 0; x < width; x++) {
+            int value = pixels[rowOffset + x] & 0xFF;
+            columnSums[x] += sign * value;
+            columnSquareSums[x] += sign * value * value;
+        }
+    }
+
+    private static void setBinaryHistogram(int[] histogram, int dark, int total) {
+        Arrays.fill(histogram, 0);
+        histogram[0] = dark;
+        histogram[255] = total - dark;
+    }
+
+    private static int median5(int a, int b, int c, int d, int e) {
+        int t;
+        if (a > b) { t = a; a = b; b = t; }
+        if (c > d) { t = c; c = d; d = t; }
+        // The smaller of the two pair minimums ranks first or second, so the median is
+        // the second smallest of the other four values
+        if (a < c) {
+            a = e;
+            if (a > b) { t = a; a = b; b = t; }
+        } else {
+            c = e;
+            if (c > d) { t = c; c = d; d = t; }
+        }
+        return a < c ? Math.min(b, c) : Math.min(a, d);
+    }
+
+    private static int sample(byte[] pixels, int width, int height, int x, int y) {
+        return x < 0 || y < 0 || x >= width || y >= height ? 255 : pixels[y * width + x] & 0xFF;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+}
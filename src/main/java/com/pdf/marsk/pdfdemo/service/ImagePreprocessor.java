@@ -0,0 +1,162 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepares rendered pages for OCR by running a configurable chain of {@link GrayImageOperator}s.
+ * <p>
+ * Every page is first converted to 8-bit grayscale, optionally straightened, then passed through the chain,
+ * e.g. {@code sharpen,otsu}. Work happens on {@link GrayImage} buffers from a small pool that
+ * grow to the largest page and are then reused, so steady-state preprocessing does not allocate
+ * image-sized memory. Two buffers are used per page; each step reads one and writes the other
+ * (or works in place), and the final buffer is handed to Tesseract without another copy.
+ */
+@Component
+public class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    private final List<GrayImageOperator> operators;
+    private final String chainSignature;
+    private final BlockingQueue<GrayImage> idleBuffers;
+    private final AtomicLong allocatedBuffers = new AtomicLong();
+
+    @Autowired
+    public ImagePreprocessor(@Value("${ocr.preprocess.operators:sharpen,otsu}") String operatorNames,
+                             @Value("${ocr.preprocess.sauvola.windowSize:25}") int sauvolaWindowSize,
+                             @Value("${ocr.preprocess.sauvola.k:0.34}") double sauvolaK,
+                             @Value("${ocr.preprocess.bufferPoolSize:6}") int bufferPoolSize) {
+        this(parseOperators(operatorNames, Map.of(
+                "sharpen", GrayImageOperators.sharpen(),
+                "despeckle", GrayImageOperators.despeckle(),
+                "otsu", GrayImageOperators.otsu(),
+                "sauvola", GrayImageOperators.sauvola(sauvolaWindowSize, sauvolaK))), bufferPoolSize,
+                describeChain(operatorNames, sauvolaWindowSize, sauvolaK));
+        logger.info("Image preprocessing chain: {}", chainSignature);
+    }
+
+    public ImagePreprocessor(List<GrayImageOperator> operators, int bufferPoolSize) {
+        this(operators, bufferPoolSize, "custom");
+    }
+
+    private ImagePreprocessor(List<GrayImageOperator> operators, int bufferPoolSize, String chainSignature) {
+        this.operators = List.copyOf(operators);
+        this.idleBuffers = new LinkedBlockingQueue<>(Math.max(2, bufferPoolSize));
+        this.chainSignature = chainSignature;
+    }
+
+    /**
+     * Converts a rendered page to grayscale and runs the operator chain on it.
+     *
+     * @param image The rendered page
+     * @return The preprocessed page; close it after recognition to return its buffer to the pool
+     */
+    public PreprocessedImage preprocess(BufferedImage image) {
+        return preprocess(image, page -> PageOrientation.UPRIGHT);
+    }
+
+    /**
+     * Converts a rendered page to grayscale, straightens it and runs the operator chain on it.
+     * The page is rotated at most once, by the combined rotation and skew correction.
+     *
+     * @param image The rendered page
+     * @param orientationDetector Estimates the correction from the grayscale page
+     * @return The preprocessed page; close it after recognition to return its buffer to the pool
+     */
+    public PreprocessedImage preprocess(BufferedImage image, Function<GrayImage, PageOrientation> orientationDetector) {
+        GrayImage current = borrow();
+        GrayImage scratch = borrow();
+        GrayImageOperators.grayscale(image, current);
+        PageOrientation orientation = orientationDetector.apply(current);
+        if (!orientation.isUpright()) {
+            GrayImageOperators.rotate(current, scratch, orientation.getAngle());
+            GrayImage rotated = scratch;
+            scratch = current;
+            current = rotated;
+        }
+        for (GrayImageOperator operator : operators) {
+            scratch.reset(current.getWidth(), current.getHeight());
+            GrayImage result = operator.apply(current, scratch);
+            if (result != current) {
+                scratch = current;
+                current = result;
+            }
+        }
+        release(scratch);
+        return new PreprocessedImage(current, this, orientation);
+    }
+
+    /**
+     * @return The configured operator chain, for cache keys of recognized output
+     */
+    public String getSettingsSignature() {
+        return chainSignature;
+    }
+
+    /**
+     * @return The number of buffers allocated since startup; stays flat once the pool is warm
+     */
+    public long getAllocatedBuffers() {
+        return allocatedBuffers.get();
+    }
+
+    void release(GrayImage buffer) {
+        idleBuffers.offer(buffer);
+    }
+
+    private GrayImage borrow() {
+        GrayImage buffer = idleBuffers.poll();
+        if (buffer == null) {
+            allocatedBuffers.incrementAndGet();
+            buffer = new GrayImage();
+        }
+        return buffer;
+    }
+
+    private static String describeChain(String operatorNames, int sauvolaWindowSize, double sauvolaK) {
+        StringBuilder chain = new StringBuilder("grayscale");
+        for (String name : operatorNames.split(",")) {
+            String key = name.trim().toLowerCase();
+            if (key.isEmpty() || key.equals("grayscale")) {
+                continue;
+            }
+            chain.append(',').append(key);
+            if (key.equals("sauvola")) {
+                chain.append('(').append(sauvolaWindowSize).append(',').append(sauvolaK).append(')');
+            }
+        }
+        return chain.toString();
+    }
+
+    private static List<GrayImageOperator> parseOperators(String operatorNames, Map<String, GrayImageOperator> available) {
+        List<GrayImageOperator> chain = new ArrayList<>();
+        for (String name : operatorNames.split(",")) {
+            String key = name.trim().toLowerCase();
+            if (key.isEmpty() || key.equals("grayscale")) {
+                // Grayscale conversion always runs first
+                continue;
+            }
+            GrayImageOperator operator = available.get(key);
+            if (operator == null) {
+                throw new IllegalArgumentException("Unknown preprocessing operator '" + name.trim()
+                        + "', expected one of " + Arrays.toString(available.keySet().stream().sorted().toArray()));
+            }
+            chain.add(operator);
+        }
+        return chain;
+    }
+}
@@ -0,0 +1,124 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.tess4j.Word;
+
+/**
+ * Confidences of the lines of a recognized text, aligned by position: entry {@code i} belongs to line {@code i}
+ * of the text, split at {@code '\n'}. Lines without a confidence (blank lines, page markers, pages taken from a
+ * text layer) have a null entry. Stored as a compact string of whole percentages,
+ * e.g. {@code "97,,42"}.
+ */
+public final class LineConfidences {
+
+    // How far ahead a recognized line is looked for when the text has lines Tesseract did not report
+    private static final int MAX_LOOKAHEAD = 3;
+
+    private LineConfidences() {
+    }
+
+    /**
+     * @param words The words of one page
+     * @return The mean word confidence of each line of {@link OcrWords#toText(List)}
+     */
+    public static List<Float> ofWords(List<OcrWord> words) {
+        List<Float> confidences = new ArrayList<>();
+        for (List<OcrWord> line : OcrWords.lines(words)) {
+            confidences.add((float) line.stream().mapToDouble(OcrWord::confidence).average().orElse(0));
+        }
+        return confidences;
+    }
+
+    /**
+     * Matches the text lines Tesseract reported to the lines of the text it returned, in order.
+     *
+     * @param text The recognized text
+     * @param lines The recognized text lines with their confidences, in reading order
+     * @return The confidence of each line of the text
+     */
+    public static List<Float> align(String text, List<Word> lines) {
+        if (text == null || lines.isEmpty()) {
+            return List.of();
+        }
+        String[] textLines = text.split("\n", -1);
+        List<Float> confidences = new ArrayList<>(textLines.length);
+        int next = 0;
+        for (String textLine : textLines) {
+            Float confidence = null;
+            String trimmed = textLine.trim();
+            if (!trimmed.isEmpty()) {
+                for (int i = next; i < Math.min(lines.size(), next + MAX_LOOKAHEAD); i++) {
+                    String lineText = lines.get(i).getText();
+                    if (lineText != null && lineText.trim().equals(trimmed)) {
+                        confidence = lines.get(i).getConfidence();
+                        next = i + 1;
+                        break;
+                    }
+                }
+            }
+            confidences.add(confidence);
+        }
+        return confidences;
+    }
+
+    /**
+     * Aligns the confidences of the pages of a document with the text {@link OcrService#joinPageTexts} makes of them.
+     *
+     * @param pageTexts The text of each page
+     * @param pageConfidences The line confidences of the pages that have them, by page index
+     * @return The encoded line confidences of the joined text, or null if no page has any
+     */
+    public static String join(String[] pageTexts, Map<Integer, List<Float>> pageConfidences) {
+        if (pageConfidences.values().stream().allMatch(List::isEmpty)) {
+            return null;
+        }
+        List<Float> confidences = new ArrayList<>();
+        for (int pageIndex = 0; pageIndex < pageTexts.length; pageIndex++) {
+            if (pageTexts.length > 1) {
+                confidences.add(null); // Page marker
+            }
+            List<Float> page = pageConfidences.getOrDefault(pageIndex, List.of());
+            int lineCount = pageTexts[pageIndex].split("\n", -1).length;
+            for (int line = 0; line < lineCount; line++) {
+                confidences.add(line < page.size() ? page.get(line) : null);
+            }
+        }
+        return encode(confidences);
+    }
+
+    /**
+     * @param confidences Line confidences
+     * @return The confidences as comma-separated whole percentages, empty for lines without one
+     */
+    public static String encode(List<Float> confidences) {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < confidences.size(); i++) {
+            if (i > 0) {
+                encoded.append(',');
+            }
+            if (confidences.get(i) != null) {
+                encoded.append(Math.round(confidences.get(i)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @param encoded Confidences as written by {@link #encode(List)}, or null
+     * @return The line confidences; empty if there are none
+     */
+    public static List<Float> decode(String encoded) {
+        if (encoded == null || encoded.isBlank()) {
+            return List.of();
+        }
+        List<Float> confidences = new ArrayList<>();
+        for (String value : encoded.split(",", -1)) {
+            confidences.add(value.isBlank() ? null : Float.valueOf(value.trim()));
+        }
+        return Collections.unmodifiableList(confidences);
+    }
+}
@@ -0,0 +1,99 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Character n-gram language models for telling the language of a text apart. Each model counts the 1- to 3-grams
+ * of a training text, lowercased, with everything but letters collapsed to single spaces and words padded with
+ * spaces, so word starts and ends count as well. A text is scored per language as the mean log-probability of its
+ * n-grams, with add-one smoothing over the n-grams seen in any language.
+ */
+public class NgramLanguageModels {
+
+    private static final int MAX_N = 3;
+
+    private final Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+    private final Map<String, Long> totals = new HashMap<>();
+    private final int vocabularySize;
+
+    /**
+     * @param trainingTexts The training text of each language, by language code
+     */
+    public NgramLanguageModels(Map<String, String> trainingTexts) {
+        Set<String> vocabulary = new HashSet<>();
+        trainingTexts.forEach((language, text) -> {
+            Map<String, Integer> languageCounts = new HashMap<>();
+            long total = 0;
+            for (String ngram : ngrams(text)) {
+                languageCounts.merge(ngram, 1, Integer::sum);
+                total++;
+            }
+            vocabulary.addAll(languageCounts.keySet());
+            counts.put(language, languageCounts);
+            totals.put(language, total);
+        });
+        // One extra for n-grams no language has seen
+        this.vocabularySize = vocabulary.size() + 1;
+    }
+
+    /**
+     * @return The language codes, in the order the training texts were given
+     */
+    public Set<String> getLanguages() {
+        return counts.keySet();
+    }
+
+    /**
+     * @param text A text
+     * @return The number of n-grams the text is scored on
+     */
+    public static int ngramCount(String text) {
+        return ngrams(text).length;
+    }
+
+    /**
+     * @param text The text to score
+     * @return The mean log-probability of the text's n-grams under each language model, by language code;
+     *         higher is more likely. Empty if the text has no letters.
+     */
+    public Map<String, Double> score(String text) {
+        String[] ngrams = ngrams(text);
+        Map<String, Double> scores = new LinkedHashMap<>();
+        if (ngrams.length == 0) {
+            return scores;
+        }
+        counts.forEach((language, languageCounts) -> {
+            double denominator = totals.get(language) + vocabularySize;
+            double logProbability = 0;
+            for (String ngram : ngrams) {
+                logProbability += Math.log((languageCounts.getOrDefault(ngram, 0) + 1) / denominator);
+            }
+            scores.put(language, logProbability / ngrams.length);
+        });
+        return scores;
+    }
+
+    private static String[] ngrams(String text) {
+        String normalized = " " + text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}]+", " ").trim() + " ";
+        if (normalized.isBlank()) {
+            return new String[0];
+        }
+        List<String> ngrams = new ArrayList<>();
+        for (int n = 1; n <= MAX_N; n++) {
+            for (int i = 0; i + n <= normalized.length(); i++) {
+                String ngram = normalized.substring(i, i + n);
+                if (!ngram.isBlank()) {
+                    ngrams.add(ngram);
+                }
+            }
+        }
+        return ngrams.toArray(String[]::new);
+    }
+}
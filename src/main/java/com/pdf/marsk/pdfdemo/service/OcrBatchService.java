@@ -0,0 +1,694 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.pdf.marsk.pdfdemo.model.OcrBatch;
+import com.pdf.marsk.pdfdemo.model.OcrBatchFile;
+import com.pdf.marsk.pdfdemo.model.OcrTextDocument;
+import com.pdf.marsk.pdfdemo.repository.OcrBatchFileRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrBatchRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bulk OCR of many files submitted at once, as several uploads or as ZIP archives.
+ * <p>
+ * The files of a batch are moved (or extracted) into the batch directory and recorded in {@code ocr_batches}
+ * and {@code ocr_batch_files}. Each batch is a lane in the batch class of the {@link OcrPageScheduler}: a PDF
+ * is first planned (its page count read, text-layer pages taken directly in hybrid mode), then its pages are
+ * queued a few at a time, so batches take turns page by page and interactive requests go ahead of them.
+ * Finished pages are checkpointed through the {@link OcrCheckpointStore}; once all pages of a file are done,
+ * its text is saved as an OCR document. Unfinished batches resume on startup from their checkpoints.
+ * The results of a batch are downloaded as a ZIP archive with one text file per source file.
+ */
+@Service
+public class OcrBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrBatchService.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final int MAX_NAME_LENGTH = 100;
+    private static final String ERRORS_ENTRY = "errors.txt";
+
+    private final OcrPageScheduler pageScheduler;
+    private final OcrPipeline ocrPipeline;
+    private final OcrProfiles ocrProfiles;
+    private final TesseractPool tesseractPool;
+    private final PdfTextLayerAnalyzer pdfTextLayerAnalyzer;
+    private final OcrCheckpointStore ocrCheckpointStore;
+    private final OcrBatchRepository ocrBatchRepository;
+    private final OcrBatchFileRepository ocrBatchFileRepository;
+    private final OcrTextDocumentRepository ocrTextDocumentRepository;
+    private final Path batchDirectory;
+    private final int maxFiles;
+    private final long maxExtractedBytes;
+    private final int pagesPerTask;
+    private final boolean resumeOnStartup;
+    // Pages of each planned PDF still waiting for recognition, by batch file ID
+    private final Map<Long, AtomicInteger> remainingPages = new ConcurrentHashMap<>();
+    private final Map<Long, OpenPdf> openPdfs = new ConcurrentHashMap<>();
+    private volatile boolean shuttingDown;
+
+    @Autowired
+    public OcrBatchService(OcrPageScheduler pageScheduler,
+                           OcrPipeline ocrPipeline,
+                           OcrProfiles ocrProfiles,
+                           TesseractPool tesseractPool,
+                           PdfTextLayerAnalyzer pdfTextLayerAnalyzer,
+                           OcrCheckpointStore ocrCheckpointStore,
+                           OcrBatchRepository ocrBatchRepository,
+                           OcrBatchFileRepository ocrBatchFileRepository,
+                           OcrTextDocumentRepository ocrTextDocumentRepository,
+                           @Value("${ocr.batch.dir:ocr-batches}") String batchDirectory,
+                           @Value("${ocr.batch.maxFiles:1000}") int maxFiles,
+                           @Value("${ocr.batch.maxExtractedMb:2048}") long maxExtractedMb,
+                           @Value("${ocr.batch.pagesPerTask:16}") int pagesPerTask,
+                           @Value("${ocr.batch.resumeOnStartup:true}") boolean resumeOnStartup) {
+        this.pageScheduler = pageScheduler;
+        this.ocrPipeline = ocrPipeline;
+        this.ocrProfiles = ocrProfiles;
+        this.tesseractPool = tesseractPool;
+        this.pdfTextLayerAnalyzer = pdfTextLayerAnalyzer;
+        this.ocrCheckpointStore = ocrCheckpointStore;
+        this.ocrBatchRepository = ocrBatchRepository;
+        this.ocrBatchFileRepository = ocrBatchFileRepository;
+        this.ocrTextDocumentRepository = ocrTextDocumentRepository;
+        this.batchDirectory = Path.of(batchDirectory).toAbsolutePath();
+        this.maxFiles = Math.max(1, maxFiles);
+        this.maxExtractedBytes = Math.max(1, maxExtractedMb) * 1024 * 1024;
+        this.pagesPerTask = Math.max(1, pagesPerTask);
+        this.resumeOnStartup = resumeOnStartup;
+    }
+
+    /**
+     * @return Whether a file can be recognized in a batch: a PDF, PNG, JPEG or TIFF file
+     */
+    public static boolean isSupportedFile(String filename) {
+        String name = filename.toLowerCase();
+        return name.endsWith(".pdf") || name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
+                || name.endsWith(".tif") || name.endsWith(".tiff");
+    }
+
+    /**
+     * @return Whether an upload is a ZIP archive whose entries become files of the batch
+     */
+    public static boolean isArchive(String filename) {
+        return filename.toLowerCase().endsWith(".zip");
+    }
+
+    /**
+     * Starts a batch. Uploaded files are moved into the batch directory and ZIP archives are extracted into it,
+     * so the callers' {@link SpooledUpload#close()} no longer affects them. Unsupported files and archive entries
+     * are skipped.
+     *
+     * @param uploads The spooled uploads, in the order their results are listed
+     * @param language The OCR language
+     * @param hybridExtraction Whether to use the PDF text layer where possible
+     * @return The batch ID
+     * @throws IllegalArgumentException If the language is to be detected, the batch has no supported file,
+     *         too many files, or an archive is unreadable or expands beyond the size limit
+     * @throws IOException If the files cannot be moved or extracted into the batch directory
+     * @throws OcrSchedulerFullException If the scheduler's queue for batches is full
+     */
+    public String submit(List<SpooledUpload> uploads, String language, boolean hybridExtraction) throws IOException {
+        return submit(uploads, language, null, hybridExtraction);
+    }
+
+    /**
+     * Starts a batch whose files are all recognized with an engine profile.
+     *
+     * @param uploads The spooled uploads, in the order their results are listed
+     * @param language The OCR language
+     * @param profile The name of the engine profile, or null for the default profile
+     * @param hybridExtraction Whether to use the PDF text layer where possible
+     * @return The batch ID
+     * @throws IllegalArgumentException If the profile is unknown, the language is to be detected, the batch has
+     *         no supported file, too many files, or an archive is unreadable or expands beyond the size limit
+     * @throws IOException If the files cannot be moved or extracted into the batch directory
+     * @throws OcrSchedulerFullException If the scheduler's queue for batches is full
+     * @see #submit(List, String, boolean)
+     */
+    public String submit(List<SpooledUpload> uploads, String language, String profile, boolean hybridExtraction) throws IOException {
+        ocrProfiles.get(profile);
+        if (OcrLanguageDetector.isAuto(language)) {
+            throw new IllegalArgumentException("Automatic language detection is not supported for batches; choose a language");
+        }
+        pageScheduler.checkCapacity(OcrPageScheduler.Priority.BATCH);
+        String batchId = OcrPageScheduler.newLane("batch");
+        Path directory = batchDirectory.resolve(batchId);
+        Files.createDirectories(directory);
+        OcrBatch batch;
+        List<OcrBatchFile> files = new ArrayList<>();
+        try {
+            long[] extractedBytes = {0};
+            for (SpooledUpload upload : uploads) {
+                String name = upload.getOriginalFilename();
+                if (isArchive(name)) {
+                    extractArchive(upload, batchId, directory, files, extractedBytes);
+                } else if (isSupportedFile(name)) {
+                    checkFileLimit(files);
+                    Path source = directory.resolve(files.size() + "_" + safeName(name));
+                    Files.move(upload.getPath(), source, StandardCopyOption.REPLACE_EXISTING);
+                    files.add(new OcrBatchFile(batchId, files.size(), name, source.toString()));
+                } else {
+                    logger.info("Skipping unsupported file {} in OCR batch {}", name, batchId);
+                }
+            }
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("The batch contains no PDF, PNG, JPG, JPEG or TIFF files.");
+            }
+            OcrBatch newBatch = new OcrBatch(batchId, language, hybridExtraction, files.size());
+            newBatch.setProfile(profile);
+            batch = ocrBatchRepository.save(newBatch);
+            files = ocrBatchFileRepository.saveAll(files);
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(directory);
+            throw e;
+        }
+        logger.info("Started OCR batch {} with {} files using language: {}", batchId, files.size(), language);
+        for (OcrBatchFile file : files) {
+            schedule(batch, file);
+        }
+        return batchId;
+    }
+
+    public Optional<OcrBatch> getBatch(String batchId) {
+        return ocrBatchRepository.findById(batchId);
+    }
+
+    /**
+     * @return The files of a batch, in batch order
+     */
+    public List<OcrBatchFile> getFiles(String batchId) {
+        return ocrBatchFileRepository.findByBatchIdOrderByFileIndexAsc(batchId);
+    }
+
+    /**
+     * @return The number of pages of a file that are recognized; 0 until a PDF has been planned
+     */
+    public int getPagesDone(OcrBatchFile file) {
+        if (file.getStatus() == OcrBatchFile.Status.COMPLETED) {
+            return file.getPageCount();
+        }
+        AtomicInteger remaining = remainingPages.get(file.getId());
+        return remaining == null ? 0 : Math.max(0, file.getPageCount() - remaining.get());
+    }
+
+    /**
+     * Writes the results of a batch as a ZIP archive: one UTF-8 text file per completed file, named after
+     * the file (or archive entry) with a {@code .txt} extension, and an {@code errors.txt} listing the files
+     * that failed. Files that are still running are left out. Texts are read and written one at a time.
+     *
+     * @param batchId The batch ID
+     * @param out Receives the ZIP archive; it is finished but not closed
+     * @throws IOException If the output cannot be written
+     */
+    public void writeResults(String batchId, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Set<String> entryNames = new HashSet<>();
+        entryNames.add(ERRORS_ENTRY);
+        StringBuilder errors = new StringBuilder();
+        for (OcrBatchFile file : getFiles(batchId)) {
+            if (file.getStatus() == OcrBatchFile.Status.FAILED) {
+                errors.append(file.getOriginalFilename()).append(": ").append(file.getErrorMessage()).append('\n');
+                continue;
+            }
+            if (file.getStatus() != OcrBatchFile.Status.COMPLETED) {
+                continue;
+            }
+            Optional<String> text = file.getResultDocumentId() == null ? Optional.empty()
+                    : ocrTextDocumentRepository.findById(file.getResultDocumentId()).map(OcrTextDocument::getExtractedText);
+            if (text.isEmpty()) {
+                errors.append(file.getOriginalFilename()).append(": the OCR result is no longer available\n");
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry(uniqueEntryName(resultEntryName(file.getOriginalFilename()), entryNames)));
+            zip.write(text.get().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        if (errors.length() > 0) {
+            zip.putNextEntry(new ZipEntry(ERRORS_ENTRY));
+            zip.write(errors.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Resumes the batches that were still running when the application stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedBatches() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        for (OcrBatch batch : ocrBatchRepository.findByStatusOrderByCreatedAtAsc(OcrBatch.Status.RUNNING)) {
+            List<OcrBatchFile> unfinishedFiles = getFiles(batch.getId()).stream()
+                    .filter(file -> file.getStatus() == OcrBatchFile.Status.RUNNING)
+                    .toList();
+            logger.info("Resuming OCR batch {} with {} unfinished files", batch.getId(), unfinishedFiles.size());
+            for (OcrBatchFile file : unfinishedFiles) {
+                if (Files.isReadable(Path.of(file.getSourcePath()))) {
+                    schedule(batch, file);
+                } else {
+                    logger.warn("Cannot resume file {} of OCR batch {}: source file {} is missing",
+                            file.getOriginalFilename(), batch.getId(), file.getSourcePath());
+                    finishFile(batch, file, OcrBatchFile.Status.FAILED, "Source file missing on resume");
+                }
+            }
+            completeBatchIfDone(batch);
+        }
+    }
+
+    private void schedule(OcrBatch batch, OcrBatchFile file) {
+        submitTask(batch, file, () -> plan(batch, file));
+    }
+
+    private void submitTask(OcrBatch batch, OcrBatchFile file, FileTask task) {
+        pageScheduler.submit(OcrPageScheduler.Priority.BATCH, batch.getId(), () -> {
+            runFileTask(batch, file, task);
+            return null;
+        });
+    }
+
+    private void runFileTask(OcrBatch batch, OcrBatchFile file, FileTask task) {
+        if (!isRunning(file)) {
+            return; // An earlier task of the file failed it
+        }
+        try {
+            task.run();
+        } catch (Exception e) {
+            if (shuttingDown) {
+                // Interrupted by the shutdown: the file stays RUNNING and resumes from its checkpoints
+                logger.info("OCR batch {} interrupted by shutdown, it will resume on the next start", batch.getId());
+                return;
+            }
+            logger.error("Error in OCR batch {} on file {}: {}", batch.getId(), file.getOriginalFilename(), e.getMessage(), e);
+            try {
+                finishFile(batch, file, OcrBatchFile.Status.FAILED, e.getMessage());
+            } catch (RuntimeException ex) {
+                logger.warn("Could not record the failure of file {} in OCR batch {}: {}",
+                        file.getOriginalFilename(), batch.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Recognizes an image right away. A PDF or the frames of a TIFF are split into page tasks at the end of the
+     * batch's lane, after the text-layer pages of a PDF are checkpointed in hybrid mode; pages checkpointed before
+     * a restart are skipped.
+     */
+    private void plan(OcrBatch batch, OcrBatchFile file) throws Exception {
+        String checkpointKey = checkpointKey(file);
+        Set<Integer> checkpointedPages = ocrCheckpointStore.load(checkpointKey).keySet();
+        boolean isTiff = TiffFrameReader.isTiff(file.getOriginalFilename());
+        if (!isTiff && !file.getOriginalFilename().toLowerCase().endsWith(".pdf")) {
+            if (checkpointedPages.isEmpty()) {
+                File image = new File(file.getSourcePath());
+                checkpoint(checkpointKey, tesseractPool.withHandle(batch.getLanguage(), ocrProfiles.get(batch.getProfile()),
+                        tesseract -> OcrPipeline.recognizeImageFile(tesseract, image)));
+            }
+            file.setPageCount(1);
+            assemble(batch, file);
+            return;
+        }
+
+        List<Integer> pagesToOcr = new ArrayList<>();
+        int pageCount;
+        if (isTiff) {
+            try (TiffFrameReader frames = new TiffFrameReader(new File(file.getSourcePath()))) {
+                pageCount = frames.getFrameCount();
+            }
+            if (pageCount == 0) {
+                throw new IOException("TIFF file has no frames: " + file.getOriginalFilename());
+            }
+            for (int frameIndex = 0; frameIndex < pageCount; frameIndex++) {
+                if (!checkpointedPages.contains(frameIndex)) {
+                    pagesToOcr.add(frameIndex);
+                }
+            }
+        } else {
+            try (PDDocument document = loadPdf(file)) {
+                pageCount = document.getNumberOfPages();
+                for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                    if (checkpointedPages.contains(pageIndex)) {
+                        continue;
+                    }
+                    String pageText = batch.isHybridExtraction() ? pdfTextLayerAnalyzer.extractUsablePageText(document, pageIndex) : null;
+                    if (pageText != null) {
+                        checkpoint(checkpointKey, new OcrPageResult(pageIndex, 0, pageText));
+                    } else {
+                        pagesToOcr.add(pageIndex);
+                    }
+                }
+            }
+        }
+        file.setPageCount(pageCount);
+        ocrBatchFileRepository.save(file);
+        if (pagesToOcr.isEmpty()) {
+            assemble(batch, file);
+            return;
+        }
+        remainingPages.put(file.getId(), new AtomicInteger(pagesToOcr.size()));
+        for (int from = 0; from < pagesToOcr.size(); from += pagesPerTask) {
+            List<Integer> pageIndices = List.copyOf(pagesToOcr.subList(from, Math.min(from + pagesPerTask, pagesToOcr.size())));
+            submitTask(batch, file, () -> recognizePages(batch, file, pageIndices));
+        }
+    }
+
+    /**
+     * Recognizes some pages of a PDF or frames of a TIFF and checkpoints them; the task that finishes the last page
+     * assembles the file. The PDF is loaded by the first page task of the file and kept open for the others until
+     * the file finishes, so it is parsed once rather than once per task. Tasks of a file take turns on the document.
+     * A TIFF only has its frame directory read on opening, so each task opens a reader of its own.
+     */
+    private void recognizePages(OcrBatch batch, OcrBatchFile file, List<Integer> pageIndices) throws Exception {
+        String checkpointKey = checkpointKey(file);
+        OcrOptions options = OcrOptions.of(batch.getLanguage()).withProfile(batch.getProfile());
+        if (TiffFrameReader.isTiff(file.getOriginalFilename())) {
+            try (TiffFrameReader frames = new TiffFrameReader(new File(file.getSourcePath()))) {
+                for (OcrPageResult pageResult : ocrPipeline.process(frames, pageIndices, options)) {
+                    checkpoint(checkpointKey, pageResult);
+                }
+            }
+        } else {
+            OpenPdf openPdf = openPdfs.computeIfAbsent(file.getId(), id -> new OpenPdf());
+            openPdf.lock.lock();
+            try {
+                if (!isRunning(file)) {
+                    // The file finished while this task waited; its document is closed by finishFile
+                    openPdfs.remove(file.getId(), openPdf);
+                    openPdf.close();
+                    return;
+                }
+                for (OcrPageResult pageResult : ocrPipeline.process(openPdf.load(file), pageIndices, options)) {
+                    checkpoint(checkpointKey, pageResult);
+                }
+            } finally {
+                openPdf.lock.unlock();
+            }
+        }
+        AtomicInteger remaining = remainingPages.get(file.getId());
+        if (remaining != null && remaining.addAndGet(-pageIndices.size()) == 0) {
+            assemble(batch, file);
+        }
+    }
+
+    private void checkpoint(String checkpointKey, OcrPageResult pageResult) {
+        if (!ocrCheckpointStore.save(checkpointKey, pageResult)) {
+            throw new IllegalStateException("Could not checkpoint page " + (pageResult.getPageIndex() + 1));
+        }
+    }
+
+    /**
+     * Saves the text of a file whose pages are all checkpointed as an OCR document and completes the file.
+     */
+    private void assemble(OcrBatch batch, OcrBatchFile file) {
+        Map<Integer, String> checkpointedPages = ocrCheckpointStore.load(checkpointKey(file));
+        String[] pageTexts = new String[file.getPageCount()];
+        for (int pageIndex = 0; pageIndex < pageTexts.length; pageIndex++) {
+            pageTexts[pageIndex] = checkpointedPages.get(pageIndex);
+            if (pageTexts[pageIndex] == null) {
+                throw new IllegalStateException("No text recorded for page " + (pageIndex + 1));
+            }
+        }
+        OcrTextDocument document = new OcrTextDocument(file.getOriginalFilename(), OcrService.joinPageTexts(pageTexts), batch.getLanguage());
+        document.setLineConfidences(LineConfidences.join(pageTexts, ocrCheckpointStore.loadLineConfidences(checkpointKey(file))));
+        document = ocrTextDocumentRepository.save(document);
+        file.setResultDocumentId(document.getId());
+        finishFile(batch, file, OcrBatchFile.Status.COMPLETED, null);
+    }
+
+    /**
+     * Records the final status of a file, removes its source file and checkpoints and completes the batch
+     * when this was its last running file. Only the first call for a file has an effect.
+     */
+    private void finishFile(OcrBatch batch, OcrBatchFile file, OcrBatchFile.Status status, String errorMessage) {
+        synchronized (file) {
+            if (file.getStatus() != OcrBatchFile.Status.RUNNING) {
+                return;
+            }
+            file.setStatus(status);
+            file.setErrorMessage(errorMessage != null && errorMessage.length() > MAX_ERROR_LENGTH
+                    ? errorMessage.substring(0, MAX_ERROR_LENGTH) : errorMessage);
+            ocrBatchFileRepository.save(file);
+        }
+        remainingPages.remove(file.getId());
+        closePdf(file);
+        ocrCheckpointStore.delete(checkpointKey(file));
+        try {
+            Files.deleteIfExists(Path.of(file.getSourcePath()));
+        } catch (IOException e) {
+            logger.warn("Could not delete the source file {} of OCR batch {}: {}", file.getSourcePath(), batch.getId(), e.getMessage());
+        }
+        completeBatchIfDone(batch);
+    }
+
+    private synchronized void completeBatchIfDone(OcrBatch batch) {
+        if (batch.getStatus() != OcrBatch.Status.RUNNING
+                || ocrBatchFileRepository.countByBatchIdAndStatus(batch.getId(), OcrBatchFile.Status.RUNNING) > 0) {
+            return;
+        }
+        batch.setStatus(OcrBatch.Status.COMPLETED);
+        ocrBatchRepository.save(batch);
+        long failedFiles = ocrBatchFileRepository.countByBatchIdAndStatus(batch.getId(), OcrBatchFile.Status.FAILED);
+        logger.info("Completed OCR batch {}: {} files, {} failed", batch.getId(), batch.getFileCount(), failedFiles);
+        deleteDirectory(batchDirectory.resolve(batch.getId()));
+    }
+
+    /**
+     * Extracts the supported entries of a ZIP archive into the batch directory. Entries are written under
+     * generated names, so entry paths can never point outside the directory.
+     */
+    private void extractArchive(SpooledUpload upload, String batchId, Path directory, List<OcrBatchFile> files,
+                                long[] extractedBytes) throws IOException {
+        int filesBefore = files.size();
+        try (ZipFile archive = new ZipFile(upload.getFile(), StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = archive.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entryName(entry.getName());
+                if (entry.isDirectory() || name == null || !isSupportedFile(name)) {
+                    continue;
+                }
+                checkFileLimit(files);
+                Path source = directory.resolve(files.size() + "_" + safeName(name));
+                try (InputStream in = archive.getInputStream(entry);
+                     OutputStream out = Files.newOutputStream(source)) {
+                    extractedBytes[0] += copyAtMost(in, out, maxExtractedBytes - extractedBytes[0]);
+                }
+                files.add(new OcrBatchFile(batchId, files.size(), name, source.toString()));
+            }
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Not a readable ZIP archive: " + upload.getOriginalFilename(), e);
+        }
+        logger.debug("Extracted {} files from ZIP archive {} for OCR batch {}", files.size() - filesBefore,
+                upload.getOriginalFilename(), batchId);
+    }
+
+    /**
+     * Copies a stream, refusing to write more than the limit (a guard against ZIP bombs).
+     */
+    private long copyAtMost(InputStream in, OutputStream out, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long copied = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            copied += read;
+            if (copied > limit) {
+                throw new IllegalArgumentException("The ZIP archives of the batch expand to more than "
+                        + maxExtractedBytes / (1024 * 1024) + " MB.");
+            }
+            out.write(buffer, 0, read);
+        }
+        return copied;
+    }
+
+    private void checkFileLimit(List<OcrBatchFile> files) {
+        if (files.size() >= maxFiles) {
+            throw new IllegalArgumentException("A batch may contain at most " + maxFiles + " files.");
+        }
+    }
+
+    /**
+     * The normalized path of an archive entry, never leading above the archive root, or null for entries
+     * that are archive metadata (macOS resource forks, hidden files).
+     */
+    static String entryName(String entryPath) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : entryPath.replace('\\', '/').split("/")) {
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+                continue;
+            }
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("__MACOSX")) {
+                return null;
+            }
+            segments.add(segment);
+        }
+        if (segments.isEmpty() || segments.get(segments.size() - 1).startsWith(".")) {
+            return null;
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * The name of a file's result in the results archive: its path with a {@code .txt} extension.
+     */
+    static String resultEntryName(String originalFilename) {
+        String name = entryName(originalFilename);
+        if (name == null) {
+            name = "document";
+        }
+        int extension = name.lastIndexOf('.');
+        return (extension > name.lastIndexOf('/') + 1 ? name.substring(0, extension) : name) + ".txt";
+    }
+
+    /**
+     * Numbers a name that is already taken, e.g. {@code scan (2).txt}.
+     */
+    static String uniqueEntryName(String name, Set<String> usedNames) {
+        String unique = name;
+        String base = name.substring(0, name.length() - ".txt".length());
+        for (int number = 2; !usedNames.add(unique); number++) {
+            unique = base + " (" + number + ").txt";
+        }
+        return unique;
+    }
+
+    private static boolean isRunning(OcrBatchFile file) {
+        synchronized (file) {
+            return file.getStatus() == OcrBatchFile.Status.RUNNING;
+        }
+    }
+
+    private void closePdf(OcrBatchFile file) {
+        OpenPdf openPdf = openPdfs.remove(file.getId());
+        if (openPdf == null) {
+            return;
+        }
+        openPdf.lock.lock();
+        try {
+            openPdf.close();
+        } finally {
+            openPdf.lock.unlock();
+        }
+    }
+
+    private static String checkpointKey(OcrBatchFile file) {
+        return "batch-file-" + file.getId();
+    }
+
+    private static PDDocument loadPdf(OcrBatchFile file) throws IOException {
+        return PDDocument.load(new File(file.getSourcePath()), MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    /**
+     * Keeps the extension and a readable part of the name, without path separators or other unsafe characters.
+     */
+    private static String safeName(String filename) {
+        String name = filename.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.length() <= MAX_NAME_LENGTH ? name : name.substring(name.length() - MAX_NAME_LENGTH);
+    }
+
+    private static void deleteDirectory(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete OCR batch directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Tasks interrupted by the scheduler's shutdown leave their files running, to resume on the next start
+        shuttingDown = true;
+        // Documents still in use are left to their tasks, which end with the scheduler
+        for (OpenPdf openPdf : openPdfs.values()) {
+            if (openPdf.lock.tryLock()) {
+                try {
+                    openPdf.close();
+                } finally {
+                    openPdf.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * The PDF of a batch file, loaded once for all of its page tasks. PDFBox documents must not be shared
+     * between threads, so the document is only used, loaded and closed while holding the lock.
+     */
+    private static final class OpenPdf {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private PDDocument document;
+
+        private PDDocument load(OcrBatchFile file) throws IOException {
+            if (document == null) {
+                document = loadPdf(file);
+            }
+            return document;
+        }
+
+        private void close() {
+            if (document == null) {
+                return;
+            }
+            try {
+                document.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the PDF of an OCR batch file: {}", e.getMessage());
+            }
+            document = null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileTask {
+        void run() throws Exception;
+    }
+}
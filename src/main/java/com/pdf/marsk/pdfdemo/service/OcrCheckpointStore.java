@@ -0,0 +1,103 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageCheckpoint;
+import com.pdf.marsk.pdfdemo.repository.OcrPageCheckpointRepository;
+
+/**
+ * Per-page checkpoints of background OCR jobs, keyed by the job's task ID.
+ * Pages are checkpointed as they leave the pipeline; a resumed job only processes the pages
+ * without a checkpoint. Failing to write a checkpoint is logged but never fails the OCR run,
+ * it only means the page is recognized again after a restart.
+ */
+@Component
+public class OcrCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrCheckpointStore.class);
+
+    private final OcrPageCheckpointRepository checkpointRepository;
+
+    @Autowired
+    public OcrCheckpointStore(OcrPageCheckpointRepository checkpointRepository) {
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    /**
+     * @param jobId The job's task ID
+     * @return The text of every checkpointed page by page index
+     */
+    public Map<Integer, String> load(String jobId) {
+        Map<Integer, String> pageTexts = new HashMap<>();
+        for (OcrPageCheckpoint checkpoint : checkpointRepository.findByJobIdOrderByPageIndexAsc(jobId)) {
+            pageTexts.put(checkpoint.getPageIndex(), checkpoint.getPageText());
+        }
+        return pageTexts;
+    }
+
+    /**
+     * @param jobId The job's task ID
+     * @return The line confidences of every checkpointed page that has them, by page index
+     */
+    public Map<Integer, List<Float>> loadLineConfidences(String jobId) {
+        Map<Integer, List<Float>> lineConfidences = new HashMap<>();
+        for (OcrPageCheckpoint checkpoint : checkpointRepository.findByJobIdOrderByPageIndexAsc(jobId)) {
+            List<Float> pageConfidences = LineConfidences.decode(checkpoint.getLineConfidences());
+            if (!pageConfidences.isEmpty()) {
+                lineConfidences.put(checkpoint.getPageIndex(), pageConfidences);
+            }
+        }
+        return lineConfidences;
+    }
+
+    /**
+     * @param jobId The job's task ID
+     * @param afterId The ID of the last checkpoint already seen (0 for all)
+     * @return The checkpoints written after that one, in the order they were written
+     */
+    public List<OcrPageCheckpoint> loadAfter(String jobId, long afterId) {
+        return checkpointRepository.findByJobIdAndIdGreaterThanOrderByIdAsc(jobId, afterId);
+    }
+
+    /**
+     * Checkpoints a finished page.
+     *
+     * @param jobId The job's task ID
+     * @param pageResult The finished page
+     * @return Whether the checkpoint was written
+     */
+    public boolean save(String jobId, OcrPageResult pageResult) {
+        try {
+            OcrPageCheckpoint checkpoint = new OcrPageCheckpoint(jobId, pageResult.getPageIndex(),
+                    pageResult.getText() != null ? pageResult.getText() : "",
+                    pageResult.getConfidence(), pageResult.getProcessingMillis());
+            if (!pageResult.getLineConfidences().isEmpty()) {
+                checkpoint.setLineConfidences(LineConfidences.encode(pageResult.getLineConfidences()));
+            }
+            checkpointRepository.save(checkpoint);
+            return true;
+        } catch (DataAccessException e) {
+            logger.warn("Could not checkpoint page {} of OCR job {}: {}", pageResult.getPageIndex() + 1, jobId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Removes the checkpoints of a finished job.
+     */
+    public void delete(String jobId) {
+        try {
+            checkpointRepository.deleteByJobId(jobId);
+        } catch (DataAccessException e) {
+            logger.warn("Could not delete the checkpoints of OCR job {}: {}", jobId, e.getMessage());
+        }
+    }
+}
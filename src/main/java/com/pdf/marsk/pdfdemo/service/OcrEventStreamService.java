@@ -0,0 +1,347 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes OCR task events to browsers over Server-Sent Events, replacing progress polling.
+ * <p>
+ * Three events are sent per task:
+ * <ul>
+ *   <li>{@code progress} – current page, total pages, percentage and status message</li>
+ *   <li>{@code page} – the text of a page as soon as it has been recognized (or taken from the text layer)</li>
+ *   <li>{@code complete} – success flag and status message; the stream is closed afterwards</li>
+ * </ul>
+ * Pages finished before a client subscribes are replayed on subscription, so reloading the page,
+ * reconnecting or connecting late does not lose any text. Buffered pages are dropped once the task
+ * completes, after which the full result is available through {@link ProgressTrackingService}; the
+ * completion itself is kept for {@code ocr.events.retainCompletedMs} so reconnecting clients still
+ * receive it, then the stream is closed.
+ * <p>
+ * All stream state is owned by a single event thread, which keeps events in order and never blocks
+ * the OCR pipeline threads that publish them. Events are written to the clients by a small sender pool
+ * through a bounded queue per subscriber, so a slow client only delays its own events; a client that
+ * falls further behind than {@code ocr.events.subscriberQueueSize} events is disconnected and replays
+ * the finished pages when its browser reconnects.
+ */
+@Service
+public class OcrEventStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrEventStreamService.class);
+
+    static final String PROGRESS_EVENT = "progress";
+    static final String PAGE_EVENT = "page";
+    static final String COMPLETE_EVENT = "complete";
+
+    private final long emitterTimeoutMs;
+    private final long retainCompletedMs;
+    private final int subscriberQueueSize;
+    private final Map<String, TaskStream> streams = new HashMap<>(); // only accessed on the event thread
+    private final ScheduledExecutorService eventExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ocr-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senderExecutor;
+
+    @Autowired
+    public OcrEventStreamService(@Value("${ocr.events.emitterTimeoutMs:1800000}") long emitterTimeoutMs,
+                                 @Value("${ocr.events.retainCompletedMs:60000}") long retainCompletedMs,
+                                 @Value("${ocr.events.subscriberQueueSize:256}") int subscriberQueueSize,
+                                 @Value("${ocr.events.senderThreads:4}") int senderThreads) {
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.retainCompletedMs = Math.max(0, retainCompletedMs);
+        this.subscriberQueueSize = Math.max(1, subscriberQueueSize);
+        this.senderExecutor = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "ocr-events-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts buffering events for a task so clients can subscribe to it.
+     */
+    public void open(String taskId) {
+        dispatch(() -> streams.putIfAbsent(taskId, new TaskStream()));
+    }
+
+    /**
+     * Subscribes to the events of a task. Pages already finished, the latest progress and,
+     * for completed tasks, the completion event are sent first.
+     *
+     * @param taskId The task ID
+     * @return The emitter to return from the controller
+     */
+    public SseEmitter subscribe(String taskId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> dispatch(() -> unsubscribe(taskId, emitter)));
+        emitter.onTimeout(() -> dispatch(() -> unsubscribe(taskId, emitter)));
+        emitter.onError(error -> dispatch(() -> unsubscribe(taskId, emitter)));
+        dispatch(() -> {
+            TaskStream stream = streams.get(taskId);
+            if (stream == null) {
+                emitter.completeWithError(new IllegalStateException("No event stream for task " + taskId));
+                return;
+            }
+            List<Map<String, Object>> replay = new ArrayList<>(stream.pages);
+            replay.sort(Comparator.comparing(page -> (Integer) page.get("pageIndex")));
+            // The replay does not count against the subscriber's queue bound, only events that pile up behind it
+            Subscriber subscriber = new Subscriber(emitter, replay.size() + 2 + subscriberQueueSize);
+            replay.forEach(page -> subscriber.offer(PAGE_EVENT, page));
+            if (stream.lastProgress != null) {
+                subscriber.offer(PROGRESS_EVENT, stream.lastProgress);
+            }
+            if (stream.completion != null) {
+                subscriber.offer(COMPLETE_EVENT, stream.completion);
+                subscriber.finish();
+                return;
+            }
+            stream.subscribers.add(subscriber);
+        });
+        return emitter;
+    }
+
+    /**
+     * Publishes the current progress of a task.
+     */
+    public void publishProgress(String taskId, int currentPage, int totalPages, int progressPercent, String message) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("currentPage", currentPage);
+        progress.put("totalPages", totalPages);
+        progress.put("progressPercent", progressPercent);
+        progress.put("message", message);
+        dispatch(() -> {
+            TaskStream stream = streams.get(taskId);
+            if (stream != null && stream.completion == null) {
+                stream.lastProgress = progress;
+                broadcast(stream, PROGRESS_EVENT, progress);
+            }
+        });
+    }
+
+    /**
+     * Publishes the text of a finished page.
+     *
+     * @param taskId The task ID
+     * @param pageIndex The zero-based page index
+     * @param text The page text
+     */
+    public void publishPage(String taskId, int pageIndex, String text) {
+        Map<String, Object> page = new HashMap<>();
+        page.put("pageIndex", pageIndex);
+        page.put("pageNumber", pageIndex + 1);
+        page.put("text", text != null ? text : "");
+        dispatch(() -> {
+            TaskStream stream = streams.get(taskId);
+            if (stream != null && stream.completion == null) {
+                stream.pages.add(page);
+                broadcast(stream, PAGE_EVENT, page);
+            }
+        });
+    }
+
+    /**
+     * Publishes the completion of a task and closes its subscribers' streams. The stream itself is
+     * closed after {@code ocr.events.retainCompletedMs}, until when late subscribers still receive the completion.
+     * The result text itself is not sent; clients fetch it from the result page.
+     */
+    public void publishComplete(String taskId, boolean success, String message) {
+        Map<String, Object> completion = new HashMap<>();
+        completion.put("success", success);
+        completion.put("message", message);
+        dispatch(() -> {
+            TaskStream stream = streams.get(taskId);
+            if (stream == null || stream.completion != null) {
+                return;
+            }
+            stream.completion = completion;
+            stream.pages.clear();
+            broadcast(stream, COMPLETE_EVENT, completion);
+            stream.subscribers.forEach(Subscriber::finish);
+            stream.subscribers.clear();
+            try {
+                eventExecutor.schedule(() -> close(taskId), retainCompletedMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("OCR event stream is shut down, task {} not scheduled for closing", taskId);
+            }
+        });
+    }
+
+    /**
+     * Drops the stream state of a task, closing any remaining subscribers.
+     */
+    public void close(String taskId) {
+        dispatch(() -> {
+            TaskStream stream = streams.remove(taskId);
+            if (stream != null) {
+                stream.subscribers.forEach(Subscriber::finish);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventExecutor.shutdownNow();
+        senderExecutor.shutdownNow();
+    }
+
+    private void unsubscribe(String taskId, SseEmitter emitter) {
+        TaskStream stream = streams.get(taskId);
+        if (stream != null) {
+            stream.subscribers.removeIf(subscriber -> subscriber.emitter == emitter);
+        }
+    }
+
+    private void broadcast(TaskStream stream, String eventName, Map<String, Object> data) {
+        stream.subscribers.removeIf(subscriber -> !subscriber.offer(eventName, data));
+    }
+
+    /**
+     * Sends an event, returning false if the client has gone away.
+     */
+    private boolean send(SseEmitter emitter, String eventName, Map<String, Object> data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping OCR event subscriber: {}", e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void dispatch(Runnable action) {
+        try {
+            eventExecutor.execute(() -> {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Error publishing OCR event: {}", e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("OCR event stream is shut down, event dropped");
+        }
+    }
+
+    private record Event(String name, Map<String, Object> data) {
+    }
+
+    /**
+     * A subscribed client with its own bounded event queue, drained in order by one sender thread at a time.
+     */
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final int capacity;
+        private final Deque<Event> pending = new ArrayDeque<>(); // guarded by this
+        private boolean draining;
+        private boolean finishing;
+        private boolean dropped;
+
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Queues an event for the client, returning false once the client has been dropped.
+         */
+        synchronized boolean offer(String eventName, Map<String, Object> data) {
+            if (dropped || finishing) {
+                return !dropped;
+            }
+            if (pending.size() >= capacity) {
+                logger.debug("Dropping OCR event subscriber that fell {} events behind", pending.size());
+                drop();
+                emitter.completeWithError(new IllegalStateException("Event subscriber fell behind"));
+                return false;
+            }
+            pending.add(new Event(eventName, data));
+            scheduleDrain();
+            return true;
+        }
+
+        /**
+         * Completes the client's stream once the queued events have been sent.
+         */
+        synchronized void finish() {
+            if (!dropped && !finishing) {
+                finishing = true;
+                scheduleDrain();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = pending.poll();
+                    if (event == null) {
+                        draining = false;
+                        if (!finishing || dropped) {
+                            return;
+                        }
+                        dropped = true;
+                    }
+                }
+                if (event == null) {
+                    emitter.complete();
+                    return;
+                }
+                if (!send(emitter, event.name(), event.data())) {
+                    synchronized (this) {
+                        drop();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void scheduleDrain() {
+            if (draining) {
+                return;
+            }
+            try {
+                senderExecutor.execute(this);
+                draining = true;
+            } catch (RejectedExecutionException e) {
+                drop();
+            }
+        }
+
+        private void drop() {
+            dropped = true;
+            draining = false;
+            pending.clear();
+        }
+    }
+
+    private static final class TaskStream {
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final List<Map<String, Object>> pages = new ArrayList<>();
+        private Map<String, Object> lastProgress;
+        private Map<String, Object> completion;
+    }
+}
@@ -0,0 +1,272 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import com.pdf.marsk.pdfdemo.model.OcrJob;
+import com.pdf.marsk.pdfdemo.repository.OcrJobRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs background OCR jobs so they survive restarts.
+ * <p>
+ * A submitted upload is moved into the job directory and the job is recorded in {@code ocr_jobs}.
+ * While it runs, every finished page is checkpointed through the {@link OcrCheckpointStore}.
+ * On startup, jobs that were still running are resumed under their original task ID and only the
+ * pages without a checkpoint are processed. Finished jobs drop their source file and checkpoints;
+ * the extracted text is kept as an OCR document like any other result.
+ * <p>
+ * Each job is owned by the node that runs it (identified like the queue workers, see {@link OcrQueueService#getNodeId()};
+ * set {@code ocr.queue.nodeId} to keep the identity across restarts), which renews the job's lease while it is running. A node only resumes its own jobs from an earlier run and
+ * jobs whose lease has expired, so restarting one node never re-runs or fails the jobs of live peers; a job's
+ * source file is only considered missing once the job is really orphaned.
+ * With the page queue enabled, PDF jobs are handed to the {@link OcrQueueService}, which spreads their
+ * pages over all nodes and finishes the job itself.
+ * <p>
+ * Jobs run in the interactive PDF class of the {@link OcrPageScheduler}, so the class's concurrency cap limits how
+ * many run at once, and new jobs are refused while its queue is full.
+ */
+@Service
+public class OcrJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobService.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OcrService ocrService;
+    private final OcrJobRepository ocrJobRepository;
+    private final OcrCheckpointStore ocrCheckpointStore;
+    private final ProgressTrackingService progressTrackingService;
+    private final OcrQueueService ocrQueueService;
+    private final OcrPageScheduler pageScheduler;
+    private final Path jobDirectory;
+    private final boolean resumeOnStartup;
+    private final long leaseTimeoutMs;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final ScheduledExecutorService leaseExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ocr-job-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean shuttingDown;
+
+    @Autowired
+    public OcrJobService(OcrService ocrService,
+                         OcrJobRepository ocrJobRepository,
+                         OcrCheckpointStore ocrCheckpointStore,
+                         ProgressTrackingService progressTrackingService,
+                         OcrQueueService ocrQueueService,
+                         OcrPageScheduler pageScheduler,
+                         @Value("${ocr.jobs.dir:ocr-jobs}") String jobDirectory,
+                         @Value("${ocr.jobs.resumeOnStartup:true}") boolean resumeOnStartup,
+                         @Value("${ocr.jobs.leaseTimeoutMs:120000}") long leaseTimeoutMs) {
+        this.ocrService = ocrService;
+        this.ocrJobRepository = ocrJobRepository;
+        this.ocrCheckpointStore = ocrCheckpointStore;
+        this.progressTrackingService = progressTrackingService;
+        this.ocrQueueService = ocrQueueService;
+        this.pageScheduler = pageScheduler;
+        this.jobDirectory = Path.of(jobDirectory).toAbsolutePath();
+        this.resumeOnStartup = resumeOnStartup;
+        this.leaseTimeoutMs = Math.max(1000, leaseTimeoutMs);
+    }
+
+    /**
+     * Starts a background OCR job for a spooled upload. The upload's file is moved into the job directory,
+     * so the caller's {@link SpooledUpload#close()} no longer affects it.
+     *
+     * @param upload The spooled upload
+     * @param language The OCR language
+     * @param hybridExtraction Whether to use the PDF text layer where possible
+     * @return The task ID, which is also the job ID
+     * @throws IOException If the upload cannot be moved into the job directory
+     * @throws OcrSchedulerFullException If the scheduler's queue for PDF jobs is full
+     */
+    public String submit(SpooledUpload upload, String language, boolean hybridExtraction) throws IOException {
+        return submit(upload, language, null, hybridExtraction);
+    }
+
+    /**
+     * Starts a background OCR job for a spooled upload with an engine profile.
+     *
+     * @param upload The spooled upload
+     * @param language The OCR language
+     * @param profile The name of the engine profile, or null for the default profile
+     * @param hybridExtraction Whether to use the PDF text layer where possible
+     * @return The task ID, which is also the job ID
+     * @throws IOException If the upload cannot be moved into the job directory
+     * @throws OcrSchedulerFullException If the scheduler's queue for PDF jobs is full
+     */
+    public String submit(SpooledUpload upload, String language, String profile, boolean hybridExtraction) throws IOException {
+        pageScheduler.checkCapacity(OcrPageScheduler.Priority.INTERACTIVE_PDF);
+        String taskId = progressTrackingService.createOcrTask(upload.getOriginalFilename(), 0, language);
+        progressTrackingService.updateOcrTaskProgress(taskId, 0, "Preparing OCR processing...");
+
+        Files.createDirectories(jobDirectory);
+        Path source = jobDirectory.resolve(taskId + "_" + upload.getPath().getFileName());
+        Files.move(upload.getPath(), source, StandardCopyOption.REPLACE_EXISTING);
+        OcrJob job;
+        try {
+            OcrJob newJob = new OcrJob(taskId, upload.getOriginalFilename(), source.toString(),
+                    upload.getContentType(), language, hybridExtraction);
+            newJob.setProfile(profile);
+            newJob.setOwnerNode(ocrQueueService.getNodeId());
+            newJob.setLeaseRenewedAt(LocalDateTime.now());
+            job = ocrJobRepository.save(newJob);
+        } catch (DataAccessException e) {
+            Files.deleteIfExists(source);
+            progressTrackingService.completeTask(taskId, false, "Error: could not record the OCR job");
+            throw e;
+        }
+        schedule(job);
+        return taskId;
+    }
+
+    /**
+     * Starts renewing the leases of this node's jobs and resumes the jobs this node was running when it stopped,
+     * as well as jobs whose lease has expired. Jobs orphaned later, when a peer stops, are taken over periodically.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        long renewIntervalMs = Math.max(1, leaseTimeoutMs / 3);
+        leaseExecutor.scheduleWithFixedDelay(this::renewLeases, renewIntervalMs, renewIntervalMs, TimeUnit.MILLISECONDS);
+        if (!resumeOnStartup) {
+            return;
+        }
+        resumeJobs(startedAt);
+        leaseExecutor.scheduleWithFixedDelay(this::resumeOrphanedJobs, leaseTimeoutMs, leaseTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void resumeOrphanedJobs() {
+        try {
+            resumeJobs(null);
+        } catch (RuntimeException e) {
+            logger.warn("Could not look for orphaned OCR jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Takes over and resumes the running jobs whose lease has expired and, if {@code ownBefore} is set, the jobs
+     * this node renewed before then.
+     */
+    private void resumeJobs(LocalDateTime ownBefore) {
+        String nodeId = ocrQueueService.getNodeId();
+        List<OcrJob> unfinishedJobs = ocrJobRepository.findByStatusOrderByCreatedAtAsc(OcrJob.Status.RUNNING);
+        for (OcrJob job : unfinishedJobs) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiredBefore = now.minusNanos(TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMs));
+            if (ocrJobRepository.takeOver(job.getId(), nodeId, now, expiredBefore,
+                    ownBefore != null ? ownBefore : expiredBefore, OcrJob.Status.RUNNING) == 0) {
+                continue; // Still running on a live node, or just taken over by another one
+            }
+            if (!Files.isReadable(Path.of(job.getSourcePath()))) {
+                logger.warn("Cannot resume OCR job {}: source file {} is missing", job.getId(), job.getSourcePath());
+                finish(job, OcrJob.Status.FAILED, "Source file missing on resume");
+                continue;
+            }
+            logger.info("Resuming OCR job {} for {} on node {}", job.getId(), job.getOriginalFilename(), nodeId);
+            progressTrackingService.restoreOcrTask(job.getId(), job.getOriginalFilename(), job.getLanguage());
+            progressTrackingService.updateOcrTaskProgress(job.getId(), 0, "Resuming OCR processing after restart...");
+            job.setResumeCount(job.getResumeCount() + 1);
+            schedule(ocrJobRepository.save(job));
+        }
+    }
+
+    private void renewLeases() {
+        try {
+            ocrJobRepository.renewLeases(ocrQueueService.getNodeId(), LocalDateTime.now(), OcrJob.Status.RUNNING);
+        } catch (RuntimeException e) {
+            logger.warn("Could not renew the leases of OCR jobs: {}", e.getMessage());
+        }
+    }
+
+    private void schedule(OcrJob job) {
+        pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_PDF, job.getId(), () -> {
+            run(job);
+            return null;
+        });
+    }
+
+    private void run(OcrJob job) {
+        String taskId = job.getId();
+        Path sourcePath = Path.of(job.getSourcePath());
+        try {
+            if (ocrQueueService.isEnabled() && job.getOriginalFilename().toLowerCase().endsWith(".pdf")) {
+                // The pages are recognized by the queue workers of all nodes, and the queue finishes the job
+                ocrQueueService.distribute(job);
+                return;
+            }
+            SpooledUpload source = new SpooledUpload(sourcePath, job.getOriginalFilename(), job.getContentType(), Files.size(sourcePath));
+            // A detected language is saved before recognition starts, as on the queue path, so a resumed job
+            // recognizes its remaining pages in the language of the pages already checkpointed
+            OcrOptions options = OcrOptions.of(job.getLanguage()).withProfile(job.getProfile()).withTaskId(taskId)
+                    .withHybridExtraction(job.isHybridExtraction())
+                    .withLanguageListener(detectedLanguage -> {
+                        job.setLanguage(detectedLanguage);
+                        job.setDetectedLanguage(detectedLanguage);
+                        ocrJobRepository.save(job);
+                    });
+            String result = ocrService.performOcr(source, options);
+            progressTrackingService.completeTask(taskId, true, result);
+            finish(job, OcrJob.Status.COMPLETED, null);
+        } catch (Exception e) {
+            if (shuttingDown) {
+                // Interrupted by the shutdown: the job stays RUNNING and resumes from its checkpoints
+                logger.info("OCR job {} interrupted by shutdown, it will resume on the next start", taskId);
+                return;
+            }
+            logger.error("Error in OCR job {}: {}", taskId, e.getMessage(), e);
+            try {
+                progressTrackingService.completeTask(taskId, false, "Error: " + e.getMessage());
+            } catch (Exception ex) {
+                logger.warn("Could not update task status due to application context being closed", ex);
+            }
+            finish(job, OcrJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Records the final status of a job and removes its source file and checkpoints.
+     */
+    private void finish(OcrJob job, OcrJob.Status status, String errorMessage) {
+        job.setStatus(status);
+        job.setErrorMessage(errorMessage != null && errorMessage.length() > MAX_ERROR_LENGTH
+                ? errorMessage.substring(0, MAX_ERROR_LENGTH) : errorMessage);
+        try {
+            ocrJobRepository.save(job);
+        } catch (DataAccessException e) {
+            logger.warn("Could not record the status of OCR job {}: {}", job.getId(), e.getMessage());
+            return; // Keep the file and checkpoints, so the job can still be resumed
+        }
+        ocrCheckpointStore.delete(job.getId());
+        try {
+            Files.deleteIfExists(Path.of(job.getSourcePath()));
+        } catch (IOException e) {
+            logger.warn("Could not delete the source file of OCR job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The scheduler stops the running jobs; jobs interrupted now stay RUNNING and resume on the next start,
+        // or on another node once their lease has expired
+        shuttingDown = true;
+        leaseExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,216 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Picks the OCR language of a document when the user asks for automatic detection.
+ * <p>
+ * A quick pre-pass collects a text sample: the usable text layer of the first pages of a PDF, or else those pages
+ * rendered at a low DPI, or an image downscaled, recognized on a handle loaded with every candidate language.
+ * The sample is scored with character n-gram models of the candidates (trained on the texts in
+ * {@code language-profiles/<code>.txt}). The best-scoring language is used for the full run; when the runner-up
+ * scores within {@code mixedMargin} the document is taken to mix both and both are used, best first. Samples too
+ * short to tell fall back to the default language.
+ */
+@Component
+public class OcrLanguageDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrLanguageDetector.class);
+
+    /**
+     * The language requested to have it detected.
+     */
+    public static final String AUTO = "auto";
+
+    // Images are downscaled to this size on the long side; enough for body text to stay legible
+    private static final int SAMPLE_MAX_SIDE = 1600;
+    // Samples with fewer letters are not scored
+    private static final int MIN_SAMPLE_LETTERS = 20;
+
+    private final TesseractPool tesseractPool;
+    private final PdfTextLayerAnalyzer pdfTextLayerAnalyzer;
+    private final NgramLanguageModels models;
+    private final String sampleLanguage;
+    private final String fallbackLanguage;
+    private final int samplePages;
+    private final int sampleDpi;
+    private final int minLetters;
+    private final double mixedMargin;
+
+    @Autowired
+    public OcrLanguageDetector(TesseractPool tesseractPool,
+                               PdfTextLayerAnalyzer pdfTextLayerAnalyzer,
+                               @Value("${ocr.language.candidates:eng,ita}") String candidates,
+                               @Value("${ocr.language.fallback:eng}") String fallbackLanguage,
+                               @Value("${ocr.language.samplePages:3}") int samplePages,
+                               @Value("${ocr.language.sampleDpi:150}") int sampleDpi,
+                               @Value("${ocr.language.minLetters:200}") int minLetters,
+                               @Value("${ocr.language.mixedMargin:0.25}") double mixedMargin) throws IOException {
+        this(tesseractPool, pdfTextLayerAnalyzer, new NgramLanguageModels(loadTrainingTexts(candidates)),
+                fallbackLanguage, samplePages, sampleDpi, minLetters, mixedMargin);
+    }
+
+    public OcrLanguageDetector(TesseractPool tesseractPool, PdfTextLayerAnalyzer pdfTextLayerAnalyzer,
+                               NgramLanguageModels models, String fallbackLanguage, int samplePages, int sampleDpi,
+                               int minLetters, double mixedMargin) {
+        this.tesseractPool = tesseractPool;
+        this.pdfTextLayerAnalyzer = pdfTextLayerAnalyzer;
+        this.models = models;
+        this.sampleLanguage = String.join("+", models.getLanguages());
+        this.fallbackLanguage = fallbackLanguage;
+        this.samplePages = Math.max(1, samplePages);
+        this.sampleDpi = sampleDpi;
+        this.minLetters = minLetters;
+        this.mixedMargin = mixedMargin;
+    }
+
+    private static Map<String, String> loadTrainingTexts(String candidates) throws IOException {
+        Map<String, String> trainingTexts = new LinkedHashMap<>();
+        for (String language : candidates.split(",")) {
+            String code = language.trim();
+            if (code.isEmpty()) {
+                continue;
+            }
+            try (InputStream in = OcrLanguageDetector.class.getClassLoader().getResourceAsStream("language-profiles/" + code + ".txt")) {
+                if (in == null) {
+                    throw new IllegalStateException("No language profile for OCR language '" + code + "' (language-profiles/" + code + ".txt)");
+                }
+                trainingTexts.put(code, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return trainingTexts;
+    }
+
+    /**
+     * @return Whether a requested OCR language asks for detection
+     */
+    public static boolean isAuto(String language) {
+        return AUTO.equalsIgnoreCase(language);
+    }
+
+    /**
+     * @return The DPI sample pages are rendered at
+     */
+    public int getSampleDpi() {
+        return sampleDpi;
+    }
+
+    /**
+     * Detects the language of a PDF from its first pages, stopping once the sample is long enough.
+     *
+     * @param document The PDF
+     * @return The detected language set
+     * @throws IOException If a page cannot be read or rendered
+     * @throws TesseractException If a sample page cannot be recognized
+     */
+    public Detection detect(PDDocument document) throws IOException, TesseractException {
+        StringBuilder sample = new StringBuilder();
+        PDFRenderer renderer = new PDFRenderer(document);
+        int pages = Math.min(samplePages, document.getNumberOfPages());
+        for (int pageIndex = 0; pageIndex < pages && letters(sample) < minLetters; pageIndex++) {
+            String pageText = pdfTextLayerAnalyzer.extractUsablePageText(document, pageIndex);
+            if (pageText == null) {
+                BufferedImage image = renderer.renderImageWithDPI(pageIndex, sampleDpi, ImageType.GRAY);
+                pageText = tesseractPool.withHandle(sampleLanguage, tesseract -> tesseract.doOCR(image));
+            }
+            sample.append(pageText).append('\n');
+        }
+        return decide(sample.toString());
+    }
+
+    /**
+     * Detects the language of an image from a downscaled copy.
+     *
+     * @param image The image
+     * @return The detected language set
+     * @throws TesseractException If the sample cannot be recognized
+     */
+    public Detection detect(BufferedImage image) throws TesseractException {
+        BufferedImage sample = downscale(image);
+        return decide(tesseractPool.withHandle(sampleLanguage, tesseract -> tesseract.doOCR(sample)));
+    }
+
+    private static BufferedImage downscale(BufferedImage image) {
+        int longSide = Math.max(image.getWidth(), image.getHeight());
+        if (longSide <= SAMPLE_MAX_SIDE) {
+            return image;
+        }
+        double scale = (double) SAMPLE_MAX_SIDE / longSide;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Picks the language set for a text sample.
+     *
+     * @param sample The sample text
+     * @return The best-scoring language, both best languages if they score too close to tell apart,
+     *         or the fallback language if the sample is too short
+     */
+    public Detection decide(String sample) {
+        int sampleLetters = letters(sample);
+        if (sampleLetters < MIN_SAMPLE_LETTERS) {
+            logger.info("Language sample too short ({} letters), using {}", sampleLetters, fallbackLanguage);
+            return new Detection(fallbackLanguage, Map.of(), sampleLetters);
+        }
+        Map<String, Double> scores = models.score(sample);
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        String language = ranked.get(0).getKey();
+        if (ranked.size() > 1 && ranked.get(0).getValue() - ranked.get(1).getValue() < mixedMargin) {
+            language += "+" + ranked.get(1).getKey();
+        }
+        logger.info("Detected OCR language {} from {} letters (scores {})", language, sampleLetters, scores);
+        return new Detection(language, scores, sampleLetters);
+    }
+
+    private static int letters(CharSequence text) {
+        return (int) text.codePoints().filter(Character::isLetter).count();
+    }
+
+    /**
+     * The outcome of a detection.
+     *
+     * @param language The language set to recognize the document with, e.g. {@code ita} or {@code eng+ita}
+     * @param scores The mean n-gram log-probability of the sample per candidate; empty if the sample was too short
+     * @param sampleLetters The number of letters in the sample
+     */
+    public record Detection(String language, Map<String, Double> scores, int sampleLetters) {
+
+        /**
+         * @return Whether the language was detected rather than defaulted for a too short sample
+         */
+        public boolean isDetected() {
+            return !scores.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Application-wide OCR counters, exposed as JSON by the OCR metrics endpoint.
+ * Counters are cumulative since startup.
+ */
+@Component
+public class OcrMetrics {
+
+    private final HitCounter documentCache = new HitCounter();
+    private final HitCounter pageDedup = new HitCounter();
+    private final LongAdder prepassPages = new LongAdder();
+    private final LongAdder blankPagesSkipped = new LongAdder();
+    private final LongAdder croppedPages = new LongAdder();
+    private final LongAdder tiledPages = new LongAdder();
+    private final LongAdder pageTiles = new LongAdder();
+    private final Map<String, ProfileCounter> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Records a lookup in the whole-document OCR result cache.
+     */
+    public void recordDocumentCacheLookup(boolean hit) {
+        documentCache.record(hit);
+    }
+
+    /**
+     * Records whether a recognizable page could reuse the text of an identical page.
+     */
+    public void recordPageDedupLookup(boolean hit) {
+        pageDedup.record(hit);
+    }
+
+    /**
+     * Records the outcome of the pre-pass over a PDF page.
+     */
+    public void recordPagePrepass(PageContent content) {
+        prepassPages.increment();
+        if (content.isBlank()) {
+            blankPagesSkipped.increment();
+        } else if (content.isCropped()) {
+            croppedPages.increment();
+        }
+    }
+
+    /**
+     * Records an oversized page recognized in tiles.
+     */
+    public void recordPageTiles(int tiles) {
+        tiledPages.increment();
+        pageTiles.add(tiles);
+    }
+
+    /**
+     * Records a page recognized whole with an engine profile, to compare the throughput and confidence of profiles.
+     *
+     * @param profile The profile name
+     * @param recognizeNanos The time spent recognizing the page
+     * @param confidence The page's mean word confidence, or null if unknown
+     */
+    public void recordProfilePage(String profile, long recognizeNanos, Float confidence) {
+        profiles.computeIfAbsent(profile, name -> new ProfileCounter()).record(recognizeNanos, confidence);
+    }
+
+    /**
+     * @return The current counters, grouped by area
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("documentCache", documentCache.snapshot());
+        metrics.put("pageDedup", pageDedup.snapshot());
+        Map<String, Object> prepass = new LinkedHashMap<>();
+        prepass.put("pages", prepassPages.sum());
+        prepass.put("blankSkipped", blankPagesSkipped.sum());
+        prepass.put("cropped", croppedPages.sum());
+        metrics.put("pagePrepass", prepass);
+        Map<String, Object> tiling = new LinkedHashMap<>();
+        tiling.put("pages", tiledPages.sum());
+        tiling.put("tiles", pageTiles.sum());
+        metrics.put("pageTiling", tiling);
+        Map<String, Object> profileStats = new TreeMap<>();
+        profiles.forEach((name, counter) -> profileStats.put(name, counter.snapshot()));
+        metrics.put("profiles", profileStats);
+        return metrics;
+    }
+
+    private static class ProfileCounter {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder recognizeNanos = new LongAdder();
+        private final LongAdder scoredPages = new LongAdder();
+        private final DoubleAdder confidenceSum = new DoubleAdder();
+
+        void record(long nanos, Float confidence) {
+            pages.increment();
+            recognizeNanos.add(nanos);
+            if (confidence != null) {
+                scoredPages.increment();
+                confidenceSum.add(confidence);
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long pageCount = pages.sum();
+            long scored = scoredPages.sum();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("pages", pageCount);
+            values.put("meanRecognizeMs", pageCount == 0 ? 0.0 : recognizeNanos.sum() / 1e6 / pageCount);
+            values.put("meanConfidence", scored == 0 ? null : confidenceSum.sum() / scored);
+            return values;
+        }
+    }
+
+    private static class HitCounter {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        void record(boolean hit) {
+            (hit ? hits : misses).increment();
+        }
+
+        Map<String, Object> snapshot() {
+            long hitCount = hits.sum();
+            long missCount = misses.sum();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("hits", hitCount);
+            values.put("misses", missCount);
+            values.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+            return values;
+        }
+    }
+}
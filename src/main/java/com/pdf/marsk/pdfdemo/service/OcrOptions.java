@@ -0,0 +1,61 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Options of an OCR run through {@link OcrService#performOcr(SpooledUpload, OcrOptions)} or the {@link OcrPipeline}.
+ * Start from {@link #of(String)} and change what differs from the defaults, e.g.
+ * {@code OcrOptions.of("ita").withProfile("invoice").withTaskId(taskId)}.
+ *
+ * @param language The OCR language, or {@link OcrLanguageDetector#AUTO} to detect it (not for the pipeline)
+ * @param profile The name of the {@link OcrProfile} to use, or null for the default profile
+ * @param taskId The task ID for progress tracking, or null
+ * @param hybridExtraction Whether PDF pages with a usable text layer skip OCR (ignored by the pipeline and for images)
+ * @param captureWords Whether the pipeline recognizes the words of each page with their boxes; only the page
+ *                     listener sees them, the results the pipeline returns carry no words
+ * @param languageListener Receives the language detected for {@link OcrLanguageDetector#AUTO} before recognition
+ *                         starts; not called when the language was given or the result came from the cache
+ * @param pageListener Receives each page the pipeline finishes, in completion order, on its persist stage
+ */
+public record OcrOptions(String language, String profile, String taskId, boolean hybridExtraction, boolean captureWords,
+                         Consumer<String> languageListener, Consumer<OcrPageResult> pageListener) {
+
+    private static final Consumer<String> NO_LANGUAGE_LISTENER = detectedLanguage -> { };
+    private static final Consumer<OcrPageResult> NO_PAGE_LISTENER = pageResult -> { };
+
+    /**
+     * @param language The OCR language
+     * @return Options for the default profile, without progress tracking, hybrid extraction, word capture or listeners
+     */
+    public static OcrOptions of(String language) {
+        return new OcrOptions(language, null, null, false, false, NO_LANGUAGE_LISTENER, NO_PAGE_LISTENER);
+    }
+
+    public OcrOptions withLanguage(String language) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+
+    public OcrOptions withProfile(String profile) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+
+    public OcrOptions withTaskId(String taskId) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+
+    public OcrOptions withHybridExtraction(boolean hybridExtraction) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+
+    public OcrOptions withCaptureWords(boolean captureWords) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+
+    public OcrOptions withLanguageListener(Consumer<String> languageListener) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+
+    public OcrOptions withPageListener(Consumer<OcrPageResult> pageListener) {
+        return new OcrOptions(language, profile, taskId, hybridExtraction, captureWords, languageListener, pageListener);
+    }
+}
@@ -0,0 +1,198 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageTask;
+import com.pdf.marsk.pdfdemo.repository.OcrPageTaskRepository;
+
+/**
+ * Page-granular OCR work queue in the application database ({@code ocr_page_tasks}), shared by all nodes.
+ * <p>
+ * Pages are claimed in batches. On PostgreSQL the oldest pending rows are locked with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so concurrent claimers pass over each other's rows instead
+ * of waiting for them. Other databases (H2 in tests and local runs) claim each candidate row with a
+ * conditional update that only succeeds while the row is still pending; a claimer that loses the race
+ * simply moves on to the next candidate. The strategy is picked from the database product unless
+ * {@code ocr.queue.claimStrategy} names one.
+ */
+@Component
+public class OcrPageQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrPageQueue.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    static final String SKIP_LOCKED = "skip-locked";
+    static final String CONDITIONAL_UPDATE = "conditional-update";
+
+    private final OcrPageTaskRepository pageTaskRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+    private final String configuredStrategy;
+    private volatile String claimStrategy;
+
+    @Autowired
+    public OcrPageQueue(OcrPageTaskRepository pageTaskRepository,
+                        PlatformTransactionManager transactionManager,
+                        DataSource dataSource,
+                        @Value("${ocr.queue.claimStrategy:auto}") String claimStrategy) {
+        this.pageTaskRepository = pageTaskRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataSource = dataSource;
+        this.configuredStrategy = claimStrategy.trim().toLowerCase();
+    }
+
+    /**
+     * Adds the pages of a job to the queue, all or none.
+     *
+     * @param jobId The job's task ID
+     * @param pageIndices The 0-based indices of the pages to recognize
+     */
+    public void enqueue(String jobId, List<Integer> pageIndices) {
+        List<OcrPageTask> tasks = new ArrayList<>(pageIndices.size());
+        for (int pageIndex : pageIndices) {
+            tasks.add(new OcrPageTask(jobId, pageIndex));
+        }
+        pageTaskRepository.saveAll(tasks);
+    }
+
+    /**
+     * @return Whether the pages of a job have been queued already
+     */
+    public boolean isQueued(String jobId) {
+        return pageTaskRepository.existsByJobId(jobId);
+    }
+
+    /**
+     * Claims up to {@code limit} pending pages for a node, oldest first.
+     *
+     * @param nodeId The claiming node
+     * @param limit The maximum number of pages to claim
+     * @return The claimed pages; empty if nothing is pending
+     */
+    public List<OcrPageTask> claim(String nodeId, int limit) {
+        return SKIP_LOCKED.equals(getClaimStrategy())
+                ? claimSkipLocked(nodeId, limit)
+                : claimByConditionalUpdate(nodeId, limit);
+    }
+
+    private List<OcrPageTask> claimSkipLocked(String nodeId, int limit) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OcrPageTask> tasks = pageTaskRepository.lockPendingSkipLocked(limit);
+            for (OcrPageTask task : tasks) {
+                task.setStatus(OcrPageTask.Status.CLAIMED);
+                task.setClaimedBy(nodeId);
+                task.setClaimedAt(now);
+                task.setAttempts(task.getAttempts() + 1);
+            }
+            return tasks;
+        });
+    }
+
+    private List<OcrPageTask> claimByConditionalUpdate(String nodeId, int limit) {
+        // Over-fetch candidates, since other nodes may claim some of them first
+        List<Long> candidates = pageTaskRepository.findIdsByStatus(OcrPageTask.Status.PENDING, PageRequest.of(0, limit * 2));
+        List<Long> claimed = new ArrayList<>(limit);
+        LocalDateTime now = LocalDateTime.now();
+        for (Long id : candidates) {
+            if (claimed.size() == limit) {
+                break;
+            }
+            if (pageTaskRepository.claimIfPending(id, nodeId, now, OcrPageTask.Status.PENDING, OcrPageTask.Status.CLAIMED) == 1) {
+                claimed.add(id);
+            }
+        }
+        return claimed.isEmpty() ? List.of() : pageTaskRepository.findAllById(claimed);
+    }
+
+    /**
+     * Marks a claimed page as recognized.
+     *
+     * @return Whether the node still held the claim
+     */
+    public boolean complete(OcrPageTask task, String nodeId) {
+        return pageTaskRepository.releaseClaim(task.getId(), nodeId, OcrPageTask.Status.CLAIMED, OcrPageTask.Status.DONE, null) == 1;
+    }
+
+    /**
+     * Gives up a claimed page after an error. It goes back to the queue unless it has used up its attempts.
+     *
+     * @return Whether the page failed for good
+     */
+    public boolean fail(OcrPageTask task, String nodeId, String errorMessage, int maxAttempts) {
+        boolean exhausted = task.getAttempts() >= maxAttempts;
+        String message = errorMessage != null && errorMessage.length() > MAX_ERROR_LENGTH
+                ? errorMessage.substring(0, MAX_ERROR_LENGTH) : errorMessage;
+        pageTaskRepository.releaseClaim(task.getId(), nodeId, OcrPageTask.Status.CLAIMED,
+                exhausted ? OcrPageTask.Status.FAILED : OcrPageTask.Status.PENDING, message);
+        return exhausted;
+    }
+
+    /**
+     * Returns pages claimed longer ago than the timeout to the queue, e.g. because their node died.
+     *
+     * @return The number of released pages
+     */
+    public int releaseExpiredClaims(long claimTimeoutMs) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(claimTimeoutMs));
+        int released = pageTaskRepository.releaseClaimsOlderThan(cutoff, OcrPageTask.Status.PENDING, OcrPageTask.Status.CLAIMED);
+        if (released > 0) {
+            logger.warn("Released {} OCR pages whose claim expired", released);
+        }
+        return released;
+    }
+
+    /**
+     * @return The number of pages of a job that are not recognized yet
+     */
+    public long countRemaining(String jobId) {
+        return pageTaskRepository.countByJobIdAndStatusNot(jobId, OcrPageTask.Status.DONE);
+    }
+
+    /**
+     * Removes the pages of a finished job.
+     */
+    public void delete(String jobId) {
+        pageTaskRepository.deleteByJobId(jobId);
+    }
+
+    /**
+     * @return The claim strategy in use, {@value #SKIP_LOCKED} or {@value #CONDITIONAL_UPDATE}
+     */
+    public String getClaimStrategy() {
+        if (claimStrategy == null) {
+            claimStrategy = resolveClaimStrategy();
+            logger.info("OCR page queue claims pages with strategy '{}'", claimStrategy);
+        }
+        return claimStrategy;
+    }
+
+    private String resolveClaimStrategy() {
+        if (SKIP_LOCKED.equals(configuredStrategy) || CONDITIONAL_UPDATE.equals(configuredStrategy)) {
+            return configuredStrategy;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            return "PostgreSQL".equalsIgnoreCase(product) ? SKIP_LOCKED : CONDITIONAL_UPDATE;
+        } catch (SQLException e) {
+            logger.warn("Could not determine the database product, claiming OCR pages by conditional update: {}", e.getMessage());
+            return CONDITIONAL_UPDATE;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.List;
+
+/**
+ * Recognition result of a single page produced by the OCR pipeline.
+ */
+public class OcrPageResult {
+    private final int pageIndex;
+    private final int dpi;
+    private final String text;
+    private final Float confidence;
+    private final long processingMillis;
+    private final PageOrientation orientation;
+    private final List<OcrWord> words;
+    private final List<Float> lineConfidences;
+
+    public OcrPageResult(int pageIndex, int dpi, String text) {
+        this(pageIndex, dpi, text, null, 0, PageOrientation.UPRIGHT, List.of());
+    }
+
+    public OcrPageResult(int pageIndex, int dpi, String text, Float confidence, long processingMillis,
+                         PageOrientation orientation, List<OcrWord> words) {
+        this(pageIndex, dpi, text, confidence, processingMillis, orientation, words, List.of());
+    }
+
+    public OcrPageResult(int pageIndex, int dpi, String text, Float confidence, long processingMillis,
+                         PageOrientation orientation, List<OcrWord> words, List<Float> lineConfidences) {
+        this.pageIndex = pageIndex;
+        this.dpi = dpi;
+        this.text = text;
+        this.confidence = confidence;
+        this.processingMillis = processingMillis;
+        this.orientation = orientation;
+        this.words = words;
+        this.lineConfidences = lineConfidences;
+    }
+
+    /**
+     * @return The 0-based page index within the source document
+     */
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    /**
+     * @return The DPI the page was rendered at, or 0 for a blank page that was skipped without rendering
+     */
+    public int getDpi() {
+        return dpi;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The mean word confidence (0-100) reported by Tesseract, or null if none was reported
+     */
+    public Float getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return The wall-clock time from the start of rendering until the page was persisted
+     */
+    public long getProcessingMillis() {
+        return processingMillis;
+    }
+
+    /**
+     * @return The rotation and skew correction detected for the page and applied before recognition
+     */
+    public PageOrientation getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return The recognized words with their boxes in pixels of the full page as rendered at {@link #getDpi()},
+     *         before straightening; empty unless the run captured words
+     */
+    public List<OcrWord> getWords() {
+        return words;
+    }
+
+    /**
+     * @return The confidence of each line of {@link #getText()}, see {@link LineConfidences}; empty if the text was
+     *         taken from a text layer or none were reported
+     */
+    public List<Float> getLineConfidences() {
+        return lineConfidences;
+    }
+
+    /**
+     * @return This result without its words, for keeping it after the words have been written out
+     */
+    public OcrPageResult withoutWords() {
+        return words.isEmpty() ? this
+                : new OcrPageResult(pageIndex, dpi, text, confidence, processingMillis, orientation, List.of(), lineConfidences);
+    }
+}
@@ -0,0 +1,443 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Central OCR scheduler: interactive image requests, interactive PDF jobs and batch pages all run on its workers.
+ * <p>
+ * Work is queued in priority classes, each with a concurrency cap. A free worker takes the next task of the most
+ * urgent class that has queued work and is below its cap: short interactive requests overtake queued batch pages,
+ * and the caps keep long PDF jobs and batches from occupying every worker. Within a class, work is queued in lanes
+ * (one per request, job or batch) that take turns round-robin, one task per turn, so a batch of thousands of pages
+ * holds back a newer batch by at most one page per turn.
+ * <p>
+ * A new request is refused with an {@link OcrSchedulerFullException} once as many lanes of its class are waiting
+ * as the class's queue capacity; work of an accepted request (further pages of a batch, resumed jobs) is always
+ * queued. Queue depth, running tasks and wait times per class are reported by {@link #snapshot()}.
+ */
+@Component
+public class OcrPageScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrPageScheduler.class);
+    private static final long SHUTDOWN_GRACE_MS = 30_000;
+    // Weight of the newest task in the recent wait and run times
+    private static final double RECENT_WEIGHT = 0.2;
+    // Assumed task duration for retry estimates before a class has run any task
+    private static final double DEFAULT_RUN_MS = 1000;
+    private static final long MAX_RETRY_AFTER_SECONDS = 600;
+
+    /**
+     * Priority classes, most urgent first.
+     */
+    public enum Priority {
+        INTERACTIVE_IMAGE("interactiveImage"),
+        INTERACTIVE_PDF("interactivePdf"),
+        BATCH("batch");
+
+        private final String key;
+
+        Priority(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return The name of the class in metrics
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * @param maxConcurrent The maximum number of tasks of the class running at once
+     * @param queueCapacity The maximum number of lanes of the class waiting before new requests are refused
+     */
+    public record Limits(int maxConcurrent, int queueCapacity) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final Map<Priority, PriorityClass> classes = new EnumMap<>(Priority.class);
+    // Lanes with queued tasks; a lane is in the map exactly while it is in its class's turn order
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private boolean shutdown;
+
+    @Autowired
+    public OcrPageScheduler(TesseractPool tesseractPool,
+                            @Value("${ocr.scheduler.workers:0}") int workers,
+                            @Value("${ocr.scheduler.image.maxConcurrent:0}") int imageMaxConcurrent,
+                            @Value("${ocr.scheduler.image.queueCapacity:100}") int imageQueueCapacity,
+                            @Value("${ocr.scheduler.pdf.maxConcurrent:2}") int pdfMaxConcurrent,
+                            @Value("${ocr.scheduler.pdf.queueCapacity:50}") int pdfQueueCapacity,
+                            @Value("${ocr.scheduler.batch.maxConcurrent:0}") int batchMaxConcurrent,
+                            @Value("${ocr.scheduler.batch.queueCapacity:20}") int batchQueueCapacity) {
+        // PDF jobs mostly wait for the pipeline, so they get workers of their own on top of one per Tesseract thread
+        this(workers > 0 ? workers : tesseractPool.getPoolSize() + Math.max(1, pdfMaxConcurrent),
+                imageMaxConcurrent, imageQueueCapacity, pdfMaxConcurrent, pdfQueueCapacity, batchMaxConcurrent, batchQueueCapacity);
+    }
+
+    private OcrPageScheduler(int workerCount, int imageMaxConcurrent, int imageQueueCapacity, int pdfMaxConcurrent,
+                             int pdfQueueCapacity, int batchMaxConcurrent, int batchQueueCapacity) {
+        this(workerCount, Map.of(
+                Priority.INTERACTIVE_IMAGE, new Limits(imageMaxConcurrent > 0 ? imageMaxConcurrent : workerCount, imageQueueCapacity),
+                Priority.INTERACTIVE_PDF, new Limits(pdfMaxConcurrent, pdfQueueCapacity),
+                // By default one worker is always left to interactive requests
+                Priority.BATCH, new Limits(batchMaxConcurrent > 0 ? batchMaxConcurrent : workerCount - 1, batchQueueCapacity)));
+    }
+
+    /**
+     * Creates a scheduler without concurrency caps or queue limits.
+     */
+    public OcrPageScheduler(int workerCount) {
+        this(workerCount, Map.of());
+    }
+
+    /**
+     * @param workerCount The number of worker threads
+     * @param limits The limits per class; classes without limits may use every worker and queue without bound
+     */
+    public OcrPageScheduler(int workerCount, Map<Priority, Limits> limits) {
+        int workerTotal = Math.max(1, workerCount);
+        for (Priority priority : Priority.values()) {
+            Limits classLimits = limits.getOrDefault(priority, new Limits(workerTotal, Integer.MAX_VALUE));
+            classes.put(priority, new PriorityClass(new Limits(Math.max(1, Math.min(classLimits.maxConcurrent(), workerTotal)),
+                    Math.max(1, classLimits.queueCapacity()))));
+        }
+        for (int i = 0; i < workerTotal; i++) {
+            Thread worker = new Thread(this::work, "ocr-scheduler-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * @param prefix Describes what the lane is for, e.g. "interactive"
+     * @return A lane ID no other caller uses
+     */
+    public static String newLane(String prefix) {
+        return prefix + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Refuses a new request when its class already has as many lanes waiting as its queue capacity.
+     * Call it before accepting a request, then {@link #submit} its work.
+     *
+     * @param priority The class of the request
+     * @throws OcrSchedulerFullException If the class's queue is full
+     */
+    public void checkCapacity(Priority priority) {
+        lock.lock();
+        try {
+            PriorityClass priorityClass = classes.get(priority);
+            if (priorityClass.turnOrder.size() >= priorityClass.limits.queueCapacity()) {
+                priorityClass.rejected++;
+                throw new OcrSchedulerFullException(priority, retryAfterSeconds(priorityClass));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a task at the end of a lane. A lane that has no queued tasks joins its class's turn order at the end;
+     * a lane that has queued tasks keeps its class.
+     *
+     * @param priority The class of the task
+     * @param lane The lane, e.g. a batch ID
+     * @param task The task
+     * @return Completes with the task's result, or exceptionally with what it threw
+     * @throws RejectedExecutionException If the scheduler is shut down
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, String lane, Callable<T> task) {
+        ScheduledTask<T> queued = new ScheduledTask<>(task, System.nanoTime());
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("The OCR scheduler is shut down");
+            }
+            Lane queue = lanes.computeIfAbsent(lane, key -> {
+                Lane newLane = new Lane(priority);
+                classes.get(priority).turnOrder.addLast(newLane);
+                return newLane;
+            });
+            queue.tasks.addLast(queued);
+            classes.get(queue.priority).queuedTasks++;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return queued.result;
+    }
+
+    /**
+     * @return The number of tasks waiting for a worker, in all classes
+     */
+    public int getQueuedTasks() {
+        lock.lock();
+        try {
+            return classes.values().stream().mapToInt(priorityClass -> priorityClass.queuedTasks).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of lanes with tasks waiting for a worker, in all classes
+     */
+    public int getQueuedLanes() {
+        lock.lock();
+        try {
+            return lanes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Per class: queued tasks and lanes, running tasks, limits, completed and refused counts,
+     *         and the time tasks waited for a worker (mean, maximum and recent, in milliseconds)
+     */
+    public Map<String, Object> snapshot() {
+        lock.lock();
+        try {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("workers", workers.size());
+            for (Map.Entry<Priority, PriorityClass> entry : classes.entrySet()) {
+                PriorityClass priorityClass = entry.getValue();
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("queuedTasks", priorityClass.queuedTasks);
+                values.put("queuedLanes", priorityClass.turnOrder.size());
+                values.put("running", priorityClass.running);
+                values.put("maxConcurrent", priorityClass.limits.maxConcurrent());
+                values.put("queueCapacity", priorityClass.limits.queueCapacity());
+                values.put("completed", priorityClass.completed);
+                values.put("rejected", priorityClass.rejected);
+                values.put("meanWaitMs", priorityClass.started == 0 ? 0.0
+                        : priorityClass.totalWaitNanos / 1e6 / priorityClass.started);
+                values.put("maxWaitMs", priorityClass.maxWaitNanos / 1e6);
+                values.put("recentWaitMs", priorityClass.recentWaitMs);
+                snapshot.put(entry.getKey().getKey(), values);
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            ScheduledTask<?> task;
+            PriorityClass priorityClass;
+            lock.lock();
+            try {
+                priorityClass = nextClass();
+                while (priorityClass == null && !shutdown) {
+                    stateChanged.await();
+                    priorityClass = nextClass();
+                }
+                if (priorityClass == null) {
+                    return;
+                }
+                task = take(priorityClass);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Error in OCR scheduler task: {}", e.getMessage(), e);
+            } finally {
+                // Always give the slot back, or the class would lose a worker for good
+                lock.lock();
+                try {
+                    priorityClass.running--;
+                    priorityClass.completed++;
+                    double runMs = (System.nanoTime() - start) / 1e6;
+                    priorityClass.recentRunMs = priorityClass.completed == 1 ? runMs
+                            : priorityClass.recentRunMs + RECENT_WEIGHT * (runMs - priorityClass.recentRunMs);
+                    stateChanged.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The most urgent class with queued tasks that is below its cap, or null if none is
+     */
+    private PriorityClass nextClass() {
+        if (shutdown) {
+            return null;
+        }
+        for (PriorityClass priorityClass : classes.values()) {
+            if (!priorityClass.turnOrder.isEmpty() && priorityClass.running < priorityClass.limits.maxConcurrent()) {
+                return priorityClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the next task of the class's lane whose turn it is; the lane goes to the end of the turn order
+     * if it has more tasks.
+     */
+    private ScheduledTask<?> take(PriorityClass priorityClass) {
+        Lane lane = priorityClass.turnOrder.pollFirst();
+        ScheduledTask<?> task = lane.tasks.pollFirst();
+        if (lane.tasks.isEmpty()) {
+            lanes.values().remove(lane);
+        } else {
+            priorityClass.turnOrder.addLast(lane);
+        }
+        priorityClass.queuedTasks--;
+        priorityClass.running++;
+        priorityClass.started++;
+        long waitNanos = System.nanoTime() - task.queuedAt;
+        priorityClass.totalWaitNanos += waitNanos;
+        priorityClass.maxWaitNanos = Math.max(priorityClass.maxWaitNanos, waitNanos);
+        priorityClass.recentWaitMs = priorityClass.started == 1 ? waitNanos / 1e6
+                : priorityClass.recentWaitMs + RECENT_WEIGHT * (waitNanos / 1e6 - priorityClass.recentWaitMs);
+        return task;
+    }
+
+    /**
+     * Estimates when a refused request is likely to find room: the time the waiting lanes need
+     * to get one turn each at the class's concurrency.
+     */
+    private static long retryAfterSeconds(PriorityClass priorityClass) {
+        double runMs = priorityClass.completed == 0 ? DEFAULT_RUN_MS : priorityClass.recentRunMs;
+        double waitMs = runMs * priorityClass.turnOrder.size() / priorityClass.limits.maxConcurrent();
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(waitMs / 1000)));
+    }
+
+    /**
+     * Refuses queued and new tasks, gives running tasks a grace period to finish and then interrupts them.
+     */
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            if (!lanes.isEmpty()) {
+                logger.info("Shutting down OCR scheduler with {} queued tasks in {} lanes", getQueuedTasks(), lanes.size());
+            }
+            // Callers waiting for queued tasks fail instead of waiting forever
+            lanes.values().forEach(lane -> lane.tasks.forEach(ScheduledTask::reject));
+            lanes.clear();
+            classes.values().forEach(priorityClass -> {
+                priorityClass.turnOrder.clear();
+                priorityClass.queuedTasks = 0;
+            });
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE_MS);
+        try {
+            for (Thread worker : workers) {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * The queue state and statistics of a priority class. Guarded by the scheduler's lock.
+     */
+    private static final class PriorityClass {
+
+        private final Limits limits;
+        private final ArrayDeque<Lane> turnOrder = new ArrayDeque<>();
+        private int queuedTasks;
+        private int running;
+        private long started;
+        private long completed;
+        private long rejected;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+        private double recentWaitMs;
+        private double recentRunMs;
+
+        private PriorityClass(Limits limits) {
+            this.limits = limits;
+        }
+    }
+
+    /**
+     * The queued tasks of one request, job or batch.
+     */
+    private static final class Lane {
+
+        private final Priority priority;
+        private final ArrayDeque<ScheduledTask<?>> tasks = new ArrayDeque<>();
+
+        private Lane(Priority priority) {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * A queued task and the future of its result.
+     */
+    private static final class ScheduledTask<T> {
+
+        private final Callable<T> task;
+        private final long queuedAt;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private ScheduledTask(Callable<T> task, long queuedAt) {
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+
+        private void run() {
+            if (result.isDone()) {
+                return; // Cancelled while queued
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                // Errors too (a StackOverflowError on a malformed PDF, an OutOfMemoryError while rendering),
+                // so the caller waiting on the result does not hang
+                result.completeExceptionally(e);
+            }
+        }
+
+        private void reject() {
+            result.completeExceptionally(new RejectedExecutionException("The OCR scheduler was shut down"));
+        }
+    }
+}
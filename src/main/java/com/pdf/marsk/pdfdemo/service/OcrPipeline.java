@@ -0,0 +1,930 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import net.sourceforge.tess4j.ITessAPI.TessPageIteratorLevel;
+import net.sourceforge.tess4j.ITesseract;
+import net.sourceforge.tess4j.TesseractException;
+import net.sourceforge.tess4j.Word;
+
+/**
+ * Staged OCR pipeline for PDF documents: render → preprocess → recognize → persist.
+ * <p>
+ * Rendering runs on the calling thread because a {@link PDFRenderer} must not be shared between threads.
+ * The other stages have their own workers and bounded queues, so rendering of the next pages overlaps
+ * with preprocessing and recognition of the previous ones, and a slow stage blocks the stages feeding it.
+ * Before a page is rendered at full DPI, the {@link PageContentAnalyzer} looks at a low-resolution render:
+ * blank pages go straight to persist with empty text, and pages with wide empty margins are only rendered
+ * and recognized within their content region. At the start of preprocessing, the {@link PageOrientationDetector}
+ * estimates from a thumbnail whether the page is rotated or skewed, and the page is straightened once before
+ * recognition, so Tesseract does not have to detect the orientation itself. Pages too large to recognize as
+ * one image are split by the {@link PageTiler} into overlapping tiles that are rendered, preprocessed and
+ * recognized independently and merged back into one page. Every rendered page and tile holds a reservation from
+ * the {@link RenderMemoryGovernor} until it has been recognized, so concurrent runs cannot render more than the
+ * memory budget; under memory pressure a page waits for memory or is rendered at a lower DPI.
+ * A run uses one {@link OcrProfile}: its DPI (if fixed) and preprocessing chain, and pooled handles
+ * configured for it; only the page's resolution is handed to a handle per page.
+ * The frames of a multi-page TIFF go through the same stages, decoded by a {@link TiffFrameReader} in place of
+ * rendering.
+ */
+@Component
+public class OcrPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrPipeline.class);
+
+    static final String RENDER = "render";
+    static final String PREPROCESS = "preprocess";
+    static final String RECOGNIZE = "recognize";
+    static final String PERSIST = "persist";
+
+    private final TesseractPool tesseractPool;
+    private final OcrProfiles ocrProfiles;
+    private final PageDpiPlanner pageDpiPlanner;
+    private final PageContentAnalyzer pageContentAnalyzer;
+    private final PageOrientationDetector pageOrientationDetector;
+    private final PageTiler pageTiler;
+    private final RenderMemoryGovernor renderMemoryGovernor;
+    private final ImagePreprocessor imagePreprocessor;
+    private final PageTextCache pageTextCache;
+    private final OcrMetrics ocrMetrics;
+    private final ProgressTrackingService progressTrackingService;
+    private final PipelineStage preprocessStage;
+    private final PipelineStage recognizeStage;
+    private final PipelineStage persistStage;
+    private final int maxDecodedFrames;
+
+    @Autowired
+    public OcrPipeline(TesseractPool tesseractPool,
+                       OcrProfiles ocrProfiles,
+                       PageDpiPlanner pageDpiPlanner,
+                       PageContentAnalyzer pageContentAnalyzer,
+                       PageOrientationDetector pageOrientationDetector,
+                       PageTiler pageTiler,
+                       RenderMemoryGovernor renderMemoryGovernor,
+                       ImagePreprocessor imagePreprocessor,
+                       PageTextCache pageTextCache,
+                       OcrMetrics ocrMetrics,
+                       ProgressTrackingService progressTrackingService,
+                       @Value("${ocr.pipeline.preprocess.workers:2}") int preprocessWorkers,
+                       @Value("${ocr.pipeline.preprocess.queueCapacity:2}") int preprocessQueueCapacity,
+                       @Value("${ocr.pipeline.recognize.queueCapacity:0}") int recognizeQueueCapacity,
+                       @Value("${ocr.pipeline.persist.queueCapacity:16}") int persistQueueCapacity,
+                       @Value("${ocr.tiff.maxDecodedFrames:4}") int maxDecodedFrames) {
+        this.tesseractPool = tesseractPool;
+        this.ocrProfiles = ocrProfiles;
+        this.pageDpiPlanner = pageDpiPlanner;
+        this.pageContentAnalyzer = pageContentAnalyzer;
+        this.pageOrientationDetector = pageOrientationDetector;
+        this.pageTiler = pageTiler;
+        this.renderMemoryGovernor = renderMemoryGovernor;
+        this.imagePreprocessor = imagePreprocessor;
+        this.pageTextCache = pageTextCache;
+        this.ocrMetrics = ocrMetrics;
+        this.progressTrackingService = progressTrackingService;
+        this.preprocessStage = new PipelineStage(PREPROCESS, preprocessWorkers, preprocessQueueCapacity);
+        // One recognition worker per pooled Tesseract handle
+        this.recognizeStage = new PipelineStage(RECOGNIZE, tesseractPool.getPoolSize(),
+                recognizeQueueCapacity > 0 ? recognizeQueueCapacity : tesseractPool.getPoolSize());
+        this.persistStage = new PipelineStage(PERSIST, 1, persistQueueCapacity);
+        this.maxDecodedFrames = Math.max(1, maxDecodedFrames);
+    }
+
+    /**
+     * Runs every page of a PDF through the pipeline.
+     *
+     * @param document The loaded PDF document
+     * @param language The OCR language
+     * @param taskId The task ID for progress tracking (optional)
+     * @return The page results, in page order
+     * @throws IOException If a page cannot be rendered or the run is interrupted
+     * @throws TesseractException If recognition of a page fails
+     */
+    public List<OcrPageResult> process(PDDocument document, String language, String taskId) throws IOException, TesseractException {
+        List<Integer> allPages = IntStream.range(0, document.getNumberOfPages()).boxed().toList();
+        return process(document, allPages, OcrOptions.of(language).withTaskId(taskId));
+    }
+
+    /**
+     * Runs a subset of the pages of a PDF through the pipeline with the given options.
+     * Pages outside the subset are reported to progress tracking as already completed. Every finished page is
+     * handed to the options' page listener on the persist stage as soon as it is done (e.g. to checkpoint it),
+     * before progress is published. Word capture recognizes every page with its own word boxes, so the text of
+     * identical pages is not shared, and builds the page text from the words' lines.
+     *
+     * @param document The loaded PDF document
+     * @param pageIndices The 0-based indices of the pages to recognize, in ascending order
+     * @param options The language, profile, task ID for progress tracking, page listener and word capture
+     * @return The page results, in the order of {@code pageIndices}
+     * @throws IOException If a page cannot be rendered or the run is interrupted
+     * @throws TesseractException If recognition of a page fails
+     * @throws IllegalArgumentException If there is no profile of that name
+     */
+    public List<OcrPageResult> process(PDDocument document, List<Integer> pageIndices, OcrOptions options) throws IOException, TesseractException {
+        String language = options.language();
+        OcrProfile profile = ocrProfiles.get(options.profile());
+        int pageCount = document.getNumberOfPages();
+        PDFRenderer pdfRenderer = new PDFRenderer(document);
+        PipelineRun run = new PipelineRun(options.taskId(), pageCount, pageCount - pageIndices.size(), options.pageListener(),
+                options.captureWords(), profile, getSettingsSignature(profile));
+        List<CompletableFuture<OcrPageResult>> pageFutures = new ArrayList<>(pageIndices.size());
+
+        for (int i = 0; i < pageIndices.size() && !run.hasFailed(); i++) {
+            final int pageIndex = pageIndices.get(i);
+            logger.debug("Rendering page {} of {}", pageIndex + 1, pageCount);
+
+            long renderStart = System.nanoTime();
+            PageContent content = pageContentAnalyzer.analyze(pdfRenderer, pageIndex);
+            if (pageContentAnalyzer.isEnabled()) {
+                ocrMetrics.recordPagePrepass(content);
+            }
+            if (content.isBlank()) {
+                run.record(RENDER, System.nanoTime() - renderStart);
+                run.pageBlank();
+                track(run, pageFutures, persistStage.submit(() -> run.timed(PERSIST, () -> persist(run, pageIndex, 0, "", renderStart))));
+                continue;
+            }
+            PDPage page = document.getPage(pageIndex);
+            int plannedDpi = profile.getDpi() > 0 ? profile.getDpi() : pageDpiPlanner.planDpi(page);
+            Rectangle plannedRegion = pixelRegion(page, plannedDpi, content);
+            if (content.isCropped()) {
+                run.pageCropped();
+            }
+            if (pageTiler.shouldTile(plannedRegion)) {
+                track(run, pageFutures, processTiled(run, tile -> renderRegion(pdfRenderer, pageIndex, plannedDpi, tile),
+                        pageIndex, plannedRegion, language, plannedDpi, renderStart));
+                continue;
+            }
+            // The page's memory stays reserved until it is recognized; when memory is short it may get a lower DPI
+            RenderMemoryGovernor.Reservation reservation = renderMemoryGovernor.reserve(plannedRegion, plannedDpi, pageDpiPlanner.getMinDpi());
+            final int dpi = reservation.getDpi();
+            Rectangle region = dpi == plannedDpi ? plannedRegion : pixelRegion(page, dpi, content);
+            BufferedImage image;
+            try {
+                if (content.isCropped()) {
+                    image = renderRegion(pdfRenderer, pageIndex, dpi, region);
+                } else {
+                    // Render straight to 8-bit gray: a quarter of the memory of RGB, and all OCR needs
+                    image = pdfRenderer.renderImageWithDPI(pageIndex, dpi, ImageType.GRAY);
+                }
+            } catch (IOException | RuntimeException e) {
+                reservation.close();
+                throw e;
+            }
+            run.record(RENDER, System.nanoTime() - renderStart);
+            track(run, pageFutures, submitPage(run, pageIndex, image, region, language, dpi, reservation::close, renderStart));
+        }
+        return awaitPages(run, pageFutures, pageIndices, "PDF page");
+    }
+
+    /**
+     * Runs frames of a multi-page TIFF through the pipeline with the given options, as the pages of a PDF.
+     * Frames are decoded on the
+     * calling thread, since an image reader must not be shared between threads, and only once fewer than
+     * {@code ocr.tiff.maxDecodedFrames} decoded frames of the run are waiting for recognition, so a long fax
+     * is never held in memory as a whole; decoded frames also reserve their render memory. The pre-pass looks
+     * at a subsampled decode of each frame: blank frames are never decoded in full, and only the content region
+     * of the others is. Captured word boxes are in pixels of the decoded frame, see {@link #frame}.
+     *
+     * @param frames The open TIFF
+     * @param frameIndices The 0-based indices of the frames to recognize, in ascending order
+     * @param options The language, profile, task ID for progress tracking, page listener and word capture;
+     *                the profile's DPI is assumed for frames that do not record their resolution
+     * @return The frame results, in the order of {@code frameIndices}
+     * @throws IOException If a frame cannot be decoded or the run is interrupted
+     * @throws TesseractException If recognition of a frame fails
+     * @throws IllegalArgumentException If there is no profile of that name
+     */
+    public List<OcrPageResult> process(TiffFrameReader frames, List<Integer> frameIndices, OcrOptions options)
+            throws IOException, TesseractException {
+        String language = options.language();
+        OcrProfile profile = ocrProfiles.get(options.profile());
+        int frameCount = frames.getFrameCount();
+        PipelineRun run = new PipelineRun(options.taskId(), frameCount, frameCount - frameIndices.size(), options.pageListener(),
+                options.captureWords(), profile, getSettingsSignature(profile));
+        Semaphore decodedFrames = new Semaphore(maxDecodedFrames);
+        List<CompletableFuture<OcrPageResult>> pageFutures = new ArrayList<>(frameIndices.size());
+
+        for (int i = 0; i < frameIndices.size() && !run.hasFailed(); i++) {
+            final int frameIndex = frameIndices.get(i);
+            logger.debug("Decoding frame {} of {}", frameIndex + 1, frameCount);
+
+            long renderStart = System.nanoTime();
+            TiffFrameReader.Frame frame = frame(frames, frameIndex, profile);
+            PageContent content = PageContent.FULL_PAGE;
+            if (pageContentAnalyzer.isEnabled()) {
+                content = pageContentAnalyzer.analyze(frames.preview(frameIndex, frame, pageContentAnalyzer.getPreviewDpi()));
+                ocrMetrics.recordPagePrepass(content);
+            }
+            if (content.isBlank()) {
+                run.record(RENDER, System.nanoTime() - renderStart);
+                run.pageBlank();
+                track(run, pageFutures, persistStage.submit(() -> run.timed(PERSIST, () -> persist(run, frameIndex, 0, "", renderStart))));
+                continue;
+            }
+            final int dpi = frame.dpi();
+            Rectangle region = contentRegion(frame.pixels(), content);
+            if (content.isCropped()) {
+                run.pageCropped();
+            }
+            try {
+                decodedFrames.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decoded frames to be recognized");
+            }
+            if (pageTiler.shouldTile(region)) {
+                CompletableFuture<OcrPageResult> tiledFrame;
+                try {
+                    tiledFrame = processTiled(run, tile -> frames.read(frameIndex, frame, tile), frameIndex, region,
+                            language, dpi, renderStart);
+                } catch (IOException | RuntimeException e) {
+                    decodedFrames.release();
+                    throw e;
+                }
+                track(run, pageFutures, tiledFrame.whenComplete((result, error) -> decodedFrames.release()));
+                continue;
+            }
+            // Decoded frames cannot be decoded at a lower DPI, so they wait for their full memory
+            RenderMemoryGovernor.Reservation reservation = renderMemoryGovernor.reserve(region, dpi, dpi);
+            Runnable release = () -> {
+                reservation.close();
+                decodedFrames.release();
+            };
+            BufferedImage image;
+            try {
+                image = frames.read(frameIndex, frame, region);
+            } catch (IOException | RuntimeException e) {
+                release.run();
+                throw e;
+            }
+            run.record(RENDER, System.nanoTime() - renderStart);
+            track(run, pageFutures, submitPage(run, frameIndex, image, region, language, dpi, release, renderStart));
+        }
+        return awaitPages(run, pageFutures, frameIndices, "TIFF frame");
+    }
+
+    /**
+     * The geometry a TIFF frame is decoded and recognized at: its own resolution, the profile DPI (or
+     * {@link TiffFrameReader#DEFAULT_DPI}) if it records none, and never above {@code ocr.dpi.max}.
+     *
+     * @param frames The open TIFF
+     * @param frameIndex The 0-based frame index
+     * @param profile The engine profile
+     * @return The frame geometry
+     * @throws IOException If the frame directory cannot be read
+     */
+    public TiffFrameReader.Frame frame(TiffFrameReader frames, int frameIndex, OcrProfile profile) throws IOException {
+        int fallbackDpi = profile.getDpi() > 0 ? profile.getDpi() : TiffFrameReader.DEFAULT_DPI;
+        return frames.frame(frameIndex, fallbackDpi, pageDpiPlanner.getMaxDpi());
+    }
+
+    /**
+     * Sends a rendered page through preprocessing, recognition and persisting. Each submit blocks while the next
+     * stage's queue is full. The page's memory is released once it has been recognized.
+     */
+    private CompletableFuture<OcrPageResult> submitPage(PipelineRun run, int pageIndex, BufferedImage image, Rectangle region,
+                                                        String language, int dpi, Runnable release, long renderStart) {
+        return preprocessStage
+                .submit(() -> run.timed(PREPROCESS, () -> preprocess(run, pageIndex, image, region, dpi)))
+                .thenCompose(processed -> recognizeOrReuse(run, pageIndex, processed, language, dpi))
+                .whenComplete((text, error) -> release.run())
+                .thenCompose(text -> persistStage.submit(() -> run.timed(PERSIST, () -> persist(run, pageIndex, dpi, text, renderStart))));
+    }
+
+    /**
+     * Waits for every page of a run, in order, and cancels the rest of the run at the first failure.
+     */
+    private List<OcrPageResult> awaitPages(PipelineRun run, List<CompletableFuture<OcrPageResult>> pageFutures,
+                                           List<Integer> pageIndices, String pageKind) throws IOException, TesseractException {
+        List<OcrPageResult> results = new ArrayList<>(pageFutures.size());
+        for (int i = 0; i < pageFutures.size(); i++) {
+            int pageIndex = pageIndices.get(i);
+            try {
+                results.add(awaitPage(pageFutures.get(i), pageIndex + 1));
+            } catch (IOException | TesseractException e) {
+                logger.error("Error during OCR processing of {} {}: {}", pageKind, pageIndex + 1, e.getMessage());
+                run.fail(e);
+                pageFutures.forEach(future -> future.cancel(true));
+
+                // Update progress to reflect the error
+                if (run.taskId != null) {
+                    progressTrackingService.updateOcrTaskProgress(run.taskId, run.getCompletedPages(),
+                            "Error processing page " + (pageIndex + 1) + ": " + e.getMessage());
+                }
+                throw e;
+            }
+        }
+        if (run.getReusedPages() > 0) {
+            logger.info("Reused the text of identical pages for {} of {} recognized pages",
+                    run.getReusedPages(), pageIndices.size());
+        }
+        if (run.getBlankPages() > 0 || run.getCroppedPages() > 0) {
+            logger.info("Pre-pass skipped {} blank pages and cropped {} pages to their content, of {} pages",
+                    run.getBlankPages(), run.getCroppedPages(), pageIndices.size());
+        }
+        if (run.getTiledPages() > 0) {
+            logger.info("Recognized {} oversized pages in tiles, of {} pages", run.getTiledPages(), pageIndices.size());
+        }
+        return results;
+    }
+
+    /**
+     * Adds a page to the run, failing the run as soon as the page fails.
+     */
+    private static void track(PipelineRun run, List<CompletableFuture<OcrPageResult>> pageFutures,
+                              CompletableFuture<OcrPageResult> pageFuture) {
+        pageFuture.whenComplete((result, error) -> {
+            if (error != null) {
+                run.fail(error);
+            }
+        });
+        pageFutures.add(pageFuture);
+    }
+
+    /**
+     * Renders tile after tile of an oversized page and sends each tile through preprocessing and recognition
+     * on its own, so the full page never exists as one bitmap and its tiles are recognized in parallel on the
+     * pooled Tesseract handles. Tiles are recognized as they are, without orientation detection or page
+     * deduplication, and their words are merged into the page text once every tile is done.
+     */
+    private CompletableFuture<OcrPageResult> processTiled(PipelineRun run, RegionRenderer regionRenderer, int pageIndex,
+                                                          Rectangle region, String language, int dpi,
+                                                          long renderStart) throws IOException {
+        List<Rectangle> tiles = pageTiler.tiles(region);
+        logger.debug("Page {} is {}x{} pixels at {} DPI; recognizing it as {} tiles",
+                pageIndex + 1, region.width, region.height, dpi, tiles.size());
+        run.pageTiled();
+        ocrMetrics.recordPageTiles(tiles.size());
+
+        List<CompletableFuture<List<PageTiler.TileWord>>> tileFutures = new ArrayList<>(tiles.size());
+        for (int i = 0; i < tiles.size() && !run.hasFailed(); i++) {
+            final int tileIndex = i;
+            Rectangle tile = tiles.get(i);
+            long tileStart = System.nanoTime();
+            // Tiles share the page's DPI, so they wait for memory instead of being downgraded
+            RenderMemoryGovernor.Reservation reservation = renderMemoryGovernor.reserve(tile, dpi, dpi);
+            BufferedImage image;
+            try {
+                image = regionRenderer.render(tile);
+            } catch (IOException | RuntimeException e) {
+                reservation.close();
+                throw e;
+            }
+            run.record(RENDER, System.nanoTime() - tileStart);
+            // Each submit blocks while the next stage's queue is full, as for whole pages
+            tileFutures.add(preprocessStage
+                    .submit(() -> run.timed(PREPROCESS, () -> preprocessorFor(run.profile).preprocess(image)))
+                    .thenCompose(processed -> recognizeStage.submit(
+                            () -> run.timed(RECOGNIZE, () -> recognizeTile(run, processed, tileIndex, tile, language, dpi))))
+                    .whenComplete((words, error) -> reservation.close()));
+        }
+
+        return CompletableFuture.allOf(tileFutures.toArray(CompletableFuture[]::new))
+                .thenCompose(done -> {
+                    List<PageTiler.TileWord> tileWords = new ArrayList<>();
+                    tileFutures.forEach(tileFuture -> tileWords.addAll(tileFuture.join()));
+                    List<OcrWord> words = pageTiler.mergeWords(tiles, tileWords);
+                    recordWords(run, pageIndex, words, LineConfidences.ofWords(words));
+                    String text = OcrWords.toText(words);
+                    return persistStage.submit(() -> run.timed(PERSIST, () -> persist(run, pageIndex, dpi, text, renderStart)));
+                });
+    }
+
+    /**
+     * Recognizes the words on one tile, with their boxes moved from tile to page pixels.
+     */
+    private List<PageTiler.TileWord> recognizeTile(PipelineRun run, PreprocessedImage processedImage, int tileIndex,
+                                                   Rectangle tile, String language, int dpi) throws TesseractException {
+        try (processedImage) {
+            return tesseractPool.withHandle(language, run.profile, tesseract -> {
+                setPageResolution(tesseract, dpi);
+                List<PageTiler.TileWord> words = new ArrayList<>();
+                for (OcrWord word : recognizeWords(tesseract, processedImage)) {
+                    Rectangle box = new Rectangle(word.box());
+                    box.translate(tile.x, tile.y);
+                    words.add(new PageTiler.TileWord(tileIndex, word.text(), box, word.confidence()));
+                }
+                return words;
+            });
+        }
+    }
+
+    /**
+     * Recognizes the words of an image, without empty words.
+     */
+    static List<OcrWord> recognizeWords(ITesseract tesseract, BufferedImage image) {
+        return toOcrWords(tesseract.getWords(image, TessPageIteratorLevel.RIL_WORD));
+    }
+
+    /**
+     * Recognizes the words of a preprocessed page, without empty words. Pooled handles get the page's
+     * gray pixels through the native API.
+     */
+    static List<OcrWord> recognizeWords(ITesseract tesseract, PreprocessedImage image) throws TesseractException {
+        return toOcrWords(tesseract instanceof PooledTesseract pooled
+                ? pooled.getWords(image.getGrayImage(), TessPageIteratorLevel.RIL_WORD)
+                : tesseract.getWords(image.getImage(), TessPageIteratorLevel.RIL_WORD));
+    }
+
+    /**
+     * Recognizes an image file as a single page, with the confidences pooled handles report.
+     */
+    static OcrPageResult recognizeImageFile(ITesseract tesseract, File image) throws TesseractException {
+        String text = tesseract.doOCR(image);
+        return new OcrPageResult(0, 0, text, PooledTesseract.lastMeanConfidence(tesseract), 0, PageOrientation.UPRIGHT,
+                List.of(), LineConfidences.align(text, PooledTesseract.lastLines(tesseract)));
+    }
+
+    /**
+     * Recognizes the text of a preprocessed page. Pooled handles get the page's gray pixels through the native API.
+     */
+    static String recognizeText(ITesseract tesseract, PreprocessedImage image) throws TesseractException {
+        return tesseract instanceof PooledTesseract pooled
+                ? pooled.recognize(image.getGrayImage())
+                : tesseract.doOCR(image.getImage());
+    }
+
+    private static List<OcrWord> toOcrWords(List<Word> recognizedWords) {
+        List<OcrWord> words = new ArrayList<>();
+        for (Word word : recognizedWords) {
+            String text = word.getText() == null ? "" : word.getText().trim();
+            if (!text.isEmpty()) {
+                words.add(new OcrWord(text, new Rectangle(word.getBoundingBox()), word.getConfidence()));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Keeps the mean and line confidences of a page recognized word by word, and its words if the run captures them.
+     */
+    private static void recordWords(PipelineRun run, int pageIndex, List<OcrWord> words, List<Float> lineConfidences) {
+        if (!words.isEmpty()) {
+            run.confidences.put(pageIndex, (float) words.stream().mapToDouble(OcrWord::confidence).average().orElse(0));
+            run.lineConfidences.put(pageIndex, lineConfidences);
+        }
+        if (run.captureWords) {
+            run.words.put(pageIndex, words);
+        }
+    }
+
+    /**
+     * The part of a page to render and recognize, in pixels at the render DPI: the whole page as
+     * {@link PDFRenderer#renderImageWithDPI} would render it, or only its content region.
+     */
+    private static Rectangle pixelRegion(PDPage page, int dpi, PageContent content) {
+        return contentRegion(pagePixels(page, dpi), content);
+    }
+
+    /**
+     * The content region of a page or frame of a given size, in its pixels.
+     */
+    private static Rectangle contentRegion(Rectangle fullPage, PageContent content) {
+        if (!content.isCropped()) {
+            return fullPage;
+        }
+        int pageWidth = fullPage.width;
+        int pageHeight = fullPage.height;
+
+        int x = (int) Math.floor(content.getLeft() * pageWidth);
+        int y = (int) Math.floor(content.getTop() * pageHeight);
+        int width = Math.max(1, Math.min(pageWidth, (int) Math.ceil(content.getRight() * pageWidth)) - x);
+        int height = Math.max(1, Math.min(pageHeight, (int) Math.ceil(content.getBottom() * pageHeight)) - y);
+        return new Rectangle(x, y, width, height);
+    }
+
+    /**
+     * The size of a page rendered at a DPI, as {@link PDFRenderer#renderImageWithDPI} renders it.
+     *
+     * @param page The page, with its crop box and rotation
+     * @param dpi The render DPI
+     * @return The page, in pixels
+     */
+    static Rectangle pagePixels(PDPage page, int dpi) {
+        float scale = dpi / 72f;
+        PDRectangle cropBox = page.getCropBox();
+        boolean quarterTurn = Math.floorMod(page.getRotation(), 180) == 90;
+        float widthPt = quarterTurn ? cropBox.getHeight() : cropBox.getWidth();
+        float heightPt = quarterTurn ? cropBox.getWidth() : cropBox.getHeight();
+        return new Rectangle(0, 0, (int) Math.max(Math.floor(widthPt * scale), 1), (int) Math.max(Math.floor(heightPt * scale), 1));
+    }
+
+    /**
+     * Renders only a region of a page, in 8-bit gray. The region is cut from the page as
+     * {@link PDFRenderer#renderImageWithDPI} would render it in full, so text keeps its size and position
+     * relative to the pixel grid.
+     */
+    private static BufferedImage renderRegion(PDFRenderer pdfRenderer, int pageIndex, int dpi, Rectangle region) throws IOException {
+        BufferedImage image = new BufferedImage(region.width, region.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, region.width, region.height);
+            graphics.translate(-region.x, -region.y);
+            pdfRenderer.renderPageToGraphics(pageIndex, graphics, dpi / 72f);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Describes every pipeline setting of the default profile that affects the recognized text.
+     *
+     * @return The settings signature
+     */
+    public String getSettingsSignature() {
+        return getSettingsSignature(ocrProfiles.getDefault());
+    }
+
+    /**
+     * Describes every pipeline setting that affects the recognized text with a profile, so cached results
+     * are not reused after the configuration changes or for another profile.
+     *
+     * @param profile The engine profile
+     * @return The settings signature
+     */
+    public String getSettingsSignature(OcrProfile profile) {
+        return profile.getSettingsSignature()
+                + ";" + pageDpiPlanner.getSettingsSignature()
+                + ";preprocess=" + preprocessorFor(profile).getSettingsSignature()
+                + ";prepass=" + pageContentAnalyzer.getSettingsSignature()
+                + ";orientation=" + pageOrientationDetector.getSettingsSignature()
+                + ";tiling=" + pageTiler.getSettingsSignature();
+    }
+
+    private ImagePreprocessor preprocessorFor(OcrProfile profile) {
+        return profile.getPreprocessor() != null ? profile.getPreprocessor() : imagePreprocessor;
+    }
+
+    /**
+     * Straightens and preprocesses a rendered page. The fingerprint is computed here too, so it runs on the
+     * preprocess workers, and identical pages are matched after straightening. When the run captures words,
+     * the mapping from the straightened image back to page pixels is kept for the page's word boxes.
+     */
+    private PreprocessedImage preprocess(PipelineRun run, int pageIndex, BufferedImage image, Rectangle region, int dpi) {
+        PreprocessedImage processed = preprocessorFor(run.profile).preprocess(image, page -> pageOrientationDetector.detect(page, dpi));
+        if (!processed.getOrientation().isUpright()) {
+            logger.debug("Straightened page {} ({})", pageIndex + 1, processed.getOrientation());
+            run.orientations.put(pageIndex, processed.getOrientation());
+        }
+        if (run.captureWords) {
+            BufferedImage straightened = processed.getImage();
+            run.wordTransforms.put(pageIndex, toPagePixels(processed.getOrientation().getAngle(), region,
+                    straightened.getWidth(), straightened.getHeight()));
+        } else if (pageTextCache.isEnabled()) {
+            processed.getFingerprint();
+        }
+        return processed;
+    }
+
+    /**
+     * The mapping from a straightened page image back to the pixels of the full rendered page: the inverse of the
+     * rotation about the image center done by {@link GrayImageOperators#rotate}, then the offset of the rendered
+     * region within the page.
+     */
+    private static AffineTransform toPagePixels(double degrees, Rectangle region, int straightenedWidth, int straightenedHeight) {
+        double radians = Math.toRadians(degrees);
+        // Quarter turns are exact, so boxes on them do not grow by rounding
+        double sin = degrees % 90 == 0 ? Math.round(Math.sin(radians)) : Math.sin(radians);
+        double cos = degrees % 90 == 0 ? Math.round(Math.cos(radians)) : Math.cos(radians);
+        AffineTransform transform = AffineTransform.getTranslateInstance(region.x + region.width / 2.0, region.y + region.height / 2.0);
+        transform.concatenate(new AffineTransform(cos, -sin, sin, cos, 0, 0));
+        transform.translate(-straightenedWidth / 2.0, -straightenedHeight / 2.0);
+        return transform;
+    }
+
+    /**
+     * Sends a page to the recognize stage unless an identical page was recognized before,
+     * in any document, or is being recognized in this run right now.
+     */
+    private CompletableFuture<String> recognizeOrReuse(PipelineRun run, int pageIndex, PreprocessedImage processed, String language, int dpi) {
+        if (!pageTextCache.isEnabled() || run.captureWords) {
+            return recognizeStage.submit(() -> run.timed(RECOGNIZE, () -> recognize(run, pageIndex, processed, language, dpi)));
+        }
+
+        String key = pageTextCache.key(processed.getFingerprint(), language, run.settingsSignature);
+        PageTextCache.KnownPage knownPage = pageTextCache.get(key);
+        if (knownPage != null) {
+            processed.close();
+            return CompletableFuture.completedFuture(reused(run, pageIndex, knownPage));
+        }
+        CompletableFuture<PageTextCache.KnownPage> recognition = new CompletableFuture<>();
+        CompletableFuture<PageTextCache.KnownPage> inFlight = run.inFlightPages.putIfAbsent(key, recognition);
+        if (inFlight != null) {
+            processed.close();
+            return inFlight.thenApply(page -> reused(run, pageIndex, page));
+        }
+
+        ocrMetrics.recordPageDedupLookup(false);
+        recognizeStage.submit(() -> run.timed(RECOGNIZE, () -> recognize(run, pageIndex, processed, language, dpi)))
+                .whenComplete((text, error) -> {
+                    if (error != null) {
+                        recognition.completeExceptionally(error);
+                        return;
+                    }
+                    // Recorded by recognize for this page, and only taken by persist once the recognition is complete
+                    List<Float> lineConfidences = run.lineConfidences.get(pageIndex);
+                    PageTextCache.KnownPage page = new PageTextCache.KnownPage(text, run.confidences.get(pageIndex),
+                            lineConfidences != null ? LineConfidences.encode(lineConfidences) : null);
+                    pageTextCache.put(key, page);
+                    recognition.complete(page);
+                });
+        return recognition.thenApply(PageTextCache.KnownPage::text);
+    }
+
+    /**
+     * Takes the text of an identical page for a page, along with its confidences.
+     */
+    private String reused(PipelineRun run, int pageIndex, PageTextCache.KnownPage page) {
+        ocrMetrics.recordPageDedupLookup(true);
+        run.pageReused();
+        if (page.confidence() != null) {
+            run.confidences.put(pageIndex, page.confidence());
+        }
+        List<Float> lineConfidences = LineConfidences.decode(page.lineConfidences());
+        if (!lineConfidences.isEmpty()) {
+            run.lineConfidences.put(pageIndex, lineConfidences);
+        }
+        return page.text();
+    }
+
+    /**
+     * Recognizes a preprocessed page on a borrowed Tesseract handle.
+     * The pixels are handed to Tesseract in memory; no intermediate image file is written, and pooled handles
+     * take the gray pixels without an image conversion.
+     * The preprocessing buffer goes back to the pool as soon as recognition is done.
+     * When the run captures words, the page is recognized word by word and its text is built from the words.
+     */
+    private String recognize(PipelineRun run, int pageIndex, PreprocessedImage processedImage, String language, int dpi) throws TesseractException {
+        try (processedImage) {
+            return tesseractPool.withHandle(language, run.profile, tesseract -> {
+                long start = System.nanoTime();
+                setPageResolution(tesseract, dpi);
+                String text;
+                if (run.captureWords) {
+                    List<OcrWord> words = recognizeWords(tesseract, processedImage);
+                    text = OcrWords.toText(words);
+                    AffineTransform toPage = run.wordTransforms.remove(pageIndex);
+                    recordWords(run, pageIndex, words.stream()
+                            .map(word -> new OcrWord(word.text(), toPage.createTransformedShape(word.box()).getBounds(), word.confidence()))
+                            .toList(), LineConfidences.ofWords(words));
+                } else {
+                    text = recognizeText(tesseract, processedImage);
+                    Float confidence = PooledTesseract.lastMeanConfidence(tesseract);
+                    if (confidence != null) {
+                        run.confidences.put(pageIndex, confidence);
+                    }
+                    List<Float> lineConfidences = LineConfidences.align(text, PooledTesseract.lastLines(tesseract));
+                    if (!lineConfidences.isEmpty()) {
+                        run.lineConfidences.put(pageIndex, lineConfidences);
+                    }
+                }
+                ocrMetrics.recordProfilePage(run.profile.getName(), System.nanoTime() - start, run.confidences.get(pageIndex));
+                return text;
+            });
+        }
+    }
+
+    /**
+     * Records a recognized (or skipped blank) page, hands it to the run's page listener and publishes its text,
+     * progress and stage statistics for the task.
+     */
+    private OcrPageResult persist(PipelineRun run, int pageIndex, int dpi, String text, long renderStart) {
+        PageOrientation orientation = run.orientations.remove(pageIndex);
+        List<OcrWord> words = run.words.remove(pageIndex);
+        List<Float> lineConfidences = run.lineConfidences.remove(pageIndex);
+        OcrPageResult pageResult = new OcrPageResult(pageIndex, dpi, text, run.confidences.remove(pageIndex),
+                (System.nanoTime() - renderStart) / 1_000_000, orientation != null ? orientation : PageOrientation.UPRIGHT,
+                words != null ? words : List.of(), lineConfidences != null ? lineConfidences : List.of());
+        run.pageListener.accept(pageResult);
+        int done = run.pageCompleted();
+        if (run.taskId != null) {
+            int reusedPages = run.getReusedPages();
+            progressTrackingService.publishOcrPageResult(run.taskId, pageIndex, text);
+            progressTrackingService.updateOcrTaskProgress(run.taskId, done,
+                    "Completed page " + (pageIndex + 1) + " (" + done + " of " + run.pageCount + " done"
+                    + (reusedPages > 0 ? ", " + reusedPages + " reused from identical pages" : "") + ")");
+            progressTrackingService.updateOcrPipelineStats(run.taskId, snapshot(run));
+            progressTrackingService.updateOcrPrepassStats(run.taskId, run.getBlankPages(), run.getCroppedPages());
+        }
+        // Captured words go to the listener only, so a long run does not keep the words of every page
+        return pageResult.withoutWords();
+    }
+
+    private List<PipelineStageStats> snapshot(PipelineRun run) {
+        return List.of(
+                new PipelineStageStats(RENDER, 1, 0, run.count(RENDER), run.averageMillis(RENDER)),
+                stageStats(preprocessStage, run),
+                stageStats(recognizeStage, run),
+                stageStats(persistStage, run));
+    }
+
+    private PipelineStageStats stageStats(PipelineStage stage, PipelineRun run) {
+        return new PipelineStageStats(stage.getName(), stage.getWorkers(), stage.getQueueDepth(),
+                run.count(stage.getName()), run.averageMillis(stage.getName()));
+    }
+
+    /**
+     * Waits for a page to leave the pipeline and unwraps its failure, if any.
+     */
+    private OcrPageResult awaitPage(CompletableFuture<OcrPageResult> pageFuture, int pageNumber) throws IOException, TesseractException {
+        try {
+            return pageFuture.join();
+        } catch (CancellationException e) {
+            throw new TesseractException("OCR of page " + pageNumber + " was cancelled", e);
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TesseractException tesseractException) {
+                throw tesseractException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new TesseractException("Error processing page " + pageNumber + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Tells Tesseract the actual render DPI of a page so its size heuristics match the image. The rest of the
+     * configuration comes with the handle's profile. Pooled handles pass the resolution along with the pixels;
+     * other handles only take it as a variable.
+     *
+     * @param tesseract The handle used for the page
+     * @param dpi The DPI the page was rendered at
+     */
+    private static void setPageResolution(ITesseract tesseract, int dpi) {
+        if (tesseract instanceof PooledTesseract pooled) {
+            pooled.setSourceResolution(dpi);
+        } else {
+            tesseract.setVariable("user_defined_dpi", String.valueOf(dpi));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        preprocessStage.shutdown();
+        recognizeStage.shutdown();
+        persistStage.shutdown();
+        logger.info("OCR pipeline shutdown");
+    }
+
+    /**
+     * Renders or decodes one region of the current page, in pixels at the page's DPI.
+     */
+    @FunctionalInterface
+    private interface RegionRenderer {
+        BufferedImage render(Rectangle region) throws IOException;
+    }
+
+    /**
+     * Per-document state of a pipeline run: its profile, completion, pre-pass and tiling counts, first failure,
+     * per-stage timings, page confidences, orientations and words, and the recognitions of this run that
+     * identical pages can share.
+     */
+    private static class PipelineRun {
+        private final String taskId;
+        private final int pageCount;
+        private final Consumer<OcrPageResult> pageListener;
+        private final boolean captureWords;
+        private final OcrProfile profile;
+        private final String settingsSignature;
+        private final Map<Integer, Float> confidences = new ConcurrentHashMap<>();
+        private final Map<Integer, List<Float>> lineConfidences = new ConcurrentHashMap<>();
+        private final Map<Integer, PageOrientation> orientations = new ConcurrentHashMap<>();
+        private final Map<Integer, AffineTransform> wordTransforms = new ConcurrentHashMap<>();
+        private final Map<Integer, List<OcrWord>> words = new ConcurrentHashMap<>();
+        private final AtomicInteger completedPages = new AtomicInteger();
+        private final AtomicInteger reusedPages = new AtomicInteger();
+        private final AtomicInteger blankPages = new AtomicInteger();
+        private final AtomicInteger croppedPages = new AtomicInteger();
+        private final AtomicInteger tiledPages = new AtomicInteger();
+        private final Map<String, CompletableFuture<PageTextCache.KnownPage>> inFlightPages = new ConcurrentHashMap<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Map<String, LongAdder> stageItems = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> stageNanos = new ConcurrentHashMap<>();
+
+        PipelineRun(String taskId, int pageCount, int alreadyCompletedPages, Consumer<OcrPageResult> pageListener,
+                    boolean captureWords, OcrProfile profile, String settingsSignature) {
+            this.taskId = taskId;
+            this.pageCount = pageCount;
+            this.pageListener = pageListener;
+            this.captureWords = captureWords;
+            this.profile = profile;
+            this.settingsSignature = settingsSignature;
+            this.completedPages.set(alreadyCompletedPages);
+        }
+
+        <T> T timed(String stage, Callable<T> work) throws Exception {
+            if (hasFailed()) {
+                throw new CancellationException("OCR pipeline run aborted after an earlier failure");
+            }
+            long start = System.nanoTime();
+            try {
+                return work.call();
+            } finally {
+                record(stage, System.nanoTime() - start);
+            }
+        }
+
+        void record(String stage, long nanos) {
+            stageItems.computeIfAbsent(stage, key -> new LongAdder()).increment();
+            stageNanos.computeIfAbsent(stage, key -> new LongAdder()).add(nanos);
+        }
+
+        long count(String stage) {
+            LongAdder items = stageItems.get(stage);
+            return items == null ? 0 : items.sum();
+        }
+
+        double averageMillis(String stage) {
+            long items = count(stage);
+            return items == 0 ? 0 : stageNanos.get(stage).sum() / 1_000_000.0 / items;
+        }
+
+        int pageCompleted() {
+            return completedPages.incrementAndGet();
+        }
+
+        int getCompletedPages() {
+            return completedPages.get();
+        }
+
+        void pageReused() {
+            reusedPages.incrementAndGet();
+        }
+
+        int getReusedPages() {
+            return reusedPages.get();
+        }
+
+        void pageBlank() {
+            blankPages.incrementAndGet();
+        }
+
+        int getBlankPages() {
+            return blankPages.get();
+        }
+
+        void pageCropped() {
+            croppedPages.incrementAndGet();
+        }
+
+        int getCroppedPages() {
+            return croppedPages.get();
+        }
+
+        void pageTiled() {
+            tiledPages.incrementAndGet();
+        }
+
+        int getTiledPages() {
+            return tiledPages.get();
+        }
+
+        void fail(Throwable error) {
+            failure.compareAndSet(null, error);
+        }
+
+        boolean hasFailed() {
+            return failure.get() != null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import net.sourceforge.tess4j.ITesseract;
+
+/**
+ * A named set of engine settings for a kind of document: Tesseract's engine and page segmentation mode,
+ * a character whitelist, the render DPI and the preprocessing chain.
+ * <p>
+ * The engine settings are applied once, when the {@link TesseractPool} creates a handle for the profile, and
+ * handles are pooled per language and profile, so recognizing a page never changes the configuration of a
+ * shared handle. Only the page's resolution is passed per page.
+ */
+public final class OcrProfile {
+
+    private final String name;
+    private final int pageSegMode;
+    private final int ocrEngineMode;
+    private final String charWhitelist;
+    private final int dpi;
+    private final ImagePreprocessor preprocessor;
+
+    /**
+     * @param name The profile name, e.g. {@code invoice}
+     * @param pageSegMode The Tesseract page segmentation mode
+     * @param ocrEngineMode The Tesseract engine mode
+     * @param charWhitelist The only characters Tesseract may recognize, or null for all
+     * @param dpi The DPI PDF pages are rendered at, or 0 to plan it per page
+     * @param preprocessor The preprocessing chain of the profile, or null for the configured default chain
+     */
+    public OcrProfile(String name, int pageSegMode, int ocrEngineMode, String charWhitelist, int dpi,
+                      ImagePreprocessor preprocessor) {
+        this.name = name;
+        this.pageSegMode = pageSegMode;
+        this.ocrEngineMode = ocrEngineMode;
+        this.charWhitelist = charWhitelist;
+        this.dpi = dpi;
+        this.preprocessor = preprocessor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPageSegMode() {
+        return pageSegMode;
+    }
+
+    public int getOcrEngineMode() {
+        return ocrEngineMode;
+    }
+
+    public String getCharWhitelist() {
+        return charWhitelist;
+    }
+
+    /**
+     * @return The DPI PDF pages are rendered at, or 0 if the DPI is planned per page
+     */
+    public int getDpi() {
+        return dpi;
+    }
+
+    /**
+     * @return The preprocessing chain of the profile, or null for the configured default chain
+     */
+    public ImagePreprocessor getPreprocessor() {
+        return preprocessor;
+    }
+
+    /**
+     * Applies the profile's settings to a new handle. The engine mode is set when the handle is created.
+     *
+     * @param tesseract The handle
+     */
+    public void configure(ITesseract tesseract) {
+        tesseract.setPageSegMode(pageSegMode);
+        if (charWhitelist != null) {
+            tesseract.setVariable("tessedit_char_whitelist", charWhitelist);
+        }
+    }
+
+    /**
+     * @return The settings of the profile that affect the recognized text, for cache keys
+     */
+    public String getSettingsSignature() {
+        return "profile=" + name
+                + ",oem=" + ocrEngineMode
+                + ",psm=" + pageSegMode
+                + ",whitelist=" + (charWhitelist != null ? charWhitelist : "")
+                + ",dpi=" + (dpi > 0 ? dpi : "planned")
+                + ",preprocess=" + (preprocessor != null ? preprocessor.getSettingsSignature() : "default");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,102 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The named {@link OcrProfile}s requests can choose from:
+ * <ul>
+ * <li>{@code default}: automatic segmentation, the general whitelist, per-page DPI and the configured preprocessing chain</li>
+ * <li>{@code scanned-book}: no whitelist, 300 DPI and adaptive binarization for pages darker towards the spine</li>
+ * <li>{@code invoice}: one uniform block, so table rows stay on one line, the whitelist with currency signs, 300 DPI
+ *     and plain global binarization for clean print</li>
+ * <li>{@code italian-literary}: the whitelist with Italian typographic quotes, apostrophes and dashes</li>
+ * <li>{@code fax}: no whitelist, the 200 DPI of fine-mode faxes and despeckling of transmission noise</li>
+ * </ul>
+ * Profiles segment pages automatically without Tesseract's orientation detection when the pipeline straightens
+ * pages itself, and with it otherwise. Requests without a profile get {@code ocr.profiles.default}.
+ */
+@Component
+public class OcrProfiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrProfiles.class);
+
+    public static final String DEFAULT = "default";
+
+    // Automatic page segmentation, with Tesseract's own orientation detection only if the pipeline does not straighten pages
+    private static final int PAGE_SEG_MODE_AUTO = 3;
+    private static final int PAGE_SEG_MODE_AUTO_OSD = 1;
+    // A single uniform block of text
+    private static final int PAGE_SEG_MODE_BLOCK = 6;
+    // Neural net based LSTM engine only
+    private static final int OCR_ENGINE_MODE_LSTM = 1;
+    static final String CHAR_WHITELIST = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,;:!?()-+*/_'\"@#$%&=[]{}|<>àèìòùÀÈÌÒÙáéíóúÁÉÍÓÚ";
+
+    private final Map<String, OcrProfile> profiles = new LinkedHashMap<>();
+    private final OcrProfile defaultProfile;
+
+    @Autowired
+    public OcrProfiles(PageOrientationDetector pageOrientationDetector,
+                       @Value("${ocr.preprocess.sauvola.windowSize:25}") int sauvolaWindowSize,
+                       @Value("${ocr.preprocess.sauvola.k:0.34}") double sauvolaK,
+                       @Value("${ocr.preprocess.bufferPoolSize:6}") int bufferPoolSize,
+                       @Value("${ocr.profiles.default:default}") String defaultProfile) {
+        int autoPageSegMode = pageOrientationDetector.isEnabled() ? PAGE_SEG_MODE_AUTO : PAGE_SEG_MODE_AUTO_OSD;
+        add(new OcrProfile(DEFAULT, autoPageSegMode, OCR_ENGINE_MODE_LSTM, CHAR_WHITELIST, 0, null));
+        add(new OcrProfile("scanned-book", autoPageSegMode, OCR_ENGINE_MODE_LSTM, null, 300,
+                new ImagePreprocessor("sharpen,sauvola", sauvolaWindowSize, sauvolaK, bufferPoolSize)));
+        add(new OcrProfile("invoice", PAGE_SEG_MODE_BLOCK, OCR_ENGINE_MODE_LSTM, CHAR_WHITELIST + "€£", 300,
+                new ImagePreprocessor("otsu", sauvolaWindowSize, sauvolaK, bufferPoolSize)));
+        add(new OcrProfile("italian-literary", autoPageSegMode, OCR_ENGINE_MODE_LSTM,
+                CHAR_WHITELIST + "«»‘’“”–—…", 0, null));
+        add(new OcrProfile("fax", autoPageSegMode, OCR_ENGINE_MODE_LSTM, null, 200,
+                new ImagePreprocessor("despeckle,otsu", sauvolaWindowSize, sauvolaK, bufferPoolSize)));
+        this.defaultProfile = profiles.get(defaultProfile.isBlank() ? DEFAULT : defaultProfile.trim());
+        if (this.defaultProfile == null) {
+            throw new IllegalStateException("Unknown default OCR profile '" + defaultProfile + "'; available: "
+                    + String.join(", ", profiles.keySet()));
+        }
+        logger.info("OCR profiles: {} (default: {})", profiles.keySet(), this.defaultProfile.getName());
+    }
+
+    private void add(OcrProfile profile) {
+        profiles.put(profile.getName(), profile);
+    }
+
+    /**
+     * @return The names of the profiles, default first
+     */
+    public Set<String> getNames() {
+        return profiles.keySet();
+    }
+
+    /**
+     * @return The profile of requests that do not choose one
+     */
+    public OcrProfile getDefault() {
+        return defaultProfile;
+    }
+
+    /**
+     * @param name A profile name, or null or blank for the default profile
+     * @return The profile
+     * @throws IllegalArgumentException If there is no profile of that name
+     */
+    public OcrProfile get(String name) {
+        if (name == null || name.isBlank()) {
+            return defaultProfile;
+        }
+        OcrProfile profile = profiles.get(name.trim());
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown OCR profile '" + name + "'; available: " + String.join(", ", profiles.keySet()));
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,448 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pdf.marsk.pdfdemo.model.OcrJob;
+import com.pdf.marsk.pdfdemo.model.OcrPageCheckpoint;
+import com.pdf.marsk.pdfdemo.model.OcrPageTask;
+import com.pdf.marsk.pdfdemo.model.OcrTextDocument;
+import com.pdf.marsk.pdfdemo.repository.OcrJobRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository;
+
+import jakarta.annotation.PreDestroy;
+
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Distributes the pages of background PDF OCR jobs over all nodes through the {@link OcrPageQueue}.
+ * <p>
+ * The node that owns a job splits it into page tasks (pages with a usable text layer are checkpointed
+ * right away in hybrid mode) and follows it, turning new page checkpoints into progress for its task.
+ * The queue workers of every node claim batches of pages, recognize them with the local
+ * {@link OcrPipeline} and checkpoint them. Whichever node finishes the last page assembles the text,
+ * saves it as an OCR document and marks the job completed; the owning node then completes its task.
+ * Job files are read by every node, so {@code ocr.jobs.dir} has to be on storage all nodes share.
+ */
+@Service
+public class OcrQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrQueueService.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OcrPageQueue pageQueue;
+    private final OcrPipeline ocrPipeline;
+    private final PdfTextLayerAnalyzer pdfTextLayerAnalyzer;
+    private final OcrLanguageDetector ocrLanguageDetector;
+    private final OcrCheckpointStore ocrCheckpointStore;
+    private final OcrJobRepository ocrJobRepository;
+    private final OcrTextDocumentRepository ocrTextDocumentRepository;
+    private final ProgressTrackingService progressTrackingService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final String nodeId;
+    private final int workers;
+    private final int claimBatchSize;
+    private final long pollIntervalMs;
+    private final long claimTimeoutMs;
+    private final int maxAttempts;
+    private final Map<String, WatchedJob> watchedJobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean shuttingDown;
+
+    @Autowired
+    public OcrQueueService(OcrPageQueue pageQueue,
+                           OcrPipeline ocrPipeline,
+                           PdfTextLayerAnalyzer pdfTextLayerAnalyzer,
+                           OcrLanguageDetector ocrLanguageDetector,
+                           OcrCheckpointStore ocrCheckpointStore,
+                           OcrJobRepository ocrJobRepository,
+                           OcrTextDocumentRepository ocrTextDocumentRepository,
+                           ProgressTrackingService progressTrackingService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${ocr.queue.enabled:false}") boolean enabled,
+                           @Value("${ocr.queue.nodeId:}") String nodeId,
+                           @Value("${ocr.queue.workers:2}") int workers,
+                           @Value("${ocr.queue.claimBatchSize:4}") int claimBatchSize,
+                           @Value("${ocr.queue.pollIntervalMs:1000}") long pollIntervalMs,
+                           @Value("${ocr.queue.claimTimeoutMs:600000}") long claimTimeoutMs,
+                           @Value("${ocr.queue.maxAttempts:3}") int maxAttempts) {
+        this.pageQueue = pageQueue;
+        this.ocrPipeline = ocrPipeline;
+        this.pdfTextLayerAnalyzer = pdfTextLayerAnalyzer;
+        this.ocrLanguageDetector = ocrLanguageDetector;
+        this.ocrCheckpointStore = ocrCheckpointStore;
+        this.ocrJobRepository = ocrJobRepository;
+        this.ocrTextDocumentRepository = ocrTextDocumentRepository;
+        this.progressTrackingService = progressTrackingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId.trim();
+        this.workers = Math.max(1, workers);
+        this.claimBatchSize = Math.max(1, claimBatchSize);
+        this.pollIntervalMs = Math.max(100, pollIntervalMs);
+        this.claimTimeoutMs = claimTimeoutMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        // One thread per queue worker, plus one that follows jobs and releases expired claims
+        this.scheduler = Executors.newScheduledThreadPool(this.workers + 1);
+    }
+
+    /**
+     * @return Whether PDF jobs are distributed through the page queue
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The ID this node claims pages under
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Starts this node's queue workers.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        logger.info("Starting {} OCR queue workers on node {}", workers, nodeId);
+        for (int i = 0; i < workers; i++) {
+            scheduler.scheduleWithFixedDelay(this::drainQueue, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::followWatchedJobs, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        long expiryCheckMs = Math.max(pollIntervalMs, claimTimeoutMs / 4);
+        scheduler.scheduleWithFixedDelay(this::releaseExpiredClaims, expiryCheckMs, expiryCheckMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the pages of a PDF job, unless an earlier run already did, and follows the job until
+     * a node has finished it. Called on the node that owns the job's progress task, also after a restart.
+     *
+     * @param job The running job
+     * @throws IOException If the job's PDF cannot be read
+     */
+    public void distribute(OcrJob job) throws IOException {
+        String jobId = job.getId();
+        if (!pageQueue.isQueued(jobId)) {
+            plan(job);
+        }
+        progressTrackingService.updateOcrTaskTotalPages(jobId, job.getPageCount());
+        watchedJobs.putIfAbsent(jobId, new WatchedJob());
+        // Nothing may be left to recognize, e.g. when every page had a usable text layer
+        tryAssemble(jobId);
+    }
+
+    /**
+     * Checkpoints the text-layer pages of a hybrid job and queues the others. The language of an automatic-language
+     * job is detected first and saved on the job, so every node recognizes its pages in that language.
+     */
+    private void plan(OcrJob job) throws IOException {
+        String jobId = job.getId();
+        try (PDDocument document = PDDocument.load(new File(job.getSourcePath()), MemoryUsageSetting.setupTempFileOnly())) {
+            if (OcrLanguageDetector.isAuto(job.getLanguage())) {
+                String language = detectLanguage(document);
+                job.setLanguage(language);
+                job.setDetectedLanguage(language);
+                progressTrackingService.updateOcrTaskProgress(jobId, 0, "Detected language: " + language);
+            }
+            int pageCount = document.getNumberOfPages();
+            Set<Integer> checkpointedPages = ocrCheckpointStore.load(jobId).keySet();
+            List<Integer> pagesToOcr = new ArrayList<>();
+            for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                if (checkpointedPages.contains(pageIndex)) {
+                    continue;
+                }
+                String pageText = job.isHybridExtraction() ? pdfTextLayerAnalyzer.extractUsablePageText(document, pageIndex) : null;
+                if (pageText == null || !ocrCheckpointStore.save(jobId, new OcrPageResult(pageIndex, 0, pageText))) {
+                    pagesToOcr.add(pageIndex);
+                }
+            }
+            // The page count must be recorded before any page can finish and trigger assembly
+            job.setPageCount(pageCount);
+            ocrJobRepository.save(job);
+            pageQueue.enqueue(jobId, pagesToOcr);
+            logger.info("Queued {} of {} pages of OCR job {} for distributed recognition", pagesToOcr.size(), pageCount, jobId);
+            progressTrackingService.updateOcrTaskProgress(jobId, pageCount - pagesToOcr.size(),
+                    "Queued " + pagesToOcr.size() + " pages for OCR...");
+        }
+    }
+
+    private String detectLanguage(PDDocument document) throws IOException {
+        try {
+            return ocrLanguageDetector.detect(document).language();
+        } catch (TesseractException e) {
+            throw new IOException("Could not detect the document language: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claims and recognizes pages until the queue is empty. Runs on every queue worker of every node.
+     */
+    private void drainQueue() {
+        try {
+            while (!shuttingDown) {
+                List<OcrPageTask> claimed = pageQueue.claim(nodeId, claimBatchSize);
+                if (claimed.isEmpty()) {
+                    return;
+                }
+                Map<String, List<OcrPageTask>> tasksByJob = new LinkedHashMap<>();
+                for (OcrPageTask task : claimed) {
+                    tasksByJob.computeIfAbsent(task.getJobId(), key -> new ArrayList<>()).add(task);
+                }
+                tasksByJob.forEach(this::recognizePages);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error in OCR queue worker: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recognizes claimed pages of one job and checkpoints each one before marking it done.
+     */
+    private void recognizePages(String jobId, List<OcrPageTask> tasks) {
+        OcrJob job = ocrJobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != OcrJob.Status.RUNNING) {
+            tasks.forEach(task -> pageQueue.fail(task, nodeId, "OCR job is no longer running", 0));
+            return;
+        }
+
+        // A page may have been recognized already by a node whose claim then expired
+        Set<Integer> checkpointedPages = ocrCheckpointStore.load(jobId).keySet();
+        Map<Integer, OcrPageTask> pendingTasks = new ConcurrentHashMap<>();
+        for (OcrPageTask task : tasks) {
+            if (checkpointedPages.contains(task.getPageIndex())) {
+                pageQueue.complete(task, nodeId);
+            } else {
+                pendingTasks.put(task.getPageIndex(), task);
+            }
+        }
+        List<Integer> pageIndices = pendingTasks.keySet().stream().sorted(Comparator.naturalOrder()).toList();
+
+        if (!pageIndices.isEmpty()) {
+            try (PDDocument document = PDDocument.load(new File(job.getSourcePath()), MemoryUsageSetting.setupTempFileOnly())) {
+                ocrPipeline.process(document, pageIndices, OcrOptions.of(job.getLanguage()).withProfile(job.getProfile())
+                        .withPageListener(pageResult -> {
+                            if (!ocrCheckpointStore.save(jobId, pageResult)) {
+                                throw new IllegalStateException("Could not checkpoint page " + (pageResult.getPageIndex() + 1));
+                            }
+                            pageQueue.complete(pendingTasks.remove(pageResult.getPageIndex()), nodeId);
+                        }));
+            } catch (Exception e) {
+                logger.error("Error recognizing pages {} of OCR job {} on node {}: {}", pageIndices, jobId, nodeId, e.getMessage());
+                releasePages(job, pendingTasks.values(), e.getMessage());
+                return;
+            }
+        }
+        tryAssemble(jobId);
+    }
+
+    /**
+     * Returns unfinished pages to the queue, failing the job once a page has used up its attempts.
+     * Pages interrupted by a shutdown always go back to the queue.
+     */
+    private void releasePages(OcrJob job, Iterable<OcrPageTask> tasks, String errorMessage) {
+        OcrPageTask exhaustedPage = null;
+        for (OcrPageTask task : tasks) {
+            boolean exhausted = pageQueue.fail(task, nodeId, errorMessage, shuttingDown ? Integer.MAX_VALUE : maxAttempts);
+            if (exhausted && exhaustedPage == null) {
+                exhaustedPage = task;
+            }
+        }
+        if (exhaustedPage != null) {
+            failJob(job, "OCR of page " + (exhaustedPage.getPageIndex() + 1) + " failed after "
+                    + exhaustedPage.getAttempts() + " attempts: " + errorMessage);
+        }
+    }
+
+    /**
+     * Assembles and completes a job once all its pages are recognized. Several nodes may try at once;
+     * the conditional status change lets exactly one of them save the result.
+     */
+    private void tryAssemble(String jobId) {
+        if (pageQueue.countRemaining(jobId) > 0) {
+            return;
+        }
+        OcrJob completedJob;
+        try {
+            completedJob = transactionTemplate.execute(status -> {
+                if (ocrJobRepository.updateStatusIf(jobId, OcrJob.Status.RUNNING, OcrJob.Status.COMPLETED) == 0) {
+                    return null; // Another node finished the job
+                }
+                OcrJob job = ocrJobRepository.findById(jobId).orElseThrow();
+                Map<Integer, String> checkpointedPages = ocrCheckpointStore.load(jobId);
+                String[] pageTexts = new String[job.getPageCount()];
+                for (int pageIndex = 0; pageIndex < pageTexts.length; pageIndex++) {
+                    pageTexts[pageIndex] = checkpointedPages.get(pageIndex);
+                    if (pageTexts[pageIndex] == null) {
+                        throw new IllegalStateException("No text recorded for page " + (pageIndex + 1));
+                    }
+                }
+                OcrTextDocument document = new OcrTextDocument(job.getOriginalFilename(), OcrService.joinPageTexts(pageTexts), job.getLanguage());
+                document.setLineConfidences(LineConfidences.join(pageTexts, ocrCheckpointStore.loadLineConfidences(jobId)));
+                document.setDetectedLanguage(job.getDetectedLanguage());
+                document = ocrTextDocumentRepository.save(document);
+                job.setResultDocumentId(document.getId());
+                return job;
+            });
+        } catch (RuntimeException e) {
+            logger.error("Could not assemble OCR job {}: {}", jobId, e.getMessage());
+            ocrJobRepository.findById(jobId).ifPresent(job -> failJob(job, "Could not assemble the result: " + e.getMessage()));
+            return;
+        }
+        if (completedJob != null) {
+            logger.info("Assembled OCR job {} ({} pages) on node {}", jobId, completedJob.getPageCount(), nodeId);
+            cleanUp(completedJob);
+        }
+    }
+
+    private void failJob(OcrJob job, String errorMessage) {
+        String message = errorMessage != null && errorMessage.length() > MAX_ERROR_LENGTH
+                ? errorMessage.substring(0, MAX_ERROR_LENGTH) : errorMessage;
+        Boolean failed = transactionTemplate.execute(status -> {
+            if (ocrJobRepository.updateStatusIf(job.getId(), OcrJob.Status.RUNNING, OcrJob.Status.FAILED) == 0) {
+                return false;
+            }
+            ocrJobRepository.findById(job.getId()).ifPresent(failedJob -> failedJob.setErrorMessage(message));
+            return true;
+        });
+        if (Boolean.TRUE.equals(failed)) {
+            logger.warn("OCR job {} failed: {}", job.getId(), message);
+            cleanUp(job);
+        }
+    }
+
+    /**
+     * Removes the page tasks, checkpoints and source file of a finished job.
+     */
+    private void cleanUp(OcrJob job) {
+        pageQueue.delete(job.getId());
+        ocrCheckpointStore.delete(job.getId());
+        try {
+            Files.deleteIfExists(Path.of(job.getSourcePath()));
+        } catch (IOException e) {
+            logger.warn("Could not delete the source file of OCR job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes new page checkpoints of the jobs this node owns as progress, and completes
+     * their tasks once some node has finished them.
+     */
+    private void followWatchedJobs() {
+        for (Map.Entry<String, WatchedJob> entry : watchedJobs.entrySet()) {
+            try {
+                follow(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                logger.warn("Could not follow OCR job {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void follow(String jobId, WatchedJob watchedJob) {
+        OcrJob job = ocrJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            watchedJobs.remove(jobId);
+            return;
+        }
+        switch (job.getStatus()) {
+            case COMPLETED -> {
+                String result = job.getResultDocumentId() == null ? null : ocrTextDocumentRepository.findById(job.getResultDocumentId())
+                        .map(OcrTextDocument::getExtractedText).orElse(null);
+                if (result != null) {
+                    progressTrackingService.completeTask(jobId, true, result);
+                    progressTrackingService.updateOcrResultDocument(jobId, job.getResultDocumentId());
+                } else {
+                    progressTrackingService.completeTask(jobId, false, "Error: the OCR result is no longer available");
+                }
+                watchedJobs.remove(jobId);
+            }
+            case FAILED -> {
+                progressTrackingService.completeTask(jobId, false, "Error: " + job.getErrorMessage());
+                watchedJobs.remove(jobId);
+            }
+            default -> {
+                List<OcrPageCheckpoint> newCheckpoints = ocrCheckpointStore.loadAfter(jobId, watchedJob.lastCheckpointId);
+                for (OcrPageCheckpoint checkpoint : newCheckpoints) {
+                    progressTrackingService.publishOcrPageResult(jobId, checkpoint.getPageIndex(), checkpoint.getPageText());
+                    watchedJob.lastCheckpointId = checkpoint.getId();
+                    watchedJob.pagesDone++;
+                }
+                if (!newCheckpoints.isEmpty()) {
+                    progressTrackingService.updateOcrTaskProgress(jobId, watchedJob.pagesDone,
+                            "Completed " + watchedJob.pagesDone + " of " + job.getPageCount() + " pages");
+                }
+            }
+        }
+    }
+
+    private void releaseExpiredClaims() {
+        try {
+            pageQueue.releaseExpiredClaims(claimTimeoutMs);
+        } catch (RuntimeException e) {
+            logger.warn("Could not release expired OCR page claims: {}", e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = UUID.randomUUID().toString().substring(0, 8);
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Shutting down OCR queue workers");
+        shuttingDown = true;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Progress of a job followed by its owning node.
+     */
+    private static class WatchedJob {
+        private long lastCheckpointId;
+        private int pagesDone;
+    }
+}
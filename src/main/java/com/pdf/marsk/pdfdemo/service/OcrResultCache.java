@@ -0,0 +1,169 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.pdf.marsk.pdfdemo.model.OcrCachedResult;
+import com.pdf.marsk.pdfdemo.repository.OcrCachedResultRepository;
+
+/**
+ * Content-addressed cache of whole-document OCR results.
+ * <p>
+ * Entries are keyed by the SHA-256 of the uploaded bytes, the OCR language and a signature of every
+ * engine setting that affects the text (segmentation mode, DPI planning, preprocessing chain, ...).
+ * Each entry records the language its text was recognized in, which for a request with language=auto
+ * is the detected one, and the line confidences of the text, so a cached result can still be corrected selectively.
+ * Lookups go to the in-memory {@code ocrResults} Caffeine cache first and fall back to the
+ * {@code ocr_result_cache} table, which survives restarts and is shared between nodes.
+ * Persistent tier failures are logged and treated as misses so they never fail an OCR request.
+ */
+@Component
+public class OcrResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrResultCache.class);
+    static final String CACHE_NAME = "ocrResults";
+
+    private final Cache memoryTier;
+    private final OcrCachedResultRepository persistentTier;
+    private final OcrMetrics ocrMetrics;
+    private final boolean enabled;
+
+    @Autowired
+    public OcrResultCache(CacheManager cacheManager,
+                          OcrCachedResultRepository persistentTier,
+                          OcrMetrics ocrMetrics,
+                          @Value("${ocr.cache.enabled:true}") boolean enabled) {
+        this.memoryTier = cacheManager.getCache(CACHE_NAME);
+        this.persistentTier = persistentTier;
+        this.ocrMetrics = ocrMetrics;
+        this.enabled = enabled && memoryTier != null;
+        if (enabled && memoryTier == null) {
+            logger.warn("Cache '{}' is not configured, OCR result caching is disabled", CACHE_NAME);
+        }
+    }
+
+    /**
+     * Builds the cache key of a document.
+     *
+     * @param contentSha256 The hex SHA-256 of the file contents
+     * @param language The OCR language
+     * @param engineSettings The signature of the engine settings used for recognition
+     * @return The cache key
+     */
+    public String key(String contentSha256, String language, String engineSettings) {
+        return contentSha256 + ":" + language + ":" + sha256(engineSettings.getBytes(StandardCharsets.UTF_8)).substring(0, 32);
+    }
+
+    /**
+     * Looks up a cached result, promoting persistent hits to the in-memory tier.
+     *
+     * @param cacheKey The key built by {@link #key}
+     * @return The cached result, or null on a miss
+     */
+    public CachedResult get(String cacheKey) {
+        if (!enabled) {
+            return null;
+        }
+        CachedResult result = lookup(cacheKey);
+        ocrMetrics.recordDocumentCacheLookup(result != null);
+        return result;
+    }
+
+    private CachedResult lookup(String cacheKey) {
+        CachedResult result = memoryTier.get(cacheKey, CachedResult.class);
+        if (result != null) {
+            logger.debug("OCR result cache hit (memory) for {}", cacheKey);
+            return result;
+        }
+        try {
+            Optional<OcrCachedResult> stored = persistentTier.findByCacheKey(cacheKey);
+            if (stored.isPresent()) {
+                logger.debug("OCR result cache hit (database) for {}", cacheKey);
+                result = new CachedResult(stored.get().getExtractedText(), stored.get().getLanguageUsed(),
+                        stored.get().getLineConfidences());
+                memoryTier.put(cacheKey, result);
+                return result;
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Could not read the persistent OCR result cache: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Stores a result in both tiers. Empty results are not cached.
+     *
+     * @param language The language the text was recognized in
+     * @param lineConfidences The encoded line confidences of the text, see {@link LineConfidences}, or null
+     */
+    public void put(String cacheKey, String contentSha256, String language, String engineSettings, String text,
+                    String lineConfidences) {
+        if (!enabled || text == null || text.isEmpty()) {
+            return;
+        }
+        memoryTier.put(cacheKey, new CachedResult(text, language, lineConfidences));
+        try {
+            if (persistentTier.findByCacheKey(cacheKey).isEmpty()) {
+                OcrCachedResult entry = new OcrCachedResult(cacheKey, contentSha256, language, engineSettings, text);
+                entry.setLineConfidences(lineConfidences);
+                persistentTier.save(entry);
+            }
+        } catch (DataAccessException e) {
+            // Typically a concurrent upload of the same file that stored the entry first
+            logger.warn("Could not write the persistent OCR result cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A cached OCR result.
+     *
+     * @param text The recognized text
+     * @param language The language the text was recognized in
+     * @param lineConfidences The encoded line confidences of the text, or null if none were recorded
+     */
+    public record CachedResult(String text, String language, String lineConfidences) {
+    }
+
+    /**
+     * Computes the hex SHA-256 of a file without loading it into memory.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
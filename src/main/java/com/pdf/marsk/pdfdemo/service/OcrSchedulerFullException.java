@@ -0,0 +1,29 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when the OCR scheduler refuses a new request because the queue of its priority class is full.
+ */
+public class OcrSchedulerFullException extends RejectedExecutionException {
+
+    private final OcrPageScheduler.Priority priority;
+    private final long retryAfterSeconds;
+
+    public OcrSchedulerFullException(OcrPageScheduler.Priority priority, long retryAfterSeconds) {
+        super("The OCR queue for " + priority.getKey() + " requests is full, retry in " + retryAfterSeconds + " seconds");
+        this.priority = priority;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public OcrPageScheduler.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return The estimated number of seconds until the queue has room
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,75 +1,81 @@
 package com.pdf.marsk.pdfdemo.service;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.awt.image.BufferedImageOp;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.text.PDFTextStripper; // Added for direct text extraction
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.pdf.marsk.pdfdemo.model.OcrTextDocument; // Added import
 import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository; // Added import
 
-import net.sourceforge.tess4j.ITesseract;
-import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
 
 @Service
 public class OcrService {
 
     private static final Logger logger = LoggerFactory.getLogger(OcrService.class);
-    private final ITesseract tesseractInstance;
+    
+    @Autowired
+    private TesseractPool tesseractPool;
+    
+    @Autowired
+    private OcrPipeline ocrPipeline;
+    
+    @Autowired
+    private PdfTextLayerAnalyzer pdfTextLayerAnalyzer;
+    
+    @Autowired
+    private OcrResultCache ocrResultCache;
+    
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+    
+    @Autowired
+    private OcrCheckpointStore ocrCheckpointStore;
     
     @Autowired
     private ProgressTrackingService progressTrackingService;
+    
+    @Autowired
+    private OcrPageScheduler pageScheduler;
+
+    @Autowired
+    private OcrLanguageDetector ocrLanguageDetector;
+
+    @Autowired
+    private OcrProfiles ocrProfiles;
 
     @Autowired // Added repository injection
     private OcrTextDocumentRepository ocrTextDocumentRepository;
 
-    public OcrService() {
-        tesseractInstance = new Tesseract();
-        
-        // Set the path to the Tesseract data directory (where tessdata is located)
-        try {
-            // Set tessdata directory path - first try app root directory
-            String userDir = System.getProperty("user.dir");
-            File tessDataDir = new File(userDir, "tessdata");
-            
-            if (tessDataDir.exists() && tessDataDir.isDirectory()) {
-                logger.info("Using tessdata directory: {}", tessDataDir.getAbsolutePath());
-                tesseractInstance.setDatapath(tessDataDir.getAbsolutePath());
-            } else {
-                logger.warn("Tessdata directory not found at: {}. Using system default.", tessDataDir.getAbsolutePath());
-            }
-            
-            tesseractInstance.setLanguage("eng"); // Default to English, can be made configurable
-            
-            // Add additional options to improve PDF processing
-            tesseractInstance.setPageSegMode(1); // Automatic page segmentation with OSD
-            tesseractInstance.setOcrEngineMode(1); // Neural net based LSTM engine only
-            
-            logger.info("Initialized Tesseract OCR service");
-        } catch (Exception e) {
-            logger.error("Error configuring Tesseract OCR: {}", e.getMessage());
-        }
-    }    
-    
+    @Value("${ocr.output.imageDpi:300}")
+    private int outputImageDpi;
+
     public String performOcr(MultipartFile file) throws IOException, TesseractException {
         return performOcr(file, "eng"); // Default to English
     }
@@ -98,60 +104,108 @@ public class OcrService {
      * @throws TesseractException If there is an error during OCR processing
      */
     public String performOcr(MultipartFile file, String language, String taskId) throws IOException, TesseractException {
-        Path tempFile = null;
-        
+        return performOcr(file, OcrOptions.of(language).withTaskId(taskId));
+    }
+    
+    /**
+     * Performs OCR on a file with the given options: language (or auto), engine profile, progress task,
+     * hybrid extraction of PDF text layers and a listener for the detected language.
+     * In hybrid mode, PDF pages with a usable embedded text layer are taken from the text layer
+     * and only the remaining pages are rendered and recognized.
+     * 
+     * @param file The file to process
+     * @param options The OCR options
+     * @return The extracted text
+     * @throws IOException If there is an error reading/writing the file
+     * @throws TesseractException If there is an error during OCR processing
+     * @throws IllegalArgumentException If there is no profile of that name
+     */
+    public String performOcr(MultipartFile file, OcrOptions options) throws IOException, TesseractException {
+        OcrProfile ocrProfile = ocrProfiles.get(options.profile());
+        SpooledUpload upload;
         try {
-            // Set the language
-            tesseractInstance.setLanguage(language);
-            logger.info("Setting OCR language to: {}", language);
-            
-            // Create a temporary file from the MultipartFile
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null) {
-                originalFilename = "unknown_file";
+            upload = uploadSpoolService.spool(file);
+        } catch (IOException e) {
+            logger.error("Could not spool upload {} for OCR: {}",
+                    file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown file", e.getMessage());
+            if (options.taskId() != null && progressTrackingService != null) {
+                progressTrackingService.completeTask(options.taskId(), false, "Error: " + e.getMessage());
             }
+            throw e;
+        }
+        try (upload) {
+            return performOcr(upload, options, ocrProfile);
+        }
+    }
+    
+    /**
+     * Performs OCR on an upload that has already been spooled to disk, with the given options.
+     * The language detected for {@link OcrLanguageDetector#AUTO} is reported to the options' language listener
+     * before recognition starts, so a background job can keep it for a resumed run.
+     * The upload is left in place; the caller closes it.
+     * 
+     * @param upload The spooled upload to process
+     * @param options The OCR options
+     * @return The extracted text
+     * @throws IOException If there is an error reading the file
+     * @throws TesseractException If there is an error during OCR processing
+     * @throws IllegalArgumentException If there is no profile of that name
+     */
+    public String performOcr(SpooledUpload upload, OcrOptions options) throws IOException, TesseractException {
+        return performOcr(upload, options, ocrProfiles.get(options.profile()));
+    }
+    
+    private String performOcr(SpooledUpload upload, OcrOptions options, OcrProfile profile) throws IOException, TesseractException {
+        String language = options.language();
+        String taskId = options.taskId();
+        boolean hybridExtraction = options.hybridExtraction();
+        String originalFilename = upload.getOriginalFilename();
+        try {
+            logger.info("Performing OCR on file: {} with language: {}, profile: {}", originalFilename, language, profile.getName());
             
-            tempFile = Files.createTempFile("ocr_temp_", "_" + originalFilename);
-            try (FileOutputStream fos = new FileOutputStream(tempFile.toFile())) {
-                fos.write(file.getBytes());
+            // Identical uploads with the same language and engine settings reuse the earlier result
+            boolean isPdf = originalFilename.toLowerCase().endsWith(".pdf");
+            boolean isTiff = TiffFrameReader.isTiff(originalFilename);
+            String contentSha256 = OcrResultCache.sha256(upload.getPath());
+            String engineSettings = isPdf
+                    ? "pdf;hybrid=" + hybridExtraction + ";" + ocrPipeline.getSettingsSignature(profile)
+                    : isTiff ? "tiff;" + ocrPipeline.getSettingsSignature(profile) : "image;" + profile.getSettingsSignature();
+            // Auto requests are cached under auto too, so a repeat upload is answered without sampling it again
+            boolean autoLanguage = OcrLanguageDetector.isAuto(language);
+            String cacheKey = ocrResultCache.key(contentSha256, language, engineSettings);
+            OcrResultCache.CachedResult cachedResult = ocrResultCache.get(cacheKey);
+            // The detected language is recorded on the saved document
+            String detectedLanguage = autoLanguage && cachedResult != null ? cachedResult.language() : null;
+            String detectedCacheKey = null;
+            if (autoLanguage && cachedResult == null) {
+                detectedLanguage = detectLanguage(upload, isPdf, taskId);
+                detectedCacheKey = ocrResultCache.key(contentSha256, detectedLanguage, engineSettings);
+                cachedResult = ocrResultCache.get(detectedCacheKey);
+                if (cachedResult != null) {
+                    ocrResultCache.put(cacheKey, contentSha256, detectedLanguage, engineSettings, cachedResult.text(),
+                            cachedResult.lineConfidences());
+                }
+            }
+            if (cachedResult != null) {
+                return returnCachedResult(originalFilename, detectedLanguage, taskId, cachedResult);
+            }
+            if (detectedLanguage != null) {
+                language = detectedLanguage;
+                options.languageListener().accept(detectedLanguage);
             }
             
-            logger.info("Performing OCR on file: {} with language: {}", originalFilename, language);
-            
-            if (originalFilename.toLowerCase().endsWith(".pdf")) {
-                return processPdfFile(tempFile.toFile(), language, taskId);
-            } else {
-                // For single image files, create a simple task with one page
-                String trackingTaskId = taskId;
-                if (trackingTaskId == null && progressTrackingService != null) {
-                    // Pass the language when creating the task for a single image
-                    trackingTaskId = progressTrackingService.createOcrTask(originalFilename, 1, language);
-                    progressTrackingService.updateOcrTaskProgress(trackingTaskId, 0, "Processing image...");
-                }
-                
-                // Process as regular image file
-                String result = tesseractInstance.doOCR(tempFile.toFile());
-                
-                // Update progress if we're tracking
-                if (trackingTaskId != null && progressTrackingService != null) {
-                    progressTrackingService.updateOcrTaskProgress(trackingTaskId, 1, "Image processing complete");
-                    // The 'result' (extracted text) is now also the message for completion
-                    progressTrackingService.completeTask(trackingTaskId, true, result);
-                }
-
-                // Save the OCR result
-                if (result != null && !result.isEmpty()) {
-                    OcrTextDocument doc = new OcrTextDocument(originalFilename, result, language);
-                    ocrTextDocumentRepository.save(doc);
-                    logger.info("Saved OCR result for file: {}", originalFilename);
-                }
-                
-                return result;
+            RecognizedText result = isPdf
+                    ? processPdfFile(upload, language, detectedLanguage, profile, taskId, hybridExtraction)
+                    : isTiff
+                    ? processTiffFile(upload, language, detectedLanguage, profile, taskId)
+                    : processImageFile(upload.getFile(), originalFilename, language, detectedLanguage, profile, taskId);
+            ocrResultCache.put(cacheKey, contentSha256, language, engineSettings, result.text(), result.lineConfidences());
+            if (detectedCacheKey != null) {
+                ocrResultCache.put(detectedCacheKey, contentSha256, language, engineSettings, result.text(), result.lineConfidences());
             }
+            return result.text();
         } catch (IOException e) {
-            logger.error("IOException during OCR file handling for {}: {}", 
-                    file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown file", 
-                    e.getMessage());
+            logger.error("IOException during OCR file handling for {}: {}", originalFilename, e.getMessage());
             
             // Update progress if we're tracking
             if (taskId != null && progressTrackingService != null) {
@@ -160,9 +214,7 @@ public class OcrService {
             
             throw e; // Re-throw to be handled by controller
         } catch (TesseractException e) {
-            logger.error("TesseractException during OCR for {}: {}", 
-                    file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown file", 
-                    e.getMessage());
+            logger.error("TesseractException during OCR for {}: {}", originalFilename, e.getMessage());
             logger.error("Tesseract error details: {}", e.getMessage());
             if (e.getCause() != null) {
                 logger.error("Tesseract cause: {}", e.getCause().getMessage());
@@ -174,19 +226,333 @@ public class OcrService {
             }
             
             throw e; // Re-throw
-        } finally {
-            // Clean up the temporary file
-            if (tempFile != null) {
-                try {
-                    Files.deleteIfExists(tempFile);
-                    logger.debug("Temporary OCR file deleted: {}", tempFile.toString());
-                } catch (IOException e) {
-                    logger.warn("Could not delete temporary OCR file {}: {}", tempFile.toString(), e.getMessage());
+        }
+    }
+
+    /**
+     * Recognizes every page of a PDF, every frame of a TIFF or an image and writes its words as TSV, in the column
+     * layout of Tesseract's TSV output: per page, a page row with the page size, then one row per word with its box
+     * and confidence. Boxes of PDF pages are in pixels of the page as rendered for recognition
+     * (the page row gives that size), boxes of TIFF frames in pixels of the decoded frame, boxes of images
+     * in image pixels. The rows of a page are written as soon as it and every page before it are recognized.
+     *
+     * @param file The PDF or image to recognize
+     * @param language The language to use for OCR, or auto to detect it
+     * @param out Receives the TSV, in UTF-8
+     * @throws IOException If the file cannot be read or the output cannot be written
+     * @throws TesseractException If there is an error during OCR processing
+     */
+    public void writeWordTsv(MultipartFile file, String language, OutputStream out) throws IOException, TesseractException {
+        Writer tsv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        tsv.write(OcrWords.TSV_HEADER + "\n");
+        try (SpooledUpload upload = uploadSpoolService.spool(file)) {
+            language = resolveLanguage(upload, language);
+            if (isPdf(upload)) {
+                // Page sizes are read on the persist stage, from a copy of the document of its own
+                try (PDDocument document = upload.loadPdf();
+                     PDDocument pages = upload.loadPdf()) {
+                    recognizePdfWords(document, language, pageResult -> {
+                        Rectangle pageSize = pageResult.getDpi() > 0
+                                ? OcrPipeline.pagePixels(pages.getPage(pageResult.getPageIndex()), pageResult.getDpi())
+                                : new Rectangle();
+                        OcrWords.writeTsv(tsv, pageResult.getPageIndex() + 1, pageSize.width, pageSize.height, pageResult.getWords());
+                    });
+                }
+            } else if (TiffFrameReader.isTiff(upload.getOriginalFilename())) {
+                try (TiffFrameReader frames = new TiffFrameReader(upload.getFile());
+                     TiffFrameReader pages = new TiffFrameReader(upload.getFile())) {
+                    recognizeTiffWords(frames, language, pageResult -> {
+                        TiffFrameReader.Frame frame = ocrPipeline.frame(pages, pageResult.getPageIndex(), ocrProfiles.getDefault());
+                        OcrWords.writeTsv(tsv, pageResult.getPageIndex() + 1, frame.width(), frame.height(), pageResult.getWords());
+                    });
+                }
+            } else {
+                BufferedImage image = readImage(upload);
+                OcrWords.writeTsv(tsv, 1, image.getWidth(), image.getHeight(), recognizeImageWords(image, language));
+            }
+        }
+        tsv.flush();
+    }
+
+    /**
+     * Recognizes every page of a PDF, every frame of a TIFF or an image and writes a searchable PDF: the original
+     * pages (or the frames, or the image) with an invisible text layer of the recognized words. Pages are added to
+     * a temp-file-backed document in page order, each as soon as it and every page before it are recognized, and
+     * their words are dropped once added. Neither PDFBox documents nor image readers may be shared between threads,
+     * so the pages are copied from a second copy of the source PDF or TIFF, read only on the pipeline's persist stage.
+     *
+     * @param file The PDF or image to recognize
+     * @param language The language to use for OCR, or auto to detect it
+     * @param out Receives the searchable PDF
+     * @throws IOException If the file cannot be read or the output cannot be written
+     * @throws TesseractException If there is an error during OCR processing
+     */
+    public void writeSearchablePdf(MultipartFile file, String language, OutputStream out) throws IOException, TesseractException {
+        try (SpooledUpload upload = uploadSpoolService.spool(file);
+             SearchablePdfWriter writer = new SearchablePdfWriter()) {
+            language = resolveLanguage(upload, language);
+            if (isPdf(upload)) {
+                try (PDDocument document = upload.loadPdf();
+                     PDDocument pages = upload.loadPdf()) {
+                    recognizePdfWords(document, language,
+                            pageResult -> writer.addPage(pages.getPage(pageResult.getPageIndex()), pageResult));
+                    // Pages share resources with the source, so it is saved before the source closes
+                    writer.save(out);
                 }
+            } else if (TiffFrameReader.isTiff(upload.getOriginalFilename())) {
+                try (TiffFrameReader frames = new TiffFrameReader(upload.getFile());
+                     TiffFrameReader pages = new TiffFrameReader(upload.getFile())) {
+                    recognizeTiffWords(frames, language, pageResult -> {
+                        // Frames are decoded again for their page images, one at a time
+                        TiffFrameReader.Frame frame = ocrPipeline.frame(pages, pageResult.getPageIndex(), ocrProfiles.getDefault());
+                        writer.addImagePage(pages.read(pageResult.getPageIndex(), frame, frame.pixels()), frame.dpi(), pageResult.getWords());
+                    });
+                    writer.save(out);
+                }
+            } else {
+                BufferedImage image = readImage(upload);
+                writer.addImagePage(image, outputImageDpi, recognizeImageWords(image, language));
+                writer.save(out);
             }
+            logger.info("Wrote searchable PDF with {} pages for file: {}", writer.getPageCount(), upload.getOriginalFilename());
         }
     }
 
+    private static boolean isPdf(SpooledUpload upload) {
+        return upload.getOriginalFilename().toLowerCase().endsWith(".pdf");
+    }
+
+    private void recognizePdfWords(PDDocument document, String language, PageWriter pageWriter) throws IOException, TesseractException {
+        logger.info("Recognizing words of PDF with {} pages using language: {}", document.getNumberOfPages(), language);
+        List<Integer> allPages = IntStream.range(0, document.getNumberOfPages()).boxed().toList();
+        OcrOptions options = OcrOptions.of(language).withCaptureWords(true).withPageListener(new InOrderPages(pageWriter));
+        pageScheduler.checkCapacity(OcrPageScheduler.Priority.INTERACTIVE_PDF);
+        // The document is handed to the worker and only used there until the result is back
+        await(pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_PDF, OcrPageScheduler.newLane("pdf"),
+                () -> ocrPipeline.process(document, allPages, options)));
+    }
+
+    private void recognizeTiffWords(TiffFrameReader frames, String language, PageWriter pageWriter) throws IOException, TesseractException {
+        logger.info("Recognizing words of TIFF with {} frames using language: {}", frames.getFrameCount(), language);
+        List<Integer> allFrames = IntStream.range(0, frames.getFrameCount()).boxed().toList();
+        OcrOptions options = OcrOptions.of(language).withCaptureWords(true).withPageListener(new InOrderPages(pageWriter));
+        pageScheduler.checkCapacity(OcrPageScheduler.Priority.INTERACTIVE_PDF);
+        // The reader is handed to the worker and only used there until the result is back
+        await(pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_PDF, OcrPageScheduler.newLane("tiff"),
+                () -> ocrPipeline.process(frames, allFrames, options)));
+    }
+
+    /**
+     * Writes out a recognized page with its words; runs on the pipeline's persist stage.
+     */
+    @FunctionalInterface
+    private interface PageWriter {
+        void write(OcrPageResult pageResult) throws IOException;
+    }
+
+    /**
+     * Hands the pages of a word-capturing run to a {@link PageWriter} in page order: a page that finishes ahead
+     * of an earlier one waits until that one is written, so only the pages still in flight are buffered.
+     */
+    private static final class InOrderPages implements Consumer<OcrPageResult> {
+        private final PageWriter pageWriter;
+        private final Map<Integer, OcrPageResult> waitingPages = new HashMap<>();
+        private int nextPageIndex;
+
+        InOrderPages(PageWriter pageWriter) {
+            this.pageWriter = pageWriter;
+        }
+
+        @Override
+        public synchronized void accept(OcrPageResult pageResult) {
+            waitingPages.put(pageResult.getPageIndex(), pageResult);
+            try {
+                for (OcrPageResult next = waitingPages.remove(nextPageIndex); next != null; next = waitingPages.remove(nextPageIndex)) {
+                    pageWriter.write(next);
+                    nextPageIndex++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The language to recognize an upload in: the requested one, or the detected one for auto.
+     */
+    private String resolveLanguage(SpooledUpload upload, String language) throws IOException, TesseractException {
+        return OcrLanguageDetector.isAuto(language) ? detectLanguage(upload, isPdf(upload), null) : language;
+    }
+
+    private static BufferedImage readImage(SpooledUpload upload) throws IOException {
+        BufferedImage image = ImageIO.read(upload.getFile());
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + upload.getOriginalFilename());
+        }
+        return image;
+    }
+
+    private List<OcrWord> recognizeImageWords(BufferedImage image, String language) throws IOException, TesseractException {
+        pageScheduler.checkCapacity(OcrPageScheduler.Priority.INTERACTIVE_IMAGE);
+        return recognizeImage(language, ocrProfiles.getDefault(), tesseract -> OcrPipeline.recognizeWords(tesseract, image));
+    }
+
+    /**
+     * Runs an image recognition in a lane of its own in the scheduler's interactive image class, which goes
+     * ahead of PDF jobs and batch pages, and waits for the result.
+     */
+    private <T> T recognizeImage(String language, OcrProfile profile, TesseractPool.TesseractTask<T> task) throws IOException, TesseractException {
+        return await(pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_IMAGE, OcrPageScheduler.newLane("image"),
+                () -> tesseractPool.withHandle(language, profile, task)));
+    }
+
+    /**
+     * Waits for a scheduled recognition and rethrows what it threw.
+     */
+    private static <T> T await(CompletableFuture<T> result) throws IOException, TesseractException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while waiting for OCR", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TesseractException tesseractException) {
+                throw tesseractException;
+            }
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TesseractException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Process a single image file for OCR on a pooled handle configured for the language.
+     * 
+     * @param imageFile The image file to process
+     * @param originalFilename The uploaded file name
+     * @param language The language to use for OCR
+     * @param detectedLanguage The language if it was detected automatically, otherwise null
+     * @param profile The engine profile
+     * @param taskId The task ID for progress tracking (optional)
+     * @return The extracted text and its line confidences
+     * @throws IOException If the image cannot be read
+     * @throws TesseractException If there is an error during OCR processing
+     * @throws OcrSchedulerFullException If the scheduler's queue for images is full
+     */
+    private RecognizedText processImageFile(File imageFile, String originalFilename, String language, String detectedLanguage,
+                                            OcrProfile profile, String taskId) throws IOException, TesseractException {
+        // Refuse before a progress task exists, so a full queue leaves no unfinished task behind
+        pageScheduler.checkCapacity(OcrPageScheduler.Priority.INTERACTIVE_IMAGE);
+        
+        // For single image files, create a simple task with one page
+        String trackingTaskId = taskId;
+        if (trackingTaskId == null && progressTrackingService != null) {
+            // Pass the language when creating the task for a single image
+            trackingTaskId = progressTrackingService.createOcrTask(originalFilename, 1, language);
+            progressTrackingService.updateOcrTaskProgress(trackingTaskId, 0, "Processing image...");
+        }
+        
+        OcrPageResult pageResult = recognizeImage(language, profile, tesseract -> OcrPipeline.recognizeImageFile(tesseract, imageFile));
+        String result = pageResult.getText();
+        
+        // Update progress if we're tracking
+        if (trackingTaskId != null && progressTrackingService != null) {
+            progressTrackingService.updateOcrTaskProgress(trackingTaskId, 1, "Image processing complete");
+            // The 'result' (extracted text) is now also the message for completion
+            progressTrackingService.completeTask(trackingTaskId, true, result);
+        }
+
+        // Save the OCR result
+        String lineConfidences = pageResult.getLineConfidences().isEmpty() ? null : LineConfidences.encode(pageResult.getLineConfidences());
+        if (result != null && !result.isEmpty()) {
+            OcrTextDocument doc = new OcrTextDocument(originalFilename, result, language);
+            doc.setDetectedLanguage(detectedLanguage);
+            doc.setLineConfidences(lineConfidences);
+            doc = ocrTextDocumentRepository.save(doc);
+            recordResultDocument(trackingTaskId, doc);
+            logger.info("Saved OCR result for file: {}", originalFilename);
+        }
+        
+        return new RecognizedText(result, lineConfidences);
+    }
+    
+    /**
+     * Detects the language of an upload from a sample. Images are sampled in a lane of their own in the scheduler's
+     * interactive image class; PDFs and TIFFs are sampled on the calling thread, which is already running the job.
+     * A TIFF is sampled from its first frame, decoded subsampled at the sample DPI.
+     */
+    private String detectLanguage(SpooledUpload upload, boolean isPdf, String taskId) throws IOException, TesseractException {
+        OcrLanguageDetector.Detection detection;
+        if (isPdf) {
+            try (PDDocument document = upload.loadPdf()) {
+                detection = ocrLanguageDetector.detect(document);
+            }
+        } else if (TiffFrameReader.isTiff(upload.getOriginalFilename())) {
+            detection = ocrLanguageDetector.detect(readTiffSample(upload));
+        } else {
+            BufferedImage image = readImage(upload);
+            pageScheduler.checkCapacity(OcrPageScheduler.Priority.INTERACTIVE_IMAGE);
+            detection = await(pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_IMAGE,
+                    OcrPageScheduler.newLane("language"), () -> ocrLanguageDetector.detect(image)));
+        }
+        if (taskId != null && progressTrackingService != null) {
+            progressTrackingService.updateOcrTaskProgress(taskId, 0, "Detected language: " + detection.language());
+        }
+        return detection.language();
+    }
+
+    /**
+     * Decodes the first frame of a TIFF at the language detection sample DPI (at most the frame's own DPI). Only
+     * every n-th source pixel is decoded, so the frame is never held at full resolution.
+     */
+    private BufferedImage readTiffSample(SpooledUpload upload) throws IOException {
+        try (TiffFrameReader frames = new TiffFrameReader(upload.getFile())) {
+            if (frames.getFrameCount() == 0) {
+                throw new IOException("TIFF file has no frames: " + upload.getOriginalFilename());
+            }
+            TiffFrameReader.Frame frame = ocrPipeline.frame(frames, 0, ocrProfiles.getDefault());
+            return frames.preview(0, frame, Math.max(1, Math.min(frame.dpi(), ocrLanguageDetector.getSampleDpi())));
+        }
+    }
+
+    /**
+     * Links a tracked task to the document its result was saved as, so the result can be enhanced with the
+     * document's line confidences.
+     */
+    private void recordResultDocument(String trackingTaskId, OcrTextDocument doc) {
+        if (trackingTaskId != null && progressTrackingService != null && doc != null) {
+            progressTrackingService.updateOcrResultDocument(trackingTaskId, doc.getId());
+        }
+    }
+
+    /**
+     * Completes a request from the OCR result cache. The result is still saved as a new document, with the cached
+     * line confidences, so repeat uploads show up in the document history like any other OCR run and can be
+     * corrected selectively.
+     */
+    private String returnCachedResult(String originalFilename, String detectedLanguage, String taskId,
+                                      OcrResultCache.CachedResult cachedResult) {
+        logger.info("Returning cached OCR result for file: {} with language: {}", originalFilename, cachedResult.language());
+        if (taskId != null && progressTrackingService != null) {
+            progressTrackingService.updateOcrTaskProgress(taskId, 0, "Identical file already processed, using cached result");
+        }
+        OcrTextDocument doc = new OcrTextDocument(originalFilename, cachedResult.text(), cachedResult.language());
+        doc.setDetectedLanguage(detectedLanguage);
+        doc.setLineConfidences(cachedResult.lineConfidences());
+        doc = ocrTextDocumentRepository.save(doc);
+        // Linked before completion, so the enhancement step finds the document once the task is done
+        recordResultDocument(taskId, doc);
+        if (taskId != null && progressTrackingService != null) {
+            progressTrackingService.completeTask(taskId, true, cachedResult.text());
+        }
+        return cachedResult.text();
+    }
+
     /**
      * Extracts text directly from a PDF file without performing OCR.
      * Uses PDFBox's PDFTextStripper.
@@ -203,67 +569,66 @@ public class OcrService {
         String originalFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown.pdf";
         logger.info("Attempting direct text extraction from PDF: {}", originalFilename);
 
-        Path tempFile = null;
-        try {
-            tempFile = Files.createTempFile("direct_text_extract_", "_" + originalFilename);
-            try (FileOutputStream fos = new FileOutputStream(tempFile.toFile())) {
-                fos.write(file.getBytes());
+        try (SpooledUpload upload = uploadSpoolService.spool(file);
+             PDDocument document = upload.loadPdf()) {
+            if (document.isEncrypted()) {
+                logger.warn("PDF file {} is encrypted. Cannot extract text directly.", originalFilename);
+                // Optionally, you could try to decrypt with an empty password, but this often fails.
+                // document.setAllSecurityToBeRemoved(true); // Requires BouncyCastle
+                return ""; // Or throw a specific exception
             }
+            PDFTextStripper stripper = new PDFTextStripper();
+            String text = stripper.getText(document);
+            logger.info("Successfully extracted text directly from PDF: {}. Length: {} chars.", originalFilename, text.length());
+            
+            // Optionally save this extracted text similar to how OCR results are saved
+            // OcrTextDocument doc = new OcrTextDocument(originalFilename, text, "N/A_DIRECT_EXTRACTION");
+            // ocrTextDocumentRepository.save(doc);
 
-            try (PDDocument document = PDDocument.load(tempFile.toFile())) {
-                if (document.isEncrypted()) {
-                    logger.warn("PDF file {} is encrypted. Cannot extract text directly.", originalFilename);
-                    // Optionally, you could try to decrypt with an empty password, but this often fails.
-                    // document.setAllSecurityToBeRemoved(true); // Requires BouncyCastle
-                    return ""; // Or throw a specific exception
-                }
-                PDFTextStripper stripper = new PDFTextStripper();
-                String text = stripper.getText(document);
-                logger.info("Successfully extracted text directly from PDF: {}. Length: {} chars.", originalFilename, text.length());
-                
-                // Optionally save this extracted text similar to how OCR results are saved
-                // OcrTextDocument doc = new OcrTextDocument(originalFilename, text, "N/A_DIRECT_EXTRACTION");
-                // ocrTextDocumentRepository.save(doc);
-
-                return text;
-            }
+            return text;
         } catch (IOException e) {
             logger.error("IOException during direct text extraction for {}: {}", originalFilename, e.getMessage(), e);
             throw e; // Re-throw to be handled by the caller
-        } finally {
-            if (tempFile != null) {
-                try {
-                    Files.deleteIfExists(tempFile);
-                } catch (IOException e) {
-                    logger.warn("Could not delete temporary file {} used for direct text extraction: {}", tempFile.toString(), e.getMessage());
-                }
-            }
         }
     }
     
-    private String processPdfFile(File pdfFile) throws IOException, TesseractException {
-        return processPdfFile(pdfFile, "eng", null); // Default to English, no progress tracking
-    }
-      private String processPdfFile(File pdfFile, String language) throws IOException, TesseractException {
-        return processPdfFile(pdfFile, language, null); // No progress tracking
+    /**
+     * Joins the texts of a document's pages in page order, with a page header when there is more than one page.
+     *
+     * @param pageTexts The text of every page, by page index
+     * @return The document text
+     */
+    static String joinPageTexts(String[] pageTexts) {
+        StringBuilder text = new StringBuilder();
+        for (int pageIndex = 0; pageIndex < pageTexts.length; pageIndex++) {
+            // Add page number if multiple pages
+            if (pageTexts.length > 1) {
+                text.append("--- Page ").append(pageIndex + 1).append(" ---\n");
+            }
+            text.append(pageTexts[pageIndex]).append("\n");
+        }
+        return text.toString();
     }
     
     /**
      * Process a PDF file for OCR with progress tracking.
      * 
-     * @param pdfFile The PDF file to process
+     * @param upload The spooled PDF to process
      * @param language The language to use for OCR
+     * @param detectedLanguage The language if it was detected automatically, otherwise null
+     * @param profile The engine profile
      * @param taskId The task ID for progress tracking (optional)
-     * @return The extracted text
+     * @param hybridExtraction Whether pages with a usable text layer skip OCR
+     * @return The extracted text and its line confidences
      * @throws IOException If there is an error reading/writing the file
      * @throws TesseractException If there is an error during OCR processing
      */
-    private String processPdfFile(File pdfFile, String language, String taskId) throws IOException, TesseractException {
+    private RecognizedText processPdfFile(SpooledUpload upload, String language, String detectedLanguage, OcrProfile profile,
+                                          String taskId, boolean hybridExtraction) throws IOException, TesseractException {
         StringBuilder extractedText = new StringBuilder();
         String trackingTaskId = taskId;
         
-        try (PDDocument document = PDDocument.load(pdfFile)) {
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
+        try (PDDocument document = upload.loadPdf()) {
             int pageCount = document.getNumberOfPages();
             
             logger.info("Processing PDF with {} pages using language: {}", pageCount, language);
@@ -276,73 +641,70 @@ public class OcrService {
             } else if (progressTrackingService != null) {
                 // This case should ideally not be hit if taskId is always passed from controller for PDFs
                 // Pass the language when creating the task
-                trackingTaskId = progressTrackingService.createOcrTask(pdfFile.getName(), pageCount, language);
+                trackingTaskId = progressTrackingService.createOcrTask(upload.getOriginalFilename(), pageCount, language);
                 progressTrackingService.updateOcrTaskProgress(trackingTaskId, 0, "Starting PDF processing...");
             }
             
-            // Process each page of the PDF
+            // Pages checkpointed by an earlier, interrupted run of the same job are not processed again
+            Map<Integer, String> checkpointedPages = taskId != null ? ocrCheckpointStore.load(taskId) : Map.of();
+            if (!checkpointedPages.isEmpty()) {
+                logger.info("Resuming OCR job {}: {} of {} pages already checkpointed", taskId, checkpointedPages.size(), pageCount);
+            }
+            
+            // In hybrid mode, keep the text layer of pages that pass the density and glyph coverage checks
+            String[] pageTexts = new String[pageCount];
+            List<Integer> pagesToOcr = new ArrayList<>();
+            int textLayerPages = 0;
             for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
-                // Update progress
-                if (trackingTaskId != null && progressTrackingService != null) {
-                    progressTrackingService.updateOcrTaskProgress(
-                            trackingTaskId,
-                            pageIndex,
-                            "Processing page " + (pageIndex + 1) + " of " + pageCount
-                    );
-                }
-                
-                logger.debug("Processing page {} of {}", pageIndex + 1, pageCount);
-                
-                // Render PDF page to image with higher DPI for better OCR results (increase from 300 to 400)
-                BufferedImage image = pdfRenderer.renderImageWithDPI(pageIndex, 400);
-                
-                // Apply image pre-processing if needed (for scanned documents)
-                BufferedImage processedImage = preprocessImageForOcr(image);
-                
-                // Save the image temporarily
-                Path tempImageFile = Files.createTempFile("pdf_page_" + pageIndex + "_", ".png");
-                try {
-                    ImageIO.write(processedImage, "PNG", tempImageFile.toFile());
-                    
-                    // Configure Tesseract for better accuracy
-                    configureTesseractForPage(language);
-                    
-                    // Perform OCR on the image
-                    String pageText = tesseractInstance.doOCR(tempImageFile.toFile());
-                    
-                    // Add page number if multiple pages
-                    if (pageCount > 1) {
-                        extractedText.append("--- Page ").append(pageIndex + 1).append(" ---\n");
+                pageTexts[pageIndex] = checkpointedPages.get(pageIndex);
+                if (pageTexts[pageIndex] == null && hybridExtraction) {
+                    pageTexts[pageIndex] = pdfTextLayerAnalyzer.extractUsablePageText(document, pageIndex);
+                    if (pageTexts[pageIndex] != null) {
+                        textLayerPages++;
+                        if (taskId != null) {
+                            ocrCheckpointStore.save(taskId, new OcrPageResult(pageIndex, 0, pageTexts[pageIndex]));
+                        }
                     }
-                    
-                    extractedText.append(pageText).append("\n");
-                    
-                    // Update progress to include the just-completed page
-                    if (trackingTaskId != null && progressTrackingService != null) {
-                        progressTrackingService.updateOcrTaskProgress(
-                                trackingTaskId,
-                                pageIndex + 1,
-                                "Completed page " + (pageIndex + 1) + " of " + pageCount
-                        );
-                    }
-                } catch (TesseractException e) {
-                    logger.error("Error during OCR processing of PDF page {}: {}", pageIndex + 1, e.getMessage());
-                    
-                    // Update progress to reflect the error
-                    if (trackingTaskId != null && progressTrackingService != null) {
-                        progressTrackingService.updateOcrTaskProgress(
-                                trackingTaskId,
-                                pageIndex,
-                                "Error processing page " + (pageIndex + 1) + ": " + e.getMessage()
-                        );
+                }
+                if (pageTexts[pageIndex] == null) {
+                    pagesToOcr.add(pageIndex);
+                }
+            }
+            if (hybridExtraction) {
+                logger.info("Hybrid extraction: using text layer for {} of {} pages, OCR for {} pages",
+                        textLayerPages, pageCount, pagesToOcr.size());
+            }
+            if (trackingTaskId != null && progressTrackingService != null && pagesToOcr.size() < pageCount) {
+                for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                    if (pageTexts[pageIndex] != null) {
+                        progressTrackingService.publishOcrPageResult(trackingTaskId, pageIndex, pageTexts[pageIndex]);
                     }
-                    
-                    throw e;
-                } finally {
-                    // Clean up temporary image file
-                    Files.deleteIfExists(tempImageFile);
+                }
+                progressTrackingService.updateOcrTaskProgress(trackingTaskId, pageCount - pagesToOcr.size(),
+                        (checkpointedPages.isEmpty() ? "" : "Resumed with " + checkpointedPages.size() + " pages already done. ")
+                        + (hybridExtraction ? "Text layer used for " + textLayerPages + " of " + pageCount + " pages, " : "")
+                        + "running OCR on " + pagesToOcr.size() + " pages...");
+            }
+            
+            // Render, preprocess and recognize the remaining pages in overlapping pipeline stages,
+            // checkpointing every page of a background job as soon as it is done
+            OcrOptions pipelineOptions = OcrOptions.of(language).withProfile(profile.getName()).withTaskId(trackingTaskId);
+            if (taskId != null) {
+                pipelineOptions = pipelineOptions.withPageListener(pageResult -> ocrCheckpointStore.save(taskId, pageResult));
+            }
+            Map<Integer, List<Float>> lineConfidences = new HashMap<>();
+            if (!checkpointedPages.isEmpty()) {
+                lineConfidences.putAll(ocrCheckpointStore.loadLineConfidences(taskId));
+            }
+            for (OcrPageResult pageResult : ocrPipeline.process(document, pagesToOcr, pipelineOptions)) {
+                pageTexts[pageResult.getPageIndex()] = pageResult.getText();
+                if (!pageResult.getLineConfidences().isEmpty()) {
+                    lineConfidences.put(pageResult.getPageIndex(), pageResult.getLineConfidences());
                 }
             }
+            
+            // Reassemble the page texts in page order
+            extractedText.append(joinPageTexts(pageTexts));
               logger.info("Successfully processed PDF with {} pages", pageCount);
               
             // Mark task as completed
@@ -352,13 +714,17 @@ public class OcrService {
             }
 
             // Save the OCR result for PDF
+            String encodedLineConfidences = LineConfidences.join(pageTexts, lineConfidences);
             if (extractedText.length() > 0) {
-                OcrTextDocument doc = new OcrTextDocument(pdfFile.getName(), extractedText.toString(), language);
-                ocrTextDocumentRepository.save(doc);
-                logger.info("Saved OCR result for PDF file: {}", pdfFile.getName());
+                OcrTextDocument doc = new OcrTextDocument(upload.getOriginalFilename(), extractedText.toString(), language);
+                doc.setDetectedLanguage(detectedLanguage);
+                doc.setLineConfidences(encodedLineConfidences);
+                doc = ocrTextDocumentRepository.save(doc);
+                recordResultDocument(trackingTaskId, doc);
+                logger.info("Saved OCR result for PDF file: {}", upload.getOriginalFilename());
             }
             
-            return extractedText.toString();
+            return new RecognizedText(extractedText.toString(), encodedLineConfidences);
         } catch (IOException e) {
             logger.error("Error processing PDF file: {}", e.getMessage());
             
@@ -372,58 +738,99 @@ public class OcrService {
     }
     
     /**
-     * Preprocesses an image to enhance OCR accuracy.
-     * Applies various filters and adjustments to improve text recognition.
+     * Process a (multi-page) TIFF for OCR with progress tracking. Frames are decoded one by one as the pipeline
+     * has room for them and recognized in parallel like the pages of a PDF, with per-frame progress and
+     * checkpoints for background jobs.
      * 
-     * @param image The original image to process
-     * @return The processed image optimized for OCR
+     * @param upload The spooled TIFF to process
+     * @param language The language to use for OCR
+     * @param detectedLanguage The language if it was detected automatically, otherwise null
+     * @param profile The engine profile
+     * @param taskId The task ID for progress tracking (optional)
+     * @return The extracted text and its line confidences
+     * @throws IOException If the TIFF cannot be read or decoded
+     * @throws TesseractException If there is an error during OCR processing
      */
-    private BufferedImage preprocessImageForOcr(BufferedImage image) {
-        // Create a copy of the image to work with
-        BufferedImage processedImage = new BufferedImage(
-                image.getWidth(), 
-                image.getHeight(),
-                BufferedImage.TYPE_INT_RGB);
-        
-        Graphics2D g2d = processedImage.createGraphics();
-        
-        // Fill background with white for better contrast
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
-        
-        // Draw the original image over the white background
-        g2d.drawImage(image, 0, 0, null);
-        g2d.dispose();
-        
-        // Apply a light sharpen filter to enhance text edges
-        float[] sharpenKernel = {
-             0.0f, -0.2f,  0.0f,
-            -0.2f,  1.8f, -0.2f,
-             0.0f, -0.2f,  0.0f
-        };
-        
-        BufferedImageOp sharpenOp = new ConvolveOp(new Kernel(3, 3, sharpenKernel));
-        processedImage = sharpenOp.filter(processedImage, null);
+    private RecognizedText processTiffFile(SpooledUpload upload, String language, String detectedLanguage, OcrProfile profile,
+                                           String taskId) throws IOException, TesseractException {
+        String trackingTaskId = taskId;
         
-        return processedImage;
+        try (TiffFrameReader frames = new TiffFrameReader(upload.getFile())) {
+            int frameCount = frames.getFrameCount();
+            logger.info("Processing TIFF with {} frames using language: {}", frameCount, language);
+            
+            if (trackingTaskId != null && progressTrackingService != null) {
+                progressTrackingService.updateOcrTaskTotalPages(trackingTaskId, frameCount);
+                progressTrackingService.updateOcrTaskProgress(trackingTaskId, 0, "Starting TIFF processing...");
+            } else if (progressTrackingService != null) {
+                trackingTaskId = progressTrackingService.createOcrTask(upload.getOriginalFilename(), frameCount, language);
+                progressTrackingService.updateOcrTaskProgress(trackingTaskId, 0, "Starting TIFF processing...");
+            }
+            
+            // Frames checkpointed by an earlier, interrupted run of the same job are not processed again
+            Map<Integer, String> checkpointedFrames = taskId != null ? ocrCheckpointStore.load(taskId) : Map.of();
+            String[] pageTexts = new String[frameCount];
+            List<Integer> framesToOcr = new ArrayList<>();
+            for (int frameIndex = 0; frameIndex < frameCount; frameIndex++) {
+                pageTexts[frameIndex] = checkpointedFrames.get(frameIndex);
+                if (pageTexts[frameIndex] == null) {
+                    framesToOcr.add(frameIndex);
+                }
+            }
+            Map<Integer, List<Float>> lineConfidences = new HashMap<>();
+            if (!checkpointedFrames.isEmpty()) {
+                logger.info("Resuming OCR job {}: {} of {} frames already checkpointed", taskId, checkpointedFrames.size(), frameCount);
+                lineConfidences.putAll(ocrCheckpointStore.loadLineConfidences(taskId));
+                if (trackingTaskId != null && progressTrackingService != null) {
+                    checkpointedFrames.forEach((frameIndex, text) -> progressTrackingService.publishOcrPageResult(taskId, frameIndex, text));
+                    progressTrackingService.updateOcrTaskProgress(trackingTaskId, frameCount - framesToOcr.size(),
+                            "Resumed with " + checkpointedFrames.size() + " pages already done. Running OCR on "
+                            + framesToOcr.size() + " pages...");
+                }
+            }
+            
+            OcrOptions pipelineOptions = OcrOptions.of(language).withProfile(profile.getName()).withTaskId(trackingTaskId);
+            if (taskId != null) {
+                pipelineOptions = pipelineOptions.withPageListener(pageResult -> ocrCheckpointStore.save(taskId, pageResult));
+            }
+            for (OcrPageResult pageResult : ocrPipeline.process(frames, framesToOcr, pipelineOptions)) {
+                pageTexts[pageResult.getPageIndex()] = pageResult.getText();
+                if (!pageResult.getLineConfidences().isEmpty()) {
+                    lineConfidences.put(pageResult.getPageIndex(), pageResult.getLineConfidences());
+                }
+            }
+            
+            String extractedText = joinPageTexts(pageTexts);
+            logger.info("Successfully processed TIFF with {} frames", frameCount);
+            if (trackingTaskId != null && progressTrackingService != null) {
+                progressTrackingService.completeTask(trackingTaskId, true, extractedText);
+            }
+            
+            String encodedLineConfidences = LineConfidences.join(pageTexts, lineConfidences);
+            if (!extractedText.isEmpty()) {
+                OcrTextDocument doc = new OcrTextDocument(upload.getOriginalFilename(), extractedText, language);
+                doc.setDetectedLanguage(detectedLanguage);
+                doc.setLineConfidences(encodedLineConfidences);
+                doc = ocrTextDocumentRepository.save(doc);
+                recordResultDocument(trackingTaskId, doc);
+                logger.info("Saved OCR result for TIFF file: {}", upload.getOriginalFilename());
+            }
+            
+            return new RecognizedText(extractedText, encodedLineConfidences);
+        } catch (IOException e) {
+            logger.error("Error processing TIFF file: {}", e.getMessage());
+            
+            if (trackingTaskId != null && progressTrackingService != null) {
+                progressTrackingService.completeTask(trackingTaskId, false, "Error: " + e.getMessage());
+            }
+            
+            throw new IOException("Error processing TIFF file: " + e.getMessage(), e);
+        }
     }
-      /**
-     * Configures Tesseract parameters for optimal OCR based on the current page being processed.
-     * 
-     * @param language The OCR language
+
+    /**
+     * The text a document was recognized as, with the encoded line confidences of the text (null if none).
      */
-    private void configureTesseractForPage(String language) {
-        // Language is set at the beginning of performOcr or processPdfFile.
-        // No need to set it again here per page if it's the same language.
-        // tesseractInstance.setLanguage(language);
-        
-        // Optimize Tesseract parameters based on the content
-        tesseractInstance.setPageSegMode(1); // Automatic page segmentation with OSD
-        
-        // Set DPI to improve recognition (can be adjusted based on the image quality)
-        tesseractInstance.setVariable("user_defined_dpi", "400");
-        
-        // Additional parameters to improve accuracy
-        tesseractInstance.setVariable("tessedit_char_whitelist", "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,;:!?()-+*/_'\"@#$%&=[]{}|<>àèìòùÀÈÌÒÙáéíóúÁÉÍÓÚ");
+    private record RecognizedText(String text, String lineConfidences) {
     }
-}
\ No newline at end of file
+}
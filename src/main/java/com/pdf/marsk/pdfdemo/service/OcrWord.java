@@ -0,0 +1,13 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+
+/**
+ * A word recognized by Tesseract, with its bounding box and confidence.
+ *
+ * @param text The word text
+ * @param box The word's bounding box, in pixels of the image or page it was recognized on
+ * @param confidence Tesseract's confidence in the word, 0-100
+ */
+public record OcrWord(String text, Rectangle box, float confidence) {
+}
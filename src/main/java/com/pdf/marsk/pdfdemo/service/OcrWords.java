@@ -0,0 +1,96 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Layout of recognized words: grouping into text lines, plain text and Tesseract-style TSV.
+ */
+public final class OcrWords {
+
+    public static final String TSV_HEADER = "level\tpage_num\tblock_num\tpar_num\tline_num\tword_num\tleft\ttop\twidth\theight\tconf\ttext";
+
+    private static final int TSV_LEVEL_PAGE = 1;
+    private static final int TSV_LEVEL_WORD = 5;
+
+    private OcrWords() {
+    }
+
+    /**
+     * Groups words into lines: a word joins the current line when its vertical center lies within the line,
+     * otherwise it starts a new one. Lines are ordered top to bottom and words left to right.
+     *
+     * @param words The words of one page, in any order
+     * @return The text lines
+     */
+    public static List<List<OcrWord>> lines(List<OcrWord> words) {
+        List<OcrWord> byTop = new ArrayList<>(words);
+        byTop.sort(Comparator.comparingInt((OcrWord word) -> word.box().y).thenComparingInt(word -> word.box().x));
+
+        List<List<OcrWord>> lines = new ArrayList<>();
+        List<OcrWord> line = null;
+        int lineTop = 0;
+        int lineBottom = 0;
+        for (OcrWord word : byTop) {
+            int center = word.box().y + word.box().height / 2;
+            if (line == null || center < lineTop || center > lineBottom) {
+                line = new ArrayList<>();
+                lines.add(line);
+                lineTop = word.box().y;
+                lineBottom = word.box().y + word.box().height;
+            } else {
+                lineBottom = Math.max(lineBottom, word.box().y + word.box().height);
+            }
+            line.add(word);
+        }
+        lines.forEach(lineWords -> lineWords.sort(Comparator.comparingInt(word -> word.box().x)));
+        return lines;
+    }
+
+    /**
+     * @param words The words of one page, in any order
+     * @return The page text, one line per text line
+     */
+    public static String toText(List<OcrWord> words) {
+        StringBuilder text = new StringBuilder();
+        for (List<OcrWord> line : lines(words)) {
+            for (int i = 0; i < line.size(); i++) {
+                text.append(i == 0 ? "" : " ").append(line.get(i).text());
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the TSV rows of one page, in the column layout of Tesseract's TSV output (see {@link #TSV_HEADER}):
+     * a page row with the page size, then one row per word. Words are numbered by line; block and paragraph
+     * numbers are always 1, since the words carry no block structure.
+     *
+     * @param tsv The TSV output
+     * @param pageNumber The 1-based page number
+     * @param pageWidth The page width, in the pixels of the word boxes
+     * @param pageHeight The page height, in the pixels of the word boxes
+     * @param words The words of the page
+     * @throws IOException If the output cannot be written
+     */
+    public static void writeTsv(Writer tsv, int pageNumber, int pageWidth, int pageHeight, List<OcrWord> words) throws IOException {
+        tsv.write(String.format(Locale.ROOT, "%d\t%d\t0\t0\t0\t0\t0\t0\t%d\t%d\t-1\t\n",
+                TSV_LEVEL_PAGE, pageNumber, pageWidth, pageHeight));
+        List<List<OcrWord>> lines = lines(words);
+        for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++) {
+            List<OcrWord> line = lines.get(lineIndex);
+            for (int wordIndex = 0; wordIndex < line.size(); wordIndex++) {
+                OcrWord word = line.get(wordIndex);
+                tsv.write(String.format(Locale.ROOT, "%d\t%d\t1\t1\t%d\t%d\t%d\t%d\t%d\t%d\t%.2f\t%s\n",
+                        TSV_LEVEL_WORD, pageNumber, lineIndex + 1, wordIndex + 1,
+                        word.box().x, word.box().y, word.box().width, word.box().height,
+                        word.confidence(), word.text()));
+            }
+        }
+    }
+}
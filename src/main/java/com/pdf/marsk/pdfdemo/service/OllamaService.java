@@ -9,7 +9,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -37,11 +41,25 @@ public class OllamaService {
     @Value("${ollama.chunking.enabled:true}")
     private boolean chunkingEnabled;
 
+    @Value("${ollama.selective.enabled:true}")
+    private boolean selectiveEnabled;
+
+    @Value("${ollama.selective.confidenceThreshold:80}")
+    private float selectiveConfidenceThreshold;
+
+    @Value("${ollama.selective.contextLines:2}")
+    private int selectiveContextLines;
+
+    @Value("${ollama.selective.maxLinesPerRequest:60}")
+    private int selectiveMaxLinesPerRequest;
+
     // Pattern to find common prompt markers followed by ```text```
     private static final Pattern PROMPT_ECHO_PATTERN = Pattern.compile(
         "(TEXT TO CORRECT:|BUSINESS DOCUMENT TO CORRECT:|ACADEMIC DOCUMENT TO CORRECT:|TECHNICAL DOCUMENT TO CORRECT:|LEGAL DOCUMENT TO CORRECT:|ITALIAN LITERARY TEXT TO CORRECT:|LITERARY TEXT TO CORRECT:)\\s*`{0,3}\\s*([\\s\\S]*?)\\s*(`{0,3}\\s*(Remember: ONLY the corrected text. Nothing else.|Remember: ONLY the corrected Italian text. Nothing else.))?$", 
         Pattern.CASE_INSENSITIVE | Pattern.MULTILINE
     );
+    // A corrected line in a selective correction reply: "<number>: <text>", as the prompt asks for
+    private static final Pattern NUMBERED_LINE_PATTERN = Pattern.compile("^\\s*\\*?\\s*(\\d+)\\s*[:.)]\\s?(.*)$");
      private static final Pattern SIMPLE_PROMPT_ECHO_PATTERN = Pattern.compile(
         "(LITERARY TEXT TO CORRECT:)\\s*`{0,3}\\s*([\\s\\S]*?)\\s*(`{0,3})?$", 
         Pattern.CASE_INSENSITIVE | Pattern.MULTILINE
@@ -195,6 +213,155 @@ public class OllamaService {
         }
     }
     
+    /**
+     * @return Whether enhancement sends only low-confidence lines when no mode is requested
+     */
+    public boolean isSelectiveEnabled() {
+        return selectiveEnabled;
+    }
+
+    /**
+     * Corrects only the lines OCR was unsure about. Lines below the confidence threshold are sent to the model
+     * with a few lines of surrounding context, nearby lines sharing a request, and each corrected line replaces
+     * the line at its position. Lines without a confidence are never sent.
+     *
+     * @param text The OCR text
+     * @param lineConfidences The confidence of each line of the text, see {@link LineConfidences}
+     * @param modelName The Ollama model to use
+     * @return The text with the corrected lines; lines the model did not return, or returned unusable, stay as recognized
+     */
+    public EnhancementResult enhanceLowConfidenceLines(String text, List<Float> lineConfidences, String modelName) {
+        if (text == null || text.trim().isEmpty() || modelName == null || modelName.trim().isEmpty()) {
+            logger.warn("No text or model provided for selective enhancement");
+            return new EnhancementResult(text, false);
+        }
+        String[] lines = text.split("\n", -1);
+        Set<Integer> lowLines = new TreeSet<>();
+        for (int i = 0; i < Math.min(lines.length, lineConfidences.size()); i++) {
+            Float confidence = lineConfidences.get(i);
+            if (confidence != null && confidence < selectiveConfidenceThreshold && !lines[i].isBlank()) {
+                lowLines.add(i);
+            }
+        }
+        if (lowLines.isEmpty()) {
+            logger.info("No lines below {}% confidence, nothing to correct with model {}", selectiveConfidenceThreshold, modelName);
+            return new EnhancementResult(text, false);
+        }
+
+        List<List<Integer>> requests = selectionRequests(lowLines, lines.length, selectiveContextLines, selectiveMaxLinesPerRequest);
+        logger.info("Correcting {} of {} lines below {}% confidence with model {} in {} requests ({} lines sent)",
+                lowLines.size(), lines.length, selectiveConfidenceThreshold, modelName, requests.size(),
+                requests.stream().mapToInt(List::size).sum());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(requests.size(), maxChunkingWorkers)));
+        try {
+            List<CompletableFuture<Map<Integer, String>>> futures = new ArrayList<>();
+            for (List<Integer> request : requests) {
+                futures.add(CompletableFuture.supplyAsync(() -> correctLines(lines, request, lowLines, modelName), executor));
+            }
+            String[] corrected = lines.clone();
+            for (CompletableFuture<Map<Integer, String>> future : futures) {
+                future.join().forEach((lineIndex, line) -> corrected[lineIndex] = line);
+            }
+            return new EnhancementResult(String.join("\n", corrected), false);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Plans the requests of a selective correction: every low-confidence line with its context lines, merging
+     * windows that touch, and packing windows into requests of at most {@code maxLinesPerRequest} lines
+     * (a single larger window gets a request of its own).
+     *
+     * @return The line indices of each request, in order
+     */
+    static List<List<Integer>> selectionRequests(Set<Integer> lowLines, int lineCount, int contextLines, int maxLinesPerRequest) {
+        List<int[]> windows = new ArrayList<>();
+        for (int line : lowLines) {
+            int from = Math.max(0, line - contextLines);
+            int to = Math.min(lineCount - 1, line + contextLines);
+            int[] last = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+            if (last != null && from <= last[1] + 1) {
+                last[1] = Math.max(last[1], to);
+            } else {
+                windows.add(new int[] {from, to});
+            }
+        }
+        List<List<Integer>> requests = new ArrayList<>();
+        List<Integer> request = new ArrayList<>();
+        for (int[] window : windows) {
+            int size = window[1] - window[0] + 1;
+            if (!request.isEmpty() && request.size() + size > maxLinesPerRequest) {
+                requests.add(request);
+                request = new ArrayList<>();
+            }
+            for (int line = window[0]; line <= window[1]; line++) {
+                request.add(line);
+            }
+        }
+        if (!request.isEmpty()) {
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * Sends one selective correction request.
+     *
+     * @return The usable corrections by line index; empty if the request failed
+     */
+    private Map<Integer, String> correctLines(String[] lines, List<Integer> request, Set<Integer> lowLines, String modelName) {
+        StringBuilder promptText = new StringBuilder()
+                .append("You are correcting OCR errors in a few lines taken from a longer document.\n")
+                .append("Lines marked with * were recognized with low confidence and may contain OCR errors; ")
+                .append("the other lines are context only.\n")
+                .append("Correct ONLY the marked lines: fix misrecognized characters, broken words and spacing. ")
+                .append("Do not rephrase, translate, merge, add or remove content.\n")
+                .append("Reply with exactly one line per marked line, in the form <number>: <corrected line>, and nothing else.\n\n")
+                .append("LINES:\n");
+        int previous = -1;
+        for (int line : request) {
+            if (previous >= 0 && line > previous + 1) {
+                promptText.append("...\n");
+            }
+            promptText.append(lowLines.contains(line) ? "*" : "").append(line + 1).append(": ").append(lines[line]).append('\n');
+            previous = line;
+        }
+        try {
+            String reply = chatClient.call(new Prompt(new UserMessage(promptText.toString()))).getResult().getOutput().getContent();
+            return parseCorrections(reply, lines, request, lowLines);
+        } catch (Exception e) {
+            logger.error("Error correcting lines {}-{} with model {}: {}", request.get(0) + 1,
+                    request.get(request.size() - 1) + 1, modelName, e.getMessage(), e);
+            return Map.of();
+        }
+    }
+
+    /**
+     * Reads the corrected lines of a reply. Only marked lines of the request are taken, and a correction that is
+     * empty or far longer than the recognized line is treated as the model going off script and ignored.
+     */
+    static Map<Integer, String> parseCorrections(String reply, String[] lines, List<Integer> request, Set<Integer> lowLines) {
+        Map<Integer, String> corrections = new HashMap<>();
+        if (reply == null) {
+            return corrections;
+        }
+        for (String replyLine : reply.split("\\R")) {
+            Matcher matcher = NUMBERED_LINE_PATTERN.matcher(replyLine);
+            if (!matcher.matches()) {
+                continue;
+            }
+            int lineIndex = Integer.parseInt(matcher.group(1)) - 1;
+            String corrected = matcher.group(2).strip();
+            if (!lowLines.contains(lineIndex) || !request.contains(lineIndex) || corrected.isEmpty()
+                    || corrected.length() > 2 * lines[lineIndex].strip().length() + 10) {
+                continue;
+            }
+            corrections.put(lineIndex, corrected);
+        }
+        return corrections;
+    }
+
     public static class EnhancementResult {
         private final String enhancedText;
         private final boolean wasAnalysisFixed;
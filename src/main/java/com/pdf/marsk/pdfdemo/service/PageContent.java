@@ -0,0 +1,66 @@
+package com.pdf.marsk.pdfdemo.service;
+
+/**
+ * Result of the low-resolution pre-pass over a page: either the page is blank, or the region that holds
+ * its content, as fractions of the rendered page's width and height (top-left origin, page rotation applied).
+ */
+public class PageContent {
+
+    static final PageContent BLANK = new PageContent(true, 0, 0, 0, 0);
+    static final PageContent FULL_PAGE = new PageContent(false, 0, 0, 1, 1);
+
+    private final boolean blank;
+    private final double left;
+    private final double top;
+    private final double right;
+    private final double bottom;
+
+    private PageContent(boolean blank, double left, double top, double right, double bottom) {
+        this.blank = blank;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * @return The content region of a page, clamped to the page
+     */
+    static PageContent region(double left, double top, double right, double bottom) {
+        return new PageContent(false, Math.max(0, left), Math.max(0, top), Math.min(1, right), Math.min(1, bottom));
+    }
+
+    public boolean isBlank() {
+        return blank;
+    }
+
+    /**
+     * @return Whether only part of the page has to be rendered and recognized
+     */
+    public boolean isCropped() {
+        return !blank && (left > 0 || top > 0 || right < 1 || bottom < 1);
+    }
+
+    public double getLeft() {
+        return left;
+    }
+
+    public double getTop() {
+        return top;
+    }
+
+    public double getRight() {
+        return right;
+    }
+
+    public double getBottom() {
+        return bottom;
+    }
+
+    /**
+     * @return The share of the page area that has to be rendered (0 for a blank page)
+     */
+    public double getAreaFraction() {
+        return (right - left) * (bottom - top);
+    }
+}
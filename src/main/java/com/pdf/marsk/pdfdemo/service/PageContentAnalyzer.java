@@ -0,0 +1,177 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cheap pre-pass over a low-resolution render of each PDF page, run before the page is rendered at full DPI.
+ * <p>
+ * The paper level is the median gray value; pixels darker than the paper by at least the ink contrast are ink,
+ * unless they have fewer than two ink neighbours (scanner dust and noise). A page whose ink covers less than
+ * the blank area threshold is blank and is not recognized at all; a thin band along the page edges is ignored
+ * for that decision, since scanners often leave dark borders there. Otherwise the bounding box of all ink,
+ * padded so Tesseract still sees some white border, is the content region. When it saves enough of the page
+ * area, only that region is rendered at full DPI. Pages without a clear paper level (photos, dark backgrounds)
+ * are always rendered in full.
+ */
+@Component
+public class PageContentAnalyzer {
+
+    private static final double MM_PER_INCH = 25.4;
+    private static final float POINTS_PER_INCH = 72f;
+    // Share of the shorter page side ignored along each edge when deciding whether a page is blank
+    private static final double EDGE_BAND = 0.02;
+    private static final int MIN_INK_NEIGHBOURS = 2;
+
+    private final boolean enabled;
+    private final int previewDpi;
+    private final int inkContrast;
+    private final double blankMaxInkMm2;
+    private final double paddingPt;
+    private final double minCropSavings;
+
+    @Autowired
+    public PageContentAnalyzer(@Value("${ocr.prepass.enabled:true}") boolean enabled,
+                               @Value("${ocr.prepass.previewDpi:36}") int previewDpi,
+                               @Value("${ocr.prepass.inkContrast:64}") int inkContrast,
+                               @Value("${ocr.prepass.blankMaxInkMm2:2.0}") double blankMaxInkMm2,
+                               @Value("${ocr.prepass.paddingPt:18}") double paddingPt,
+                               @Value("${ocr.prepass.minCropSavings:0.1}") double minCropSavings) {
+        this.enabled = enabled;
+        this.previewDpi = Math.max(12, previewDpi);
+        this.inkContrast = inkContrast;
+        this.blankMaxInkMm2 = blankMaxInkMm2;
+        this.paddingPt = paddingPt;
+        this.minCropSavings = minCropSavings;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The DPI of the previews pages are classified from
+     */
+    int getPreviewDpi() {
+        return previewDpi;
+    }
+
+    /**
+     * Classifies a page from a low-resolution render.
+     *
+     * @param renderer The renderer of the page's document (not thread-safe, so called on the rendering thread)
+     * @param pageIndex The 0-based page index
+     * @return Whether the page is blank, and otherwise the region to render and recognize
+     * @throws IOException If the page cannot be rendered
+     */
+    public PageContent analyze(PDFRenderer renderer, int pageIndex) throws IOException {
+        if (!enabled) {
+            return PageContent.FULL_PAGE;
+        }
+        return analyze(renderer.renderImageWithDPI(pageIndex, previewDpi, ImageType.GRAY));
+    }
+
+    /**
+     * Classifies a page, or a TIFF frame, from a gray preview at the preview DPI.
+     */
+    PageContent analyze(BufferedImage preview) {
+        int width = preview.getWidth();
+        int height = preview.getHeight();
+        Raster raster = preview.getRaster();
+        int[] samples = raster.getSamples(0, 0, width, height, 0, new int[width * height]);
+
+        int inkThreshold = medianLevel(samples) - inkContrast;
+        if (inkThreshold <= 0) {
+            return PageContent.FULL_PAGE; // No clear paper level to tell ink from
+        }
+        boolean[] ink = new boolean[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            ink[i] = samples[i] < inkThreshold;
+        }
+
+        int band = Math.max(1, (int) Math.round(Math.min(width, height) * EDGE_BAND));
+        long innerInk = 0;
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!ink[y * width + x] || inkNeighbours(ink, width, height, x, y) < MIN_INK_NEIGHBOURS) {
+                    continue;
+                }
+                if (x >= band && y >= band && x < width - band && y < height - band) {
+                    innerInk++;
+                }
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+        }
+
+        double mmPerPixel = MM_PER_INCH / previewDpi;
+        if (innerInk * mmPerPixel * mmPerPixel < blankMaxInkMm2) {
+            return PageContent.BLANK;
+        }
+
+        int padding = (int) Math.ceil(paddingPt / POINTS_PER_INCH * previewDpi);
+        PageContent region = PageContent.region(
+                (double) (minX - padding) / width,
+                (double) (minY - padding) / height,
+                (double) (maxX + 1 + padding) / width,
+                (double) (maxY + 1 + padding) / height);
+        return region.getAreaFraction() > 1 - minCropSavings ? PageContent.FULL_PAGE : region;
+    }
+
+    /**
+     * Describes every setting that affects which pages are skipped and which regions are recognized,
+     * for cache keys of recognized output.
+     *
+     * @return The settings signature
+     */
+    public String getSettingsSignature() {
+        if (!enabled) {
+            return "off";
+        }
+        return String.format(Locale.ROOT, "preview=%d,contrast=%d,blank=%.2f,padding=%.1f,savings=%.2f",
+                previewDpi, inkContrast, blankMaxInkMm2, paddingPt, minCropSavings);
+    }
+
+    private static int medianLevel(int[] samples) {
+        int[] histogram = new int[256];
+        for (int sample : samples) {
+            histogram[sample]++;
+        }
+        int seen = 0;
+        for (int level = 0; level < histogram.length; level++) {
+            seen += histogram[level];
+            if (seen * 2 >= samples.length) {
+                return level;
+            }
+        }
+        return 255;
+    }
+
+    private static int inkNeighbours(boolean[] ink, int width, int height, int x, int y) {
+        int neighbours = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if ((dx != 0 || dy != 0) && nx >= 0 && ny >= 0 && nx < width && ny < height && ink[ny * width + nx]) {
+                    neighbours++;
+                }
+            }
+        }
+        return neighbours;
+    }
+}
@@ -0,0 +1,157 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.state.Concatenate;
+import org.apache.pdfbox.contentstream.operator.state.Restore;
+import org.apache.pdfbox.contentstream.operator.state.Save;
+import org.apache.pdfbox.contentstream.operator.state.SetGraphicsStateParameters;
+import org.apache.pdfbox.contentstream.operator.state.SetMatrix;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the render DPI for each PDF page instead of always rendering at the maximum.
+ * <p>
+ * The starting point is the lowest DPI at which body text (of a nominal x-height in points) reaches the
+ * target x-height in pixels. Pages larger than A4 are assumed to have proportionally larger text, and
+ * scanned pages are never rendered above the resolution of the scan itself, since that only interpolates.
+ */
+@Component
+public class PageDpiPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageDpiPlanner.class);
+    private static final float POINTS_PER_INCH = 72f;
+    private static final double A4_AREA = PDRectangle.A4.getWidth() * PDRectangle.A4.getHeight();
+    // An image covering at least this share of the page is treated as the page scan
+    private static final double SCAN_COVERAGE = 0.5;
+
+    private final int minDpi;
+    private final int maxDpi;
+    private final int targetXHeightPx;
+    private final double nominalXHeightPt;
+
+    @Autowired
+    public PageDpiPlanner(@Value("${ocr.dpi.min:150}") int minDpi,
+                          @Value("${ocr.dpi.max:400}") int maxDpi,
+                          @Value("${ocr.dpi.targetXHeightPx:20}") int targetXHeightPx,
+                          @Value("${ocr.dpi.nominalXHeightPt:5.0}") double nominalXHeightPt) {
+        this.minDpi = minDpi;
+        this.maxDpi = Math.max(minDpi, maxDpi);
+        this.targetXHeightPx = targetXHeightPx;
+        this.nominalXHeightPt = nominalXHeightPt;
+    }
+
+    public int getMinDpi() {
+        return minDpi;
+    }
+
+    public int getMaxDpi() {
+        return maxDpi;
+    }
+
+    /**
+     * @return The planning settings, for cache keys of recognized output
+     */
+    public String getSettingsSignature() {
+        return "dpi=" + minDpi + "-" + maxDpi + ",xheight=" + targetXHeightPx + "px@" + nominalXHeightPt + "pt";
+    }
+
+    /**
+     * Plans the render DPI of a page.
+     *
+     * @param page The page to render
+     * @return The DPI to render the page at, between the configured minimum and maximum
+     */
+    public int planDpi(PDPage page) {
+        PDRectangle mediaBox = page.getMediaBox();
+        double pageArea = (double) mediaBox.getWidth() * mediaBox.getHeight();
+
+        // Text on oversized pages (posters, drawings) is usually scaled up with the page
+        double sizeFactor = Math.max(1.0, Math.sqrt(pageArea / A4_AREA));
+        double dpi = targetXHeightPx * POINTS_PER_INCH / (nominalXHeightPt * sizeFactor);
+
+        Double scanDpi = null;
+        try {
+            scanDpi = findScanDpi(page, pageArea);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not inspect page images for DPI planning: {}", e.getMessage());
+        }
+        if (scanDpi != null) {
+            dpi = Math.min(dpi, scanDpi);
+        }
+
+        int plannedDpi = (int) Math.max(minDpi, Math.min(maxDpi, Math.ceil(dpi)));
+        logger.debug("Planned {} DPI for page of {}x{} pt (size factor {}, scan DPI {})",
+                plannedDpi, mediaBox.getWidth(), mediaBox.getHeight(), String.format("%.2f", sizeFactor), scanDpi);
+        return plannedDpi;
+    }
+
+    /**
+     * @return The effective resolution of the largest image if it covers most of the page, otherwise null
+     */
+    private Double findScanDpi(PDPage page, double pageArea) throws IOException {
+        ImagePlacementFinder finder = new ImagePlacementFinder();
+        finder.processPage(page);
+        if (finder.largestPlacedArea < pageArea * SCAN_COVERAGE) {
+            return null;
+        }
+        return finder.largestImageDpi;
+    }
+
+    /**
+     * Walks the page content stream and records the largest placed image and its effective DPI,
+     * following the current transformation matrix at each image draw.
+     */
+    private static class ImagePlacementFinder extends PDFStreamEngine {
+        private double largestPlacedArea;
+        private double largestImageDpi;
+
+        ImagePlacementFinder() {
+            addOperator(new Concatenate());
+            addOperator(new DrawObject());
+            addOperator(new SetGraphicsStateParameters());
+            addOperator(new Save());
+            addOperator(new Restore());
+            addOperator(new SetMatrix());
+        }
+
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+            if (!"Do".equals(operator.getName()) || operands.isEmpty() || !(operands.get(0) instanceof COSName)) {
+                super.processOperator(operator, operands);
+                return;
+            }
+            PDXObject xobject = getResources().getXObject((COSName) operands.get(0));
+            if (xobject instanceof PDImageXObject image) {
+                Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+                double placedWidth = Math.abs(ctm.getScalingFactorX());
+                double placedHeight = Math.abs(ctm.getScalingFactorY());
+                double placedArea = placedWidth * placedHeight;
+                if (placedArea > largestPlacedArea && placedWidth > 0 && placedHeight > 0) {
+                    largestPlacedArea = placedArea;
+                    double xDpi = image.getWidth() / (placedWidth / POINTS_PER_INCH);
+                    double yDpi = image.getHeight() / (placedHeight / POINTS_PER_INCH);
+                    largestImageDpi = Math.min(xDpi, yDpi);
+                }
+            } else if (xobject instanceof PDFormXObject form) {
+                showForm(form);
+            }
+        }
+    }
+}
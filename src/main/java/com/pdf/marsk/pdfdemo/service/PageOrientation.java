@@ -0,0 +1,50 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.Locale;
+
+/**
+ * Orientation and skew of a rendered page, as the clockwise rotation that makes it upright:
+ * a quarter-turn rotation (0, 90, 180 or 270 degrees) plus a small skew correction in degrees.
+ */
+public class PageOrientation {
+
+    public static final PageOrientation UPRIGHT = new PageOrientation(0, 0);
+
+    private final int rotation;
+    private final double skew;
+
+    public PageOrientation(int rotation, double skew) {
+        this.rotation = Math.floorMod(rotation, 360);
+        this.skew = skew;
+    }
+
+    /**
+     * @return The clockwise quarter-turn rotation applied to the page: 0, 90, 180 or 270 degrees
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return The clockwise skew correction applied after the rotation, in degrees
+     */
+    public double getSkew() {
+        return skew;
+    }
+
+    /**
+     * @return The total clockwise rotation applied to the page, in degrees
+     */
+    public double getAngle() {
+        return rotation + skew;
+    }
+
+    public boolean isUpright() {
+        return rotation == 0 && skew == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "rotation=%d,skew=%.1f", rotation, skew);
+    }
+}
@@ -0,0 +1,315 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates the orientation and skew of a rendered page from projection profiles of a low-resolution
+ * thumbnail, so a rotated or skewed scan is straightened once before the expensive recognition.
+ * <p>
+ * The thumbnail is binarized with Otsu's threshold. Text lines are horizontal at the angle where the ink,
+ * projected onto the line normal, piles up the most (largest sum of squared profile bins). The search runs
+ * around 0 degrees and around 90 degrees; the page is sideways if the ink piles up clearly more in the
+ * profile found around 90 degrees, relative to the extent of each profile. Whether the lines are upside
+ * down is decided from the line shapes: in Latin script, ascenders and capitals put more ink above the
+ * x-height band of a line than descenders put below it. Pages with too few text lines to tell up from down
+ * only get their skew corrected, and pages without recognizable text lines are left as they are.
+ */
+@Component
+public class PageOrientationDetector {
+
+    private static final double COARSE_STEP = 1.0;
+    private static final double FINE_STEP = 0.1;
+    // A page is sideways only if its ink piles up this much more across vertical lines than across horizontal ones
+    private static final double SIDEWAYS_MARGIN = 1.2;
+    // A page is upside down only if the ink below the line cores outweighs the ink above them by this factor
+    private static final double FLIP_MARGIN = 1.2;
+    // Rows of a line with at least this share of the line's peak ink form its x-height band
+    private static final double CORE_SHARE = 0.5;
+    // Profiles across text lines concentrate their ink at least this much, see profile()
+    private static final double MIN_LINE_PEAKINESS = 1.6;
+    // Text lines are at least this long, and this many times longer than tall
+    private static final double MIN_LINE_LENGTH_INCHES = 1.0;
+    private static final int LINE_ASPECT = 4;
+    // Share of the ink ignored at either end of a profile when measuring its extent
+    private static final double EXTENT_TAIL = 0.02;
+    private static final double MIN_INK_SHARE = 0.001;
+    private static final double MAX_INK_SHARE = 0.35;
+    private static final int MAX_SAMPLES = 100_000;
+    private static final int MIN_THUMBNAIL_SIZE = 32;
+
+    private final boolean enabled;
+    private final int thumbnailDpi;
+    private final double maxSkewDegrees;
+    private final double minSkewDegrees;
+    private final int minTextLines;
+
+    @Autowired
+    public PageOrientationDetector(@Value("${ocr.orientation.enabled:true}") boolean enabled,
+                                   @Value("${ocr.orientation.thumbnailDpi:100}") int thumbnailDpi,
+                                   @Value("${ocr.orientation.maxSkewDegrees:10}") double maxSkewDegrees,
+                                   @Value("${ocr.orientation.minSkewDegrees:0.3}") double minSkewDegrees,
+                                   @Value("${ocr.orientation.minTextLines:3}") int minTextLines) {
+        this.enabled = enabled;
+        this.thumbnailDpi = Math.max(25, thumbnailDpi);
+        this.maxSkewDegrees = Math.max(0, maxSkewDegrees);
+        this.minSkewDegrees = minSkewDegrees;
+        this.minTextLines = Math.max(1, minTextLines);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Estimates how a page has to be rotated to be upright and straight.
+     *
+     * @param page The rendered page in grayscale
+     * @param dpi The DPI the page was rendered at
+     * @return The correction to apply, {@link PageOrientation#UPRIGHT} if none is needed or the page has too little text
+     */
+    public PageOrientation detect(GrayImage page, int dpi) {
+        if (!enabled) {
+            return PageOrientation.UPRIGHT;
+        }
+        int factor = Math.max(1, Math.round((float) dpi / thumbnailDpi));
+        int width = page.getWidth() / factor;
+        int height = page.getHeight() / factor;
+        if (width < MIN_THUMBNAIL_SIZE || height < MIN_THUMBNAIL_SIZE) {
+            return PageOrientation.UPRIGHT;
+        }
+
+        int[] thumbnail = new int[width * height];
+        int[] histogram = new int[256];
+        downscale(page, factor, width, height, thumbnail, histogram);
+        int threshold = GrayImageOperators.otsuThreshold(histogram, thumbnail.length);
+        int inkPixels = 0;
+        for (int level = 0; level <= threshold; level++) {
+            inkPixels += histogram[level];
+        }
+        if (inkPixels < thumbnail.length * MIN_INK_SHARE || inkPixels > thumbnail.length * MAX_INK_SHARE) {
+            return PageOrientation.UPRIGHT; // Blank, or a photo rather than text
+        }
+
+        // Ink coordinates relative to the thumbnail center, sampled evenly on large pages
+        int stride = (inkPixels + MAX_SAMPLES - 1) / MAX_SAMPLES;
+        int samples = (inkPixels + stride - 1) / stride;
+        float[] xs = new float[samples];
+        float[] ys = new float[samples];
+        int seen = 0;
+        int sample = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (thumbnail[y * width + x] <= threshold && seen++ % stride == 0 && sample < samples) {
+                    xs[sample] = x - width / 2f;
+                    ys[sample] = y - height / 2f;
+                    sample++;
+                }
+            }
+        }
+        int radius = (int) Math.ceil(Math.hypot(width, height) / 2) + 1;
+
+        int[] bins = new int[2 * radius + 1];
+        int minLineLength = (int) Math.round(MIN_LINE_LENGTH_INCHES * dpi / factor);
+        double horizontal = bestAngle(xs, ys, sample, bins, 0);
+        Profile acrossHorizontal = profile(xs, ys, sample, bins, horizontal);
+        boolean horizontalText = isTextLines(acrossHorizontal, profile(xs, ys, sample, bins, horizontal + 90), minLineLength);
+        double vertical = bestAngle(xs, ys, sample, bins, 90);
+        Profile acrossVertical = profile(xs, ys, sample, bins, vertical);
+        boolean verticalText = isTextLines(acrossVertical, profile(xs, ys, sample, bins, vertical + 90), minLineLength);
+        if (!horizontalText && !verticalText) {
+            return PageOrientation.UPRIGHT; // No text lines in either direction
+        }
+        boolean sideways = verticalText
+                && (!horizontalText || acrossVertical.peakiness() > acrossHorizontal.peakiness() * SIDEWAYS_MARGIN);
+        Profile lines = sideways ? acrossVertical : acrossHorizontal;
+        double angle = sideways ? vertical : horizontal;
+
+        if (lines.lines() >= minTextLines) {
+            if (lines.below() > lines.above() * (sideways ? 1.0 : FLIP_MARGIN)) {
+                angle += 180;
+            }
+        } else if (sideways) {
+            return PageOrientation.UPRIGHT; // Too little text to tell which way the page is turned
+        }
+
+        int rotation = (int) Math.round(angle / 90) * 90;
+        double skew = angle - rotation;
+        if (Math.abs(skew) < minSkewDegrees) {
+            skew = 0;
+        }
+        return new PageOrientation(rotation, Math.round(skew * 10) / 10.0);
+    }
+
+    /**
+     * Describes every setting that affects how pages are straightened, for cache keys of recognized output.
+     *
+     * @return The settings signature
+     */
+    public String getSettingsSignature() {
+        if (!enabled) {
+            return "off";
+        }
+        return String.format(Locale.ROOT, "thumbnail=%d,maxSkew=%.1f,minSkew=%.1f,lines=%d",
+                thumbnailDpi, maxSkewDegrees, minSkewDegrees, minTextLines);
+    }
+
+    /**
+     * Box-filters the page down by an integer factor, building the thumbnail's histogram in the same pass.
+     */
+    private static void downscale(GrayImage page, int factor, int width, int height, int[] thumbnail, int[] histogram) {
+        byte[] pixels = page.getPixels();
+        int pageWidth = page.getWidth();
+        int area = factor * factor;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    int rowOffset = (y * factor + dy) * pageWidth + x * factor;
+                    for (int dx = 0; dx < factor; dx++) {
+                        sum += pixels[rowOffset + dx] & 0xFF;
+                    }
+                }
+                int level = sum / area;
+                thumbnail[y * width + x] = level;
+                histogram[level]++;
+            }
+        }
+    }
+
+    /**
+     * Searches the angle around a base angle at which the ink projects onto the most concentrated profile
+     * (largest sum of squared bins), first in whole degrees, then in tenths around the best whole degree.
+     */
+    private double bestAngle(float[] xs, float[] ys, int samples, int[] bins, double baseAngle) {
+        double bestAngle = baseAngle;
+        double bestScore = concentration(xs, ys, samples, baseAngle, bins);
+        for (double offset = -maxSkewDegrees; offset <= maxSkewDegrees; offset += COARSE_STEP) {
+            double score = concentration(xs, ys, samples, baseAngle + offset, bins);
+            if (score > bestScore) {
+                bestAngle = baseAngle + offset;
+                bestScore = score;
+            }
+        }
+        double coarse = bestAngle;
+        for (double offset = -COARSE_STEP; offset <= COARSE_STEP; offset += FINE_STEP) {
+            double score = concentration(xs, ys, samples, coarse + offset, bins);
+            if (score > bestScore) {
+                bestAngle = coarse + offset;
+                bestScore = score;
+            }
+        }
+        return bestAngle;
+    }
+
+    private static double concentration(float[] xs, float[] ys, int samples, double angle, int[] bins) {
+        project(xs, ys, samples, angle, bins);
+        double score = 0;
+        for (int count : bins) {
+            score += (double) count * count;
+        }
+        return score;
+    }
+
+    /**
+     * Projects the ink onto the vertical axis of the page rotated clockwise by the angle.
+     */
+    private static void project(float[] xs, float[] ys, int samples, double angle, int[] bins) {
+        Arrays.fill(bins, 0);
+        double radians = Math.toRadians(angle);
+        double sin = Math.sin(radians);
+        double cos = Math.cos(radians);
+        int offset = bins.length / 2;
+        for (int i = 0; i < samples; i++) {
+            bins[(int) Math.round(xs[i] * sin + ys[i] * cos) + offset]++;
+        }
+    }
+
+    /**
+     * Whether a profile looks like it runs across text lines: its ink piles up in lines, and the lines are
+     * long, both absolutely and compared to their height (the extent of the profile along them). The length
+     * conditions keep the letters of a line or two from passing as short vertical lines.
+     */
+    private static boolean isTextLines(Profile across, Profile along, int minLineLength) {
+        return across.lines() > 0 && across.peakiness() >= MIN_LINE_PEAKINESS
+                && along.extent() >= Math.max(minLineLength, across.medianLineHeight() * LINE_ASPECT);
+    }
+
+    /**
+     * Projects the ink of the page rotated by the angle and describes the profile: how strongly the ink piles
+     * up, its extent, and the text lines it splits into, with the ink above and below the x-height band of
+     * every line.
+     * <p>
+     * Peakiness is the sum of squared bins relative to that of the same ink spread evenly over the profile's
+     * extent (2nd to 98th percentile), so it does not depend on the size of the text block. Text lines and the
+     * gaps between them concentrate the profile across the lines, while the profile along the lines averages
+     * the glyphs of all lines into a flat curve.
+     */
+    private static Profile profile(float[] xs, float[] ys, int samples, int[] bins, double angle) {
+        project(xs, ys, samples, angle, bins);
+        double energy = 0;
+        int first = -1;
+        int last = -1;
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            energy += (double) bins[i] * bins[i];
+            seen += bins[i];
+            if (first < 0 && seen >= samples * EXTENT_TAIL) {
+                first = i;
+            }
+            if (last < 0 && seen >= samples * (1 - EXTENT_TAIL)) {
+                last = i;
+            }
+        }
+        int extent = last - first + 1;
+
+        List<Integer> lineHeights = new ArrayList<>();
+        long above = 0;
+        long below = 0;
+        int start = -1;
+        for (int i = 0; i <= bins.length; i++) {
+            boolean ink = i < bins.length && bins[i] > 0;
+            if (ink && start < 0) {
+                start = i;
+            } else if (!ink && start >= 0) {
+                int end = i - 1;
+                if (end - start >= 2) {
+                    int peak = 0;
+                    for (int j = start; j <= end; j++) {
+                        peak = Math.max(peak, bins[j]);
+                    }
+                    int coreStart = start;
+                    while (bins[coreStart] < peak * CORE_SHARE) {
+                        coreStart++;
+                    }
+                    int coreEnd = end;
+                    while (bins[coreEnd] < peak * CORE_SHARE) {
+                        coreEnd--;
+                    }
+                    for (int j = start; j < coreStart; j++) {
+                        above += bins[j];
+                    }
+                    for (int j = coreEnd + 1; j <= end; j++) {
+                        below += bins[j];
+                    }
+                    lineHeights.add(end - start + 1);
+                }
+                start = -1;
+            }
+        }
+        Collections.sort(lineHeights);
+        int medianLineHeight = lineHeights.isEmpty() ? 0 : lineHeights.get(lineHeights.size() / 2);
+        return new Profile(energy * extent / ((double) samples * samples), extent,
+                lineHeights.size(), medianLineHeight, above, below);
+    }
+
+    private record Profile(double peakiness, int extent, int lines, int medianLineHeight, long above, long below) {
+    }
+}
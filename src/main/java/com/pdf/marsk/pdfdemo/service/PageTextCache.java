@@ -0,0 +1,119 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageText;
+import com.pdf.marsk.pdfdemo.repository.OcrPageTextRepository;
+
+/**
+ * Fingerprint → recognized text store used to skip OCR of pages that were already recognized,
+ * in the same or in any other document. Pages keep their confidences, so a reused page is flagged like the original.
+ * <p>
+ * Same two tiers as {@link OcrResultCache}: the in-memory {@code pageTexts} Caffeine cache backed by the
+ * {@code ocr_page_texts} table. Keys combine the page fingerprint with the language and the pipeline settings.
+ */
+@Component
+public class PageTextCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageTextCache.class);
+    static final String CACHE_NAME = "pageTexts";
+
+    private final Cache memoryTier;
+    private final OcrPageTextRepository persistentTier;
+    private final boolean enabled;
+
+    @Autowired
+    public PageTextCache(CacheManager cacheManager,
+                         OcrPageTextRepository persistentTier,
+                         @Value("${ocr.dedup.enabled:true}") boolean enabled) {
+        this.memoryTier = cacheManager.getCache(CACHE_NAME);
+        this.persistentTier = persistentTier;
+        this.enabled = enabled && memoryTier != null;
+        if (enabled && memoryTier == null) {
+            logger.warn("Cache '{}' is not configured, page deduplication is disabled", CACHE_NAME);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the store key of a page.
+     *
+     * @param fingerprint The fingerprint of the preprocessed page
+     * @param language The OCR language
+     * @param engineSettings The signature of the recognition settings
+     * @return The store key
+     */
+    public String key(String fingerprint, String language, String engineSettings) {
+        return fingerprint + ":" + language + ":"
+                + OcrResultCache.sha256(engineSettings.getBytes(StandardCharsets.UTF_8)).substring(0, 32);
+    }
+
+    /**
+     * @return An identical page recognized earlier, or null
+     */
+    public KnownPage get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        KnownPage page = memoryTier.get(key, KnownPage.class);
+        if (page != null) {
+            return page;
+        }
+        try {
+            Optional<OcrPageText> stored = persistentTier.findByFingerprintKey(key);
+            if (stored.isPresent()) {
+                page = new KnownPage(stored.get().getRecognizedText(), stored.get().getConfidence(),
+                        stored.get().getLineConfidences());
+                memoryTier.put(key, page);
+                return page;
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Could not read the page text store: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Stores a recognized page in both tiers.
+     */
+    public void put(String key, KnownPage page) {
+        if (!enabled || page.text() == null) {
+            return;
+        }
+        memoryTier.put(key, page);
+        try {
+            if (persistentTier.findByFingerprintKey(key).isEmpty()) {
+                OcrPageText entry = new OcrPageText(key, page.text());
+                entry.setConfidence(page.confidence());
+                entry.setLineConfidences(page.lineConfidences());
+                persistentTier.save(entry);
+            }
+        } catch (DataAccessException e) {
+            // Typically an identical page stored concurrently by another worker or node
+            logger.warn("Could not write the page text store: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A recognized page.
+     *
+     * @param text The recognized text
+     * @param confidence The mean word confidence, or null if none was reported
+     * @param lineConfidences The encoded line confidences of the text, see {@link LineConfidences}, or null
+     */
+    public record KnownPage(String text, Float confidence, String lineConfidences) {
+    }
+}
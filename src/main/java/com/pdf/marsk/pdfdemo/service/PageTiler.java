@@ -0,0 +1,195 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits oversized pages (engineering drawings, posters) into overlapping tiles that are rendered and
+ * recognized independently, and merges the words recognized on the tiles back into page text.
+ * <p>
+ * Neighbouring tiles share an overlap band, so a word cut by one tile's edge is seen whole by the other.
+ * Words that lie entirely inside their tile, away from every band, are kept as they are. Words touching a band
+ * are de-duplicated by position: largest first, a word is dropped when most of its box is covered by a word
+ * already kept from another tile, which removes both exact duplicates and fragments cut by a tile edge.
+ */
+@Component
+public class PageTiler {
+
+    // Share of the smaller box that must be covered for two words from different tiles to be the same word
+    private static final double DUPLICATE_COVERAGE = 0.5;
+
+    private final boolean enabled;
+    private final long maxPixels;
+    private final int tileSize;
+    private final int overlap;
+
+    @Autowired
+    public PageTiler(@Value("${ocr.tiling.enabled:true}") boolean enabled,
+                     @Value("${ocr.tiling.maxMegapixels:40}") double maxMegapixels,
+                     @Value("${ocr.tiling.tileSize:4096}") int tileSize,
+                     @Value("${ocr.tiling.overlap:256}") int overlap) {
+        this.enabled = enabled;
+        this.maxPixels = (long) (maxMegapixels * 1_000_000);
+        this.tileSize = Math.max(256, tileSize);
+        this.overlap = Math.max(0, Math.min(overlap, this.tileSize / 4));
+    }
+
+    /**
+     * @param region The region of the page to recognize, in pixels at the render DPI
+     * @return Whether the region is too large to recognize as a single image
+     */
+    public boolean shouldTile(Rectangle region) {
+        return enabled && (long) region.width * region.height > maxPixels;
+    }
+
+    /**
+     * Lays a grid of overlapping tiles over a region. Tiles are at most the tile size on each side,
+     * evenly sized, and listed row by row.
+     *
+     * @param region The region to cover, in page pixels
+     * @return The tiles, in page pixels
+     */
+    public List<Rectangle> tiles(Rectangle region) {
+        int[] columns = spans(region.x, region.width);
+        int[] rows = spans(region.y, region.height);
+        List<Rectangle> tiles = new ArrayList<>((columns.length / 2) * (rows.length / 2));
+        for (int row = 0; row < rows.length; row += 2) {
+            for (int column = 0; column < columns.length; column += 2) {
+                tiles.add(new Rectangle(columns[column], rows[row], columns[column + 1], rows[row + 1]));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Merges the words recognized on the tiles of one page into page text.
+     *
+     * @param tiles The tiles of the page, as returned by {@link #tiles(Rectangle)}
+     * @param words The words recognized on all tiles, with boxes in page pixels
+     * @return The page text, one line per text line
+     */
+    public String merge(List<Rectangle> tiles, List<TileWord> words) {
+        return OcrWords.toText(mergeWords(tiles, words));
+    }
+
+    /**
+     * Merges the words recognized on the tiles of one page, dropping the copies seen by more than one tile.
+     *
+     * @param tiles The tiles of the page, as returned by {@link #tiles(Rectangle)}
+     * @param words The words recognized on all tiles, with boxes in page pixels
+     * @return The words of the page, each once
+     */
+    public List<OcrWord> mergeWords(List<Rectangle> tiles, List<TileWord> words) {
+        List<TileWord> kept = new ArrayList<>(words.size());
+        List<TileWord> inBands = new ArrayList<>();
+        for (TileWord word : words) {
+            if (interior(tiles, word.tile()).contains(word.box())) {
+                kept.add(word);
+            } else {
+                inBands.add(word);
+            }
+        }
+
+        inBands.sort(Comparator.comparingLong((TileWord word) -> area(word.box())).reversed()
+                .thenComparing(Comparator.comparingDouble(TileWord::confidence).reversed()));
+        List<TileWord> keptFromBands = new ArrayList<>();
+        for (TileWord word : inBands) {
+            boolean duplicate = keptFromBands.stream()
+                    .anyMatch(other -> other.tile() != word.tile() && coverage(other.box(), word.box()) >= DUPLICATE_COVERAGE);
+            if (!duplicate) {
+                keptFromBands.add(word);
+            }
+        }
+        kept.addAll(keptFromBands);
+        return kept.stream().map(word -> new OcrWord(word.text(), word.box(), word.confidence())).toList();
+    }
+
+    /**
+     * Describes every setting that affects which pages are tiled and how, for cache keys of recognized output.
+     *
+     * @return The settings signature
+     */
+    public String getSettingsSignature() {
+        if (!enabled) {
+            return "off";
+        }
+        return String.format(Locale.ROOT, "max=%d,tile=%d,overlap=%d", maxPixels, tileSize, overlap);
+    }
+
+    /**
+     * Splits a span into evenly sized, overlapping pieces of at most the tile size.
+     *
+     * @return Start and length of each piece, interleaved
+     */
+    private int[] spans(int start, int length) {
+        int count = length <= tileSize ? 1 : (int) Math.ceil((double) (length - overlap) / (tileSize - overlap));
+        int[] spans = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            int from = start + (int) ((long) (length - overlap) * i / count);
+            int to = start + (int) ((long) (length - overlap) * (i + 1) / count) + overlap;
+            spans[i * 2] = from;
+            spans[i * 2 + 1] = Math.min(to, start + length) - from;
+        }
+        return spans;
+    }
+
+    /**
+     * The part of a tile that no other tile overlaps.
+     */
+    private static Rectangle interior(List<Rectangle> tiles, int tileIndex) {
+        Rectangle tile = tiles.get(tileIndex);
+        int left = tile.x;
+        int top = tile.y;
+        int right = tile.x + tile.width;
+        int bottom = tile.y + tile.height;
+        for (int i = 0; i < tiles.size(); i++) {
+            Rectangle other = tiles.get(i);
+            if (i == tileIndex || !tile.intersects(other)) {
+                continue;
+            }
+            boolean sameRow = other.y == tile.y;
+            boolean sameColumn = other.x == tile.x;
+            if (sameRow && other.x > tile.x) {
+                right = Math.min(right, other.x);
+            } else if (sameRow && other.x < tile.x) {
+                left = Math.max(left, other.x + other.width);
+            } else if (sameColumn && other.y > tile.y) {
+                bottom = Math.min(bottom, other.y);
+            } else if (sameColumn && other.y < tile.y) {
+                top = Math.max(top, other.y + other.height);
+            }
+        }
+        return new Rectangle(left, top, Math.max(0, right - left), Math.max(0, bottom - top));
+    }
+
+    private static long area(Rectangle box) {
+        return (long) box.width * box.height;
+    }
+
+    private static double coverage(Rectangle a, Rectangle b) {
+        Rectangle intersection = a.intersection(b);
+        if (intersection.isEmpty()) {
+            return 0;
+        }
+        long smaller = Math.min(area(a), area(b));
+        return smaller == 0 ? 0 : (double) area(intersection) / smaller;
+    }
+
+    /**
+     * A word recognized on a tile.
+     *
+     * @param tile The index of the tile in the page's tile list
+     * @param text The word text
+     * @param box The word's bounding box, in page pixels
+     * @param confidence Tesseract's confidence in the word, 0-100
+     */
+    public record TileWord(int tile, String text, Rectangle box, float confidence) {
+    }
+}
@@ -8,6 +8,7 @@ import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -15,7 +16,6 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Iterator;
 
 @Service
@@ -23,6 +23,9 @@ public class PdfCompressionService {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfCompressionService.class);
 
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+
     // Define a quality setting for JPEG compression (0.0f to 1.0f)
     private static final float JPEG_COMPRESSION_QUALITY = 0.75f; // Example: 75% quality
 
@@ -35,8 +38,8 @@ public class PdfCompressionService {
             throw new IllegalArgumentException("Invalid file type provided: " + pdfFile.getOriginalFilename() + ". Only PDF files are allowed.");
         }
 
-        try (InputStream inputStream = pdfFile.getInputStream();
-             PDDocument document = PDDocument.load(inputStream);
+        try (SpooledUpload upload = uploadSpoolService.spool(pdfFile);
+             PDDocument document = upload.loadPdf();
              ByteArrayOutputStream compressedPdfOutputStream = new ByteArrayOutputStream()) {
 
             if (document.isEncrypted()) {
@@ -4,6 +4,7 @@ import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,6 +21,9 @@ import java.util.List;
 public class PdfMergeService {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfMergeService.class);
+
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
     private static final int MAX_MEMORY_THRESHOLD = 50 * 1024 * 1024; // 50MB threshold for memory optimization
 
     /**
@@ -43,6 +47,7 @@ public class PdfMergeService {
         
         // Prepare documents for merging
         List<PDDocument> validDocuments = new ArrayList<>();
+        List<SpooledUpload> uploads = new ArrayList<>();
         int totalSize = 0;
 
         try {
@@ -66,7 +71,9 @@ public class PdfMergeService {
                 
                 // Load and validate the PDF document
                 try {
-                    PDDocument doc = PDDocument.load(pdfFile.getInputStream());
+                    SpooledUpload upload = uploadSpoolService.spool(pdfFile);
+                    uploads.add(upload);
+                    PDDocument doc = upload.loadPdf();
                     
                     // Check if document is encrypted
                     if (doc.isEncrypted()) {
@@ -129,6 +136,7 @@ public class PdfMergeService {
                     logger.warn("Failed to close PDF document during cleanup", e);
                 }
             }
+            uploads.forEach(SpooledUpload::close);
             
             try {
                 mergedPdfOutputStream.close();
@@ -5,19 +5,22 @@ import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
 import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 @Service
 public class PdfProtectionService {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfProtectionService.class);
 
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+
     public byte[] protectPdf(MultipartFile pdfFile, String userPassword, String ownerPassword) throws IOException {
         if (pdfFile == null || pdfFile.isEmpty()) {
             throw new IllegalArgumentException("A PDF file is required for protection.");
@@ -55,8 +58,8 @@ public class PdfProtectionService {
         }
 
 
-        try (InputStream inputStream = pdfFile.getInputStream();
-             PDDocument document = PDDocument.load(inputStream);
+        try (SpooledUpload upload = uploadSpoolService.spool(pdfFile);
+             PDDocument document = upload.loadPdf();
              ByteArrayOutputStream protectedPdfOutputStream = new ByteArrayOutputStream()) {
 
             if (document.isEncrypted()) {
@@ -4,12 +4,12 @@ import org.apache.pdfbox.multipdf.Splitter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -20,6 +20,9 @@ public class PdfSplitService {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfSplitService.class);
 
+    @Autowired
+    private UploadSpoolService uploadSpoolService;
+
     public byte[] splitPdfEveryPage(MultipartFile pdfFile, String originalFilenameBase) throws IOException {
         if (pdfFile == null || pdfFile.isEmpty()) {
             throw new IllegalArgumentException("A PDF file is required for splitting.");
@@ -29,8 +32,8 @@ public class PdfSplitService {
             throw new IllegalArgumentException("Invalid file type provided: " + pdfFile.getOriginalFilename() + ". Only PDF files are allowed.");
         }
 
-        try (InputStream inputStream = pdfFile.getInputStream();
-             PDDocument document = PDDocument.load(inputStream)) {
+        try (SpooledUpload upload = uploadSpoolService.spool(pdfFile);
+             PDDocument document = upload.loadPdf()) {
 
             if (document.isEncrypted()) {
                 logger.warn("Cannot split an encrypted PDF: {}", pdfFile.getOriginalFilename());
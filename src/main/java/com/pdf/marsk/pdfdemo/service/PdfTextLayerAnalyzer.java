@@ -0,0 +1,93 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides per page whether the embedded PDF text layer is good enough to skip OCR.
+ * A page passes when it has enough text for its size (text density) and the extracted
+ * characters are mostly real glyphs rather than unmapped font codes (glyph coverage).
+ */
+@Component
+public class PdfTextLayerAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfTextLayerAnalyzer.class);
+    private static final float POINTS_PER_INCH = 72f;
+
+    private final double minCharsPerSquareInch;
+    private final double minGlyphCoverage;
+
+    @Autowired
+    public PdfTextLayerAnalyzer(@Value("${ocr.hybrid.minCharsPerSquareInch:2.0}") double minCharsPerSquareInch,
+                                @Value("${ocr.hybrid.minGlyphCoverage:0.9}") double minGlyphCoverage) {
+        this.minCharsPerSquareInch = minCharsPerSquareInch;
+        this.minGlyphCoverage = minGlyphCoverage;
+    }
+
+    /**
+     * Extracts the text layer of a single page if it passes the density and glyph coverage checks.
+     *
+     * @param document The loaded PDF document
+     * @param pageIndex The 0-based page index
+     * @return The page text, or null if the page should go through OCR instead
+     * @throws IOException If the page content cannot be parsed
+     */
+    public String extractUsablePageText(PDDocument document, int pageIndex) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(pageIndex + 1);
+        stripper.setEndPage(pageIndex + 1);
+        String text = stripper.getText(document);
+
+        PDPage page = document.getPage(pageIndex);
+        PDRectangle mediaBox = page.getMediaBox();
+        double areaSquareInches = (mediaBox.getWidth() / POINTS_PER_INCH) * (mediaBox.getHeight() / POINTS_PER_INCH);
+
+        int visibleChars = 0;
+        int recognizedGlyphs = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                continue;
+            }
+            visibleChars++;
+            if (isRecognizedGlyph(codePoint)) {
+                recognizedGlyphs++;
+            }
+        }
+
+        double density = areaSquareInches > 0 ? visibleChars / areaSquareInches : 0;
+        double coverage = visibleChars > 0 ? (double) recognizedGlyphs / visibleChars : 0;
+        boolean usable = density >= minCharsPerSquareInch && coverage >= minGlyphCoverage;
+
+        logger.debug("Page {}: {} chars, density {} chars/sq in, glyph coverage {} -> {}",
+                pageIndex + 1, visibleChars, String.format("%.2f", density), String.format("%.2f", coverage),
+                usable ? "text layer" : "OCR");
+        return usable ? text : null;
+    }
+
+    /**
+     * A glyph counts as recognized if it maps to a letter, digit, punctuation or symbol.
+     * Fonts without a usable ToUnicode map typically produce replacement, control or private-use characters.
+     */
+    private boolean isRecognizedGlyph(int codePoint) {
+        if (codePoint == 0xFFFD) {
+            return false;
+        }
+        int type = Character.getType(codePoint);
+        return type != Character.CONTROL
+                && type != Character.PRIVATE_USE
+                && type != Character.UNASSIGNED
+                && type != Character.SURROGATE
+                && type != Character.FORMAT;
+    }
+}
@@ -0,0 +1,136 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single stage of the OCR pipeline: a fixed number of workers fed by a bounded queue.
+ * Submitting to a full stage blocks the caller, which propagates backpressure upstream
+ * instead of letting rendered pages pile up in memory.
+ */
+public class PipelineStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final int workers;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder processedItems = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    public PipelineStage(String name, int workers, int queueCapacity) {
+        this.name = name;
+        this.workers = Math.max(1, workers);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.executor = new ThreadPoolExecutor(this.workers, this.workers, 0L, TimeUnit.MILLISECONDS,
+                queue, new StageThreadFactory(name));
+        // Workers must be running before tasks are put directly onto the queue
+        this.executor.prestartAllCoreThreads();
+        logger.info("Initialized OCR pipeline stage '{}' with {} workers and queue capacity {}",
+                name, this.workers, queue.remainingCapacity());
+    }
+
+    /**
+     * Queues work on this stage, blocking while the stage queue is full.
+     *
+     * @param work The work to run on one of the stage workers
+     * @return A future completed with the work result, or exceptionally with whatever the work threw
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (executor.isShutdown()) {
+            result.completeExceptionally(new RejectedExecutionException("Pipeline stage '" + name + "' is shut down"));
+            return result;
+        }
+        Runnable task = () -> {
+            if (result.isDone()) {
+                return; // Cancelled while queued
+            }
+            long start = System.nanoTime();
+            try {
+                result.complete(work.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+                processedItems.increment();
+            }
+        };
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new InterruptedIOException("Interrupted while queueing work for stage '" + name + "'"));
+        }
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getActiveWorkers() {
+        return executor.getActiveCount();
+    }
+
+    public long getProcessedItems() {
+        return processedItems.sum();
+    }
+
+    /**
+     * Average time spent per item on a worker since startup, in milliseconds.
+     */
+    public double getAverageMillis() {
+        long items = processedItems.sum();
+        return items == 0 ? 0 : busyNanos.sum() / 1_000_000.0 / items;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class StageThreadFactory implements ThreadFactory {
+        private final String stageName;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        StageThreadFactory(String stageName) {
+            this.stageName = stageName;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ocr-" + stageName + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
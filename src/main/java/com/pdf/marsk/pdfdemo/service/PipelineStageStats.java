@@ -0,0 +1,41 @@
+package com.pdf.marsk.pdfdemo.service;
+
+/**
+ * Snapshot of one OCR pipeline stage as seen by a single task.
+ * Queue depth and worker counts are shared across tasks; item counts and timings are per task.
+ */
+public class PipelineStageStats {
+    private final String stage;
+    private final int workers;
+    private final int queueDepth;
+    private final long processedPages;
+    private final double averageMillis;
+
+    public PipelineStageStats(String stage, int workers, int queueDepth, long processedPages, double averageMillis) {
+        this.stage = stage;
+        this.workers = workers;
+        this.queueDepth = queueDepth;
+        this.processedPages = processedPages;
+        this.averageMillis = averageMillis;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getProcessedPages() {
+        return processedPages;
+    }
+
+    public double getAverageMillis() {
+        return averageMillis;
+    }
+}
@@ -0,0 +1,312 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.jna.Pointer;
+
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.ITessAPI.TessPageIterator;
+import net.sourceforge.tess4j.ITessAPI.TessPageIteratorLevel;
+import net.sourceforge.tess4j.ITessAPI.TessResultIterator;
+import net.sourceforge.tess4j.ITesseract;
+import net.sourceforge.tess4j.TessAPI;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import net.sourceforge.tess4j.Word;
+
+/**
+ * Tesseract handle used by the {@link TesseractPool}.
+ * <p>
+ * A plain {@link Tesseract} creates and initializes a native engine, loading the traineddata, on
+ * every {@code doOCR} call and deletes it afterwards. A pooled handle stays warm instead: the engine
+ * is initialized once, only its recognition results are cleared between calls, and it is deleted when
+ * the pool evicts the handle. Changing the language, engine mode or data path re-initializes it on
+ * the next call. Besides the text, the handle keeps the mean word confidence Tesseract reports for
+ * the last recognized image, and its text lines with their confidences. A handle is only used by one thread at a time, so plain fields are enough.
+ * <p>
+ * Preprocessed pages are passed to the native API as they are: their 8-bit gray pixels are copied into a direct
+ * buffer the handle reuses for every page and handed to {@code TessBaseAPISetImage}, instead of going through
+ * {@code doOCR(BufferedImage)}, which converts the image and allocates a new native buffer per page.
+ * The page's resolution goes along with the pixels ({@code TessBaseAPISetSourceResolution}), and the handle's
+ * variables are only handed to the engine again after one of them changed, so a page costs no configuration calls.
+ */
+public class PooledTesseract extends Tesseract {
+
+    private boolean initialized;
+    private String language = "eng";
+    private int pageSegMode = -1;
+    private int sourceResolution;
+    private boolean variablesChanged = true;
+    private Float lastMeanConfidence;
+    private List<Word> lastLines = List.of();
+    // Grows to the largest page recognized on this handle
+    private ByteBuffer pixelBuffer;
+
+    /**
+     * Initializes the native engine now rather than on the first recognition.
+     */
+    public void warmUp() {
+        init();
+    }
+
+    /**
+     * @return Whether the native engine is initialized
+     */
+    public boolean isWarm() {
+        return initialized;
+    }
+
+    /**
+     * Deletes the native engine and the models it loaded.
+     */
+    public void close() {
+        if (initialized) {
+            initialized = false;
+            super.dispose();
+        }
+        pixelBuffer = null;
+    }
+
+    /**
+     * Recognizes the text of an 8-bit grayscale image through the native API.
+     *
+     * @param image The image; only read during the call
+     * @return The recognized text
+     * @throws TesseractException If recognition fails
+     */
+    public String recognize(GrayImage image) throws TesseractException {
+        init();
+        applyChangedVariables();
+        try {
+            setImage(image);
+            Pointer utf8Text = getAPI().TessBaseAPIGetUTF8Text(getHandle());
+            String text = takeText(utf8Text);
+            recordConfidences();
+            return text;
+        } catch (RuntimeException e) {
+            throw new TesseractException(e);
+        } finally {
+            dispose();
+        }
+    }
+
+    /**
+     * Recognizes an 8-bit grayscale image through the native API and returns its text elements
+     * at a page iterator level, like {@link #getWords(java.awt.image.BufferedImage, int)}.
+     *
+     * @param image The image; only read during the call
+     * @param pageIteratorLevel The level of the elements, e.g. {@code TessPageIteratorLevel.RIL_WORD}
+     * @return The elements with their confidence and bounding box in image pixels
+     * @throws TesseractException If recognition fails
+     */
+    public List<Word> getWords(GrayImage image, int pageIteratorLevel) throws TesseractException {
+        init();
+        applyChangedVariables();
+        try {
+            setImage(image);
+            getAPI().TessBaseAPIRecognize(getHandle(), null);
+            return readElements(pageIteratorLevel);
+        } catch (RuntimeException e) {
+            throw new TesseractException(e);
+        } finally {
+            dispose();
+        }
+    }
+
+    /**
+     * Sets the resolution of the pages recognized next through {@link #recognize(GrayImage)} and
+     * {@link #getWords(GrayImage, int)}, so Tesseract's size heuristics match the image.
+     *
+     * @param dpi The resolution the pages were rendered at, or 0 to let Tesseract estimate it
+     */
+    public void setSourceResolution(int dpi) {
+        this.sourceResolution = dpi;
+    }
+
+    private void applyChangedVariables() {
+        if (variablesChanged) {
+            setVariables();
+            variablesChanged = false;
+        }
+    }
+
+    /**
+     * Reads the elements of the last recognition at a page iterator level.
+     */
+    private List<Word> readElements(int pageIteratorLevel) {
+        TessAPI api = getAPI();
+        TessResultIterator resultIterator = api.TessBaseAPIGetIterator(getHandle());
+        List<Word> words = new ArrayList<>();
+        if (resultIterator == null) {
+            return words; // Nothing recognized
+        }
+        try {
+            TessPageIterator pageIterator = api.TessResultIteratorGetPageIterator(resultIterator);
+            api.TessPageIteratorBegin(pageIterator);
+            IntBuffer left = IntBuffer.allocate(1);
+            IntBuffer top = IntBuffer.allocate(1);
+            IntBuffer right = IntBuffer.allocate(1);
+            IntBuffer bottom = IntBuffer.allocate(1);
+            do {
+                Pointer utf8Text = api.TessResultIteratorGetUTF8Text(resultIterator, pageIteratorLevel);
+                if (utf8Text == null) {
+                    continue;
+                }
+                String text = takeText(utf8Text);
+                float confidence = api.TessResultIteratorConfidence(resultIterator, pageIteratorLevel);
+                api.TessPageIteratorBoundingBox(pageIterator, pageIteratorLevel, left, top, right, bottom);
+                words.add(new Word(text, confidence, new Rectangle(left.get(0), top.get(0),
+                        right.get(0) - left.get(0), bottom.get(0) - top.get(0))));
+            } while (api.TessPageIteratorNext(pageIterator, pageIteratorLevel) == ITessAPI.TRUE);
+        } finally {
+            api.TessResultIteratorDelete(resultIterator);
+        }
+        return words;
+    }
+
+    /**
+     * Keeps the mean confidence and the text lines of the last recognition, before its results are cleared.
+     */
+    private void recordConfidences() {
+        int confidence = getAPI().TessBaseAPIMeanTextConf(getHandle());
+        lastMeanConfidence = confidence >= 0 ? (float) confidence : null;
+        lastLines = readElements(TessPageIteratorLevel.RIL_TEXTLINE);
+    }
+
+    /**
+     * Hands the pixels to the engine, one byte per pixel and no padding between rows.
+     * Tesseract copies the image, so the buffer can be refilled for the next page right away.
+     */
+    private void setImage(GrayImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = width * height;
+        if (pixelBuffer == null || pixelBuffer.capacity() < size) {
+            pixelBuffer = ByteBuffer.allocateDirect(size);
+        }
+        pixelBuffer.clear();
+        pixelBuffer.put(image.getPixels(), 0, size);
+        pixelBuffer.flip();
+        TessBaseAPI handle = getHandle();
+        getAPI().TessBaseAPISetImage(handle, pixelBuffer, width, height, 1, width);
+        if (sourceResolution > 0) {
+            getAPI().TessBaseAPISetSourceResolution(handle, sourceResolution);
+        }
+    }
+
+    /**
+     * Reads and frees a text returned by the native API.
+     */
+    private String takeText(Pointer utf8Text) {
+        if (utf8Text == null) {
+            return "";
+        }
+        try {
+            return utf8Text.getString(0, "UTF-8");
+        } finally {
+            getAPI().TessDeleteText(utf8Text);
+        }
+    }
+
+    @Override
+    protected void init() {
+        if (!initialized) {
+            super.init();
+            initialized = true;
+            // A new engine has none of the handle's variables yet
+            variablesChanged = true;
+        }
+    }
+
+    @Override
+    protected void dispose() {
+        // Keep the engine and its models, only drop the results of the last recognition
+        if (initialized) {
+            getAPI().TessBaseAPIClear(getHandle());
+        }
+    }
+
+    @Override
+    public void setLanguage(String language) {
+        if (initialized && !language.equals(this.language)) {
+            close();
+        }
+        this.language = language;
+        super.setLanguage(language);
+    }
+
+    @Override
+    public void setOcrEngineMode(int ocrEngineMode) {
+        close();
+        super.setOcrEngineMode(ocrEngineMode);
+    }
+
+    @Override
+    public void setDatapath(String datapath) {
+        close();
+        super.setDatapath(datapath);
+    }
+
+    @Override
+    public void setVariable(String key, String value) {
+        super.setVariable(key, value);
+        variablesChanged = true;
+    }
+
+    @Override
+    public void setPageSegMode(int mode) {
+        super.setPageSegMode(mode);
+        // The base class only applies the mode when the engine is initialized
+        if (initialized && mode != pageSegMode) {
+            getAPI().TessBaseAPISetPageSegMode(getHandle(), mode);
+        }
+        pageSegMode = mode;
+    }
+
+    @Override
+    protected String getOCRText(String filename, int pageNum) {
+        String text = super.getOCRText(filename, pageNum);
+        recordConfidences();
+        return text;
+    }
+
+    /**
+     * @return The language the handle is configured for
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * @return The mean word confidence (0-100) of the last recognized image, or null if unknown
+     */
+    public Float getLastMeanConfidence() {
+        return lastMeanConfidence;
+    }
+
+    /**
+     * @return The mean confidence of the last recognition of a handle, or null if the handle does not report it
+     */
+    public static Float lastMeanConfidence(ITesseract tesseract) {
+        return tesseract instanceof PooledTesseract pooled ? pooled.getLastMeanConfidence() : null;
+    }
+
+    /**
+     * @return The text lines of the last recognized image with their confidences, in reading order
+     */
+    public List<Word> getLastLines() {
+        return lastLines;
+    }
+
+    /**
+     * @return The text lines of the last recognition of a handle, or an empty list if the handle does not report them
+     */
+    public static List<Word> lastLines(ITesseract tesseract) {
+        return tesseract instanceof PooledTesseract pooled ? pooled.getLastLines() : List.of();
+    }
+}
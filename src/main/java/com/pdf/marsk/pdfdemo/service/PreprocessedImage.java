@@ -0,0 +1,60 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A preprocessed page backed by a pooled {@link GrayImage} buffer.
+ * Close it once recognition is done so the buffer can be reused for the next page;
+ * an unclosed image is simply garbage collected.
+ */
+public class PreprocessedImage implements AutoCloseable {
+
+    private final GrayImage buffer;
+    private final BufferedImage image;
+    private final ImagePreprocessor owner;
+    private final PageOrientation orientation;
+    private String fingerprint;
+
+    PreprocessedImage(GrayImage buffer, ImagePreprocessor owner, PageOrientation orientation) {
+        this.buffer = buffer;
+        this.image = buffer.toBufferedImage();
+        this.owner = owner;
+        this.orientation = orientation;
+    }
+
+    /**
+     * @return An 8-bit grayscale view of the buffer, valid until this image is closed
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * @return The pixel buffer behind {@link #getImage()}, valid until this image is closed
+     */
+    public GrayImage getGrayImage() {
+        return buffer;
+    }
+
+    /**
+     * @return The rotation and skew correction that was applied to the page
+     */
+    public PageOrientation getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return The fingerprint of the preprocessed page, see {@link GrayImage#fingerprint()}
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = buffer.fingerprint();
+        }
+        return fingerprint;
+    }
+
+    @Override
+    public void close() {
+        owner.release(buffer);
+    }
+}
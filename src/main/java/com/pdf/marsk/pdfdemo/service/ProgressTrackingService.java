@@ -4,11 +4,16 @@ import java.util.List; // Added import
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Service for tracking the progress of OCR operations.
  * Uses a task ID-based approach to track progress of different OCR operations.
+ * OCR progress, finished pages and completion are also pushed to subscribed clients
+ * through the {@link OcrEventStreamService}.
  */
 @Service
 public class ProgressTrackingService {
@@ -16,6 +21,9 @@ public class ProgressTrackingService {
     // Map to store progress information for each task, now using the base class
     private final Map<String, TaskProgressInfo> progressMap = new ConcurrentHashMap<>();
 
+    @Autowired
+    private OcrEventStreamService ocrEventStreamService;
+
     /**
      * Creates a new OCR task and returns its ID for tracking.
      *
@@ -28,9 +36,23 @@ public class ProgressTrackingService {
         String taskId = generateTaskId("ocr");
         OcrProgressInfo ocrInfo = new OcrProgressInfo(taskId, filename, totalPages, language);
         progressMap.put(taskId, ocrInfo);
+        ocrEventStreamService.open(taskId);
         return taskId;
     }
 
+    /**
+     * Recreates the tracking of an OCR task under its original ID, e.g. for a job resumed after a restart,
+     * so clients that still hold the task ID keep receiving its progress.
+     *
+     * @param taskId The original task ID
+     * @param filename The name of the file being processed
+     * @param language The language used for OCR
+     */
+    public void restoreOcrTask(String taskId, String filename, String language) {
+        progressMap.put(taskId, new OcrProgressInfo(taskId, filename, 0, language));
+        ocrEventStreamService.open(taskId);
+    }
+
     /**
      * Creates a new Knowledge Extraction task and returns its ID.
      * @param filename Name of the PDF file.
@@ -59,6 +81,21 @@ public class ProgressTrackingService {
             info.setCurrentPage(currentPage);
             info.setMessage(message);
             info.setProgressPercent(calculateOcrProgress(currentPage, info.getTotalPages()));
+            publishOcrProgress(info);
+        }
+    }
+
+    /**
+     * Publishes the text of a finished page of an OCR task to subscribed clients,
+     * so they can show it before the whole document is done.
+     *
+     * @param taskId The task ID
+     * @param pageIndex The zero-based page index
+     * @param text The page text
+     */
+    public void publishOcrPageResult(String taskId, int pageIndex, String text) {
+        if (progressMap.get(taskId) instanceof OcrProgressInfo) {
+            ocrEventStreamService.publishPage(taskId, pageIndex, text);
         }
     }
     
@@ -90,6 +127,48 @@ public class ProgressTrackingService {
         if (taskInfo instanceof OcrProgressInfo info) {
             info.setTotalPages(totalPages);
             info.setProgressPercent(calculateOcrProgress(info.getCurrentPage(), totalPages));
+            publishOcrProgress(info);
+        }
+    }
+
+    /**
+     * Updates the OCR pipeline stage statistics (queue depths and stage timings) of an OCR task.
+     *
+     * @param taskId The task ID
+     * @param stageStats One snapshot per pipeline stage, in pipeline order
+     */
+    public void updateOcrPipelineStats(String taskId, List<PipelineStageStats> stageStats) {
+        TaskProgressInfo taskInfo = progressMap.get(taskId);
+        if (taskInfo instanceof OcrProgressInfo info) {
+            info.setPipelineStages(stageStats);
+        }
+    }
+
+    /**
+     * Updates how many pages of an OCR task the pre-pass skipped as blank or cropped to their content.
+     *
+     * @param taskId The task ID
+     * @param blankPagesSkipped The number of blank pages that were not recognized
+     * @param croppedPages The number of pages of which only the content region was recognized
+     */
+    public void updateOcrPrepassStats(String taskId, int blankPagesSkipped, int croppedPages) {
+        TaskProgressInfo taskInfo = progressMap.get(taskId);
+        if (taskInfo instanceof OcrProgressInfo info) {
+            info.setBlankPagesSkipped(blankPagesSkipped);
+            info.setCroppedPages(croppedPages);
+        }
+    }
+
+    /**
+     * Records the saved document holding the result of an OCR task.
+     *
+     * @param taskId The task ID
+     * @param documentId The ID of the saved OCR document
+     */
+    public void updateOcrResultDocument(String taskId, Long documentId) {
+        TaskProgressInfo taskInfo = progressMap.get(taskId);
+        if (taskInfo instanceof OcrProgressInfo info) {
+            info.setResultDocumentId(documentId);
         }
     }
 
@@ -105,6 +184,8 @@ public class ProgressTrackingService {
 
     /**
      * Marks a task as completed.
+     * For successful OCR tasks the extracted text is kept as the task result rather than the
+     * status message, so progress responses and events stay small.
      *
      * @param taskId The task ID
      * @param success Whether the task completed successfully
@@ -112,7 +193,17 @@ public class ProgressTrackingService {
      */
     public void completeTask(String taskId, boolean success, String result) {
         TaskProgressInfo info = progressMap.get(taskId); // Use base class
-        if (info != null) {
+        if (info instanceof OcrProgressInfo ocrInfo) {
+            if (ocrInfo.isCompleted()) {
+                return; // Already completed by the OCR service
+            }
+            ocrInfo.setResult(success ? result : null);
+            ocrInfo.setSuccess(success);
+            ocrInfo.setMessage(success ? "OCR completed" : result);
+            ocrInfo.setProgressPercent(100);
+            ocrInfo.setCompleted(true);
+            ocrEventStreamService.publishComplete(taskId, success, ocrInfo.getMessage());
+        } else if (info != null) {
             info.setCompleted(true);
             info.setSuccess(success);
             info.setMessage(result); // This message could be the final result or an error.
@@ -149,7 +240,14 @@ public class ProgressTrackingService {
      * @param taskId The task ID to remove
      */
     public void removeTask(String taskId) {
-        progressMap.remove(taskId);
+        if (progressMap.remove(taskId) instanceof OcrProgressInfo) {
+            ocrEventStreamService.close(taskId);
+        }
+    }
+
+    private void publishOcrProgress(OcrProgressInfo info) {
+        ocrEventStreamService.publishProgress(info.getTaskId(), info.getCurrentPage(), info.getTotalPages(),
+                info.getProgressPercent(), info.getMessage());
     }
 
     /**
@@ -175,6 +273,11 @@ public class ProgressTrackingService {
         private int totalPages;
         private int currentPage;
         private String language;
+        private List<PipelineStageStats> pipelineStages = List.of();
+        private int blankPagesSkipped;
+        private int croppedPages;
+        private String result;
+        private Long resultDocumentId;
 
         public OcrProgressInfo(String taskId, String filename, int totalPages, String language) {
             super(taskId, TaskType.OCR, filename, "OCR Initializing");
@@ -211,6 +314,58 @@ public class ProgressTrackingService {
             this.language = language;
             super.updatedAt = java.time.LocalDateTime.now();
         }
+
+        public List<PipelineStageStats> getPipelineStages() {
+            return pipelineStages;
+        }
+
+        public void setPipelineStages(List<PipelineStageStats> pipelineStages) {
+            this.pipelineStages = pipelineStages;
+            super.updatedAt = java.time.LocalDateTime.now();
+        }
+
+        public int getBlankPagesSkipped() {
+            return blankPagesSkipped;
+        }
+
+        public void setBlankPagesSkipped(int blankPagesSkipped) {
+            this.blankPagesSkipped = blankPagesSkipped;
+            super.updatedAt = java.time.LocalDateTime.now();
+        }
+
+        public int getCroppedPages() {
+            return croppedPages;
+        }
+
+        public void setCroppedPages(int croppedPages) {
+            this.croppedPages = croppedPages;
+            super.updatedAt = java.time.LocalDateTime.now();
+        }
+
+        /**
+         * @return The extracted text of a successfully completed task; not part of progress responses
+         */
+        @JsonIgnore
+        public String getResult() {
+            return result;
+        }
+
+        public void setResult(String result) {
+            this.result = result;
+            super.updatedAt = java.time.LocalDateTime.now();
+        }
+
+        /**
+         * @return The ID of the saved document holding the result, or null if it was not saved
+         */
+        public Long getResultDocumentId() {
+            return resultDocumentId;
+        }
+
+        public void setResultDocumentId(Long resultDocumentId) {
+            this.resultDocumentId = resultDocumentId;
+            super.updatedAt = java.time.LocalDateTime.now();
+        }
         
         // Override setters from TaskProgressInfo if they need specific OCR logic,
         // or rely on superclass methods. For example, setProgressPercent might be calculated
@@ -0,0 +1,217 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control for page rendering against a global memory budget.
+ * <p>
+ * Before a page (or a tile of one) is rendered, its estimated memory cost is reserved from the budget and held
+ * until the page has been recognized: the rendered bitmap, the preprocessing buffers and Tesseract's copy of the
+ * page, estimated as {@code bytesPerPixel} bytes per rendered pixel. When the budget is exhausted, a render waits
+ * for memory up to {@code maxWaitMs}, then goes ahead at the highest DPI that fits, down to the caller's minimum;
+ * if not even that fits, it keeps waiting. A single render larger than the whole budget reserves the whole budget,
+ * so it runs once everything else is done. Current reservations, waits and downgrades are reported by
+ * {@link #snapshot()}.
+ */
+@Component
+public class RenderMemoryGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderMemoryGovernor.class);
+
+    private final long budgetBytes;
+    private final int bytesPerPixel;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition memoryReleased = lock.newCondition();
+    // Guarded by the lock
+    private long reservedBytes;
+    private long peakReservedBytes;
+    private int activeReservations;
+    private int waitingRenders;
+    private long reservations;
+    private long waitedReservations;
+    private long totalWaitNanos;
+    private long downgradedRenders;
+
+    @Autowired
+    public RenderMemoryGovernor(@Value("${ocr.memory.budgetMb:0}") long budgetMb,
+                                @Value("${ocr.memory.bytesPerPixel:4}") int bytesPerPixel,
+                                @Value("${ocr.memory.maxWaitMs:2000}") long maxWaitMs) {
+        // By default renders may use half of the heap, the rest is left to the application and the JVM
+        this(budgetMb > 0 ? budgetMb * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 2, bytesPerPixel,
+                Duration.ofMillis(Math.max(0, maxWaitMs)));
+        logger.info("Render memory budget: {} MB at {} bytes per pixel", budgetBytes / (1024 * 1024), this.bytesPerPixel);
+    }
+
+    public RenderMemoryGovernor(long budgetBytes, int bytesPerPixel, Duration maxWait) {
+        this.budgetBytes = Math.max(1, budgetBytes);
+        this.bytesPerPixel = Math.max(1, bytesPerPixel);
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * @param region The rendered region, in pixels
+     * @return The estimated memory the region needs until it is recognized
+     */
+    public long estimateBytes(Rectangle region) {
+        return (long) region.width * region.height * bytesPerPixel;
+    }
+
+    /**
+     * Reserves the memory for rendering a region, waiting while the budget is exhausted.
+     *
+     * @param region The region to render, in pixels at {@code dpi}
+     * @param dpi The planned render DPI
+     * @param minDpi The lowest DPI the render may be downgraded to; {@code dpi} to wait for the full cost instead
+     * @return The reservation, with the DPI to render at; close it once the rendered page is no longer needed
+     * @throws InterruptedIOException If the thread is interrupted while waiting for memory
+     */
+    public Reservation reserve(Rectangle region, int dpi, int minDpi) throws InterruptedIOException {
+        long fullBytes = Math.min(budgetBytes, estimateBytes(region));
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        boolean waited = false;
+        lock.lock();
+        try {
+            waitingRenders++;
+            try {
+                while (true) {
+                    long availableBytes = budgetBytes - reservedBytes;
+                    if (fullBytes <= availableBytes) {
+                        return grant(fullBytes, dpi, start, waited);
+                    }
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0 && minDpi < dpi && availableBytes > 0) {
+                        // The cost grows with the square of the DPI
+                        int fittingDpi = (int) Math.floor(dpi * Math.sqrt((double) availableBytes / fullBytes));
+                        if (fittingDpi >= minDpi) {
+                            downgradedRenders++;
+                            long bytes = Math.min(availableBytes, (long) Math.ceil(fullBytes * Math.pow((double) fittingDpi / dpi, 2)));
+                            logger.debug("Render memory exhausted ({} of {} bytes reserved), rendering at {} instead of {} DPI",
+                                    reservedBytes, budgetBytes, fittingDpi, dpi);
+                            return grant(bytes, fittingDpi, start, waited);
+                        }
+                    }
+                    waited = true;
+                    if (remainingNanos > 0) {
+                        memoryReleased.awaitNanos(remainingNanos);
+                    } else {
+                        memoryReleased.await();
+                    }
+                }
+            } finally {
+                waitingRenders--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for render memory");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Reservation grant(long bytes, int dpi, long start, boolean waited) {
+        reservedBytes += bytes;
+        peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+        activeReservations++;
+        reservations++;
+        if (waited) {
+            waitedReservations++;
+            totalWaitNanos += System.nanoTime() - start;
+        }
+        return new Reservation(bytes, dpi);
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reservedBytes -= bytes;
+            activeReservations--;
+            memoryReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param threshold The fraction of the budget above which memory counts as short
+     * @return Whether renders are waiting for memory or at least {@code threshold} of the budget is reserved
+     */
+    public boolean isUnderPressure(double threshold) {
+        lock.lock();
+        try {
+            return waitingRenders > 0 || reservedBytes >= threshold * budgetBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The budget, current and peak reservations, renders waiting for memory, and how often renders
+     *         had to wait (with the mean wait in milliseconds) or were downgraded
+     */
+    public Map<String, Object> snapshot() {
+        lock.lock();
+        try {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("budgetBytes", budgetBytes);
+            snapshot.put("reservedBytes", reservedBytes);
+            snapshot.put("peakReservedBytes", peakReservedBytes);
+            snapshot.put("activeReservations", activeReservations);
+            snapshot.put("waitingRenders", waitingRenders);
+            snapshot.put("reservations", reservations);
+            snapshot.put("waitedReservations", waitedReservations);
+            snapshot.put("meanWaitMs", waitedReservations == 0 ? 0.0 : totalWaitNanos / 1e6 / waitedReservations);
+            snapshot.put("downgradedRenders", downgradedRenders);
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserved render memory. Closing it more than once releases the memory only once.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private final int dpi;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(long bytes, int dpi) {
+            this.bytes = bytes;
+            this.dpi = dpi;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return The DPI to render at: the planned DPI, or a lower one if memory was short
+         */
+        public int getDpi() {
+            return dpi;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * Builds a searchable ("sandwich") PDF page by page: every page keeps its original appearance and gets an
+ * invisible text layer with the recognized words, each stretched over its word box so text selection and search
+ * hits line up with the page image. The document keeps its scratch data in temporary files, so pages added
+ * so far do not stay on the heap.
+ * <p>
+ * The text layer uses the standard Helvetica font, which viewers never have to draw; characters it cannot encode
+ * are replaced with '?'. Words follow the quarter-turn rotation under which the page was recognized.
+ */
+public class SearchablePdfWriter implements Closeable {
+
+    private static final float POINTS_PER_INCH = 72f;
+    // Share of the word height below the baseline, so the font's descent lands on the bottom of the word box
+    private static final float BASELINE_SHIFT = 0.2f;
+
+    private final PDDocument document = new PDDocument(MemoryUsageSetting.setupTempFileOnly());
+    private final PDFont font = PDType1Font.HELVETICA;
+
+    /**
+     * Adds a page of a source PDF with an invisible text layer. The source document must stay open
+     * until the searchable PDF is saved, since the page's resources are shared with it.
+     *
+     * @param sourcePage The original page
+     * @param pageResult The page's recognition result, with its words
+     * @throws IOException If the page cannot be copied
+     */
+    public void addPage(PDPage sourcePage, OcrPageResult pageResult) throws IOException {
+        PDPage page = document.importPage(sourcePage);
+        if (!page.getCOSObject().containsKey(COSName.RESOURCES)) {
+            page.setResources(sourcePage.getResources()); // Inherited from the source page tree
+        }
+        if (pageResult.getWords().isEmpty()) {
+            return;
+        }
+        float scale = POINTS_PER_INCH / pageResult.getDpi();
+        AffineTransform toUser = displayToUser(page.getCropBox(), page.getRotation());
+        toUser.scale(scale, scale);
+        try (PDPageContentStream content = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true, true)) {
+            writeTextLayer(content, toUser, pageResult.getOrientation().getRotation(), pageResult.getWords());
+        }
+    }
+
+    /**
+     * Adds a page showing an image with an invisible text layer.
+     *
+     * @param image The image
+     * @param dpi The resolution the image is placed at
+     * @param words The words recognized on the image, in image pixels
+     * @throws IOException If the image cannot be embedded
+     */
+    public void addImagePage(BufferedImage image, int dpi, List<OcrWord> words) throws IOException {
+        float scale = POINTS_PER_INCH / dpi;
+        PDRectangle mediaBox = new PDRectangle(image.getWidth() * scale, image.getHeight() * scale);
+        PDPage page = new PDPage(mediaBox);
+        document.addPage(page);
+        PDImageXObject pageImage = LosslessFactory.createFromImage(document, image);
+        AffineTransform toUser = displayToUser(mediaBox, 0);
+        toUser.scale(scale, scale);
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.drawImage(pageImage, 0, 0, mediaBox.getWidth(), mediaBox.getHeight());
+            writeTextLayer(content, toUser, 0, words);
+        }
+    }
+
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    public void save(OutputStream out) throws IOException {
+        document.save(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+    /**
+     * The mapping from a page as displayed (points from the top left, after the page rotation) to PDF user space.
+     */
+    static AffineTransform displayToUser(PDRectangle cropBox, int rotation) {
+        float left = cropBox.getLowerLeftX();
+        float bottom = cropBox.getLowerLeftY();
+        float width = cropBox.getWidth();
+        float height = cropBox.getHeight();
+        return switch (Math.floorMod(rotation, 360)) {
+            case 90 -> new AffineTransform(0, 1, 1, 0, left, bottom);
+            case 180 -> new AffineTransform(-1, 0, 0, 1, left + width, bottom);
+            case 270 -> new AffineTransform(0, -1, -1, 0, left + width, bottom + height);
+            default -> new AffineTransform(1, 0, 0, -1, left, bottom + height);
+        };
+    }
+
+    /**
+     * Writes every word as invisible text stretched over its box.
+     *
+     * @param toUser The mapping from the word boxes' pixels to user space
+     * @param rotation The clockwise quarter turn that made the words upright for recognition
+     */
+    private void writeTextLayer(PDPageContentStream content, AffineTransform toUser, int rotation, List<OcrWord> words) throws IOException {
+        // Baseline and glyph-up directions of the words on the page, in pixels with y pointing down
+        double radians = Math.toRadians(rotation);
+        double cos = Math.round(Math.cos(radians));
+        double sin = Math.round(Math.sin(radians));
+        Point2D baseline = toUser.deltaTransform(new Point2D.Double(cos, -sin), null);
+        Point2D up = toUser.deltaTransform(new Point2D.Double(-sin, -cos), null);
+        boolean sideways = Math.floorMod(rotation, 180) == 90;
+
+        content.beginText();
+        content.setRenderingMode(RenderingMode.NEITHER);
+        content.setFont(font, 1);
+        for (OcrWord word : words) {
+            String text = encodable(word.text());
+            float textWidth = font.getStringWidth(text) / 1000;
+            if (textWidth <= 0) {
+                continue;
+            }
+            double length = sideways ? word.box().height : word.box().width;
+            double height = sideways ? word.box().width : word.box().height;
+            Point2D origin = toUser.transform(baselineStart(word, rotation), null);
+            double stretch = length / textWidth;
+            content.setTextMatrix(new Matrix(
+                    (float) (baseline.getX() * stretch), (float) (baseline.getY() * stretch),
+                    (float) (up.getX() * height), (float) (up.getY() * height),
+                    (float) (origin.getX() + up.getX() * height * BASELINE_SHIFT),
+                    (float) (origin.getY() + up.getY() * height * BASELINE_SHIFT)));
+            content.showText(text);
+        }
+        content.endText();
+    }
+
+    /**
+     * The corner of a word box where the word's baseline starts: its bottom left when upright.
+     */
+    private static Point2D baselineStart(OcrWord word, int rotation) {
+        double left = word.box().getMinX();
+        double top = word.box().getMinY();
+        double right = word.box().getMaxX();
+        double bottom = word.box().getMaxY();
+        return switch (Math.floorMod(rotation, 360)) {
+            case 90 -> new Point2D.Double(right, bottom);
+            case 180 -> new Point2D.Double(right, top);
+            case 270 -> new Point2D.Double(left, top);
+            default -> new Point2D.Double(left, bottom);
+        };
+    }
+
+    private String encodable(String text) {
+        StringBuilder encodable = new StringBuilder(text.length());
+        text.codePoints().forEach(codePoint -> {
+            String character = new String(Character.toChars(codePoint));
+            try {
+                font.encode(character);
+                encodable.append(character);
+            } catch (IllegalArgumentException | IOException e) {
+                encodable.append('?');
+            }
+        });
+        return encodable.toString();
+    }
+}
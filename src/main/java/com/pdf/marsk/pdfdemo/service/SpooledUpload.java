@@ -0,0 +1,74 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An uploaded file spooled to disk by {@link UploadSpoolService}.
+ * Services read the upload from this file instead of holding its bytes on the heap.
+ * Closing it deletes the file.
+ */
+public class SpooledUpload implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpooledUpload.class);
+
+    private final Path path;
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+
+    SpooledUpload(Path path, String originalFilename, String contentType, long size) {
+        this.path = path;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public File getFile() {
+        return path.toFile();
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Opens the upload as a PDF. PDFBox reads the file directly and keeps its scratch data
+     * in temporary files, so even very large documents are not buffered on the heap.
+     *
+     * @return The loaded document; the caller must close it
+     * @throws IOException If the file is not a readable PDF
+     */
+    public PDDocument loadPdf() throws IOException {
+        return PDDocument.load(path.toFile(), MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(path);
+            logger.debug("Spooled upload deleted: {}", path);
+        } catch (IOException e) {
+            logger.warn("Could not delete spooled upload {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import net.sourceforge.tess4j.ITesseract;
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * Registry of warm Tesseract handles used for page-parallel OCR, keyed by language set
+ * (e.g. {@code eng}, {@code ita}, {@code eng+ita}) and {@link OcrProfile}.
+ * <p>
+ * The OCR pipeline's recognition stage runs one worker per {@link #getPoolSize() pool slot}.
+ * Handles keep their engine and traineddata loaded between pages (see {@link PooledTesseract}), so only
+ * the first use of a language on a handle pays the model load; the languages listed in
+ * {@code ocr.engine.warmLanguages} are loaded at startup so not even that happens inside a request.
+ * Each language may hold up to its configured number of handles per profile. Loaded models live in native memory,
+ * so the total number of handles is capped: when a language needs a handle and the cap is reached,
+ * the least recently used idle handle of another language is evicted. Handles idle for longer than
+ * {@code ocr.engine.idleTimeoutMs} are evicted too, except for the warm handles of the startup languages;
+ * besides on every borrow, this is checked by a sweep every {@code ocr.engine.sweepIntervalMs}, so an idle
+ * server frees its models as well. While the {@link RenderMemoryGovernor} reports memory pressure, each sweep also
+ * evicts the least recently used half of the idle handles, warm ones included.
+ * A handle is configured with its profile's engine settings once, when it is created, and is only ever used
+ * by one thread at a time, so settings never leak between concurrent uploads or profiles.
+ */
+@Component
+public class TesseractPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(TesseractPool.class);
+    // Profile of pools created without one: automatic segmentation with orientation detection, LSTM engine
+    private static final OcrProfile BASIC_PROFILE = new OcrProfile("basic", 1, 1, null, 0, null);
+    private static final String DEFAULT_LANGUAGE = "eng";
+
+    private final int poolSize;
+    private final BiFunction<String, Integer, ITesseract> handleFactory;
+    private final int maxHandles;
+    private final Map<String, Integer> handlesPerLanguage;
+    private final List<String> warmLanguages;
+    private final int warmHandlesPerLanguage;
+    private final long idleTimeoutMs;
+    private final OcrProfile defaultProfile;
+    private final BooleanSupplier memoryPressure;
+    private final long sweepIntervalMs;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tesseract-pool-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition handleReturned = lock.newCondition();
+    private final Map<String, Deque<IdleHandle>> idleHandles = new HashMap<>();
+    private final Map<String, Integer> handleCounts = new HashMap<>();
+    private int totalHandles;
+
+    /**
+     * Work executed against a borrowed Tesseract handle.
+     */
+    @FunctionalInterface
+    public interface TesseractTask<T> {
+        T run(ITesseract tesseract) throws TesseractException;
+    }
+
+    @Autowired
+    public TesseractPool(OcrProfiles ocrProfiles,
+                         RenderMemoryGovernor renderMemoryGovernor,
+                         @Value("${ocr.engine.poolSize:0}") int poolSize,
+                         @Value("${ocr.engine.maxHandles:0}") int maxHandles,
+                         @Value("${ocr.engine.handlesPerLanguage:}") String handlesPerLanguage,
+                         @Value("${ocr.engine.warmLanguages:auto}") String warmLanguages,
+                         @Value("${ocr.engine.warmHandlesPerLanguage:1}") int warmHandlesPerLanguage,
+                         @Value("${ocr.engine.idleTimeoutMs:600000}") long idleTimeoutMs,
+                         @Value("${ocr.engine.sweepIntervalMs:60000}") long sweepIntervalMs,
+                         @Value("${ocr.engine.pressureThreshold:0.9}") double pressureThreshold) {
+        this(poolSize, maxHandles, parseHandleCounts(handlesPerLanguage), resolveWarmLanguages(warmLanguages),
+                warmHandlesPerLanguage, idleTimeoutMs, TesseractPool::createDefaultHandle, ocrProfiles.getDefault(),
+                () -> renderMemoryGovernor.isUnderPressure(pressureThreshold), sweepIntervalMs);
+    }
+
+    /**
+     * Creates a pool that hands out handles from a factory, without warm-up or eviction limits beyond the pool size.
+     */
+    public TesseractPool(int poolSize, Supplier<ITesseract> handleFactory) {
+        this(poolSize, 0, Map.of(), List.of(), 0, 0, (language, ocrEngineMode) -> handleFactory.get());
+    }
+
+    public TesseractPool(int poolSize, int maxHandles, Map<String, Integer> handlesPerLanguage, List<String> warmLanguages,
+                         int warmHandlesPerLanguage, long idleTimeoutMs, BiFunction<String, Integer, ITesseract> handleFactory) {
+        this(poolSize, maxHandles, handlesPerLanguage, warmLanguages, warmHandlesPerLanguage, idleTimeoutMs, handleFactory, BASIC_PROFILE,
+                () -> false, 0);
+    }
+
+    /**
+     * @param handleFactory Creates an engine for a language set and engine mode; the pool applies the rest of the profile
+     * @param defaultProfile The profile of handles borrowed without one, and of the warm handles
+     * @param memoryPressure Whether the application is short of memory, checked by the sweep
+     * @param sweepIntervalMs How often idle handles are swept; 0 to only evict them when handles are borrowed
+     */
+    public TesseractPool(int poolSize, int maxHandles, Map<String, Integer> handlesPerLanguage, List<String> warmLanguages,
+                         int warmHandlesPerLanguage, long idleTimeoutMs, BiFunction<String, Integer, ITesseract> handleFactory,
+                         OcrProfile defaultProfile, BooleanSupplier memoryPressure, long sweepIntervalMs) {
+        this.poolSize = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.maxHandles = maxHandles > 0 ? maxHandles : 2 * this.poolSize;
+        this.handlesPerLanguage = handlesPerLanguage;
+        this.warmLanguages = warmLanguages;
+        this.warmHandlesPerLanguage = Math.max(0, warmHandlesPerLanguage);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.handleFactory = handleFactory;
+        this.defaultProfile = defaultProfile;
+        this.memoryPressure = memoryPressure;
+        this.sweepIntervalMs = sweepIntervalMs;
+        logger.info("Initialized Tesseract pool with {} workers and up to {} warm handles", this.poolSize, this.maxHandles);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return The profile of handles borrowed without one
+     */
+    public OcrProfile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    /**
+     * Runs a task on the calling thread with an exclusively borrowed handle of the default profile.
+     *
+     * @param language The Tesseract language (set) the handle has to be loaded with
+     * @param task The work to perform
+     * @return The task result
+     * @throws TesseractException If OCR fails or the thread is interrupted while waiting for a handle
+     */
+    public <T> T withHandle(String language, TesseractTask<T> task) throws TesseractException {
+        return withHandle(language, defaultProfile, task);
+    }
+
+    /**
+     * Runs a task on the calling thread with an exclusively borrowed handle configured for a profile.
+     * The task must not change the handle's profile settings.
+     *
+     * @param language The Tesseract language (set) the handle has to be loaded with
+     * @param profile The profile the handle has to be configured with
+     * @param task The work to perform
+     * @return The task result
+     * @throws TesseractException If OCR fails or the thread is interrupted while waiting for a handle
+     */
+    public <T> T withHandle(String language, OcrProfile profile, TesseractTask<T> task) throws TesseractException {
+        String key = key(language, profile);
+        ITesseract handle = borrow(key, language, profile);
+        try {
+            handle.setLanguage(language);
+            return task.run(handle);
+        } finally {
+            release(key, handle);
+        }
+    }
+
+    /**
+     * Loads the startup languages in the background, so the first requests in them find warm handles.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInBackground() {
+        if (warmLanguages.isEmpty() || warmHandlesPerLanguage == 0) {
+            return;
+        }
+        Thread warmUp = new Thread(this::warmUp, "tesseract-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    /**
+     * Starts the periodic sweep of idle handles.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSweeping() {
+        if (sweepIntervalMs > 0) {
+            sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Evicts the handles idle for longer than the timeout and, under memory pressure,
+     * the least recently used half of the remaining idle handles.
+     */
+    void sweep() {
+        List<ITesseract> evicted = new ArrayList<>();
+        try {
+            boolean underPressure = memoryPressure.getAsBoolean();
+            lock.lock();
+            try {
+                evictIdleHandles(evicted);
+                if (underPressure) {
+                    int idle = idleHandles.values().stream().mapToInt(Deque::size).sum();
+                    for (int i = 0; i < (idle + 1) / 2; i++) {
+                        evictLeastRecentlyUsed(evicted);
+                    }
+                    if (idle > 0) {
+                        logger.info("Memory pressure: evicted {} of {} idle Tesseract handles", (idle + 1) / 2, idle);
+                    }
+                }
+                if (!evicted.isEmpty()) {
+                    handleReturned.signalAll(); // Borrowers waiting for room may create handles now
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Error sweeping idle Tesseract handles: {}", e.getMessage(), e);
+        } finally {
+            evicted.forEach(TesseractPool::close);
+        }
+    }
+
+    /**
+     * Creates and initializes the warm handles of every startup language.
+     */
+    void warmUp() {
+        long start = System.nanoTime();
+        for (String language : warmLanguages) {
+            String key = key(language, defaultProfile);
+            int handles = Math.min(warmHandlesPerLanguage, maxHandlesFor(key));
+            for (int i = 0; i < handles; i++) {
+                if (!reserve(key)) {
+                    logger.info("Tesseract handle limit reached while warming up {}", language);
+                    return;
+                }
+                ITesseract handle;
+                try {
+                    handle = createHandle(language, defaultProfile);
+                } catch (RuntimeException | LinkageError e) {
+                    unreserve(key);
+                    logger.warn("Could not preload Tesseract language {}: {}", language, e.getMessage());
+                    break;
+                }
+                release(key, handle);
+            }
+        }
+        logger.info("Preloaded Tesseract languages {} in {} ms", warmLanguages, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private ITesseract borrow(String key, String language, OcrProfile profile) throws TesseractException {
+        List<ITesseract> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            while (true) {
+                evictIdleHandles(evicted);
+                IdleHandle idle = idleHandles.getOrDefault(key, new ArrayDeque<>()).pollFirst();
+                if (idle != null) {
+                    return idle.handle;
+                }
+                // Lazily grow this language up to its limit, making room by evicting another language's idle handle
+                if (handleCounts.getOrDefault(key, 0) < maxHandlesFor(key)
+                        && (totalHandles < maxHandles || evictLeastRecentlyUsed(evicted))) {
+                    handleCounts.merge(key, 1, Integer::sum);
+                    totalHandles++;
+                    break;
+                }
+                handleReturned.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while waiting for a Tesseract handle", e);
+        } finally {
+            lock.unlock();
+            evicted.forEach(TesseractPool::close);
+        }
+
+        logger.debug("Creating Tesseract handle for {}", key);
+        try {
+            return createHandle(language, profile);
+        } catch (RuntimeException | LinkageError e) {
+            unreserve(key);
+            throw new TesseractException("Could not initialize Tesseract for " + language + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ITesseract createHandle(String language, OcrProfile profile) {
+        ITesseract handle = handleFactory.apply(language, profile.getOcrEngineMode());
+        profile.configure(handle);
+        if (handle instanceof PooledTesseract pooled) {
+            long start = System.nanoTime();
+            pooled.warmUp();
+            logger.debug("Loaded Tesseract {} for profile {} in {} ms", language, profile.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return handle;
+    }
+
+    private boolean reserve(String key) {
+        lock.lock();
+        try {
+            if (handleCounts.getOrDefault(key, 0) >= maxHandlesFor(key) || totalHandles >= maxHandles) {
+                return false;
+            }
+            handleCounts.merge(key, 1, Integer::sum);
+            totalHandles++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unreserve(String key) {
+        lock.lock();
+        try {
+            handleCounts.merge(key, -1, Integer::sum);
+            totalHandles--;
+            handleReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(String key, ITesseract handle) {
+        lock.lock();
+        try {
+            // Most recently used first, so the handles at the tail are the ones that idle longest
+            idleHandles.computeIfAbsent(key, k -> new ArrayDeque<>()).addFirst(new IdleHandle(handle, System.nanoTime()));
+            handleReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the least recently used idle handle of any language. Called with the lock held.
+     *
+     * @return Whether a handle was evicted
+     */
+    private boolean evictLeastRecentlyUsed(List<ITesseract> evicted) {
+        String oldestKey = null;
+        long oldestSince = Long.MAX_VALUE;
+        for (Map.Entry<String, Deque<IdleHandle>> entry : idleHandles.entrySet()) {
+            IdleHandle last = entry.getValue().peekLast();
+            if (last != null && last.idleSince < oldestSince) {
+                oldestKey = entry.getKey();
+                oldestSince = last.idleSince;
+            }
+        }
+        if (oldestKey == null) {
+            return false;
+        }
+        logger.debug("Evicting idle Tesseract handle for {} to make room", oldestKey);
+        evict(oldestKey, evicted);
+        return true;
+    }
+
+    /**
+     * Removes handles idle for longer than the timeout, keeping the warm handles of the startup languages.
+     * Called with the lock held.
+     */
+    private void evictIdleHandles(List<ITesseract> evicted) {
+        if (idleTimeoutMs <= 0) {
+            return;
+        }
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        for (Map.Entry<String, Deque<IdleHandle>> entry : idleHandles.entrySet()) {
+            String key = entry.getKey();
+            int keep = warmLanguages.stream().anyMatch(language -> key(language, defaultProfile).equals(key))
+                    ? warmHandlesPerLanguage : 0;
+            IdleHandle last;
+            while ((last = entry.getValue().peekLast()) != null && last.idleSince < cutoff
+                    && handleCounts.getOrDefault(key, 0) > keep) {
+                evict(key, evicted);
+            }
+        }
+    }
+
+    private void evict(String key, List<ITesseract> evicted) {
+        evicted.add(idleHandles.get(key).pollLast().handle);
+        handleCounts.merge(key, -1, Integer::sum);
+        totalHandles--;
+    }
+
+    private int maxHandlesFor(String key) {
+        String language = key.substring(0, key.lastIndexOf(':'));
+        return Math.min(handlesPerLanguage.getOrDefault(language, poolSize), maxHandles);
+    }
+
+    private static String key(String language, OcrProfile profile) {
+        return language + ":" + profile.getName();
+    }
+
+    private static void close(ITesseract handle) {
+        if (handle instanceof PooledTesseract pooled) {
+            pooled.close();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        lock.lock();
+        try {
+            idleHandles.values().forEach(handles -> handles.forEach(idle -> close(idle.handle)));
+            idleHandles.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Parses per-language handle limits such as {@code eng=4,ita=2,eng+ita=1}.
+     */
+    static Map<String, Integer> parseHandleCounts(String setting) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String entry : setting.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length == 2 && !parts[0].isBlank()) {
+                try {
+                    counts.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring invalid Tesseract handle count '{}'", entry);
+                }
+            } else if (!entry.isBlank()) {
+                logger.warn("Ignoring invalid Tesseract handle count '{}'", entry);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Resolves the startup languages: an explicit list, or {@code auto} for every traineddata in the tessdata directory.
+     */
+    static List<String> resolveWarmLanguages(String setting) {
+        if (!"auto".equalsIgnoreCase(setting.trim())) {
+            return Arrays.stream(setting.split(",")).map(String::trim).filter(language -> !language.isEmpty()).toList();
+        }
+        File tessDataDir = findTessDataDir();
+        String[] models = tessDataDir != null ? tessDataDir.list((dir, name) -> name.endsWith(".traineddata")) : null;
+        if (models == null || models.length == 0) {
+            return List.of(DEFAULT_LANGUAGE);
+        }
+        return Arrays.stream(models)
+                .map(name -> name.substring(0, name.length() - ".traineddata".length()))
+                .filter(language -> !language.equals("osd")) // Orientation detection, not a recognition language
+                .sorted()
+                .toList();
+    }
+
+    private static File findTessDataDir() {
+        File appTessData = new File(System.getProperty("user.dir"), "tessdata");
+        if (appTessData.isDirectory()) {
+            return appTessData;
+        }
+        String prefix = System.getenv("TESSDATA_PREFIX");
+        if (prefix != null && !prefix.isBlank()) {
+            File prefixDir = new File(prefix);
+            File nested = new File(prefixDir, "tessdata");
+            return nested.isDirectory() ? nested : prefixDir.isDirectory() ? prefixDir : null;
+        }
+        return null;
+    }
+
+    /**
+     * Creates a handle with the application's tessdata; its profile is applied by the pool.
+     */
+    private static ITesseract createDefaultHandle(String language, int ocrEngineMode) {
+        PooledTesseract tesseract = new PooledTesseract();
+        // Set tessdata directory path - first try app root directory
+        File tessDataDir = new File(System.getProperty("user.dir"), "tessdata");
+        if (tessDataDir.exists() && tessDataDir.isDirectory()) {
+            tesseract.setDatapath(tessDataDir.getAbsolutePath());
+        } else {
+            logger.warn("Tessdata directory not found at: {}. Using system default.", tessDataDir.getAbsolutePath());
+        }
+        tesseract.setLanguage(language);
+        tesseract.setOcrEngineMode(ocrEngineMode);
+        return tesseract;
+    }
+
+    private record IdleHandle(ITesseract handle, long idleSince) {
+    }
+}
@@ -0,0 +1,222 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.stream.ImageInputStream;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Decodes the frames of a (multi-page) TIFF one at a time, and only the part of a frame that is asked for.
+ * <p>
+ * Frames are decoded to 8-bit gray with square pixels at a single DPI: fax frames in standard mode
+ * (204 x 98 DPI) are stretched vertically to 204 DPI, and frames scanned above the maximum DPI are scaled down
+ * to it. Regions are given in those pixels. Like a {@link org.apache.pdfbox.rendering.PDFRenderer}, a reader
+ * must only be used by one thread at a time.
+ */
+public final class TiffFrameReader implements Closeable {
+
+    // Assumed for frames that do not record their resolution
+    static final int DEFAULT_DPI = 300;
+    private static final double MM_PER_INCH = 25.4;
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int frameCount;
+
+    /**
+     * Opens a TIFF. Only the frame directories are read here; no frame is decoded.
+     *
+     * @param file The TIFF file
+     * @throws IOException If the file cannot be read or is not an image
+     */
+    public TiffFrameReader(File file) throws IOException {
+        this.input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Cannot read image file: " + file.getName());
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + file.getName());
+            }
+            this.reader = readers.next();
+            reader.setInput(input, false, false);
+            this.frameCount = reader.getNumImages(true);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether a file is a TIFF, by its name
+     */
+    public static boolean isTiff(String filename) {
+        String name = filename.toLowerCase();
+        return name.endsWith(".tif") || name.endsWith(".tiff");
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Reads the size and resolution of a frame from its directory, without decoding it.
+     *
+     * @param frameIndex The 0-based frame index
+     * @param fallbackDpi The DPI of a frame that does not record its resolution
+     * @param maxDpi The DPI frames with a higher resolution are scaled down to
+     * @return The frame's size in decoded pixels and its DPI
+     * @throws IOException If the frame directory cannot be read
+     */
+    public Frame frame(int frameIndex, int fallbackDpi, int maxDpi) throws IOException {
+        int sourceWidth = reader.getWidth(frameIndex);
+        int sourceHeight = reader.getHeight(frameIndex);
+        double[] sourceDpi = resolution(frameIndex);
+        double xDpi = sourceDpi != null ? sourceDpi[0] : fallbackDpi;
+        double yDpi = sourceDpi != null ? sourceDpi[1] : fallbackDpi;
+        int dpi = (int) Math.min(Math.round(Math.max(xDpi, yDpi)), maxDpi);
+        int width = Math.max(1, (int) Math.round(sourceWidth * dpi / xDpi));
+        int height = Math.max(1, (int) Math.round(sourceHeight * dpi / yDpi));
+        return new Frame(width, height, dpi, sourceWidth, sourceHeight);
+    }
+
+    /**
+     * The horizontal and vertical DPI a frame records, or null if it records none.
+     */
+    private double[] resolution(int frameIndex) throws IOException {
+        IIOMetadata metadata = reader.getImageMetadata(frameIndex);
+        if (metadata == null || !metadata.isStandardMetadataFormatSupported()) {
+            return null;
+        }
+        Node root = metadata.getAsTree(IIOMetadataFormatImpl.standardMetadataFormatName);
+        double horizontalMm = pixelSizeMm(root, "HorizontalPixelSize");
+        double verticalMm = pixelSizeMm(root, "VerticalPixelSize");
+        if (horizontalMm <= 0 && verticalMm <= 0) {
+            return null;
+        }
+        // A frame recording one direction only has square pixels
+        double xDpi = MM_PER_INCH / (horizontalMm > 0 ? horizontalMm : verticalMm);
+        double yDpi = MM_PER_INCH / (verticalMm > 0 ? verticalMm : horizontalMm);
+        return new double[] {xDpi, yDpi};
+    }
+
+    private static double pixelSizeMm(Node root, String name) {
+        for (Node dimension = root.getFirstChild(); dimension != null; dimension = dimension.getNextSibling()) {
+            if (!"Dimension".equals(dimension.getNodeName())) {
+                continue;
+            }
+            for (Node child = dimension.getFirstChild(); child != null; child = child.getNextSibling()) {
+                NamedNodeMap attributes = child.getAttributes();
+                Node value = attributes != null ? attributes.getNamedItem("value") : null;
+                if (name.equals(child.getNodeName()) && value != null) {
+                    try {
+                        return Double.parseDouble(value.getNodeValue());
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes a low-resolution preview of a frame for the pre-pass. Only every n-th pixel of every n-th row
+     * is kept, so the full frame is never held in memory.
+     *
+     * @param frameIndex The 0-based frame index
+     * @param frame The frame, see {@link #frame}
+     * @param previewDpi The DPI of the preview
+     * @return The preview, in 8-bit gray
+     * @throws IOException If the frame cannot be decoded
+     */
+    public BufferedImage preview(int frameIndex, Frame frame, int previewDpi) throws IOException {
+        int width = Math.max(1, (int) Math.round((double) frame.width() * previewDpi / frame.dpi()));
+        int height = Math.max(1, (int) Math.round((double) frame.height() * previewDpi / frame.dpi()));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(Math.max(1, frame.sourceWidth() / width), Math.max(1, frame.sourceHeight() / height), 0, 0);
+        return toGray(reader.read(frameIndex, param), width, height);
+    }
+
+    /**
+     * Decodes a region of a frame. Only the source rows and columns under the region are decoded.
+     *
+     * @param frameIndex The 0-based frame index
+     * @param frame The frame, see {@link #frame}
+     * @param region The region, in decoded pixels of the frame
+     * @return The region, in 8-bit gray
+     * @throws IOException If the frame cannot be decoded
+     */
+    public BufferedImage read(int frameIndex, Frame frame, Rectangle region) throws IOException {
+        double scaleX = (double) frame.width() / frame.sourceWidth();
+        double scaleY = (double) frame.height() / frame.sourceHeight();
+        int left = (int) Math.floor(region.x / scaleX);
+        int top = (int) Math.floor(region.y / scaleY);
+        int right = Math.min(frame.sourceWidth(), (int) Math.ceil((region.x + region.width) / scaleX));
+        int bottom = Math.min(frame.sourceHeight(), (int) Math.ceil((region.y + region.height) / scaleY));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(left, top, Math.max(1, right - left), Math.max(1, bottom - top)));
+        return toGray(reader.read(frameIndex, param), region.width, region.height);
+    }
+
+    /**
+     * Draws a decoded image onto white 8-bit gray of the given size. Bilevel fax frames become black on white gray.
+     */
+    private static BufferedImage toGray(BufferedImage decoded, int width, int height) {
+        if (decoded.getType() == BufferedImage.TYPE_BYTE_GRAY && decoded.getWidth() == width && decoded.getHeight() == height) {
+            return decoded;
+        }
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(decoded, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+
+    /**
+     * The geometry of a frame.
+     *
+     * @param width The width in decoded pixels
+     * @param height The height in decoded pixels
+     * @param dpi The DPI of the decoded pixels
+     * @param sourceWidth The width as stored in the TIFF
+     * @param sourceHeight The height as stored in the TIFF
+     */
+    public record Frame(int width, int height, int dpi, int sourceWidth, int sourceHeight) {
+
+        /**
+         * @return The whole frame, in decoded pixels
+         */
+        public Rectangle pixels() {
+            return new Rectangle(0, 0, width, height);
+        }
+    }
+}
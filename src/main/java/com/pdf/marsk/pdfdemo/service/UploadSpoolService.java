@@ -0,0 +1,64 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Writes uploaded files to a spool directory exactly once, so OCR and the PDF tools can share the file
+ * instead of copying the upload into byte arrays.
+ * <p>
+ * {@link MultipartFile#transferTo(java.io.File)} lets the servlet container move its own temporary file
+ * into place when the upload was already buffered on disk, so large uploads are usually not even copied.
+ */
+@Service
+public class UploadSpoolService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSpoolService.class);
+    private static final int MAX_NAME_LENGTH = 100;
+
+    private final Path spoolDirectory;
+
+    @Autowired
+    public UploadSpoolService(@Value("${upload.spool.dir:}") String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory == null || spoolDirectory.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "pdfapp-uploads")
+                : Path.of(spoolDirectory);
+    }
+
+    /**
+     * Spools an upload to disk.
+     *
+     * @param file The uploaded file
+     * @return The spooled upload; close it to delete the file once processing is done
+     * @throws IOException If the file cannot be written
+     */
+    public SpooledUpload spool(MultipartFile file) throws IOException {
+        String originalFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown_file";
+        Files.createDirectories(spoolDirectory);
+        Path target = Files.createTempFile(spoolDirectory, "upload_", "_" + safeName(originalFilename));
+        try {
+            file.transferTo(target.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        logger.debug("Spooled upload {} ({} bytes) to {}", originalFilename, file.getSize(), target);
+        return new SpooledUpload(target, originalFilename, file.getContentType(), Files.size(target));
+    }
+
+    /**
+     * Keeps the extension and a readable part of the name, without path separators or other unsafe characters.
+     */
+    private static String safeName(String filename) {
+        String name = filename.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.length() <= MAX_NAME_LENGTH ? name : name.substring(name.length() - MAX_NAME_LENGTH);
+    }
+}
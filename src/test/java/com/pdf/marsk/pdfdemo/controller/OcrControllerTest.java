@@ -8,6 +8,8 @@ import static org.hamcrest.Matchers.is; // Added for jsonPath assertions
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -20,6 +22,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post; // Added for merged tests
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content; // Added for merged tests
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath; // Added for merged tests
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
@@ -29,10 +32,19 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.pdf.marsk.pdfdemo.model.OcrTextDocument; // Ensure this is present
 import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository;
+import com.pdf.marsk.pdfdemo.service.OcrBatchService;
+import com.pdf.marsk.pdfdemo.service.OcrEventStreamService;
+import com.pdf.marsk.pdfdemo.service.OcrJobService;
+import com.pdf.marsk.pdfdemo.service.OcrPageScheduler;
+import com.pdf.marsk.pdfdemo.service.OcrOptions;
+import com.pdf.marsk.pdfdemo.service.OcrProfiles;
+import com.pdf.marsk.pdfdemo.service.OcrSchedulerFullException;
 import com.pdf.marsk.pdfdemo.service.OcrService;
 import com.pdf.marsk.pdfdemo.service.ProgressTrackingService;
 import java.util.Optional; // Ensure this is present
 import com.pdf.marsk.pdfdemo.service.OllamaService; // Added import
+import com.pdf.marsk.pdfdemo.service.SpooledUpload;
+import com.pdf.marsk.pdfdemo.service.UploadSpoolService;
 
 import net.sourceforge.tess4j.TesseractException; // Added import
 
@@ -55,6 +67,21 @@ public class OcrControllerTest {
     @MockBean // Added mock for OllamaService
     private OllamaService ollamaService;
 
+    @MockBean
+    private UploadSpoolService uploadSpoolService;
+
+    @MockBean
+    private OcrEventStreamService ocrEventStreamService;
+
+    @MockBean
+    private OcrJobService ocrJobService;
+
+    @MockBean
+    private OcrBatchService ocrBatchService;
+
+    @MockBean
+    private OcrProfiles ocrProfiles;
+
     @Test
     public void testOcrPageLoads() throws Exception {
         // Mock the repository call that happens in the ocrPage GET mapping
@@ -77,7 +104,7 @@ public class OcrControllerTest {
         );
         String expectedOcrText = "This is the extracted text.";
 
-        when(ocrService.performOcr(any(MockMultipartFile.class), eq("eng"))).thenReturn(expectedOcrText);
+        when(ocrService.performOcr(any(MockMultipartFile.class), eq(OcrOptions.of("eng")))).thenReturn(expectedOcrText);
 
         mockMvc.perform(multipart("/ocr/process").file(imageFile))
                 .andExpect(status().isFound()) // 302 Redirect
@@ -97,7 +124,7 @@ public class OcrControllerTest {
         );
         String expectedOcrText = "This is the extracted text in Italian.";
 
-        when(ocrService.performOcr(any(MockMultipartFile.class), any(String.class))).thenReturn(expectedOcrText);
+        when(ocrService.performOcr(any(MockMultipartFile.class), any(OcrOptions.class))).thenReturn(expectedOcrText);
 
         mockMvc.perform(multipart("/ocr/process")
                 .file(imageFile)
@@ -144,7 +171,7 @@ public class OcrControllerTest {
                 "fake-image-bytes".getBytes()
         );
 
-        when(ocrService.performOcr(any(MockMultipartFile.class), eq("eng"))).thenThrow(new IOException("Simulated Disk Read Error"));
+        when(ocrService.performOcr(any(MockMultipartFile.class), eq(OcrOptions.of("eng")))).thenThrow(new IOException("Simulated Disk Read Error"));
 
         mockMvc.perform(multipart("/ocr/process").file(imageFile))
                 .andExpect(status().isFound())
@@ -159,7 +186,7 @@ public class OcrControllerTest {
                 "fake-image-bytes".getBytes()
         );
 
-        when(ocrService.performOcr(any(MockMultipartFile.class), eq("eng"))).thenThrow(new TesseractException("Simulated Tesseract Engine Error"));
+        when(ocrService.performOcr(any(MockMultipartFile.class), eq(OcrOptions.of("eng")))).thenThrow(new TesseractException("Simulated Tesseract Engine Error"));
 
         mockMvc.perform(multipart("/ocr/process").file(imageFile))
                 .andExpect(status().isFound())
@@ -175,7 +202,7 @@ public class OcrControllerTest {
                 "fake-image-bytes".getBytes()
         );
 
-        when(ocrService.performOcr(any(MockMultipartFile.class), eq("eng"))).thenThrow(new TesseractException("Unable to load library 'tesseract'. This is a critical error."));
+        when(ocrService.performOcr(any(MockMultipartFile.class), eq(OcrOptions.of("eng")))).thenThrow(new TesseractException("Unable to load library 'tesseract'. This is a critical error."));
 
         mockMvc.perform(multipart("/ocr/process").file(imageFile))
                 .andExpect(status().isFound())
@@ -190,7 +217,7 @@ public class OcrControllerTest {
                 "fake-image-bytes".getBytes()
         );
 
-        when(ocrService.performOcr(any(MockMultipartFile.class), eq("eng"))).thenThrow(new TesseractException("Data path does not exist! This is a critical error."));        
+        when(ocrService.performOcr(any(MockMultipartFile.class), eq(OcrOptions.of("eng")))).thenThrow(new TesseractException("Data path does not exist! This is a critical error."));        
         mockMvc.perform(multipart("/ocr/process").file(imageFile))
                 .andExpect(status().isFound())
                 .andExpect(redirectedUrl("/ocr"))
@@ -205,13 +232,12 @@ public class OcrControllerTest {
         );
         String mockTaskId = "pdf-task-123";
 
-        // Mock the call to progressTrackingService.createOcrTask, which is used by startAsyncOcrProcess
-        when(progressTrackingService.createOcrTask(eq("test.pdf"), eq(0), eq("eng")))
+        // The PDF is handed to a background OCR job, whose ID is the task ID
+        when(ocrJobService.submit(any(), eq("eng"), isNull(), eq(false)))
                 .thenReturn(mockTaskId);
         
         // We don't need to mock ocrService.performOcr itself for this controller test,
-        // as the controller's PDF branch primarily sets up the async task.
-        // The actual performOcr is part of the async flow handled by CompletableFuture.
+        // as the controller's PDF branch only submits the job.
 
         mockMvc.perform(multipart("/ocr/process").file(pdfFile).param("language", "eng"))
                 .andExpect(status().isFound()) // 302 Redirect
@@ -222,6 +248,27 @@ public class OcrControllerTest {
                 // We do not expect "ocrResult" here because PDF processing is asynchronous.
     }
 
+    @Test
+    public void testSubmitBatch_QueueFull_TooManyRequests() throws Exception {
+        MockMultipartFile pdfFile = new MockMultipartFile("files", "scan.pdf", "application/pdf", "fake-pdf-bytes".getBytes());
+        when(uploadSpoolService.spool(any())).thenReturn(mock(SpooledUpload.class));
+        when(ocrBatchService.submit(any(), eq("eng"), isNull(), eq(false)))
+                .thenThrow(new OcrSchedulerFullException(OcrPageScheduler.Priority.BATCH, 42));
+
+        mockMvc.perform(multipart("/ocr/batch").file(pdfFile))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "42"))
+                .andExpect(jsonPath("$.retryAfterSeconds", is(42)));
+    }
+
+    @Test
+    public void testStreamEvents_UnknownTask_NotFound() throws Exception {
+        when(progressTrackingService.getProgress("missing-task")).thenReturn(null);
+
+        mockMvc.perform(get("/ocr/events/missing-task"))
+                .andExpect(status().isNotFound());
+    }
+
     // --- Tests for merged OcrDocumentController functionality ---
 
     @Test
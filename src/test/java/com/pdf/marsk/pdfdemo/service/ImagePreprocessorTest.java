@@ -0,0 +1,114 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    private BufferedImage createTextLikeImage(int width, int height, Color background) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(background);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(Color.DARK_GRAY);
+        for (int y = 10; y < height - 10; y += 20) {
+            g2d.fillRect(10, y, width - 20, 6);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    private void assertBinary(BufferedImage image) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int value = image.getRaster().getSample(x, y, 0);
+                assertTrue(value == 0 || value == 255, "Pixel " + x + "," + y + " is " + value);
+            }
+        }
+    }
+
+    @Test
+    void preprocess_otsuProducesBinaryGrayImage() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor("grayscale,sharpen,otsu", 25, 0.34, 4);
+        BufferedImage page = createTextLikeImage(200, 120, Color.LIGHT_GRAY);
+
+        try (PreprocessedImage result = preprocessor.preprocess(page)) {
+            BufferedImage image = result.getImage();
+            assertEquals(200, image.getWidth());
+            assertEquals(120, image.getHeight());
+            assertEquals(1, image.getRaster().getNumBands());
+            assertBinary(image);
+            assertEquals(0, image.getRaster().getSample(100, 12, 0)); // text bar
+            assertEquals(255, image.getRaster().getSample(100, 20, 0)); // background
+        }
+    }
+
+    @Test
+    void preprocess_sauvolaHandlesUnevenBackground() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor("despeckle,sauvola", 15, 0.34, 4);
+        BufferedImage page = createTextLikeImage(200, 120, Color.WHITE);
+        // Darken the right half as if it were in shadow
+        Graphics2D g2d = page.createGraphics();
+        g2d.setColor(new Color(0, 0, 0, 90));
+        g2d.fillRect(100, 0, 100, 120);
+        g2d.dispose();
+
+        try (PreprocessedImage result = preprocessor.preprocess(page)) {
+            BufferedImage image = result.getImage();
+            assertBinary(image);
+            assertEquals(0, image.getRaster().getSample(150, 12, 0)); // text in the shadow
+            assertEquals(255, image.getRaster().getSample(150, 20, 0)); // shadowed background
+        }
+    }
+
+    @Test
+    void preprocess_reusesPooledBuffers() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor("sharpen,otsu", 25, 0.34, 4);
+        BufferedImage page = createTextLikeImage(200, 120, Color.WHITE);
+
+        for (int i = 0; i < 10; i++) {
+            preprocessor.preprocess(page).close();
+        }
+
+        assertEquals(2, preprocessor.getAllocatedBuffers());
+    }
+
+    @Test
+    void otsuThreshold_splitsBimodalHistogram() {
+        int[] histogram = new int[256];
+        histogram[40] = 100;
+        histogram[200] = 300;
+
+        int threshold = GrayImageOperators.otsuThreshold(histogram, 400);
+
+        assertTrue(threshold >= 40 && threshold < 200);
+    }
+
+    @Test
+    void fingerprint_changesWithASinglePixel() {
+        GrayImage page = new GrayImage();
+        page.reset(64, 32);
+        Arrays.fill(page.getPixels(), (byte) 255);
+        String blank = page.fingerprint();
+        assertEquals(blank, page.fingerprint());
+
+        // A decimal point straddling two pixel blocks
+        page.getPixels()[10 * 64 + 31] = 0;
+        page.getPixels()[10 * 64 + 32] = 0;
+
+        assertNotEquals(blank, page.fingerprint());
+    }
+
+    @Test
+    void constructor_rejectsUnknownOperator() {
+        assertThrows(IllegalArgumentException.class, () -> new ImagePreprocessor("sharpen,blur", 25, 0.34, 4));
+        assertDoesNotThrow(() -> new ImagePreprocessor(List.of(), 2));
+    }
+}
@@ -0,0 +1,42 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.tess4j.Word;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineConfidencesTest {
+
+    private static Word line(String text, float confidence) {
+        return new Word(text + "\n", confidence, new Rectangle());
+    }
+
+    @Test
+    void align_matchesReportedLinesToTheTextLines() {
+        String text = "Heading\n\nFirst paragraph\nsecond line\n";
+
+        List<Float> confidences = LineConfidences.align(text,
+                List.of(line("Heading", 91f), line("First paragraph", 62f), line("second line", 88f)));
+
+        assertEquals(Arrays.asList(91f, null, 62f, 88f, null), confidences);
+    }
+
+    @Test
+    void join_alignsPageConfidencesWithTheJoinedText() {
+        String[] pageTexts = {"Cover\n", "Body"};
+
+        String encoded = LineConfidences.join(pageTexts, Map.of(0, Arrays.asList(97.4f, null)));
+
+        String joined = OcrService.joinPageTexts(pageTexts);
+        List<Float> confidences = LineConfidences.decode(encoded);
+        assertEquals(",97,,,", encoded);
+        assertEquals("Cover", joined.split("\n", -1)[confidences.indexOf(97f)]);
+        assertNull(LineConfidences.join(pageTexts, Map.of()));
+    }
+}
@@ -0,0 +1,298 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.pdf.marsk.pdfdemo.model.OcrBatch;
+import com.pdf.marsk.pdfdemo.model.OcrBatchFile;
+import com.pdf.marsk.pdfdemo.model.OcrTextDocument;
+import com.pdf.marsk.pdfdemo.repository.OcrBatchFileRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrBatchRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository;
+
+import net.sourceforge.tess4j.ITesseract;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OcrBatchServiceTest {
+
+    @Mock
+    private ITesseract tesseractMock;
+
+    @Mock
+    private OcrPipeline ocrPipeline;
+
+    @Mock
+    private OcrCheckpointStore ocrCheckpointStore;
+
+    @Mock
+    private OcrBatchRepository ocrBatchRepository;
+
+    @Mock
+    private OcrBatchFileRepository ocrBatchFileRepository;
+
+    @Mock
+    private OcrTextDocumentRepository ocrTextDocumentRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private OcrPageScheduler pageScheduler;
+    private OcrBatchService ocrBatchService;
+    private final Map<String, OcrBatch> batches = new ConcurrentHashMap<>();
+    private final List<OcrBatchFile> files = new ArrayList<>();
+    private final Map<Long, OcrTextDocument> documents = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, String>> checkpoints = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        pageScheduler = new OcrPageScheduler(2);
+        ocrBatchService = new OcrBatchService(pageScheduler, ocrPipeline,
+                new OcrProfiles(new PageOrientationDetector(true, 100, 10, 0.3, 3), 25, 0.34, 4, "default"), new TesseractPool(2, () -> tesseractMock),
+                new PdfTextLayerAnalyzer(2.0, 0.9), ocrCheckpointStore, ocrBatchRepository, ocrBatchFileRepository,
+                ocrTextDocumentRepository, tempDir.resolve("batches").toString(), 10, 1, 1, true);
+
+        when(ocrBatchRepository.save(any(OcrBatch.class))).thenAnswer(invocation -> {
+            OcrBatch batch = invocation.getArgument(0);
+            batches.put(batch.getId(), batch);
+            return batch;
+        });
+        when(ocrBatchRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(batches.get(invocation.<String>getArgument(0))));
+        AtomicLong fileIds = new AtomicLong();
+        when(ocrBatchFileRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<OcrBatchFile> saved = invocation.getArgument(0);
+            saved.forEach(file -> file.setId(fileIds.incrementAndGet()));
+            synchronized (files) {
+                files.addAll(saved);
+            }
+            return saved;
+        });
+        when(ocrBatchFileRepository.save(any(OcrBatchFile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(ocrBatchFileRepository.findByBatchIdOrderByFileIndexAsc(anyString())).thenAnswer(invocation -> {
+            synchronized (files) {
+                return files.stream().filter(file -> file.getBatchId().equals(invocation.getArgument(0))).toList();
+            }
+        });
+        when(ocrBatchFileRepository.countByBatchIdAndStatus(anyString(), any(OcrBatchFile.Status.class))).thenAnswer(invocation -> {
+            synchronized (files) {
+                return files.stream().filter(file -> file.getBatchId().equals(invocation.getArgument(0))
+                        && file.getStatus() == invocation.getArgument(1)).count();
+            }
+        });
+        AtomicLong documentIds = new AtomicLong();
+        when(ocrTextDocumentRepository.save(any(OcrTextDocument.class))).thenAnswer(invocation -> {
+            OcrTextDocument document = invocation.getArgument(0);
+            document.setId(documentIds.incrementAndGet());
+            documents.put(document.getId(), document);
+            return document;
+        });
+        when(ocrTextDocumentRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(documents.get(invocation.<Long>getArgument(0))));
+
+        when(ocrCheckpointStore.save(anyString(), any(OcrPageResult.class))).thenAnswer(invocation -> {
+            OcrPageResult pageResult = invocation.getArgument(1);
+            checkpoints.computeIfAbsent(invocation.getArgument(0), key -> new ConcurrentHashMap<>())
+                    .put(pageResult.getPageIndex(), pageResult.getText());
+            return true;
+        });
+        when(ocrCheckpointStore.load(anyString())).thenAnswer(invocation ->
+                new HashMap<>(checkpoints.getOrDefault(invocation.<String>getArgument(0), Map.of())));
+        doAnswer(invocation -> checkpoints.remove(invocation.<String>getArgument(0))).when(ocrCheckpointStore).delete(anyString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ocrBatchService.shutdown();
+        pageScheduler.shutdown();
+    }
+
+    private SpooledUpload upload(String name, byte[] content) throws IOException {
+        Path path = Files.write(tempDir.resolve("upload_" + name), content);
+        return new SpooledUpload(path, name, null, content.length);
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] pdf(int pageCount) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pageCount; i++) {
+                document.addPage(new PDPage());
+            }
+            document.save(out);
+        }
+        return out.toByteArray();
+    }
+
+    private OcrBatch awaitCompletion(String batchId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            OcrBatch batch = batches.get(batchId);
+            if (batch.getStatus() == OcrBatch.Status.COMPLETED) {
+                return batch;
+            }
+            Thread.sleep(20);
+        }
+        fail("The batch did not complete in time");
+        return null;
+    }
+
+    private Map<String, String> results(String batchId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ocrBatchService.writeResults(batchId, out);
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    void submit_recognizesArchiveEntriesAndZipsTheirTexts() throws Exception {
+        when(tesseractMock.doOCR(any(File.class))).thenAnswer(invocation ->
+                "text of " + invocation.<File>getArgument(0).getName().replaceFirst("^\\d+_", ""));
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("receipt.png", new byte[] {1});
+        entries.put("scans/../scans/invoice.jpg", new byte[] {2});
+        entries.put("notes.txt", new byte[] {3});
+        entries.put("__MACOSX/._receipt.png", new byte[] {4});
+        SpooledUpload archive = upload("scans.zip", zip(entries));
+
+        String batchId = ocrBatchService.submit(List.of(archive, upload("receipt.png", new byte[] {5})), "eng", false);
+
+        awaitCompletion(batchId);
+        assertEquals(3, batches.get(batchId).getFileCount());
+        Map<String, String> results = results(batchId);
+        assertEquals(List.of("receipt.txt", "scans/invoice.txt", "receipt (2).txt"), List.copyOf(results.keySet()));
+        assertEquals("text of receipt.png\n", results.get("receipt.txt"));
+        assertEquals("text of scans_invoice.jpg\n", results.get("scans/invoice.txt"));
+        assertTrue(checkpoints.isEmpty(), "Checkpoints are removed once the files are done");
+        assertFalse(Files.exists(tempDir.resolve("batches").resolve(batchId)), "The batch directory is removed");
+    }
+
+    @Test
+    void submit_recognizesPdfsPageByPageAndListsFailedFiles() throws Exception {
+        when(ocrPipeline.process(any(PDDocument.class), anyList(), eq(OcrOptions.of("ita")))).thenAnswer(invocation -> {
+            List<Integer> pageIndices = invocation.getArgument(1);
+            return pageIndices.stream().map(pageIndex -> new OcrPageResult(pageIndex, 150, "page " + (pageIndex + 1))).toList();
+        });
+
+        String batchId = ocrBatchService.submit(
+                List.of(upload("report.pdf", pdf(3)), upload("broken.pdf", "not a pdf".getBytes())), "ita", false);
+
+        awaitCompletion(batchId);
+        // One scheduler turn per page, all on the same loaded document
+        ArgumentCaptor<PDDocument> documents = ArgumentCaptor.forClass(PDDocument.class);
+        verify(ocrPipeline, times(3)).process(documents.capture(), argThat(pages -> pages.size() == 1), eq(OcrOptions.of("ita")));
+        assertEquals(1, documents.getAllValues().stream().distinct().count());
+        Map<String, String> results = results(batchId);
+        assertEquals("--- Page 1 ---\npage 1\n--- Page 2 ---\npage 2\n--- Page 3 ---\npage 3\n", results.get("report.txt"));
+        assertTrue(results.get("errors.txt").startsWith("broken.pdf: "));
+        OcrBatchFile report = ocrBatchService.getFiles(batchId).get(0);
+        assertEquals(OcrBatchFile.Status.COMPLETED, report.getStatus());
+        assertEquals(3, ocrBatchService.getPagesDone(report));
+    }
+
+    @Test
+    void submit_recognizesTiffFramesInPageTasksThroughThePipeline() throws Exception {
+        when(ocrPipeline.process(any(TiffFrameReader.class), anyList(), eq(OcrOptions.of("eng")))).thenAnswer(invocation -> {
+            List<Integer> frameIndices = invocation.getArgument(1);
+            return frameIndices.stream().map(frameIndex -> new OcrPageResult(frameIndex, 300, "frame " + (frameIndex + 1))).toList();
+        });
+        BufferedImage frame = new BufferedImage(60, 80, BufferedImage.TYPE_BYTE_GRAY);
+        File tiff = TiffFrameReaderTest.writeTiff(tempDir.resolve("fax.tif"), List.of(frame, frame, frame), 300, 300);
+
+        String batchId = ocrBatchService.submit(List.of(upload("fax.tif", Files.readAllBytes(tiff.toPath()))), "eng", false);
+
+        awaitCompletion(batchId);
+        // One pipeline task per frame, as for the pages of a PDF, and never a serial recognition of the whole file
+        verify(ocrPipeline, times(3)).process(any(TiffFrameReader.class), argThat(frames -> frames.size() == 1), eq(OcrOptions.of("eng")));
+        verify(tesseractMock, never()).doOCR(any(File.class));
+        assertEquals("--- Page 1 ---\nframe 1\n--- Page 2 ---\nframe 2\n--- Page 3 ---\nframe 3\n", results(batchId).get("fax.txt"));
+        OcrBatchFile fax = ocrBatchService.getFiles(batchId).get(0);
+        assertEquals(3, fax.getPageCount());
+        assertEquals(3, ocrBatchService.getPagesDone(fax));
+    }
+
+    @Test
+    void submit_rejectsBatchesWithoutSupportedFiles() throws Exception {
+        SpooledUpload notes = upload("notes.txt", new byte[] {1});
+
+        assertThrows(IllegalArgumentException.class, () -> ocrBatchService.submit(List.of(notes), "eng", false));
+        verify(ocrBatchRepository, never()).save(any(OcrBatch.class));
+        try (var leftovers = Files.list(tempDir.resolve("batches"))) {
+            assertEquals(0, leftovers.count(), "The batch directory is removed");
+        }
+    }
+
+    @Test
+    void submit_limitsTheExtractedSizeOfArchives() throws Exception {
+        SpooledUpload archive = upload("huge.zip", zip(Map.of("scan.tif", new byte[2 * 1024 * 1024])));
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> ocrBatchService.submit(List.of(archive), "eng", false));
+        assertTrue(thrown.getMessage().contains("1 MB"));
+    }
+
+    @Test
+    void entryNames_stayInsideTheArchiveAndSkipMetadata() {
+        assertEquals("etc/report.pdf", OcrBatchService.entryName("../../etc/report.pdf"));
+        assertEquals("scans/invoice.jpg", OcrBatchService.entryName("/scans/old/../invoice.jpg"));
+        assertEquals("a/b.png", OcrBatchService.entryName("a\\.\\b.png"));
+        assertNull(OcrBatchService.entryName("__MACOSX/a/._b.png"));
+        assertNull(OcrBatchService.entryName("a/.hidden.pdf"));
+        assertEquals("scans/report.v2.txt", OcrBatchService.resultEntryName("scans/report.v2.pdf"));
+        assertEquals("scans.d/readme.txt", OcrBatchService.resultEntryName("scans.d/readme"));
+        assertEquals("a (3).txt", OcrBatchService.uniqueEntryName("a.txt", new HashSet<>(Set.of("a.txt", "a (2).txt"))));
+    }
+}
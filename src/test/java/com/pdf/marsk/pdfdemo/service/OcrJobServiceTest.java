@@ -0,0 +1,199 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.pdf.marsk.pdfdemo.model.OcrJob;
+import com.pdf.marsk.pdfdemo.repository.OcrJobRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OcrJobServiceTest {
+
+    @Mock
+    private OcrService ocrService;
+
+    @Mock
+    private OcrJobRepository ocrJobRepository;
+
+    @Mock
+    private OcrCheckpointStore ocrCheckpointStore;
+
+    @Mock
+    private ProgressTrackingService progressTrackingService;
+
+    @Mock
+    private OcrQueueService ocrQueueService;
+
+    @TempDir
+    Path tempDir;
+
+    private OcrPageScheduler pageScheduler;
+    private OcrJobService ocrJobService;
+
+    @BeforeEach
+    void setUp() {
+        when(ocrQueueService.getNodeId()).thenReturn("node-a");
+        pageScheduler = new OcrPageScheduler(1, Map.of(OcrPageScheduler.Priority.INTERACTIVE_PDF, new OcrPageScheduler.Limits(1, 1)));
+        ocrJobService = new OcrJobService(ocrService, ocrJobRepository, ocrCheckpointStore, progressTrackingService, ocrQueueService,
+                pageScheduler, tempDir.resolve("jobs").toString(), true, 120000);
+        when(ocrJobRepository.save(any(OcrJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ocrJobService.shutdown();
+        pageScheduler.shutdown();
+    }
+
+    @Test
+    void testSubmitMovesUploadAndCompletesJob() throws Exception {
+        Path spooled = Files.writeString(tempDir.resolve("upload_scan.pdf"), "pdf bytes");
+        SpooledUpload upload = new SpooledUpload(spooled, "scan.pdf", "application/pdf", 9);
+        when(progressTrackingService.createOcrTask("scan.pdf", 0, "eng")).thenReturn("ocr-1");
+        when(ocrService.performOcr(any(SpooledUpload.class), argThat(options -> "eng".equals(options.language()) && options.profile() == null
+                && "ocr-1".equals(options.taskId()) && options.hybridExtraction()))).thenReturn("text");
+
+        String taskId = ocrJobService.submit(upload, "eng", true);
+
+        assertEquals("ocr-1", taskId);
+        assertFalse(Files.exists(spooled), "The job takes over the spooled file");
+        verify(ocrJobRepository, atLeastOnce()).save(argThat(job -> "node-a".equals(job.getOwnerNode()) && job.getLeaseRenewedAt() != null));
+        verify(progressTrackingService, timeout(2000)).completeTask("ocr-1", true, "text");
+        verify(ocrCheckpointStore, timeout(2000)).delete("ocr-1");
+        ArgumentCaptor<OcrJob> savedJob = ArgumentCaptor.forClass(OcrJob.class);
+        verify(ocrJobRepository, atLeast(2)).save(savedJob.capture());
+        assertEquals(OcrJob.Status.COMPLETED, savedJob.getValue().getStatus());
+        assertFalse(Files.exists(Path.of(savedJob.getValue().getSourcePath())), "The source file is removed when the job is done");
+    }
+
+    @Test
+    void testSubmitHandsPdfJobsToThePageQueueWhenEnabled() throws Exception {
+        Path spooled = Files.writeString(tempDir.resolve("upload_scan.pdf"), "pdf bytes");
+        SpooledUpload upload = new SpooledUpload(spooled, "scan.pdf", "application/pdf", 9);
+        when(progressTrackingService.createOcrTask("scan.pdf", 0, "eng")).thenReturn("ocr-2");
+        when(ocrQueueService.isEnabled()).thenReturn(true);
+
+        ocrJobService.submit(upload, "eng", false);
+
+        ArgumentCaptor<OcrJob> distributedJob = ArgumentCaptor.forClass(OcrJob.class);
+        verify(ocrQueueService, timeout(2000)).distribute(distributedJob.capture());
+        assertEquals("ocr-2", distributedJob.getValue().getId());
+        assertEquals(OcrJob.Status.RUNNING, distributedJob.getValue().getStatus(), "The queue finishes the job");
+        verifyNoInteractions(ocrService);
+        verify(progressTrackingService, never()).completeTask(eq("ocr-2"), anyBoolean(), anyString());
+        assertTrue(Files.exists(Path.of(distributedJob.getValue().getSourcePath())), "Queue workers still need the source file");
+    }
+
+    @Test
+    void testResumeRestartsRunningJobsUnderTheirTaskId() throws Exception {
+        Path source = Files.writeString(tempDir.resolve("ocr-7_scan.pdf"), "pdf bytes");
+        OcrJob job = new OcrJob("ocr-7", "scan.pdf", source.toString(), "application/pdf", "ita", false);
+        when(ocrJobRepository.findByStatusOrderByCreatedAtAsc(OcrJob.Status.RUNNING)).thenReturn(List.of(job));
+        when(ocrJobRepository.takeOver(eq("ocr-7"), eq("node-a"), any(), any(), any(), eq(OcrJob.Status.RUNNING))).thenReturn(1);
+        when(ocrService.performOcr(any(SpooledUpload.class), argThat(options -> "ita".equals(options.language()) && options.profile() == null
+                && "ocr-7".equals(options.taskId()) && !options.hybridExtraction()))).thenReturn("resumed text");
+
+        ocrJobService.resumeUnfinishedJobs();
+
+        verify(progressTrackingService).restoreOcrTask("ocr-7", "scan.pdf", "ita");
+        verify(progressTrackingService, timeout(2000)).completeTask("ocr-7", true, "resumed text");
+        assertEquals(1, job.getResumeCount());
+    }
+
+    @Test
+    void testResumeLeavesJobsLeasedByLiveNodesAlone() throws Exception {
+        OcrJob job = new OcrJob("ocr-9", "fax.tiff", tempDir.resolve("elsewhere.tiff").toString(), "image/tiff", "eng", false);
+        job.setOwnerNode("node-b");
+        when(ocrJobRepository.findByStatusOrderByCreatedAtAsc(OcrJob.Status.RUNNING)).thenReturn(List.of(job));
+        when(ocrJobRepository.takeOver(eq("ocr-9"), eq("node-a"), any(), any(), any(), eq(OcrJob.Status.RUNNING))).thenReturn(0);
+
+        ocrJobService.resumeUnfinishedJobs();
+
+        assertEquals(OcrJob.Status.RUNNING, job.getStatus(), "A job whose source is on another node is not failed");
+        verify(ocrJobRepository, never()).save(any(OcrJob.class));
+        verifyNoInteractions(ocrService, ocrCheckpointStore);
+    }
+
+    @Test
+    void testRunSavesTheDetectedLanguageBeforeRecognition() throws Exception {
+        Path spooled = Files.writeString(tempDir.resolve("upload_scan.pdf"), "pdf bytes");
+        SpooledUpload upload = new SpooledUpload(spooled, "scan.pdf", "application/pdf", 9);
+        when(progressTrackingService.createOcrTask("scan.pdf", 0, "auto")).thenReturn("ocr-3");
+        List<String> savedLanguages = new CopyOnWriteArrayList<>();
+        when(ocrJobRepository.save(any(OcrJob.class))).thenAnswer(invocation -> {
+            OcrJob job = invocation.getArgument(0);
+            savedLanguages.add(job.getLanguage() + "/" + job.getDetectedLanguage());
+            return job;
+        });
+        when(ocrService.performOcr(any(SpooledUpload.class), argThat(options -> "auto".equals(options.language())
+                && "ocr-3".equals(options.taskId())))).thenAnswer(invocation -> {
+            invocation.<OcrOptions>getArgument(1).languageListener().accept("eng+ita");
+            assertEquals("eng+ita/eng+ita", savedLanguages.get(savedLanguages.size() - 1), "Saved before recognition");
+            return "text";
+        });
+
+        ocrJobService.submit(upload, "auto", false);
+
+        verify(progressTrackingService, timeout(2000)).completeTask("ocr-3", true, "text");
+    }
+
+    @Test
+    void testResumeFailsJobsWhoseSourceIsMissing() throws IOException {
+        OcrJob job = new OcrJob("ocr-8", "gone.pdf", tempDir.resolve("missing.pdf").toString(), "application/pdf", "eng", false);
+        when(ocrJobRepository.findByStatusOrderByCreatedAtAsc(OcrJob.Status.RUNNING)).thenReturn(List.of(job));
+        when(ocrJobRepository.takeOver(eq("ocr-8"), eq("node-a"), any(), any(), any(), eq(OcrJob.Status.RUNNING))).thenReturn(1);
+
+        ocrJobService.resumeUnfinishedJobs();
+
+        assertEquals(OcrJob.Status.FAILED, job.getStatus());
+        verify(ocrCheckpointStore).delete("ocr-8");
+        verifyNoInteractions(ocrService);
+    }
+
+    @Test
+    void testSubmitIsRefusedWhileThePdfQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_PDF, "running", () -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pageScheduler.submit(OcrPageScheduler.Priority.INTERACTIVE_PDF, "queued", () -> true);
+        Path spooled = Files.writeString(tempDir.resolve("upload_scan.pdf"), "pdf bytes");
+        SpooledUpload upload = new SpooledUpload(spooled, "scan.pdf", "application/pdf", 9);
+
+        try {
+            OcrSchedulerFullException thrown = assertThrows(OcrSchedulerFullException.class,
+                    () -> ocrJobService.submit(upload, "eng", false));
+            assertTrue(thrown.getRetryAfterSeconds() >= 1);
+            assertTrue(Files.exists(spooled), "A refused upload stays with the caller");
+            verifyNoInteractions(progressTrackingService, ocrJobRepository);
+        } finally {
+            release.countDown();
+        }
+    }
+}
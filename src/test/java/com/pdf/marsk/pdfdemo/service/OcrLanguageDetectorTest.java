@@ -0,0 +1,56 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrLanguageDetectorTest {
+
+    private static final String ENGLISH = "The committee reviewed the annual report on Tuesday and agreed that the "
+            + "budget for the coming year should be approved without further changes. Several members asked whether "
+            + "the new building would be finished before the winter, and the director said the work was on schedule.";
+    private static final String ITALIAN = "Il consiglio comunale ha approvato ieri sera il bilancio di previsione per "
+            + "il prossimo anno, dopo una lunga discussione sulle spese per le scuole e per la manutenzione delle "
+            + "strade. Il sindaco ha ringraziato gli uffici per il lavoro svolto nelle ultime settimane.";
+
+    private OcrLanguageDetector detector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Sampling needs neither the pool nor the text layer analyzer; decide() scores text only
+        detector = new OcrLanguageDetector(null, null, "eng,ita", "eng", 3, 150, 200, 0.25);
+    }
+
+    @Test
+    void decide_picksTheLanguageOfTheSample() {
+        assertEquals("eng", detector.decide(ENGLISH).language());
+        assertEquals("ita", detector.decide(ITALIAN).language());
+        assertTrue(detector.decide(ITALIAN).isDetected());
+    }
+
+    @Test
+    void decide_usesBothLanguagesForMixedSamples() {
+        String language = detector.decide(ENGLISH + "\n" + ITALIAN).language();
+
+        assertTrue(language.equals("eng+ita") || language.equals("ita+eng"), language);
+    }
+
+    @Test
+    void decide_fallsBackForShortSamples() {
+        OcrLanguageDetector.Detection detection = detector.decide("Ciao 42");
+
+        assertEquals("eng", detection.language());
+        assertFalse(detection.isDetected());
+    }
+
+    @Test
+    void isAuto_matchesTheAutoLanguageOnly() {
+        assertTrue(OcrLanguageDetector.isAuto("auto"));
+        assertTrue(OcrLanguageDetector.isAuto("AUTO"));
+        assertFalse(OcrLanguageDetector.isAuto("eng"));
+        assertFalse(OcrLanguageDetector.isAuto(null));
+    }
+}
@@ -0,0 +1,125 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pdf.marsk.pdfdemo.model.OcrPageTask;
+import com.pdf.marsk.pdfdemo.repository.OcrPageTaskRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the page queue against the embedded H2 database. Claims have to be visible to other
+ * claimers, so the tests run without the per-test transaction of {@link DataJpaTest}.
+ */
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(OcrPageQueue.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OcrPageQueueTest {
+
+    @Autowired
+    private OcrPageQueue pageQueue;
+
+    @Autowired
+    private OcrPageTaskRepository pageTaskRepository;
+
+    @AfterEach
+    void tearDown() {
+        pageTaskRepository.deleteAll();
+    }
+
+    @Test
+    void testEmbeddedDatabaseClaimsByConditionalUpdate() {
+        assertEquals(OcrPageQueue.CONDITIONAL_UPDATE, pageQueue.getClaimStrategy());
+    }
+
+    @Test
+    void testConcurrentClaimersGetEveryPageExactlyOnce() throws Exception {
+        int pageCount = 60;
+        pageQueue.enqueue("job-1", IntStream.range(0, pageCount).boxed().toList());
+
+        ExecutorService nodes = Executors.newFixedThreadPool(4);
+        List<Future<List<Integer>>> claimedByNode = new ArrayList<>();
+        for (int node = 0; node < 4; node++) {
+            String nodeId = "node-" + node;
+            claimedByNode.add(nodes.submit(() -> {
+                List<Integer> pages = new ArrayList<>();
+                List<OcrPageTask> batch;
+                while (!(batch = pageQueue.claim(nodeId, 3)).isEmpty()) {
+                    for (OcrPageTask task : batch) {
+                        assertEquals(nodeId, task.getClaimedBy());
+                        pages.add(task.getPageIndex());
+                    }
+                }
+                return pages;
+            }));
+        }
+        List<Integer> claimedPages = new ArrayList<>();
+        for (Future<List<Integer>> claimed : claimedByNode) {
+            claimedPages.addAll(claimed.get());
+        }
+        nodes.shutdown();
+
+        assertEquals(pageCount, claimedPages.size(), "No page may be claimed twice");
+        assertEquals(IntStream.range(0, pageCount).boxed().toList(), claimedPages.stream().sorted().toList());
+        assertTrue(pageTaskRepository.findAll().stream().allMatch(task -> task.getStatus() == OcrPageTask.Status.CLAIMED));
+    }
+
+    @Test
+    void testCompletedPagesLeaveNothingRemaining() {
+        pageQueue.enqueue("job-2", List.of(0, 1));
+        assertTrue(pageQueue.isQueued("job-2"));
+
+        for (OcrPageTask task : pageQueue.claim("node-a", 5)) {
+            assertTrue(pageQueue.complete(task, "node-a"));
+        }
+
+        assertEquals(0, pageQueue.countRemaining("job-2"));
+        assertTrue(pageQueue.claim("node-a", 5).isEmpty());
+    }
+
+    @Test
+    void testFailedPageIsRetriedUntilItRunsOutOfAttempts() {
+        pageQueue.enqueue("job-3", List.of(0));
+
+        OcrPageTask firstAttempt = pageQueue.claim("node-a", 1).get(0);
+        assertFalse(pageQueue.fail(firstAttempt, "node-a", "boom", 2));
+        OcrPageTask secondAttempt = pageQueue.claim("node-b", 1).get(0);
+        assertEquals(2, secondAttempt.getAttempts());
+        assertTrue(pageQueue.fail(secondAttempt, "node-b", "boom again", 2));
+
+        OcrPageTask failed = pageTaskRepository.findById(secondAttempt.getId()).orElseThrow();
+        assertEquals(OcrPageTask.Status.FAILED, failed.getStatus());
+        assertEquals("boom again", failed.getErrorMessage());
+        assertTrue(pageQueue.claim("node-a", 1).isEmpty());
+        assertEquals(1, pageQueue.countRemaining("job-3"));
+    }
+
+    @Test
+    void testExpiredClaimGoesToAnotherNode() throws InterruptedException {
+        pageQueue.enqueue("job-4", List.of(0));
+        OcrPageTask lostClaim = pageQueue.claim("node-a", 1).get(0);
+        Thread.sleep(20);
+
+        assertEquals(1, pageQueue.releaseExpiredClaims(10));
+        OcrPageTask reclaimed = pageQueue.claim("node-b", 1).get(0);
+
+        assertEquals(lostClaim.getId(), reclaimed.getId());
+        assertFalse(pageQueue.complete(lostClaim, "node-a"), "A node cannot finish a page it no longer holds");
+        assertTrue(pageQueue.complete(reclaimed, "node-b"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.pdf.marsk.pdfdemo.service.OcrPageScheduler.Limits;
+import com.pdf.marsk.pdfdemo.service.OcrPageScheduler.Priority;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrPageSchedulerTest {
+
+    private OcrPageScheduler scheduler = new OcrPageScheduler(1);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Occupies a worker until the returned latch is released.
+     */
+    private CountDownLatch occupyWorker(Priority priority, String lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(priority, lane, () -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void awaitAll(List<CompletableFuture<?>> tasks) throws Exception {
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void submit_takesTurnsBetweenLanes() throws Exception {
+        CountDownLatch release = occupyWorker(Priority.BATCH, "busy");
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+        for (String task : List.of("a1", "a2", "a3", "b1", "c1", "c2")) {
+            tasks.add(scheduler.submit(Priority.BATCH, task.substring(0, 1), () -> order.add(task)));
+        }
+        assertEquals(6, scheduler.getQueuedTasks());
+        assertEquals(3, scheduler.getQueuedLanes());
+
+        release.countDown();
+        awaitAll(tasks);
+
+        // The long lane 'a' gets one task per turn, not its whole backlog
+        assertEquals(List.of("a1", "b1", "c1", "a2", "c2", "a3"), order);
+        assertEquals(0, scheduler.getQueuedTasks());
+    }
+
+    @Test
+    void submit_runsMoreUrgentClassesFirst() throws Exception {
+        CountDownLatch release = occupyWorker(Priority.BATCH, "busy");
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<?>> tasks = new ArrayList<>();
+        tasks.add(scheduler.submit(Priority.BATCH, "batch", () -> order.add("batch")));
+        tasks.add(scheduler.submit(Priority.INTERACTIVE_PDF, "pdf", () -> order.add("pdf")));
+        tasks.add(scheduler.submit(Priority.INTERACTIVE_IMAGE, "image", () -> order.add("image")));
+
+        release.countDown();
+        awaitAll(tasks);
+
+        assertEquals(List.of("image", "pdf", "batch"), order);
+    }
+
+    @Test
+    void submit_keepsEachClassWithinItsConcurrencyCap() throws Exception {
+        scheduler.shutdown();
+        scheduler = new OcrPageScheduler(2, Map.of(Priority.BATCH, new Limits(1, 10)));
+        CountDownLatch release = occupyWorker(Priority.BATCH, "batch-1");
+        CompletableFuture<String> queuedBatch = scheduler.submit(Priority.BATCH, "batch-2", () -> "batch");
+
+        // The second worker stays free for other classes while a batch task runs
+        assertEquals("image", scheduler.submit(Priority.INTERACTIVE_IMAGE, "image", () -> "image").get(5, TimeUnit.SECONDS));
+        assertFalse(queuedBatch.isDone());
+
+        release.countDown();
+        assertEquals("batch", queuedBatch.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void checkCapacity_refusesNewRequestsWhileTheQueueIsFull() throws Exception {
+        scheduler.shutdown();
+        scheduler = new OcrPageScheduler(1, Map.of(Priority.INTERACTIVE_PDF, new Limits(1, 2)));
+        CountDownLatch release = occupyWorker(Priority.INTERACTIVE_PDF, "running");
+        scheduler.checkCapacity(Priority.INTERACTIVE_PDF);
+        scheduler.submit(Priority.INTERACTIVE_PDF, "job-1", () -> "first");
+        scheduler.submit(Priority.INTERACTIVE_PDF, "job-2", () -> "second");
+        // More work for a lane that is already queued is always accepted
+        scheduler.submit(Priority.INTERACTIVE_PDF, "job-2", () -> "more");
+
+        OcrSchedulerFullException thrown = assertThrows(OcrSchedulerFullException.class,
+                () -> scheduler.checkCapacity(Priority.INTERACTIVE_PDF));
+        assertEquals(Priority.INTERACTIVE_PDF, thrown.getPriority());
+        assertTrue(thrown.getRetryAfterSeconds() >= 1);
+        scheduler.checkCapacity(Priority.INTERACTIVE_IMAGE); // Other classes have their own queues
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> pdf = (Map<String, Object>) scheduler.snapshot().get("interactivePdf");
+        assertEquals(3, pdf.get("queuedTasks"));
+        assertEquals(2, pdf.get("queuedLanes"));
+        assertEquals(1, pdf.get("running"));
+        assertEquals(1L, pdf.get("rejected"));
+        release.countDown();
+    }
+
+    @Test
+    void submit_completesWithWhatTheTaskThrew() {
+        CompletableFuture<String> result = scheduler.submit(Priority.INTERACTIVE_IMAGE, "lane", () -> {
+            throw new IOException("unreadable page");
+        });
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, thrown.getCause());
+        assertEquals("unreadable page", thrown.getCause().getMessage());
+    }
+
+    @Test
+    void submit_survivesErrorsAndKeepsTheWorker() throws Exception {
+        CompletableFuture<String> failed = scheduler.submit(Priority.INTERACTIVE_IMAGE, "lane", () -> {
+            throw new StackOverflowError();
+        });
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, thrown.getCause());
+        assertEquals("next", scheduler.submit(Priority.INTERACTIVE_IMAGE, "lane", () -> "next").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shutdown_rejectsQueuedAndNewTasks() throws Exception {
+        CountDownLatch release = occupyWorker(Priority.BATCH, "busy");
+        CompletableFuture<String> queued = scheduler.submit(Priority.BATCH, "lane", () -> "never");
+        // Shutdown waits for the running task, which finishes once the queued one has been rejected
+        queued.whenComplete((result, error) -> release.countDown());
+
+        scheduler.shutdown();
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(Priority.BATCH, "lane", () -> "late"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.tess4j.ITesseract;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class OcrProfilesTest {
+
+    private OcrProfiles ocrProfiles;
+
+    @BeforeEach
+    void setUp() {
+        ocrProfiles = new OcrProfiles(new PageOrientationDetector(true, 100, 10, 0.3, 3), 25, 0.34, 4, "default");
+    }
+
+    @Test
+    void get_returnsTheDefaultProfileWithoutAName() {
+        assertSame(ocrProfiles.getDefault(), ocrProfiles.get(null));
+        assertSame(ocrProfiles.getDefault(), ocrProfiles.get(" "));
+        assertEquals("default", ocrProfiles.getDefault().getName());
+        assertEquals("invoice", ocrProfiles.get("invoice").getName());
+    }
+
+    @Test
+    void get_rejectsUnknownProfiles() {
+        assertThrows(IllegalArgumentException.class, () -> ocrProfiles.get("receipt"));
+        assertThrows(IllegalStateException.class,
+                () -> new OcrProfiles(new PageOrientationDetector(true, 100, 10, 0.3, 3), 25, 0.34, 4, "receipt"));
+    }
+
+    @Test
+    void configure_appliesPageSegModeAndWhitelist() {
+        ITesseract invoiceHandle = mock(ITesseract.class);
+        ITesseract bookHandle = mock(ITesseract.class);
+
+        ocrProfiles.get("invoice").configure(invoiceHandle);
+        ocrProfiles.get("scanned-book").configure(bookHandle);
+
+        verify(invoiceHandle).setPageSegMode(6);
+        verify(invoiceHandle).setVariable(eq("tessedit_char_whitelist"), contains("€"));
+        verify(bookHandle).setPageSegMode(3);
+        verify(bookHandle, never()).setVariable(eq("tessedit_char_whitelist"), anyString());
+    }
+
+    @Test
+    void settingsSignature_differsPerProfile() {
+        assertNotEquals(ocrProfiles.get("invoice").getSettingsSignature(), ocrProfiles.get("fax").getSettingsSignature());
+        assertTrue(ocrProfiles.get("fax").getSettingsSignature().contains("dpi=200"));
+    }
+}
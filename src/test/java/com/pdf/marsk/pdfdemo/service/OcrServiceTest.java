@@ -1,39 +1,72 @@
 package com.pdf.marsk.pdfdemo.service;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test; // Added import
 import org.junit.jupiter.api.io.TempDir; // Added import
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.pdf.marsk.pdfdemo.model.OcrCachedResult;
+import com.pdf.marsk.pdfdemo.model.OcrPageCheckpoint;
+import com.pdf.marsk.pdfdemo.model.OcrPageText;
 import com.pdf.marsk.pdfdemo.model.OcrTextDocument;
+import com.pdf.marsk.pdfdemo.repository.OcrCachedResultRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrPageCheckpointRepository;
+import com.pdf.marsk.pdfdemo.repository.OcrPageTextRepository;
 import com.pdf.marsk.pdfdemo.repository.OcrTextDocumentRepository;
 
 import net.sourceforge.tess4j.ITesseract;
 import net.sourceforge.tess4j.TesseractException;
+import net.sourceforge.tess4j.Word;
 
 class OcrServiceTest {
 
@@ -46,9 +79,31 @@ class OcrServiceTest {
     @Mock // Added mock for ProgressTrackingService as it's used by OcrService
     private ProgressTrackingService progressTrackingServiceMock;
     
+    @Mock
+    private OcrCachedResultRepository ocrCachedResultRepositoryMock;
+    
+    @Mock
+    private OcrPageTextRepository ocrPageTextRepositoryMock;
+    
+    @Mock
+    private OcrPageCheckpointRepository ocrPageCheckpointRepositoryMock;
+    
+    @Mock
+    private OcrLanguageDetector ocrLanguageDetectorMock;
+    
     @InjectMocks
     private OcrService ocrService;
     
+    private OcrPipeline ocrPipeline;
+    
+    private OcrMetrics ocrMetrics;
+    
+    private TesseractPool tesseractPool;
+    
+    private OcrPageScheduler pageScheduler;
+    
+    private ConcurrentMapCacheManager cacheManager;
+    
     @TempDir
     Path tempDir;
     
@@ -56,15 +111,22 @@ class OcrServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         
-        // Replace the tesseractInstance with our mock
-        try {
-            var field = OcrService.class.getDeclaredField("tesseractInstance");
-            field.setAccessible(true);
-            field.set(ocrService, tesseractMock);
-        } catch (Exception e) {
-            e.printStackTrace();
-            fail("Failed to set up mock tesseract instance");
-        }
+        // Back the Tesseract pool and the OCR pipeline with our mock
+        tesseractPool = new TesseractPool(2, () -> tesseractMock);
+        cacheManager = new ConcurrentMapCacheManager("ocrResults", "pageTexts");
+        ocrMetrics = new OcrMetrics();
+        // Most tests use nearly empty pages, so the blank page pre-pass is off unless a test turns it on
+        usePipeline(false);
+        ReflectionTestUtils.setField(ocrService, "tesseractPool", tesseractPool);
+        pageScheduler = new OcrPageScheduler(2);
+        ReflectionTestUtils.setField(ocrService, "pageScheduler", pageScheduler);
+        ReflectionTestUtils.setField(ocrService, "pdfTextLayerAnalyzer", new PdfTextLayerAnalyzer(2.0, 0.9));
+        ReflectionTestUtils.setField(ocrService, "outputImageDpi", 300);
+        ReflectionTestUtils.setField(ocrService, "ocrResultCache", new OcrResultCache(
+                cacheManager, ocrCachedResultRepositoryMock, ocrMetrics, true));
+        ReflectionTestUtils.setField(ocrService, "ocrCheckpointStore", new OcrCheckpointStore(ocrPageCheckpointRepositoryMock));
+        ReflectionTestUtils.setField(ocrService, "uploadSpoolService",
+                new UploadSpoolService(tempDir.resolve("spool").toString()));
         // Ensure the mocked repository is used by the service instance
         // This is typically handled by @InjectMocks if the field in OcrService is not final
         // or if OcrService has a constructor that accepts OcrTextDocumentRepository.
@@ -79,6 +141,32 @@ class OcrServiceTest {
 
     }
     
+    @AfterEach
+    void tearDown() {
+        ocrPipeline.shutdown();
+        pageScheduler.shutdown();
+    }
+    
+    private void usePipeline(boolean prepassEnabled) {
+        usePipeline(prepassEnabled, new PageTiler(true, 40, 4096, 256));
+    }
+
+    private void usePipeline(boolean prepassEnabled, PageTiler pageTiler) {
+        if (ocrPipeline != null) {
+            ocrPipeline.shutdown();
+        }
+        OcrProfiles ocrProfiles = new OcrProfiles(new PageOrientationDetector(true, 100, 10, 0.3, 3), 25, 0.34, 4, "default");
+        ocrPipeline = new OcrPipeline(tesseractPool, ocrProfiles, new PageDpiPlanner(150, 400, 20, 5.0),
+                new PageContentAnalyzer(prepassEnabled, 36, 64, 2.0, 18, 0.1),
+                new PageOrientationDetector(true, 100, 10, 0.3, 3), pageTiler,
+                new RenderMemoryGovernor(256L * 1024 * 1024, 4, Duration.ofSeconds(2)),
+                new ImagePreprocessor("sharpen,otsu", 25, 0.34, 4),
+                new PageTextCache(cacheManager, ocrPageTextRepositoryMock, true), ocrMetrics,
+                progressTrackingServiceMock, 1, 2, 2, 4, 2);
+        ReflectionTestUtils.setField(ocrService, "ocrPipeline", ocrPipeline);
+        ReflectionTestUtils.setField(ocrService, "ocrProfiles", ocrProfiles);
+    }
+    
     @Test
     void testPerformOcrWithImageFile() throws IOException, TesseractException {
         // Arrange
@@ -120,7 +208,7 @@ class OcrServiceTest {
     void testPerformOcrWithPdfFile() throws IOException, TesseractException {
         // Arrange
         String expectedPageText = "This is OCR text from PDF";
-        when(tesseractMock.doOCR(any(File.class))).thenReturn(expectedPageText);
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn(expectedPageText);
         
         // Create a simple PDF file for testing
         Path pdfPath = createSamplePdf();
@@ -135,14 +223,44 @@ class OcrServiceTest {
         // Assert
         assertTrue(result.contains(expectedPageText));
         // Should be called at least once (depends on the number of pages)
-        verify(tesseractMock, atLeastOnce()).doOCR(any(File.class));
+        verify(tesseractMock, atLeastOnce()).doOCR(any(BufferedImage.class));
+        verify(tesseractMock, never()).doOCR(any(File.class));
+    }
+    
+    @Test
+    void testPipelineHandsPooledHandlesTheGrayPixels() throws IOException, TesseractException {
+        // Arrange: pooled handles without a native engine that record the pixels they are given
+        List<GrayImage> recognizedPages = new CopyOnWriteArrayList<>();
+        tesseractPool = new TesseractPool(1, () -> new PooledTesseract() {
+            @Override
+            protected void init() {
+            }
+
+            @Override
+            public String recognize(GrayImage image) {
+                recognizedPages.add(image);
+                return "Native page text";
+            }
+        });
+        ReflectionTestUtils.setField(ocrService, "tesseractPool", tesseractPool);
+        usePipeline(false);
+        MultipartFile pdfFile = new MockMultipartFile(
+                "test.pdf", "test.pdf", "application/pdf", Files.readAllBytes(createSamplePdf(2)));
+        
+        // Act
+        String result = ocrService.performOcr(pdfFile);
+        
+        // Assert: both pages went through the native path, as rendered 8-bit pixels
+        assertTrue(result.contains("Native page text"));
+        assertEquals(2, recognizedPages.size());
+        assertTrue(recognizedPages.stream().allMatch(page -> page.getWidth() > 0 && page.getHeight() > 0));
     }
     
     @Test
     void testPerformOcrWithPdfFileAndLanguage() throws IOException, TesseractException {
         // Arrange
         String expectedPageText = "This is OCR text from PDF in Italian";
-        when(tesseractMock.doOCR(any(File.class))).thenReturn(expectedPageText);
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn(expectedPageText);
         
         // Create a simple PDF file for testing
         Path pdfPath = createSamplePdf();
@@ -157,7 +275,520 @@ class OcrServiceTest {
         // Assert
         assertTrue(result.contains(expectedPageText));
         verify(tesseractMock, times(1)).setLanguage("ita");
-        verify(tesseractMock, atLeastOnce()).doOCR(any(File.class));
+        verify(tesseractMock, atLeastOnce()).doOCR(any(BufferedImage.class));
+        verify(tesseractMock, never()).doOCR(any(File.class));
+    }
+    
+    @Test
+    void testPerformOcrWithMultiPagePdfKeepsPageOrder() throws IOException, TesseractException {
+        // Arrange: later pages finish first, but the result must still be in page order
+        // Each sample page is one inch taller than the previous one, which identifies it from the rendered image
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenAnswer(invocation -> {
+            BufferedImage pageImage = invocation.getArgument(0);
+            double heightInPoints = (double) pageImage.getHeight() / pageImage.getWidth() * PDRectangle.LETTER.getWidth();
+            int pageIndex = (int) Math.round((heightInPoints - PDRectangle.LETTER.getHeight()) / 72);
+            Thread.sleep(50L * (3 - pageIndex));
+            return "Text of page " + (pageIndex + 1);
+        });
+        
+        Path pdfPath = createSamplePdf(4);
+        MultipartFile pdfFile = new MockMultipartFile(
+                "test.pdf", "test.pdf", "application/pdf", Files.readAllBytes(pdfPath));
+        
+        // Act
+        String result = ocrService.performOcr(pdfFile);
+        
+        // Assert
+        assertTrue(result.indexOf("Text of page 1") < result.indexOf("Text of page 2"));
+        assertTrue(result.indexOf("Text of page 2") < result.indexOf("Text of page 3"));
+        assertTrue(result.indexOf("Text of page 3") < result.indexOf("Text of page 4"));
+        assertTrue(result.indexOf("--- Page 4 ---") < result.indexOf("Text of page 4"));
+        verify(tesseractMock, times(4)).doOCR(any(BufferedImage.class));
+    }
+    
+    @Test
+    void testPerformOcrWithMultiPageTiffRecognizesEveryFrameInOrder() throws IOException, TesseractException {
+        // Arrange: later frames finish first; each frame is 100 pixels taller than the previous one
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenAnswer(invocation -> {
+            BufferedImage frameImage = invocation.getArgument(0);
+            int frameIndex = (int) Math.round((frameImage.getHeight() - 500) / 100.0);
+            Thread.sleep(50L * (3 - frameIndex));
+            return "Text of frame " + (frameIndex + 1);
+        });
+        List<BufferedImage> frames = IntStream.range(0, 4).mapToObj(i -> {
+            BufferedImage frame = new BufferedImage(400, 500 + 100 * i, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D graphics = frame.createGraphics();
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(50, 100, 300, 8);
+            graphics.dispose();
+            return frame;
+        }).toList();
+        File tiff = TiffFrameReaderTest.writeTiff(tempDir.resolve("fax.tif"), frames, 0, 0);
+        MultipartFile tiffFile = new MockMultipartFile("fax.tif", "fax.tif", "image/tiff", Files.readAllBytes(tiff.toPath()));
+        
+        // Act
+        String result = ocrService.performOcr(tiffFile);
+        
+        // Assert: the frames were recognized one by one, like PDF pages, with one progress page per frame
+        assertTrue(result.indexOf("Text of frame 1") < result.indexOf("Text of frame 2"));
+        assertTrue(result.indexOf("Text of frame 3") < result.indexOf("Text of frame 4"));
+        assertTrue(result.indexOf("--- Page 4 ---") < result.indexOf("Text of frame 4"));
+        verify(tesseractMock, times(4)).doOCR(any(BufferedImage.class));
+        verify(progressTrackingServiceMock).createOcrTask(eq("fax.tif"), eq(4), eq("eng"));
+    }
+    
+    @Test
+    void testPerformOcrWithAutoLanguageSamplesTiffAtTheSampleDpi() throws IOException, TesseractException {
+        // Arrange: a 2 x 3 inch frame at 300 DPI, sampled at 150 DPI
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Fax text");
+        when(ocrLanguageDetectorMock.getSampleDpi()).thenReturn(150);
+        when(ocrLanguageDetectorMock.detect(any(BufferedImage.class))).thenReturn(
+                new OcrLanguageDetector.Detection("eng", Map.of(), 0));
+        BufferedImage frame = new BufferedImage(600, 900, BufferedImage.TYPE_BYTE_GRAY);
+        File tiff = TiffFrameReaderTest.writeTiff(tempDir.resolve("fax.tif"), List.of(frame), 300, 300);
+        MultipartFile tiffFile = new MockMultipartFile("fax.tif", "fax.tif", "image/tiff", Files.readAllBytes(tiff.toPath()));
+        
+        // Act
+        ocrService.performOcr(tiffFile, "auto");
+        
+        // Assert: the sample is a subsampled decode, not the frame at full resolution
+        ArgumentCaptor<BufferedImage> sample = ArgumentCaptor.forClass(BufferedImage.class);
+        verify(ocrLanguageDetectorMock).detect(sample.capture());
+        assertEquals(300, sample.getValue().getWidth());
+        assertEquals(450, sample.getValue().getHeight());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPerformOcrWithPdfFileReportsPipelineStats() throws IOException, TesseractException {
+        // Arrange
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Page text");
+        Path pdfPath = createSamplePdf(3);
+        MultipartFile pdfFile = new MockMultipartFile(
+                "test.pdf", "test.pdf", "application/pdf", Files.readAllBytes(pdfPath));
+        
+        // Act
+        ocrService.performOcr(pdfFile);
+        
+        // Assert: every completed page publishes a snapshot of the four pipeline stages
+        ArgumentCaptor<List<PipelineStageStats>> statsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(progressTrackingServiceMock, times(3)).updateOcrPipelineStats(eq("mockTaskId"), statsCaptor.capture());
+        List<PipelineStageStats> finalStats = statsCaptor.getAllValues().get(2);
+        assertEquals(List.of("render", "preprocess", "recognize", "persist"),
+                finalStats.stream().map(PipelineStageStats::getStage).toList());
+        assertEquals(3, finalStats.get(0).getProcessedPages());
+        assertEquals(3, finalStats.get(2).getProcessedPages());
+    }
+    
+    @Test
+    void testPerformOcrWithPdfFilePropagatesPageFailure() throws IOException, TesseractException {
+        // Arrange
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenThrow(new TesseractException("Page failed"));
+        Path pdfPath = createSamplePdf(3);
+        MultipartFile pdfFile = new MockMultipartFile(
+                "test.pdf", "test.pdf", "application/pdf", Files.readAllBytes(pdfPath));
+        
+        // Act & Assert
+        assertThrows(TesseractException.class, () -> ocrService.performOcr(pdfFile));
+        verify(progressTrackingServiceMock, atLeastOnce()).updateOcrTaskProgress(
+                eq("mockTaskId"), anyInt(), startsWith("Error processing page"));
+    }
+    
+    @Test
+    void testPerformOcrHybridOnlyRecognizesPagesWithoutTextLayer() throws IOException, TesseractException {
+        // Arrange: page 1 is born-digital text, page 2 has no text layer (like a scanned page)
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Scanned page text");
+        Path pdfFile = tempDir.resolve("mixed.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage textPage = new PDPage();
+            document.addPage(textPage);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, textPage)) {
+                contentStream.beginText();
+                contentStream.setFont(PDType1Font.HELVETICA, 10);
+                contentStream.setLeading(12);
+                contentStream.newLineAtOffset(72, 720);
+                for (int line = 0; line < 40; line++) {
+                    contentStream.showText("Born digital line " + line + " with enough words to count as a real text layer.");
+                    contentStream.newLine();
+                }
+                contentStream.endText();
+            }
+            document.addPage(new PDPage());
+            document.save(pdfFile.toFile());
+        }
+        MultipartFile pdf = new MockMultipartFile(
+                "mixed.pdf", "mixed.pdf", "application/pdf", Files.readAllBytes(pdfFile));
+        
+        // Act
+        String result = ocrService.performOcr(pdf, OcrOptions.of("eng").withHybridExtraction(true));
+        
+        // Assert
+        assertTrue(result.contains("Born digital line 0"));
+        assertTrue(result.contains("Scanned page text"));
+        assertTrue(result.indexOf("Born digital line 39") < result.indexOf("--- Page 2 ---"));
+        verify(tesseractMock, times(1)).doOCR(any(BufferedImage.class));
+    }
+    
+    @Test
+    void testPerformOcrWithPdfFilePlansDpiPerPage() throws IOException, TesseractException {
+        // Arrange: page 1 is a plain letter page, page 2 is a two-inch page covered by a 200 DPI scan
+        List<Integer> renderedWidths = new CopyOnWriteArrayList<>();
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenAnswer(invocation -> {
+            renderedWidths.add(((BufferedImage) invocation.getArgument(0)).getWidth());
+            return "Page text";
+        });
+        Path pdfFile = tempDir.resolve("scanned.pdf");
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            PDPage scannedPage = new PDPage(new PDRectangle(144, 144));
+            document.addPage(scannedPage);
+            PDImageXObject scan = LosslessFactory.createFromImage(document,
+                    new BufferedImage(400, 400, BufferedImage.TYPE_BYTE_GRAY));
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, scannedPage)) {
+                contentStream.drawImage(scan, 0, 0, 144, 144);
+            }
+            document.save(pdfFile.toFile());
+        }
+        MultipartFile pdf = new MockMultipartFile(
+                "scanned.pdf", "scanned.pdf", "application/pdf", Files.readAllBytes(pdfFile));
+        
+        // Act
+        ocrService.performOcr(pdf);
+        
+        // Assert: body text needs 288 DPI, the scanned page is not rendered above its own 200 DPI
+        verify(tesseractMock).setVariable("user_defined_dpi", "288");
+        verify(tesseractMock).setVariable("user_defined_dpi", "200");
+        assertTrue(renderedWidths.contains(400));
+        assertTrue(renderedWidths.contains((int) (PDRectangle.LETTER.getWidth() * 288 / 72)));
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPerformOcrPrepassSkipsBlankPagesAndCropsMargins() throws IOException, TesseractException {
+        // Arrange: page 1 holds a single line near its top, page 2 is blank
+        usePipeline(true);
+        List<BufferedImage> recognizedImages = new CopyOnWriteArrayList<>();
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenAnswer(invocation -> {
+            recognizedImages.add(invocation.getArgument(0));
+            return "Alpha";
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDDocument document = PDDocument.load(createPdfWithPages("Alpha"))) {
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            document.save(out);
+        }
+        MultipartFile pdf = new MockMultipartFile(
+                "sparse.pdf", "sparse.pdf", "application/pdf", out.toByteArray());
+        
+        // Act
+        String result = ocrService.performOcr(pdf, "eng", "mockTaskId");
+        
+        // Assert: only the line's region of page 1 is recognized, and it still holds the rendered text
+        assertEquals(1, recognizedImages.size());
+        BufferedImage region = recognizedImages.get(0);
+        assertTrue(region.getWidth() < PDRectangle.LETTER.getWidth() * 288 / 72 / 2);
+        assertTrue(region.getHeight() < PDRectangle.LETTER.getHeight() * 288 / 72 / 4);
+        assertTrue(IntStream.range(0, region.getWidth()).anyMatch(x -> (region.getRGB(x, region.getHeight() / 2) & 0xff) < 128));
+        assertTrue(result.contains("Alpha"));
+        assertTrue(result.contains("--- Page 2 ---"));
+        verify(progressTrackingServiceMock, atLeastOnce()).updateOcrPrepassStats("mockTaskId", 1, 1);
+        Map<String, Object> prepass = (Map<String, Object>) ocrMetrics.snapshot().get("pagePrepass");
+        assertEquals(2L, prepass.get("pages"));
+        assertEquals(1L, prepass.get("blankSkipped"));
+        assertEquals(1L, prepass.get("cropped"));
+    }
+    
+    @Test
+    void testPipelineStraightensSidewaysPagesBeforeRecognition() throws IOException, TesseractException {
+        // Arrange: a portrait page of text, stored with a 90 degree rotation so it renders sideways
+        List<BufferedImage> recognizedImages = new CopyOnWriteArrayList<>();
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenAnswer(invocation -> {
+            recognizedImages.add(invocation.getArgument(0));
+            return "Page text";
+        });
+        String[] words = "the report was reviewed by every member of our committee on Tuesday and nobody objected to its findings".split(" ");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(PDRectangle.LETTER);
+            page.setRotation(90);
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                contentStream.beginText();
+                contentStream.setFont(PDType1Font.HELVETICA, 11);
+                contentStream.setLeading(15);
+                contentStream.newLineAtOffset(72, 700);
+                for (int line = 0; line < 20; line++) {
+                    StringBuilder text = new StringBuilder();
+                    for (int word = 0; text.length() < 70; word++) {
+                        text.append(words[(line * 7 + word * 3) % words.length]).append(' ');
+                    }
+                    contentStream.showText(text.toString().trim());
+                    contentStream.newLine();
+                }
+                contentStream.endText();
+            }
+            
+            // Act
+            List<OcrPageResult> results = ocrPipeline.process(document, "eng", null);
+            
+            // Assert: the page was turned back upright once, and Tesseract does not run its own orientation detection
+            assertEquals(270, results.get(0).getOrientation().getRotation());
+            BufferedImage recognized = recognizedImages.get(0);
+            assertTrue(recognized.getHeight() > recognized.getWidth());
+            verify(tesseractMock).setPageSegMode(3);
+        }
+    }
+    
+    @Test
+    void testPipelineRestoresConfidencesOfReusedPages() throws IOException, TesseractException {
+        // Arrange: an identical page was recognized before, with its confidences
+        OcrPageText knownPage = new OcrPageText("known", "Known page\nSecond line");
+        knownPage.setConfidence(87f);
+        knownPage.setLineConfidences("91,83");
+        when(ocrPageTextRepositoryMock.findByFingerprintKey(anyString())).thenReturn(Optional.of(knownPage));
+        
+        // Act
+        try (PDDocument document = PDDocument.load(createPdfWithPages("Alpha"))) {
+            List<OcrPageResult> results = ocrPipeline.process(document, "eng", null);
+            
+            // Assert: the page is not recognized again and keeps the confidences of the known page
+            assertEquals("Known page\nSecond line", results.get(0).getText());
+            assertEquals(87f, results.get(0).getConfidence(), 0.01);
+            assertEquals(List.of(91f, 83f), results.get(0).getLineConfidences());
+            verify(tesseractMock, never()).doOCR(any(BufferedImage.class));
+        }
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPipelineRecognizesOversizedPagesInTiles() throws IOException, TesseractException {
+        // Arrange: a letter page at 288 DPI is 2448x3168 pixels, above a 2 megapixel tiling threshold
+        usePipeline(false, new PageTiler(true, 2, 1024, 128));
+        List<BufferedImage> recognizedTiles = new CopyOnWriteArrayList<>();
+        when(tesseractMock.getWords(any(BufferedImage.class), anyInt())).thenAnswer(invocation -> {
+            recognizedTiles.add(invocation.getArgument(0));
+            return List.of(new Word("Tile", 90f, new Rectangle(400, 400, 120, 30)));
+        });
+        
+        // Act
+        try (PDDocument document = PDDocument.load(createPdfWithPages("Alpha"))) {
+            List<OcrPageResult> results = ocrPipeline.process(document, "eng", null);
+            
+            // Assert: 3 columns by 4 rows of tiles, each recognized separately, and one word per tile merged
+            assertEquals(12, recognizedTiles.size());
+            assertTrue(recognizedTiles.stream().allMatch(tile -> tile.getWidth() <= 1024 && tile.getHeight() <= 1024));
+            assertEquals(12, results.get(0).getText().split("\\s+").length);
+            assertEquals(4, results.get(0).getText().lines().count());
+            assertEquals(90f, results.get(0).getConfidence(), 0.01);
+            verify(tesseractMock, never()).doOCR(any(BufferedImage.class));
+            Map<String, Object> tiling = (Map<String, Object>) ocrMetrics.snapshot().get("pageTiling");
+            assertEquals(1L, tiling.get("pages"));
+            assertEquals(12L, tiling.get("tiles"));
+        }
+    }
+    
+    @Test
+    void testWriteWordTsvListsWordsWithBoxesAndConfidences() throws IOException, TesseractException {
+        // Arrange
+        when(tesseractMock.getWords(any(BufferedImage.class), anyInt())).thenReturn(List.of(
+                new Word("due", 90f, new Rectangle(70, 21, 30, 12)),
+                new Word("Total", 87.5f, new Rectangle(10, 20, 50, 12))));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_BYTE_GRAY), "png", png);
+        MultipartFile imageFile = new MockMultipartFile("receipt.png", "receipt.png", "image/png", png.toByteArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        // Act
+        ocrService.writeWordTsv(imageFile, "eng", out);
+        
+        // Assert: a page row with the image size, then the words in reading order
+        String[] rows = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, rows.length);
+        assertEquals(OcrWords.TSV_HEADER, rows[0]);
+        assertEquals("1\t1\t0\t0\t0\t0\t0\t0\t200\t100\t-1\t", rows[1]);
+        assertEquals("5\t1\t1\t1\t1\t1\t10\t20\t50\t12\t87.50\tTotal", rows[2]);
+        assertEquals("5\t1\t1\t1\t1\t2\t70\t21\t30\t12\t90.00\tdue", rows[3]);
+    }
+    
+    @Test
+    void testWriteSearchablePdfAddsInvisibleTextToTheOriginalPages() throws IOException, TesseractException {
+        // Arrange: two pages without a text layer; Tesseract finds one word a quarter into each page
+        when(tesseractMock.getWords(any(BufferedImage.class), anyInt())).thenAnswer(invocation -> {
+            BufferedImage image = invocation.getArgument(0);
+            return List.of(new Word("Searchable", 91f, new Rectangle(image.getWidth() / 4, image.getHeight() / 4,
+                    image.getWidth() / 4, image.getHeight() / 40)));
+        });
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            document.save(source);
+        }
+        MultipartFile pdf = new MockMultipartFile("scan.pdf", "scan.pdf", "application/pdf", source.toByteArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        // Act
+        ocrService.writeSearchablePdf(pdf, "eng", out);
+        
+        // Assert: the word sits over its box, a quarter into the letter page (612x792 points)
+        try (PDDocument searchable = PDDocument.load(out.toByteArray())) {
+            assertEquals(2, searchable.getNumberOfPages());
+            PDFTextStripperByArea stripper = new PDFTextStripperByArea();
+            stripper.addRegion("word", new Rectangle2D.Float(140, 185, 180, 40));
+            stripper.extractRegions(searchable.getPage(1));
+            assertEquals("Searchable", stripper.getTextForRegion("word").trim());
+        }
+        verify(tesseractMock, times(2)).getWords(any(BufferedImage.class), anyInt());
+        verify(tesseractMock, never()).doOCR(any(BufferedImage.class));
+    }
+    
+    @Test
+    void testWriteSearchablePdfKeepsEveryTiffFrame() throws IOException, TesseractException {
+        // Arrange: a three-frame fax without resolution tags, so frames are placed at the default 300 DPI
+        when(tesseractMock.getWords(any(BufferedImage.class), anyInt())).thenReturn(List.of(
+                new Word("Fax", 88f, new Rectangle(50, 100, 120, 20))));
+        List<BufferedImage> frames = IntStream.range(0, 3).mapToObj(i -> {
+            BufferedImage frame = new BufferedImage(600, 900, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D graphics = frame.createGraphics();
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+            graphics.dispose();
+            return frame;
+        }).toList();
+        File tiff = TiffFrameReaderTest.writeTiff(tempDir.resolve("fax.tif"), frames, 0, 0);
+        MultipartFile tiffFile = new MockMultipartFile("fax.tif", "fax.tif", "image/tiff", Files.readAllBytes(tiff.toPath()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        // Act
+        ocrService.writeSearchablePdf(tiffFile, "eng", out);
+        
+        // Assert: one page per frame, each two by three inches
+        try (PDDocument searchable = PDDocument.load(out.toByteArray())) {
+            assertEquals(3, searchable.getNumberOfPages());
+            assertEquals(144f, searchable.getPage(2).getMediaBox().getWidth(), 0.5f);
+            assertEquals(216f, searchable.getPage(2).getMediaBox().getHeight(), 0.5f);
+        }
+        verify(tesseractMock, times(3)).getWords(any(BufferedImage.class), anyInt());
+    }
+    
+    @Test
+    void testPerformOcrReusesCachedResultForIdenticalUpload() throws IOException, TesseractException {
+        // Arrange
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Contract text");
+        byte[] pdfContent = Files.readAllBytes(createSamplePdf(2));
+        
+        // Act
+        String first = ocrService.performOcr(new MockMultipartFile("contract.pdf", "contract.pdf", "application/pdf", pdfContent));
+        String second = ocrService.performOcr(new MockMultipartFile("copy.pdf", "copy.pdf", "application/pdf", pdfContent));
+        
+        // Assert: the second upload is served from the cache and still recorded as a document
+        assertEquals(first, second);
+        verify(tesseractMock, times(2)).doOCR(any(BufferedImage.class));
+        verify(ocrCachedResultRepositoryMock, times(1)).save(any(OcrCachedResult.class));
+        verify(ocrTextDocumentRepositoryMock, times(2)).save(any(OcrTextDocument.class));
+    }
+    
+    @Test
+    void testPerformOcrCacheIsKeyedByLanguage() throws IOException, TesseractException {
+        // Arrange
+        when(tesseractMock.doOCR(any(File.class))).thenReturn("Image text");
+        byte[] imageContent = "fake image content".getBytes();
+        
+        // Act
+        ocrService.performOcr(new MockMultipartFile("test.png", "test.png", "image/png", imageContent), "eng");
+        ocrService.performOcr(new MockMultipartFile("test.png", "test.png", "image/png", imageContent), "ita");
+        ocrService.performOcr(new MockMultipartFile("test.png", "test.png", "image/png", imageContent), "ita");
+        
+        // Assert
+        verify(tesseractMock, times(2)).doOCR(any(File.class));
+    }
+    
+    @Test
+    void testPerformOcrWithAutoLanguageDetectsOnlyOnACacheMiss() throws IOException, TesseractException {
+        // Arrange
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Testo del contratto");
+        when(ocrLanguageDetectorMock.detect(any(PDDocument.class))).thenReturn(
+                new OcrLanguageDetector.Detection("ita", Map.of("ita", -2.0, "eng", -3.0), 250));
+        byte[] pdfContent = Files.readAllBytes(createSamplePdf(2));
+        
+        // Act
+        String first = ocrService.performOcr(new MockMultipartFile("contratto.pdf", "contratto.pdf", "application/pdf", pdfContent), "auto");
+        String second = ocrService.performOcr(new MockMultipartFile("copia.pdf", "copia.pdf", "application/pdf", pdfContent), "auto");
+        String explicit = ocrService.performOcr(new MockMultipartFile("copia.pdf", "copia.pdf", "application/pdf", pdfContent), "ita");
+        
+        // Assert: the repeat upload is answered from the cache without sampling, and recorded in the detected language
+        assertEquals(first, second);
+        assertEquals(first, explicit);
+        verify(ocrLanguageDetectorMock, times(1)).detect(any(PDDocument.class));
+        verify(tesseractMock, times(2)).doOCR(any(BufferedImage.class));
+        ArgumentCaptor<OcrTextDocument> documents = ArgumentCaptor.forClass(OcrTextDocument.class);
+        verify(ocrTextDocumentRepositoryMock, times(3)).save(documents.capture());
+        assertEquals("ita", documents.getAllValues().get(1).getDetectedLanguage());
+    }
+    
+    @Test
+    void testPerformOcrUsesPersistentCacheTier() throws IOException, TesseractException {
+        // Arrange: the result was stored by an earlier run (or another node)
+        OcrCachedResult stored = new OcrCachedResult("key", "hash", "eng", "settings", "Stored OCR text");
+        when(ocrCachedResultRepositoryMock.findByCacheKey(anyString())).thenReturn(Optional.of(stored));
+        MultipartFile imageFile = new MockMultipartFile(
+                "test.png", "test.png", "image/png", "fake image content".getBytes());
+        
+        // Act
+        String result = ocrService.performOcr(imageFile);
+        
+        // Assert
+        assertEquals("Stored OCR text", result);
+        verify(tesseractMock, never()).doOCR(any(File.class));
+    }
+    
+    @Test
+    void testPerformOcrCacheHitKeepsLineConfidencesForSelectiveCorrection() throws IOException, TesseractException {
+        // Arrange: the stored result carries the confidences of its two lines
+        OcrCachedResult stored = new OcrCachedResult("key", "hash", "eng", "settings", "Total 12.50\nThank you");
+        stored.setLineConfidences("42,96");
+        when(ocrCachedResultRepositoryMock.findByCacheKey(anyString())).thenReturn(Optional.of(stored));
+        when(ocrTextDocumentRepositoryMock.save(any(OcrTextDocument.class))).thenAnswer(invocation -> {
+            OcrTextDocument document = invocation.getArgument(0);
+            document.setId(42L);
+            return document;
+        });
+        MultipartFile imageFile = new MockMultipartFile(
+                "receipt.png", "receipt.png", "image/png", "fake image content".getBytes());
+        
+        // Act
+        ocrService.performOcr(imageFile, "eng", "task-9");
+        
+        // Assert: the saved document has the cached confidences and is linked to the task for the enhancement step
+        ArgumentCaptor<OcrTextDocument> document = ArgumentCaptor.forClass(OcrTextDocument.class);
+        verify(ocrTextDocumentRepositoryMock).save(document.capture());
+        assertEquals("42,96", document.getValue().getLineConfidences());
+        verify(progressTrackingServiceMock).updateOcrResultDocument("task-9", 42L);
+        verify(tesseractMock, never()).doOCR(any(File.class));
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPerformOcrRecognizesIdenticalPagesOnce() throws IOException, TesseractException {
+        // Arrange: the terms page appears twice in the first document and again in the second
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Recognized page");
+        MultipartFile first = new MockMultipartFile("first.pdf", "first.pdf", "application/pdf",
+                createPdfWithPages("Terms and conditions", "Terms and conditions", "Invoice 1"));
+        MultipartFile second = new MockMultipartFile("second.pdf", "second.pdf", "application/pdf",
+                createPdfWithPages("Terms and conditions", "Invoice 2"));
+        
+        // Act
+        ocrService.performOcr(first);
+        ocrService.performOcr(second);
+        
+        // Assert: only the terms page (once) and the two invoice pages are recognized
+        verify(tesseractMock, times(3)).doOCR(any(BufferedImage.class));
+        verify(progressTrackingServiceMock, atLeastOnce()).updateOcrTaskProgress(
+                eq("mockTaskId"), anyInt(), contains("reused from identical pages"));
+        Map<String, Object> pageDedup = (Map<String, Object>) ocrMetrics.snapshot().get("pageDedup");
+        assertEquals(2L, pageDedup.get("hits"));
+        assertEquals(3L, pageDedup.get("misses"));
     }
     
     @Test
@@ -191,19 +822,88 @@ class OcrServiceTest {
         assertThrows(TesseractException.class, () -> ocrService.performOcr(imageFile));
     }
     
+    @Test
+    void testPerformOcrResumesFromPageCheckpoints() throws IOException, TesseractException {
+        // Arrange: an interrupted job already checkpointed its first two pages
+        when(tesseractMock.doOCR(any(BufferedImage.class))).thenReturn("Recognized third page");
+        when(ocrPageCheckpointRepositoryMock.findByJobIdOrderByPageIndexAsc("job-1")).thenReturn(List.of(
+                new OcrPageCheckpoint("job-1", 0, "Checkpointed first page", 91f, 1200),
+                new OcrPageCheckpoint("job-1", 1, "Checkpointed second page", 88f, 1100)));
+        MultipartFile pdfFile = new MockMultipartFile(
+                "resumed.pdf", "resumed.pdf", "application/pdf", createPdfWithPages("Alpha", "Beta", "Gamma"));
+        
+        // Act
+        String result = ocrService.performOcr(pdfFile, "eng", "job-1");
+        
+        // Assert: only the missing page is recognized and checkpointed
+        assertTrue(result.indexOf("Checkpointed first page") < result.indexOf("Checkpointed second page"));
+        assertTrue(result.indexOf("Checkpointed second page") < result.indexOf("Recognized third page"));
+        verify(tesseractMock, times(1)).doOCR(any(BufferedImage.class));
+        ArgumentCaptor<OcrPageCheckpoint> checkpoint = ArgumentCaptor.forClass(OcrPageCheckpoint.class);
+        verify(ocrPageCheckpointRepositoryMock, times(1)).save(checkpoint.capture());
+        assertEquals("job-1", checkpoint.getValue().getJobId());
+        assertEquals(2, checkpoint.getValue().getPageIndex());
+        assertEquals("Recognized third page", checkpoint.getValue().getPageText());
+    }
+    
+    @Test
+    void testPerformOcrDeletesSpooledUpload() throws IOException, TesseractException {
+        // Arrange: one successful and one failing upload
+        when(tesseractMock.doOCR(any(File.class))).thenReturn("Spooled text").thenThrow(new TesseractException("Tesseract error"));
+        MultipartFile imageFile = new MockMultipartFile(
+                "test.png", "test.png", "image/png", "fake image content".getBytes());
+        MultipartFile otherImageFile = new MockMultipartFile(
+                "other.png", "other.png", "image/png", "other image content".getBytes());
+        
+        // Act
+        assertEquals("Spooled text", ocrService.performOcr(imageFile));
+        assertThrows(TesseractException.class, () -> ocrService.performOcr(otherImageFile));
+        
+        // Assert: the upload was written to the spool directory and removed again in both cases
+        try (var spooled = Files.list(tempDir.resolve("spool"))) {
+            assertEquals(0, spooled.count());
+        }
+    }
+    
+    private byte[] createPdfWithPages(String... pageTexts) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (String pageText : pageTexts) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(PDType1Font.HELVETICA, 12);
+                    contentStream.newLineAtOffset(100, 700);
+                    contentStream.showText(pageText);
+                    contentStream.endText();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+    
     private Path createSamplePdf() throws IOException {
-        Path pdfFile = tempDir.resolve("sample.pdf");
+        return createSamplePdf(1);
+    }
+    
+    private Path createSamplePdf(int pageCount) throws IOException {
+        Path pdfFile = tempDir.resolve("sample_" + pageCount + ".pdf");
         
         try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage();
-            document.addPage(page);
-            
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA, 12);
-                contentStream.newLineAtOffset(100, 700);
-                contentStream.showText("Sample PDF text");
-                contentStream.endText();
+            for (int i = 0; i < pageCount; i++) {
+                PDPage page = new PDPage(new PDRectangle(
+                        PDRectangle.LETTER.getWidth(), PDRectangle.LETTER.getHeight() + 72 * i));
+                document.addPage(page);
+                
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.beginText();
+                    contentStream.setFont(PDType1Font.HELVETICA, 12);
+                    contentStream.newLineAtOffset(100, 700);
+                    contentStream.showText("Sample PDF text " + (i + 1));
+                    contentStream.endText();
+                }
             }
             
             document.save(pdfFile.toFile());
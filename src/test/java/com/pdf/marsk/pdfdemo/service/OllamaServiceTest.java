@@ -0,0 +1,84 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OllamaServiceTest {
+
+    private ChatClient chatClient;
+    private OllamaService ollamaService;
+
+    @BeforeEach
+    void setUp() {
+        chatClient = mock(ChatClient.class);
+        ollamaService = new OllamaService(chatClient, null);
+        ReflectionTestUtils.setField(ollamaService, "selectiveConfidenceThreshold", 80f);
+        ReflectionTestUtils.setField(ollamaService, "selectiveContextLines", 1);
+        ReflectionTestUtils.setField(ollamaService, "selectiveMaxLinesPerRequest", 60);
+        ReflectionTestUtils.setField(ollamaService, "maxChunkingWorkers", 2);
+    }
+
+    private void reply(String text) {
+        when(chatClient.call(any(Prompt.class))).thenReturn(new ChatResponse(List.of(new Generation(text))));
+    }
+
+    @Test
+    void enhanceLowConfidenceLines_sendsOnlyUncertainLinesWithContext() {
+        String text = "First line\nSecond line\nThe qu1ck brown f0x\nFourth line\nFifth line\nSixth line";
+        reply("3: The quick brown fox");
+
+        OllamaService.EnhancementResult result = ollamaService.enhanceLowConfidenceLines(text,
+                Arrays.asList(95f, 93f, 41f, 90f, 96f, 97f), "llama2");
+
+        assertEquals("First line\nSecond line\nThe quick brown fox\nFourth line\nFifth line\nSixth line", result.getEnhancedText());
+        ArgumentCaptor<Prompt> prompt = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatClient).call(prompt.capture());
+        String sent = prompt.getValue().getInstructions().get(0).getContent();
+        assertTrue(sent.contains("2: Second line\n*3: The qu1ck brown f0x\n4: Fourth line\n"));
+        assertFalse(sent.contains("First line"));
+        assertFalse(sent.contains("Sixth line"));
+    }
+
+    @Test
+    void enhanceLowConfidenceLines_skipsTheModelWhenEveryLineIsConfident() {
+        String text = "--- Page 1 ---\nClean scan\n";
+
+        OllamaService.EnhancementResult result = ollamaService.enhanceLowConfidenceLines(text,
+                Arrays.asList(null, 99f, null), "llama2");
+
+        assertEquals(text, result.getEnhancedText());
+        verifyNoInteractions(chatClient);
+    }
+
+    @Test
+    void enhanceLowConfidenceLines_ignoresCorrectionsOfContextLinesAndRunawayReplies() {
+        String text = "Context\nBad 1ine\nMore context";
+        reply("1: Rewritten context\n2: Bad line, and here is a long explanation of everything I changed in it\n");
+
+        OllamaService.EnhancementResult result = ollamaService.enhanceLowConfidenceLines(text,
+                Arrays.asList(90f, 30f, 90f), "llama2");
+
+        assertEquals(text, result.getEnhancedText());
+    }
+
+    @Test
+    void selectionRequests_mergesNearbyWindowsAndSplitsAtTheRequestSize() {
+        List<List<Integer>> requests = OllamaService.selectionRequests(new TreeSet<>(List.of(0, 3, 20)), 30, 1, 5);
+
+        assertEquals(List.of(List.of(0, 1, 2, 3, 4), List.of(19, 20, 21)), requests);
+    }
+}
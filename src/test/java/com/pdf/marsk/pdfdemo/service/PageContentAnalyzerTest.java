@@ -0,0 +1,88 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageContentAnalyzerTest {
+
+    // A letter page at the 36 DPI preview resolution
+    private static final int WIDTH = 306;
+    private static final int HEIGHT = 396;
+
+    private final PageContentAnalyzer analyzer = new PageContentAnalyzer(true, 36, 64, 2.0, 18, 0.1);
+
+    private static BufferedImage page(Color paper) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(paper);
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        graphics.dispose();
+        return image;
+    }
+
+    private static void ink(BufferedImage image, int x, int y, int width, int height) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(x, y, width, height);
+        graphics.dispose();
+    }
+
+    @Test
+    void analyze_detectsBlankPagesDespiteSpecksAndScannerBorders() {
+        BufferedImage scan = page(new Color(235, 235, 235));
+        for (int i = 0; i < 40; i++) {
+            ink(scan, 20 + i * 6, 30 + i * 8, 1, 1); // isolated dust
+        }
+        ink(scan, 0, 0, 4, HEIGHT); // dark border along the scanner's edge
+
+        assertTrue(analyzer.analyze(scan).isBlank());
+    }
+
+    @Test
+    void analyze_cropsToTheContentRegionWithPadding() {
+        BufferedImage image = page(Color.WHITE);
+        ink(image, 50, 40, 60, 6); // a single line of text near the top left
+
+        PageContent content = analyzer.analyze(image);
+
+        assertFalse(content.isBlank());
+        assertTrue(content.isCropped());
+        assertEquals((50 - 9) / (double) WIDTH, content.getLeft(), 1e-9);
+        assertEquals((40 - 9) / (double) HEIGHT, content.getTop(), 1e-9);
+        assertEquals((110 + 9) / (double) WIDTH, content.getRight(), 1e-9);
+        assertEquals((46 + 9) / (double) HEIGHT, content.getBottom(), 1e-9);
+    }
+
+    @Test
+    void analyze_keepsTheFullPageWhenCroppingSavesLittle() {
+        BufferedImage image = page(Color.WHITE);
+        ink(image, 10, 10, 4, 4);
+        ink(image, WIDTH - 14, HEIGHT - 14, 4, 4);
+
+        PageContent content = analyzer.analyze(image);
+
+        assertFalse(content.isBlank());
+        assertFalse(content.isCropped());
+    }
+
+    @Test
+    void analyze_keepsTheFullPageWithoutAClearPaperLevel() {
+        BufferedImage photo = page(new Color(40, 40, 40));
+
+        assertFalse(analyzer.analyze(photo).isBlank());
+        assertFalse(analyzer.analyze(photo).isCropped());
+    }
+
+    @Test
+    void analyze_treatsEveryPageAsFullWhenDisabled() throws Exception {
+        PageContentAnalyzer disabled = new PageContentAnalyzer(false, 36, 64, 2.0, 18, 0.1);
+
+        assertSame(PageContent.FULL_PAGE, disabled.analyze(null, 0));
+        assertEquals("off", disabled.getSettingsSignature());
+    }
+}
@@ -0,0 +1,127 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageOrientationDetectorTest {
+
+    // A letter page at 150 DPI
+    private static final int DPI = 150;
+    private static final int WIDTH = 1275;
+    private static final int HEIGHT = 1650;
+
+    private final PageOrientationDetector detector = new PageOrientationDetector(true, 100, 10, 0.3, 3);
+
+    /**
+     * Draws lines of font-free "text": x-height glyph bodies, a third of them with an ascender above,
+     * fewer with a descender below, as in Latin script.
+     */
+    private static GrayImage textPage(int lines) {
+        GrayImage page = new GrayImage();
+        page.reset(WIDTH, HEIGHT);
+        byte[] pixels = page.getPixels();
+        Arrays.fill(pixels, 0, WIDTH * HEIGHT, (byte) 0xFF);
+        Random random = new Random(42);
+        for (int line = 0; line < lines; line++) {
+            int baseline = 200 + line * 30;
+            int x = 150;
+            while (x < WIDTH - 200) {
+                int letters = 2 + random.nextInt(7);
+                for (int letter = 0; letter < letters; letter++) {
+                    int top = baseline - 10;
+                    int bottom = baseline;
+                    double shape = random.nextDouble();
+                    if (shape < 0.35) {
+                        top -= 7;
+                    } else if (shape < 0.47) {
+                        bottom += 6;
+                    }
+                    fill(pixels, x, top, 6, bottom - top);
+                    x += 8;
+                }
+                x += 9;
+            }
+        }
+        updateHistogram(page);
+        return page;
+    }
+
+    private static void fill(byte[] pixels, int x, int y, int width, int height) {
+        for (int row = y; row < y + height; row++) {
+            Arrays.fill(pixels, row * WIDTH + x, row * WIDTH + x + width, (byte) 0);
+        }
+    }
+
+    private static void updateHistogram(GrayImage page) {
+        int[] histogram = page.getHistogram();
+        Arrays.fill(histogram, 0);
+        for (int i = 0; i < page.getWidth() * page.getHeight(); i++) {
+            histogram[page.getPixels()[i] & 0xFF]++;
+        }
+    }
+
+    private static GrayImage rotated(GrayImage page, double degrees) {
+        GrayImage target = new GrayImage();
+        GrayImageOperators.rotate(page, target, degrees);
+        return target;
+    }
+
+    @Test
+    void detect_leavesUprightPagesAlone() {
+        assertTrue(detector.detect(textPage(20), DPI).isUpright());
+    }
+
+    @Test
+    void detect_measuresSkew() {
+        PageOrientation orientation = detector.detect(rotated(textPage(20), -3), DPI);
+
+        assertEquals(0, orientation.getRotation());
+        assertEquals(3.0, orientation.getSkew(), 0.3);
+    }
+
+    @Test
+    void detect_findsSidewaysAndUpsideDownPages() {
+        GrayImage page = textPage(20);
+
+        assertEquals(270, detector.detect(rotated(page, 90), DPI).getRotation());
+        assertEquals(90, detector.detect(rotated(page, 270), DPI).getRotation());
+        assertEquals(180, detector.detect(rotated(page, 180), DPI).getRotation());
+    }
+
+    @Test
+    void detect_doesNotGuessTheDirectionOfASingleLine() {
+        PageOrientation orientation = detector.detect(rotated(textPage(1), 180), DPI);
+
+        assertEquals(0, orientation.getRotation());
+    }
+
+    @Test
+    void detect_leavesPagesWithoutTextAlone() {
+        GrayImage blank = textPage(0);
+        PageOrientationDetector disabled = new PageOrientationDetector(false, 100, 10, 0.3, 3);
+
+        assertTrue(detector.detect(blank, DPI).isUpright());
+        assertTrue(disabled.detect(rotated(textPage(20), 90), DPI).isUpright());
+    }
+
+    @Test
+    void rotate_quarterTurnsMovePixelsExactly() {
+        GrayImage page = new GrayImage();
+        page.reset(3, 2);
+        byte[] pixels = {1, 2, 3, 4, 5, 6};
+        System.arraycopy(pixels, 0, page.getPixels(), 0, pixels.length);
+
+        GrayImage clockwise = rotated(page, 90);
+
+        assertEquals(2, clockwise.getWidth());
+        assertEquals(3, clockwise.getHeight());
+        assertArrayEquals(new byte[] {4, 1, 5, 2, 6, 3}, Arrays.copyOf(clockwise.getPixels(), 6));
+        assertArrayEquals(new byte[] {6, 5, 4, 3, 2, 1}, Arrays.copyOf(rotated(page, 180).getPixels(), 6));
+        assertArrayEquals(pixels, Arrays.copyOf(rotated(clockwise, 270).getPixels(), 6));
+        assertEquals(1, clockwise.getHistogram()[4]);
+    }
+}
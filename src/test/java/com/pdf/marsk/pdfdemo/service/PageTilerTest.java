@@ -0,0 +1,73 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageTilerTest {
+
+    private final PageTiler tiler = new PageTiler(true, 1, 1000, 100);
+
+    private static PageTiler.TileWord word(int tile, String text, int x, int y, int width, int height) {
+        return new PageTiler.TileWord(tile, text, new Rectangle(x, y, width, height), 90f);
+    }
+
+    @Test
+    void shouldTile_onlyPagesAboveThePixelThreshold() {
+        assertFalse(tiler.shouldTile(new Rectangle(0, 0, 1000, 1000)));
+        assertTrue(tiler.shouldTile(new Rectangle(0, 0, 1000, 1001)));
+        assertFalse(new PageTiler(false, 1, 1000, 100).shouldTile(new Rectangle(0, 0, 5000, 5000)));
+    }
+
+    @Test
+    void tiles_coverTheRegionWithOverlappingTilesOfAtMostTheTileSize() {
+        Rectangle region = new Rectangle(50, 20, 2500, 1000);
+
+        List<Rectangle> tiles = tiler.tiles(region);
+
+        assertEquals(3, tiles.size());
+        assertEquals(new Rectangle(50, 20, 900, 1000), tiles.get(0));
+        assertEquals(new Rectangle(850, 20, 900, 1000), tiles.get(1));
+        assertEquals(new Rectangle(1650, 20, 900, 1000), tiles.get(2));
+        assertTrue(tiles.stream().allMatch(tile -> tile.width <= 1000 && tile.height <= 1000));
+    }
+
+    @Test
+    void merge_dropsWordsSeenTwiceInTheOverlapBand() {
+        List<Rectangle> tiles = tiler.tiles(new Rectangle(0, 0, 1900, 500));
+
+        String text = tiler.merge(tiles, List.of(
+                word(0, "left", 100, 100, 120, 30),
+                word(0, "shared", 960, 100, 30, 30),
+                word(1, "shared", 961, 101, 30, 30),
+                word(1, "right", 1500, 100, 120, 30)));
+
+        assertEquals("left shared right\n", text);
+    }
+
+    @Test
+    void merge_prefersTheWholeWordOverAFragmentCutByTheTileEdge() {
+        List<Rectangle> tiles = tiler.tiles(new Rectangle(0, 0, 1900, 500));
+
+        String text = tiler.merge(tiles, List.of(
+                word(0, "draw", 940, 100, 60, 30),
+                word(1, "drawing", 940, 100, 110, 30)));
+
+        assertEquals("drawing\n", text);
+    }
+
+    @Test
+    void merge_keepsLinesInReadingOrder() {
+        List<Rectangle> tiles = tiler.tiles(new Rectangle(0, 0, 1900, 500));
+
+        String text = tiler.merge(tiles, List.of(
+                word(1, "two", 1200, 102, 80, 30),
+                word(0, "second", 100, 300, 150, 30),
+                word(0, "one", 100, 100, 80, 34)));
+
+        assertEquals("one two\nsecond\n", text);
+    }
+}
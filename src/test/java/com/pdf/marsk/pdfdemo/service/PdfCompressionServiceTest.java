@@ -8,6 +8,7 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 
@@ -26,6 +27,9 @@ class PdfCompressionServiceTest {
     @InjectMocks
     private PdfCompressionService pdfCompressionService;
 
+    @Spy
+    private UploadSpoolService uploadSpoolService = new UploadSpoolService("");
+
     private MockMultipartFile createDummyPdfWithText(String name) throws IOException {
         try (PDDocument doc = new PDDocument()) {
             PDPage page = new PDPage();
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,6 +23,9 @@ class PdfMergeServiceTest {
     @InjectMocks
     private PdfMergeService pdfMergeService;
 
+    @Spy
+    private UploadSpoolService uploadSpoolService = new UploadSpoolService("");
+
     private MultipartFile createDummyPdf(String name, int pages) throws IOException {
         try (PDDocument doc = new PDDocument()) {
             for (int i = 0; i < pages; i++) {
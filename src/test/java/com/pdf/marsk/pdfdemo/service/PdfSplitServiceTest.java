@@ -4,6 +4,7 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 
@@ -21,6 +22,9 @@ class PdfSplitServiceTest {
     @InjectMocks
     private PdfSplitService pdfSplitService;
 
+    @Spy
+    private UploadSpoolService uploadSpoolService = new UploadSpoolService("");
+
     private MockMultipartFile createDummyPdf(String name, int pages) throws IOException {
         try (PDDocument doc = new PDDocument()) {
             for (int i = 0; i < pages; i++) {
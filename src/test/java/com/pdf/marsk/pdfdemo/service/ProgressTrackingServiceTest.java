@@ -0,0 +1,78 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.pdf.marsk.pdfdemo.service.ProgressTrackingService.OcrProgressInfo;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProgressTrackingServiceTest {
+
+    @Mock
+    private OcrEventStreamService ocrEventStreamService;
+
+    @InjectMocks
+    private ProgressTrackingService progressTrackingService;
+
+    @Test
+    void testOcrTaskPublishesProgressAndPages() {
+        String taskId = progressTrackingService.createOcrTask("scan.pdf", 0, "eng");
+        progressTrackingService.updateOcrTaskTotalPages(taskId, 4);
+        progressTrackingService.publishOcrPageResult(taskId, 0, "First page");
+        progressTrackingService.updateOcrTaskProgress(taskId, 1, "Completed page 1");
+
+        verify(ocrEventStreamService).open(taskId);
+        verify(ocrEventStreamService).publishPage(taskId, 0, "First page");
+        verify(ocrEventStreamService).publishProgress(taskId, 1, 4, 25, "Completed page 1");
+    }
+
+    @Test
+    void testCompletedOcrTaskKeepsResultOutOfMessage() {
+        String taskId = progressTrackingService.createOcrTask("scan.pdf", 2, "eng");
+
+        progressTrackingService.completeTask(taskId, true, "--- Page 1 ---\nlong text");
+        // A second completion, e.g. from the controller after the service completed the task, is ignored
+        progressTrackingService.completeTask(taskId, true, "other text");
+
+        OcrProgressInfo info = (OcrProgressInfo) progressTrackingService.getProgress(taskId);
+        assertTrue(info.isCompleted());
+        assertTrue(info.isSuccess());
+        assertEquals("--- Page 1 ---\nlong text", info.getResult());
+        assertEquals("OCR completed", info.getMessage());
+        verify(ocrEventStreamService, times(1)).publishComplete(taskId, true, "OCR completed");
+    }
+
+    @Test
+    void testFailedOcrTaskReportsErrorMessage() {
+        String taskId = progressTrackingService.createOcrTask("scan.pdf", 2, "eng");
+
+        progressTrackingService.completeTask(taskId, false, "Error: broken file");
+
+        OcrProgressInfo info = (OcrProgressInfo) progressTrackingService.getProgress(taskId);
+        assertFalse(info.isSuccess());
+        assertNull(info.getResult());
+        assertEquals("Error: broken file", info.getMessage());
+        verify(ocrEventStreamService).publishComplete(taskId, false, "Error: broken file");
+    }
+
+    @Test
+    void testKnowledgeExtractionTaskDoesNotUseEventStream() {
+        String taskId = progressTrackingService.createKnowledgeExtractionTask("doc.pdf", "query", "llama3");
+
+        progressTrackingService.publishOcrPageResult(taskId, 0, "text");
+        progressTrackingService.completeTask(taskId, true, "2 snippet(s) extracted.");
+
+        assertEquals("2 snippet(s) extracted.", progressTrackingService.getProgress(taskId).getMessage());
+        verify(ocrEventStreamService, never()).publishPage(anyString(), eq(0), anyString());
+        verify(ocrEventStreamService, never()).publishComplete(anyString(), anyBoolean(), anyString());
+    }
+}
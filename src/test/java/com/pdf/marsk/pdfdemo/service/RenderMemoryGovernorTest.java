@@ -0,0 +1,91 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderMemoryGovernorTest {
+
+    // One byte per pixel, so a region's cost is its pixel count
+    private final RenderMemoryGovernor governor = new RenderMemoryGovernor(1000, 1, Duration.ZERO);
+
+    private static Rectangle pixels(int width, int height) {
+        return new Rectangle(0, 0, width, height);
+    }
+
+    @Test
+    void reserve_grantsThePlannedDpiWhileTheBudgetLasts() throws Exception {
+        RenderMemoryGovernor.Reservation reservation = governor.reserve(pixels(20, 10), 300, 150);
+
+        assertEquals(300, reservation.getDpi());
+        assertEquals(200, reservation.getBytes());
+        assertEquals(200L, governor.snapshot().get("reservedBytes"));
+
+        reservation.close();
+        reservation.close();
+        assertEquals(0L, governor.snapshot().get("reservedBytes"));
+        assertEquals(0, governor.snapshot().get("activeReservations"));
+        assertEquals(200L, governor.snapshot().get("peakReservedBytes"));
+    }
+
+    @Test
+    void isUnderPressure_comparesTheReservedShareOfTheBudget() throws Exception {
+        assertFalse(governor.isUnderPressure(0.9));
+        try (RenderMemoryGovernor.Reservation reservation = governor.reserve(pixels(30, 30), 300, 300)) {
+            assertTrue(governor.isUnderPressure(0.9));
+            assertFalse(governor.isUnderPressure(0.95));
+        }
+        assertFalse(governor.isUnderPressure(0.9));
+    }
+
+    @Test
+    void reserve_downgradesTheDpiWhenMemoryIsShort() throws Exception {
+        try (RenderMemoryGovernor.Reservation first = governor.reserve(pixels(30, 30), 300, 150)) {
+            // 100 bytes left: a quarter of the cost, so half the DPI
+            RenderMemoryGovernor.Reservation second = governor.reserve(pixels(20, 20), 300, 100);
+
+            assertEquals(150, second.getDpi());
+            assertEquals(100, second.getBytes());
+            assertEquals(1L, governor.snapshot().get("downgradedRenders"));
+            second.close();
+        }
+    }
+
+    @Test
+    void reserve_waitsWhenEvenTheMinimumDpiDoesNotFit() throws Exception {
+        RenderMemoryGovernor.Reservation first = governor.reserve(pixels(30, 30), 300, 300);
+
+        CompletableFuture<RenderMemoryGovernor.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return governor.reserve(pixels(20, 20), 300, 200);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(1).equals(governor.snapshot().get("waitingRenders")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, governor.snapshot().get("waitingRenders"));
+        assertFalse(second.isDone());
+
+        first.close();
+        RenderMemoryGovernor.Reservation granted = second.get(5, TimeUnit.SECONDS);
+        assertEquals(300, granted.getDpi());
+        assertEquals(1L, governor.snapshot().get("waitedReservations"));
+        granted.close();
+    }
+
+    @Test
+    void reserve_limitsRendersLargerThanTheBudgetToTheBudget() throws Exception {
+        try (RenderMemoryGovernor.Reservation reservation = governor.reserve(pixels(100, 100), 400, 400)) {
+            assertEquals(400, reservation.getDpi());
+            assertEquals(1000, reservation.getBytes());
+        }
+    }
+}
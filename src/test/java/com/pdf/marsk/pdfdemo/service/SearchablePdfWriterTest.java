@@ -0,0 +1,89 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchablePdfWriterTest {
+
+    private static String textIn(byte[] pdf, Rectangle2D region) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDFTextStripperByArea stripper = new PDFTextStripperByArea();
+            stripper.addRegion("region", region);
+            stripper.extractRegions(document.getPage(0));
+            return stripper.getTextForRegion("region").trim();
+        }
+    }
+
+    private static byte[] searchable(PDPage sourcePage, OcrPageResult pageResult) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDDocument source = new PDDocument();
+             SearchablePdfWriter writer = new SearchablePdfWriter()) {
+            source.addPage(sourcePage);
+            writer.addPage(sourcePage, pageResult);
+            writer.save(out);
+        }
+        return out.toByteArray();
+    }
+
+    private static OcrPageResult page(int dpi, PageOrientation orientation, OcrWord... words) {
+        return new OcrPageResult(0, dpi, "", null, 0, orientation, List.of(words));
+    }
+
+    @Test
+    void addPage_placesWordsOverTheirBoxes() throws IOException {
+        // At 144 DPI, the box starts one inch from the left and two inches from the top
+        byte[] pdf = searchable(new PDPage(PDRectangle.LETTER),
+                page(144, PageOrientation.UPRIGHT, new OcrWord("Invoice", new Rectangle(144, 288, 200, 30), 95f)));
+
+        assertEquals("Invoice", textIn(pdf, new Rectangle2D.Float(66, 138, 110, 24)));
+        assertEquals("", textIn(pdf, new Rectangle2D.Float(300, 400, 100, 100)));
+    }
+
+    @Test
+    void addPage_followsThePageRotation() throws IOException {
+        PDPage rotated = new PDPage(PDRectangle.LETTER);
+        rotated.setRotation(90);
+
+        byte[] pdf = searchable(rotated,
+                page(72, PageOrientation.UPRIGHT, new OcrWord("Total", new Rectangle(500, 100, 60, 15), 90f)));
+
+        assertEquals("Total", textIn(pdf, new Rectangle2D.Float(490, 90, 80, 35)));
+    }
+
+    @Test
+    void addPage_writesSidewaysWordsAlongTheirBoxes() throws IOException {
+        // A page that was turned a quarter clockwise for recognition: its words run bottom to top
+        byte[] pdf = searchable(new PDPage(PDRectangle.LETTER),
+                page(72, new PageOrientation(90, 0), new OcrWord("Margin", new Rectangle(40, 300, 14, 80), 90f)));
+
+        assertEquals("Margin", textIn(pdf, new Rectangle2D.Float(30, 290, 40, 100)));
+    }
+
+    @Test
+    void addImagePage_sizesThePageFromTheImageResolution() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SearchablePdfWriter writer = new SearchablePdfWriter()) {
+            writer.addImagePage(new BufferedImage(600, 300, BufferedImage.TYPE_BYTE_GRAY), 300,
+                    List.of(new OcrWord("Città", new Rectangle(60, 60, 150, 40), 88f)));
+            writer.save(out);
+        }
+
+        try (PDDocument document = PDDocument.load(out.toByteArray())) {
+            assertEquals(144, document.getPage(0).getMediaBox().getWidth(), 0.01);
+            assertEquals(72, document.getPage(0).getMediaBox().getHeight(), 0.01);
+        }
+        assertEquals("Città", textIn(out.toByteArray(), new Rectangle2D.Float(10, 10, 50, 20)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.sourceforge.tess4j.ITesseract;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TesseractPoolTest {
+
+    private final List<String> createdHandles = Collections.synchronizedList(new ArrayList<>());
+
+    private TesseractPool pool(int maxHandles, List<String> warmLanguages) {
+        return new TesseractPool(2, maxHandles, Map.of("ita", 1), warmLanguages, 1, 0, (language, ocrEngineMode) -> {
+            createdHandles.add(language + ":" + ocrEngineMode);
+            return mock(ITesseract.class);
+        });
+    }
+
+    @Test
+    void withHandle_reusesHandlesPerLanguageAndProfile() throws Exception {
+        TesseractPool pool = pool(4, List.of());
+
+        ITesseract first = pool.withHandle("eng", tesseract -> tesseract);
+        ITesseract second = pool.withHandle("eng", tesseract -> tesseract);
+        ITesseract italian = pool.withHandle("ita", tesseract -> tesseract);
+        ITesseract legacyEngine = pool.withHandle("eng", new OcrProfile("legacy", 1, 0, null, 0, null), tesseract -> tesseract);
+
+        assertSame(first, second);
+        assertNotSame(first, italian);
+        assertNotSame(first, legacyEngine);
+        assertEquals(List.of("eng:1", "ita:1", "eng:0"), createdHandles);
+    }
+
+    @Test
+    void withHandle_evictsLeastRecentlyUsedLanguageAtTheHandleLimit() throws Exception {
+        TesseractPool pool = pool(2, List.of());
+
+        pool.withHandle("eng", tesseract -> null);
+        pool.withHandle("ita", tesseract -> null);
+        pool.withHandle("eng+ita", tesseract -> null); // evicts eng, idle the longest
+        pool.withHandle("ita", tesseract -> null);     // still warm
+        pool.withHandle("eng", tesseract -> null);     // loaded again
+
+        assertEquals(List.of("eng:1", "ita:1", "eng+ita:1", "eng:1"), createdHandles);
+    }
+
+    @Test
+    void withHandle_waitsForAHandleWhenTheLanguageIsAtItsLimit() throws Exception {
+        TesseractPool pool = pool(4, List.of());
+        List<ITesseract> used = Collections.synchronizedList(new ArrayList<>());
+
+        Thread other = new Thread(() -> {
+            try {
+                pool.withHandle("ita", tesseract -> {
+                    used.add(tesseract);
+                    return null;
+                });
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        pool.withHandle("ita", tesseract -> {
+            used.add(tesseract);
+            other.start();
+            try {
+                Thread.sleep(50); // the other thread cannot get a second "ita" handle meanwhile
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertEquals(1, used.size());
+            return null;
+        });
+        other.join(2000);
+
+        assertEquals(2, used.size());
+        assertSame(used.get(0), used.get(1));
+        assertEquals(List.of("ita:1"), createdHandles);
+    }
+
+    @Test
+    void warmUp_preloadsStartupLanguages() throws Exception {
+        TesseractPool pool = pool(4, List.of("eng", "ita"));
+
+        pool.warmUp();
+        pool.withHandle("ita", tesseract -> null);
+        pool.withHandle("eng", tesseract -> null);
+
+        assertEquals(List.of("eng:1", "ita:1"), createdHandles);
+    }
+
+    @Test
+    void sweep_evictsTheLeastRecentlyUsedHalfOfTheIdleHandlesUnderMemoryPressure() throws Exception {
+        AtomicBoolean underPressure = new AtomicBoolean();
+        TesseractPool pool = new TesseractPool(2, 4, Map.of(), List.of("eng"), 1, 0, (language, ocrEngineMode) -> {
+            createdHandles.add(language);
+            return mock(ITesseract.class);
+        }, new OcrProfile("basic", 1, 1, null, 0, null), underPressure::get, 0);
+        pool.withHandle("eng", tesseract -> null);
+        pool.withHandle("ita", tesseract -> null);
+        pool.withHandle("deu", tesseract -> null);
+        pool.withHandle("fra", tesseract -> null);
+
+        pool.sweep(); // no pressure, no idle timeout: everything stays loaded
+        underPressure.set(true);
+        pool.sweep(); // evicts eng and ita, idle the longest, even though eng is a startup language
+        pool.withHandle("fra", tesseract -> null);
+        pool.withHandle("deu", tesseract -> null);
+        pool.withHandle("eng", tesseract -> null);
+
+        assertEquals(List.of("eng", "ita", "deu", "fra", "eng"), createdHandles);
+    }
+
+    @Test
+    void parseHandleCounts_readsLanguageLimits() {
+        assertEquals(Map.of("eng", 4, "eng+ita", 1), TesseractPool.parseHandleCounts("eng=4, eng+ita=1, broken"));
+        assertTrue(TesseractPool.parseHandleCounts("").isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+package com.pdf.marsk.pdfdemo.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TiffFrameReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void frame_readsSizesWithoutDecodingAndFallsBackWithoutResolution() throws IOException {
+        File tiff = writeTiff(tempDir.resolve("scan.tif"), List.of(page(400, 500), page(400, 600), page(400, 700)), 0, 0);
+
+        try (TiffFrameReader frames = new TiffFrameReader(tiff)) {
+            assertEquals(3, frames.getFrameCount());
+            TiffFrameReader.Frame frame = frames.frame(2, 300, 400);
+            assertEquals(new Rectangle(0, 0, 400, 700), frame.pixels());
+            assertEquals(300, frame.dpi());
+        }
+    }
+
+    @Test
+    void frame_stretchesStandardFaxFramesToSquarePixels() throws IOException {
+        File tiff = writeTiff(tempDir.resolve("fax.tif"), List.of(page(408, 200)), 204, 98);
+
+        try (TiffFrameReader frames = new TiffFrameReader(tiff)) {
+            TiffFrameReader.Frame frame = frames.frame(0, 300, 400);
+            assertEquals(204, frame.dpi());
+            assertEquals(408, frame.width());
+            assertEquals(416, frame.height());
+
+            BufferedImage region = frames.read(0, frame, new Rectangle(0, 208, 408, 208));
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, region.getType());
+            assertEquals(408, region.getWidth());
+            assertEquals(208, region.getHeight());
+        }
+    }
+
+    @Test
+    void preview_isDecodedAtThePreviewDpi() throws IOException {
+        File tiff = writeTiff(tempDir.resolve("scan.tiff"), List.of(page(600, 900)), 300, 300);
+
+        try (TiffFrameReader frames = new TiffFrameReader(tiff)) {
+            BufferedImage preview = frames.preview(0, frames.frame(0, 300, 400), 30);
+            assertEquals(60, preview.getWidth());
+            assertEquals(90, preview.getHeight());
+        }
+    }
+
+    @Test
+    void isTiff_matchesTiffExtensions() {
+        assertTrue(TiffFrameReader.isTiff("fax.TIF"));
+        assertTrue(TiffFrameReader.isTiff("scan.tiff"));
+        assertFalse(TiffFrameReader.isTiff("scan.png"));
+    }
+
+    private static BufferedImage page(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(width / 4, height / 4, width / 2, 10);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Writes a multi-page TIFF, recording the resolution unless it is 0.
+     */
+    static File writeTiff(Path path, List<BufferedImage> frames, double xDpi, double yDpi) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            for (BufferedImage frame : frames) {
+                IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), param);
+                if (xDpi > 0) {
+                    IIOMetadataNode dimension = new IIOMetadataNode("Dimension");
+                    dimension.appendChild(pixelSize("HorizontalPixelSize", xDpi));
+                    dimension.appendChild(pixelSize("VerticalPixelSize", yDpi));
+                    IIOMetadataNode root = new IIOMetadataNode(IIOMetadataFormatImpl.standardMetadataFormatName);
+                    root.appendChild(dimension);
+                    metadata.mergeTree(IIOMetadataFormatImpl.standardMetadataFormatName, root);
+                }
+                writer.writeToSequence(new IIOImage(frame, null, metadata), param);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return path.toFile();
+    }
+
+    private static IIOMetadataNode pixelSize(String name, double dpi) {
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        node.setAttribute("value", String.valueOf(25.4 / dpi));
+        return node;
+    }
+}